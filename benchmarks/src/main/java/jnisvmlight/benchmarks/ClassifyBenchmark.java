@@ -0,0 +1,136 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight.benchmarks;
+
+import jnisvmlight.FeatureVector;
+import jnisvmlight.LabeledFeatureVector;
+import jnisvmlight.SVMLightInterface;
+import jnisvmlight.SVMLightModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures scoring single documents with a trained model for each kernel type, in Java and natively, and scoring a batch of documents
+ * in parallel in Java and with one native call. Each fork trains its own model, which is also the model used by
+ * {@link SVMLightInterface#classifyNative(FeatureVector)}.
+ *
+ * @author Anja Pilz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClassifyBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    /**
+     * The kernel type, see {@link jnisvmlight.KernelParam}.
+     */
+    @Param({"0", "1", "2", "3"})
+    public String kernelType;
+
+    @Param({"1000", "10000"})
+    public int trainingDocuments;
+
+    private SVMLightInterface m_svm;
+
+    private SVMLightModel m_model;
+
+    private FeatureVector[] m_queries;
+
+    private int m_next;
+
+    private int[] m_offsets;
+
+    private int[] m_dims;
+
+    private double[] m_values;
+
+    private double[] m_results;
+
+    @Setup
+    public void setUp() {
+        LabeledFeatureVector[] docs = SyntheticData.documents(1, trainingDocuments, 10000, 20);
+        m_svm = new SVMLightInterface();
+        m_model = m_svm.trainModel(docs, new String[]{"-t", kernelType, "-g", "0.1", "-s", "0.1"});
+        Random random = new Random(2);
+        m_queries = new FeatureVector[QUERIES];
+        // the queries also in CSR layout, for the native batch
+        int[][] dims = new int[QUERIES][];
+        double[][] values = new double[QUERIES][];
+        m_offsets = new int[QUERIES + 1];
+        for (int i = 0; i < QUERIES; i++) {
+            dims[i] = SyntheticData.dimensions(random, 10000, 20);
+            values[i] = SyntheticData.values(random, dims[i].length);
+            m_queries[i] = new FeatureVector(dims[i], values[i]);
+            m_offsets[i + 1] = m_offsets[i] + dims[i].length;
+        }
+        m_dims = new int[m_offsets[QUERIES]];
+        m_values = new double[m_dims.length];
+        for (int i = 0; i < QUERIES; i++) {
+            System.arraycopy(dims[i], 0, m_dims, m_offsets[i], dims[i].length);
+            System.arraycopy(values[i], 0, m_values, m_offsets[i], values[i].length);
+        }
+        m_results = new double[QUERIES];
+    }
+
+    private FeatureVector nextQuery() {
+        m_next = (m_next + 1) & (QUERIES - 1);
+        return m_queries[m_next];
+    }
+
+    @Benchmark
+    public double classify() {
+        return m_model.classify(nextQuery());
+    }
+
+    @Benchmark
+    public double classifyNative() {
+        return m_svm.classifyNative(nextQuery());
+    }
+
+    @Benchmark
+    public double[] classifyBatch() {
+        return m_model.classify(m_queries);
+    }
+
+    @Benchmark
+    public double[] classifyNativeBatch() {
+        m_svm.classifyNative(m_offsets, m_dims, m_values, m_results);
+        return m_results;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight.benchmarks;
+
+import jnisvmlight.FeatureVector;
+import jnisvmlight.LinearKernel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the sparse dot product of {@link LinearKernel} at different sparsities, for vectors of equal and of very different lengths.
+ *
+ * @author Anja Pilz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LinearKernelBenchmark {
+
+    private static final int DIMENSIONS = 1000000;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int nonZeros;
+
+    private final LinearKernel m_kernel = new LinearKernel();
+
+    private FeatureVector m_v1;
+
+    private FeatureVector m_v2;
+
+    private FeatureVector m_short;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        m_v1 = SyntheticData.vector(random, DIMENSIONS, nonZeros);
+        m_v2 = SyntheticData.vector(random, DIMENSIONS, nonZeros);
+        m_short = SyntheticData.vector(random, DIMENSIONS, 10);
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return m_kernel.evaluate(m_v1, m_v2);
+    }
+
+    @Benchmark
+    public double evaluateShortQuery() {
+        return m_kernel.evaluate(m_v1, m_short);
+    }
+}
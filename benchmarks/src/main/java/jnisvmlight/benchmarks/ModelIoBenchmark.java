@@ -0,0 +1,107 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight.benchmarks;
+
+import jnisvmlight.SVMLightInterface;
+import jnisvmlight.SVMLightModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading and writing model files with {@link SVMLightModel#fromPath(Path)} and {@link SVMLightModel#writeModelToFile(String)},
+ * and binary model files with {@link SVMLightModel#fromBinaryPath(Path)} and {@link SVMLightModel#writeBinaryModelToFile(Path)}.
+ * The models are trained on noisy synthetic data, so that a large share of the training documents become support vectors.
+ *
+ * @author Anja Pilz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ModelIoBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int trainingDocuments;
+
+    private SVMLightModel m_model;
+
+    private Path m_modelFile;
+
+    private Path m_output;
+
+    private Path m_binaryModelFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        m_model = new SVMLightInterface().trainModel(SyntheticData.documents(1, trainingDocuments, 10000, 20), new String[]{"-t", "0"});
+        m_modelFile = Files.createTempFile("model", ".dat");
+        m_output = Files.createTempFile("model", ".out");
+        m_model.writeModelToFile(m_modelFile.toString());
+        m_binaryModelFile = Files.createTempFile("model", ".bin");
+        m_model.writeBinaryModelToFile(m_binaryModelFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(m_modelFile);
+        Files.deleteIfExists(m_output);
+        Files.deleteIfExists(m_binaryModelFile);
+    }
+
+    @Benchmark
+    public SVMLightModel fromPath() throws ParseException {
+        return SVMLightModel.fromPath(m_modelFile);
+    }
+
+    @Benchmark
+    public void writeModelToFile() {
+        m_model.writeModelToFile(m_output.toString());
+    }
+
+    @Benchmark
+    public SVMLightModel fromBinaryPath() throws IOException {
+        return SVMLightModel.fromBinaryPath(m_binaryModelFile);
+    }
+
+    @Benchmark
+    public void writeBinaryModelToFile() throws IOException {
+        m_model.writeBinaryModelToFile(m_output);
+    }
+}
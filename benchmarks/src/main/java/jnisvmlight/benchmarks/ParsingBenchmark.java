@@ -0,0 +1,112 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight.benchmarks;
+
+import jnisvmlight.Dataset;
+import jnisvmlight.LabeledFeatureVector;
+import jnisvmlight.SVMLightInterface;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading SVM-light document files with {@link SVMLightInterface#fromPath(Path, int)}, sequentially and in parallel, and
+ * reading the same documents from a binary {@link Dataset}.
+ *
+ * @author Anja Pilz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParsingBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int documents;
+
+    @Param({"20", "200"})
+    public int nonZeros;
+
+    private Path m_file;
+
+    private Path m_dataset;
+
+    @Setup
+    public void setUp() throws IOException, ParseException {
+        m_file = SyntheticData.write(SyntheticData.documents(1, documents, 100000, nonZeros), Files.createTempFile("parsing", ".dat"));
+        m_dataset = Files.createTempFile("parsing", ".bin");
+        Dataset.convert(m_file, 0, m_dataset);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(m_file);
+        Files.deleteIfExists(m_dataset);
+    }
+
+    @Benchmark
+    public LabeledFeatureVector[] fromPath() throws ParseException {
+        return SVMLightInterface.fromPath(m_file, 0);
+    }
+
+    @Benchmark
+    public LabeledFeatureVector[] fromPathParallel() throws ParseException {
+        return SVMLightInterface.fromPath(m_file, 0, ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public double scanDataset() throws IOException {
+        Dataset dataset = Dataset.open(m_dataset);
+        double sum = 0;
+        for (int i = 0; i < dataset.size(); i++) {
+            DoubleBuffer values = dataset.getValues(i);
+            for (int k = 0; k < values.limit(); k++) {
+                sum += dataset.getLabel(i) * values.get(k);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public LabeledFeatureVector[] datasetToArray() throws IOException {
+        return Dataset.open(m_dataset).toArray();
+    }
+}
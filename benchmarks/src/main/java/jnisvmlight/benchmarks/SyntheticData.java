@@ -0,0 +1,118 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight.benchmarks;
+
+import jnisvmlight.FeatureVector;
+import jnisvmlight.LabeledFeatureVector;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A seeded generator of sparse, text-like documents. Feature ids are skewed towards small ids, as word ids ordered by frequency are, and
+ * labels are the sign of a hidden linear model with 5% label noise, so that the documents can also be used for training.
+ *
+ * @author Anja Pilz
+ */
+public final class SyntheticData {
+
+    private static final double LABEL_NOISE = 0.05;
+
+    private SyntheticData() {
+    }
+
+    /**
+     * Generates labeled documents.
+     *
+     * @param seed       the seed; equal seeds yield equal documents.
+     * @param count      the number of documents.
+     * @param dimensions the highest feature id.
+     * @param nonZeros   the mean number of features per document.
+     */
+    public static LabeledFeatureVector[] documents(long seed, int count, int dimensions, int nonZeros) {
+        Random random = new Random(seed);
+        Random hidden = new Random(~seed);
+        double[] weights = new double[dimensions + 1];
+        for (int dim = 1; dim <= dimensions; dim++) {
+            weights[dim] = hidden.nextGaussian();
+        }
+        LabeledFeatureVector[] docs = new LabeledFeatureVector[count];
+        for (int i = 0; i < count; i++) {
+            int[] dims = dimensions(random, dimensions, nonZeros / 2 + random.nextInt(nonZeros + 1));
+            double[] vals = values(random, dims.length);
+            double score = 0;
+            for (int j = 0; j < dims.length; j++) {
+                score += weights[dims[j]] * vals[j];
+            }
+            double label = (score > 0) != (random.nextDouble() < LABEL_NOISE) ? 1 : -1;
+            docs[i] = new LabeledFeatureVector(label, dims, vals);
+        }
+        return docs;
+    }
+
+    /**
+     * Generates a vector with up to {@code nonZeros} distinct features in ascending order, at least one.
+     */
+    public static FeatureVector vector(Random random, int dimensions, int nonZeros) {
+        int[] dims = dimensions(random, dimensions, nonZeros);
+        return new FeatureVector(dims, values(random, dims.length));
+    }
+
+    static int[] dimensions(Random random, int dimensions, int nonZeros) {
+        int[] dims = new int[Math.max(1, nonZeros)];
+        for (int j = 0; j < dims.length; j++) {
+            dims[j] = 1 + (int) ((dimensions - 1) * Math.pow(random.nextDouble(), 3));
+        }
+        Arrays.sort(dims);
+        int distinct = 0;
+        for (int j = 0; j < dims.length; j++) {
+            if (j == 0 || dims[j] != dims[j - 1]) {
+                dims[distinct++] = dims[j];
+            }
+        }
+        return Arrays.copyOf(dims, distinct);
+    }
+
+    static double[] values(Random random, int count) {
+        double[] vals = new double[count];
+        for (int j = 0; j < count; j++) {
+            vals[j] = random.nextDouble();
+        }
+        return vals;
+    }
+
+    /**
+     * Writes documents to a file in the SVM-light format.
+     */
+    public static Path write(LabeledFeatureVector[] docs, Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (LabeledFeatureVector doc : docs) {
+                writer.write(doc.toString());
+            }
+        }
+        return file;
+    }
+}
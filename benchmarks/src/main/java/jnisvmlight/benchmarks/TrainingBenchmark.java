@@ -0,0 +1,122 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight.benchmarks;
+
+import jnisvmlight.Dataset;
+import jnisvmlight.LabeledFeatureVector;
+import jnisvmlight.SVMLightInterface;
+import jnisvmlight.SVMLightModel;
+import jnisvmlight.TrainingParameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures end-to-end training with {@link SVMLightInterface#trainModel(LabeledFeatureVector[], String[])}, including the transfer of
+ * the documents to the native library and of the model back to Java, and the same training from documents in CSR arrays and in a
+ * {@link Dataset}. Each invocation trains one model, so the single shot time is reported.
+ *
+ * @author Anja Pilz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class TrainingBenchmark {
+
+    /**
+     * The kernel type, see {@link jnisvmlight.KernelParam}.
+     */
+    @Param({"0", "2"})
+    public String kernelType;
+
+    @Param({"1000", "10000", "100000"})
+    public int trainingDocuments;
+
+    private LabeledFeatureVector[] m_docs;
+
+    private double[] m_labels;
+
+    private int[] m_offsets;
+
+    private int[] m_dims;
+
+    private double[] m_values;
+
+    private Path m_dataset;
+
+    @Setup
+    public void setUp() throws IOException {
+        m_docs = SyntheticData.documents(1, trainingDocuments, 10000, 20);
+        m_dataset = Files.createTempFile("train", ".dataset");
+        Dataset.write(m_docs, m_dataset);
+        // the same documents in CSR arrays
+        Dataset dataset = Dataset.open(m_dataset);
+        m_labels = new double[dataset.size()];
+        m_offsets = new int[dataset.size() + 1];
+        m_dims = new int[(int) dataset.getNumberOfValues()];
+        m_values = new double[m_dims.length];
+        for (int i = 0; i < dataset.size(); i++) {
+            m_labels[i] = dataset.getLabel(i);
+            m_offsets[i + 1] = m_offsets[i] + dataset.getNumberOfFeatures(i);
+            dataset.getDimensions(i).get(m_dims, m_offsets[i], dataset.getNumberOfFeatures(i));
+            dataset.getValues(i).get(m_values, m_offsets[i], dataset.getNumberOfFeatures(i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(m_dataset);
+    }
+
+    @Benchmark
+    public SVMLightModel trainModel() {
+        return new SVMLightInterface().trainModel(m_docs, new String[]{"-t", kernelType, "-g", "0.1"});
+    }
+
+    @Benchmark
+    public SVMLightModel trainModelFromArrays() {
+        return new SVMLightInterface().trainModel(m_labels, null, m_offsets, m_dims, m_values,
+                new TrainingParameters(new String[]{"-t", kernelType, "-g", "0.1"}));
+    }
+
+    @Benchmark
+    public SVMLightModel trainModelFromDataset() throws IOException {
+        return new SVMLightInterface().trainModel(Dataset.open(m_dataset), new TrainingParameters(new String[]{"-t", kernelType, "-g", "0.1"}));
+    }
+}
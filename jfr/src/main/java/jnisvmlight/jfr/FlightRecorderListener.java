@@ -0,0 +1,47 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight.jfr;
+
+import jnisvmlight.MetricsListener;
+import jnisvmlight.Operation;
+
+/**
+ * A {@link MetricsListener} that commits a JDK Flight Recorder event named {@code jnisvmlight.Operation} for each completed operation.
+ * The event is disabled unless enabled in the recording settings, in which case nothing is recorded. Requires a runtime with the
+ * {@code jdk.jfr} API, i.e. Java 8u262 or later, which is why it is kept out of the library in a module of its own. Register it with
+ * {@link jnisvmlight.Metrics#addListener(MetricsListener)}.
+ *
+ * @author Anja Pilz
+ */
+public class FlightRecorderListener implements MetricsListener {
+
+    @Override
+    public void operationCompleted(Operation operation, long durationNanos, long count) {
+        OperationEvent event = new OperationEvent();
+        if (event.shouldCommit()) {
+            event.operation = operation.name();
+            event.durationNanos = durationNanos;
+            event.count = count;
+            event.commit();
+        }
+    }
+}
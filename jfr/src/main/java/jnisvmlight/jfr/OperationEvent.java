@@ -0,0 +1,55 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Flight Recorder event committed by {@link FlightRecorderListener}. The duration is a field of its own, because the event is created
+ * after the operation completed.
+ *
+ * @author Anja Pilz
+ */
+@Name("jnisvmlight.Operation")
+@Label("SVM-light Operation")
+@Category("SVM-light")
+@Description("A completed classification, training or model input/output operation")
+@StackTrace(false)
+final class OperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Operation Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long durationNanos;
+
+    @Label("Count")
+    @Description("The number of items processed, e.g. support vectors evaluated or documents read")
+    long count;
+}
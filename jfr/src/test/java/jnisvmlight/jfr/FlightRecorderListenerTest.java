@@ -0,0 +1,43 @@
+package jnisvmlight.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import jnisvmlight.Operation;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FlightRecorderListenerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+        FlightRecorderListener listener = new FlightRecorderListener();
+        // nothing is recorded while the event is disabled
+        listener.operationCompleted(Operation.CLASSIFY, 1000, 1);
+        Path dump = folder.newFile("metrics.jfr").toPath();
+        try (Recording recording = new Recording()) {
+            recording.enable("jnisvmlight.Operation");
+            recording.start();
+            listener.operationCompleted(Operation.CLASSIFY, 2000, 3);
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        assertThat(events.size(), is(1));
+        RecordedEvent event = events.get(0);
+        assertThat(event.getEventType().getName(), is("jnisvmlight.Operation"));
+        assertThat(event.getString("operation"), is(Operation.CLASSIFY.name()));
+        assertThat(event.getLong("durationNanos"), is(2000L));
+        assertThat(event.getLong("count"), is(3L));
+    }
+}
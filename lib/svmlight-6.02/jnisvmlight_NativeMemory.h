@@ -0,0 +1,29 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class jnisvmlight_NativeMemory */
+
+#ifndef _Included_jnisvmlight_NativeMemory
+#define _Included_jnisvmlight_NativeMemory
+#ifdef __cplusplus
+extern "C" {
+#endif
+/*
+ * Class:     jnisvmlight_NativeMemory
+ * Method:    allocatedbytes
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_jnisvmlight_NativeMemory_allocatedbytes
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     jnisvmlight_NativeMemory
+ * Method:    freedbytes
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_jnisvmlight_NativeMemory_freedbytes
+  (JNIEnv *, jclass);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
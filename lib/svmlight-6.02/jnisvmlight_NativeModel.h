@@ -0,0 +1,53 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class jnisvmlight_NativeModel */
+
+#ifndef _Included_jnisvmlight_NativeModel
+#define _Included_jnisvmlight_NativeModel
+#ifdef __cplusplus
+extern "C" {
+#endif
+/*
+ * Class:     jnisvmlight_NativeModel
+ * Method:    createmodel
+ * Signature: (JJDDDLjava/lang/String;JD[D[I[I[D)J
+ */
+JNIEXPORT jlong JNICALL Java_jnisvmlight_NativeModel_createmodel
+  (JNIEnv *, jclass, jlong, jlong, jdouble, jdouble, jdouble, jstring, jlong, jdouble, jdoubleArray, jintArray, jintArray, jdoubleArray);
+
+/*
+ * Class:     jnisvmlight_NativeModel
+ * Method:    readmodel
+ * Signature: (Ljava/lang/String;)J
+ */
+JNIEXPORT jlong JNICALL Java_jnisvmlight_NativeModel_readmodel
+  (JNIEnv *, jclass, jstring);
+
+/*
+ * Class:     jnisvmlight_NativeModel
+ * Method:    freemodel
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_jnisvmlight_NativeModel_freemodel
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     jnisvmlight_NativeModel
+ * Method:    classifynative
+ * Signature: (JLjnisvmlight/FeatureVector;)D
+ */
+JNIEXPORT jdouble JNICALL Java_jnisvmlight_NativeModel_classifynative
+  (JNIEnv *, jclass, jlong, jobject);
+
+/*
+ * Class:     jnisvmlight_NativeModel
+ * Method:    classifybatchnative
+ * Signature: (JI[I[I[D[D)V
+ */
+JNIEXPORT void JNICALL Java_jnisvmlight_NativeModel_classifybatchnative
+  (JNIEnv *, jclass, jlong, jint, jintArray, jintArray, jdoubleArray, jdoubleArray);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
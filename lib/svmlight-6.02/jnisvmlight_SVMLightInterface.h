@@ -9,19 +9,27 @@ extern "C" {
 #endif
 /*
  * Class:     jnisvmlight_SVMLightInterface
- * Method:    classifyNative
- * Signature: (Ljnisvmlight/FeatureVector;)D
+ * Method:    trainmodel
+ * Signature: ([Ljnisvmlight/LabeledFeatureVector;Ljnisvmlight/TrainingParameters;Ljnisvmlight/TrainingMonitor;Ljnisvmlight/NativeModel$Handle;)Ljnisvmlight/SVMLightModel;
  */
-JNIEXPORT jdouble JNICALL Java_jnisvmlight_SVMLightInterface_classifyNative
-  (JNIEnv *, jobject, jobject);
+JNIEXPORT jobject JNICALL Java_jnisvmlight_SVMLightInterface_trainmodel
+  (JNIEnv *, jobject, jobjectArray, jobject, jobject, jobject);
 
 /*
  * Class:     jnisvmlight_SVMLightInterface
- * Method:    trainmodel
- * Signature: ([Ljnisvmlight/LabeledFeatureVector;Ljnisvmlight/TrainingParameters;)Ljnisvmlight/SVMLightModel;
+ * Method:    trainmodelarrays
+ * Signature: ([D[I[I[I[DLjnisvmlight/TrainingParameters;Ljnisvmlight/TrainingMonitor;Ljnisvmlight/NativeModel$Handle;)Ljnisvmlight/SVMLightModel;
  */
-JNIEXPORT jobject JNICALL Java_jnisvmlight_SVMLightInterface_trainmodel
-  (JNIEnv *, jobject, jobjectArray, jobject);
+JNIEXPORT jobject JNICALL Java_jnisvmlight_SVMLightInterface_trainmodelarrays
+  (JNIEnv *, jobject, jdoubleArray, jintArray, jintArray, jintArray, jdoubleArray, jobject, jobject, jobject);
+
+/*
+ * Class:     jnisvmlight_SVMLightInterface
+ * Method:    trainmodelbuffers
+ * Signature: (ILjava/nio/Buffer;Ljava/nio/Buffer;Ljava/nio/Buffer;[I[Ljava/nio/Buffer;[Ljava/nio/Buffer;Ljnisvmlight/TrainingParameters;Ljnisvmlight/TrainingMonitor;Ljnisvmlight/NativeModel$Handle;)Ljnisvmlight/SVMLightModel;
+ */
+JNIEXPORT jobject JNICALL Java_jnisvmlight_SVMLightInterface_trainmodelbuffers
+  (JNIEnv *, jobject, jint, jobject, jobject, jobject, jintArray, jobjectArray, jobjectArray, jobject, jobject, jobject);
 
 #ifdef __cplusplus
 }
@@ -118,8 +118,8 @@ int main (int argc, char* argv[])
   }  
   fclose(predfl);
   fclose(docfl);
-  free(line);
-  free(words);
+  my_free(line);
+  my_free(words);
   free_model(model,1);
 
   if(verbosity>=2) {
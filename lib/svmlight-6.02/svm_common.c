@@ -20,8 +20,12 @@
 # include "svm_common.h"
 # include "kernel.h"           /* this contains a user supplied kernel */
 
-long   verbosity;              /* verbosity level (0-4) */
-long   kernel_cache_statistic;
+THREAD_LOCAL long   verbosity;              /* verbosity level (0-4) */
+THREAD_LOCAL long   kernel_cache_statistic;
+volatile long long allocated_bytes=0;
+volatile long long freed_bytes=0;
+
+# define ALLOC_HEADER 16  /* in front of each block, keeps the alignment of malloc */
 
 double classify_example(MODEL *model, DOC *ex) 
      /* classifies one example */
@@ -141,11 +145,11 @@ SVECTOR *copy_svector(SVECTOR *vec)
 void free_svector(SVECTOR *vec)
 {
   if(vec) {
-    free(vec->words);
+    my_free(vec->words);
     if(vec->userdefined)
-      free(vec->userdefined);
+      my_free(vec->userdefined);
     free_svector(vec->next);
-    free(vec);
+    my_free(vec);
   }
 }
 
@@ -249,7 +253,7 @@ SVECTOR* sub_ss(SVECTOR *a, SVECTOR *b)
     sumi->wnum=0;
 
     vec=create_svector(sum,"",1.0);
-    free(sum);
+    my_free(sum);
 
     return(vec);
 }
@@ -331,7 +335,7 @@ SVECTOR* add_ss(SVECTOR *a, SVECTOR *b)
     sumi->wnum=0;
 
     vec=create_svector(sum,"",1.0);
-    free(sum);
+    my_free(sum);
 
     return(vec);
 }
@@ -399,7 +403,7 @@ SVECTOR* smult_s(SVECTOR *a, double factor)
     sumi->wnum=0;
 
     vec=create_svector(sum,a->userdefined,a->factor);
-    free(sum);
+    my_free(sum);
 
     return(vec);
 }
@@ -512,7 +516,7 @@ void free_example(DOC *example, long deep)
       if(example->fvec)
 	free_svector(example->fvec);
     }
-    free(example);
+    my_free(example);
   }
 }
 
@@ -633,8 +637,8 @@ MODEL *read_model(char *modelfile)
 				      create_svector(words,comment,1.0));
   }
   fclose(modelfl);
-  free(line);
-  free(words);
+  my_free(line);
+  my_free(words);
   if(verbosity>=1) {
     fprintf(stdout, "OK. (%d support vectors read)\n",(int)(model->sv_num-1));
   }
@@ -678,12 +682,12 @@ void free_model(MODEL *model, int deep)
 	free_example(model->supvec[i],1);
       }
     }
-    free(model->supvec);
+    my_free(model->supvec);
   }
-  if(model->alpha) free(model->alpha);
-  if(model->index) free(model->index);
-  if(model->lin_weights) free(model->lin_weights);
-  free(model);
+  if(model->alpha) my_free(model->alpha);
+  if(model->index) my_free(model->index);
+  if(model->lin_weights) my_free(model->lin_weights);
+  my_free(model);
 }
 
 
@@ -752,8 +756,8 @@ void read_documents(char *docfile, DOC ***docs, double **label,
   } 
 
   fclose(docfl);
-  free(line);
-  free(words);
+  my_free(line);
+  my_free(words);
   if(verbosity>=1) {
     fprintf(stdout, "OK. (%ld examples read)\n", dnum);
   }
@@ -964,15 +968,28 @@ int space_or_null(int c) {
 }
 
 void *my_malloc(size_t size)
+     /* the size of each block is kept in front of it for my_free */
 {
   void *ptr;
   if(size<=0) size=1; /* for AIX compatibility */
-  ptr=(void *)malloc(size);
+  ptr=(void *)malloc(size+ALLOC_HEADER);
   if(!ptr) { 
     perror ("Out of memory!\n"); 
     exit (1); 
   }
-  return(ptr);
+  *((size_t *)ptr)=size;
+  ATOMIC_ADD(allocated_bytes,(long long)size);
+  return((char *)ptr+ALLOC_HEADER);
+}
+
+void my_free(void *ptr)
+     /* releases a block allocated by my_malloc, NULL is ignored */
+{
+  if(ptr) {
+    ptr=(char *)ptr-ALLOC_HEADER;
+    ATOMIC_ADD(freed_bytes,(long long)*((size_t *)ptr));
+    free(ptr);
+  }
 }
 
 void copyright_notice(void)
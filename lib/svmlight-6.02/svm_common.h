@@ -183,6 +183,15 @@ typedef struct learn_parm {
   double svm_unlabbound;
   double *svm_cost;            /* individual upper bounds for each var */
   long   totwords;             /* number of features */
+  long   (*progress)(long, long, double, long, void *);
+                               /* called after each iteration of the
+				  optimizer with the iteration, the number
+				  of active variables, the maximum violation
+				  of the KT-conditions, the number of kernel
+				  evaluations and progress_data. A nonzero
+				  return value stops the optimization. NULL
+				  if not needed. */
+  void   *progress_data;
 } LEARN_PARM;
 
 typedef struct kernel_parm {
@@ -294,12 +303,33 @@ long   maxl(long, long);
 long   get_runtime(void);
 int    space_or_null(int);
 void   *my_malloc(size_t); 
+void   my_free(void *);
 void   copyright_notice(void);
 # ifdef _MSC_VER
    int isnan(double);
 # endif
 
-extern long   verbosity;              /* verbosity level (0-4) */
-extern long   kernel_cache_statistic;
+/* State that is global in the command line tools is kept per thread, so
+   that the JNI interface can train several models in parallel. */
+# ifdef _MSC_VER
+#  define THREAD_LOCAL __declspec(thread)
+# else
+#  define THREAD_LOCAL __thread
+# endif
+
+extern THREAD_LOCAL long   verbosity;              /* verbosity level (0-4) */
+extern THREAD_LOCAL long   kernel_cache_statistic;
+
+/* Memory allocated with my_malloc must be released with my_free, which
+   keep account of the bytes in use across all threads. */
+# ifdef _MSC_VER
+#  include <intrin.h>
+#  define ATOMIC_ADD(var,n) _InterlockedExchangeAdd64(&(var),(n))
+# else
+#  define ATOMIC_ADD(var,n) __sync_fetch_and_add(&(var),(n))
+# endif
+
+extern volatile long long allocated_bytes;  /* bytes allocated by my_malloc */
+extern volatile long long freed_bytes;      /* bytes released by my_free */
 
 #endif
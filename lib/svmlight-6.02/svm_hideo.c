@@ -31,7 +31,7 @@
 
 /* Common Block Declarations */
 
-long verbosity;
+/* verbosity is defined in svm_common.c */
 
 # define PRIMAL_OPTIMAL      1
 # define DUAL_OPTIMAL        2
@@ -51,16 +51,18 @@ long verbosity;
 # define EPSILON_EQ             1E-5
 
 double *optimize_qp(QP *, double *, long, double *, LEARN_PARM *);
-double *primal=0,*dual=0;
-long   precision_violations=0;
-double opt_precision=DEF_PRECISION;
-long   maxiter=DEF_MAX_ITERATIONS;
-double lindep_sensitivity=DEF_LINDEP_SENSITIVITY;
-double *buffer;
-long   *nonoptimal;
-
-long  smallroundcount=0;
-long  roundnumber=0;
+/* the optimizer state is kept per thread, see THREAD_LOCAL */
+THREAD_LOCAL double *primal=0,*dual=0;
+THREAD_LOCAL long   primal_size=0;
+THREAD_LOCAL long   precision_violations=0;
+THREAD_LOCAL double opt_precision=DEF_PRECISION;
+THREAD_LOCAL long   maxiter=DEF_MAX_ITERATIONS;
+THREAD_LOCAL double lindep_sensitivity=DEF_LINDEP_SENSITIVITY;
+THREAD_LOCAL double *buffer;
+THREAD_LOCAL long   *nonoptimal;
+
+THREAD_LOCAL long  smallroundcount=0;
+THREAD_LOCAL long  roundnumber=0;
 
 /* /////////////////////////////////////////////////////////////// */
 
@@ -84,6 +86,18 @@ double calculate_qp_objective(long, double *, double *, double *);
 
 
 
+void reset_qp_state()
+     /* resets the adaptive state of the optimizer of this thread, so that
+        the result of a training run does not depend on earlier ones */
+{
+  precision_violations=0;
+  opt_precision=DEF_PRECISION;
+  maxiter=DEF_MAX_ITERATIONS;
+  lindep_sensitivity=DEF_LINDEP_SENSITIVITY;
+  smallroundcount=0;
+  roundnumber=0;
+}
+
 double *optimize_qp(qp,epsilon_crit,nx,threshold,learn_parm)
 QP *qp;
 double *epsilon_crit;
@@ -102,7 +116,13 @@ LEARN_PARM *learn_parm;
 
   roundnumber++;
 
-  if(!primal) { /* allocate memory at first call */
+  if(primal_size<nx) { /* allocate memory at first call, or for a larger
+                         QP than in a previous training run */
+    my_free(primal);
+    my_free(dual);
+    my_free(nonoptimal);
+    my_free(buffer);
+    primal_size=nx;
     primal=(double *)my_malloc(sizeof(double)*nx);
     dual=(double *)my_malloc(sizeof(double)*((nx+1)*2));
     nonoptimal=(long *)my_malloc(sizeof(long)*(nx));
@@ -27,16 +27,12 @@ JavaParamIDs* GetJParamIDs(JNIEnv * env, jobjectArray* tdata) {
 	ids->ID_long_trainDocs = (*env)->GetFieldID(env, ids->SVMLightModelCls, "m_trainDocs", "J");
 	ids->ID_long_numSupVecs = (*env)->GetFieldID(env, ids->SVMLightModelCls, "m_numSupVecs", "J");
 	ids->ID_double_threshold = (*env)->GetFieldID(env, ids->SVMLightModelCls, "m_threshold", "D");
-	ids->ID_doubleArray_linWeights = (*env)->GetFieldID(env, ids->SVMLightModelCls, "m_linWeights", "[D");
-	ids->ID_labeledFeatureVectorArray_docs = (*env)->GetFieldID(env, ids->SVMLightModelCls, "m_docs",
-			"[Ljnisvmlight/LabeledFeatureVector;");
 
 	if ((ids->ID_string_format && ids->ID_long_kType && ids->ID_long_dParam
 			&& ids->ID_double_sParam && ids->ID_double_rParam
 			&& ids->ID_string_uParam && ids->ID_long_highFeatIdx
 			&& ids->ID_long_trainDocs && ids->ID_long_numSupVecs
-			&& ids->ID_double_threshold
-			&& ids->ID_labeledFeatureVectorArray_docs) == 0) {
+			&& ids->ID_double_threshold) == 0) {
 
 		perror("Can't access JFieldIDs: perror()");
 		exit(1);
@@ -47,13 +43,19 @@ JavaParamIDs* GetJParamIDs(JNIEnv * env, jobjectArray* tdata) {
 					env,
 					ids->SVMLightModelCls,
 					"<init>",
-					"(Ljava/lang/String;JJDDDLjava/lang/String;JJJD[Ljnisvmlight/LabeledFeatureVector;)V");
+					"(Ljava/lang/String;JJDDDLjava/lang/String;JJJD[I[I[D[D)V");
 
 	if (ids->ConstructorID_SVMLightModelCls == 0) {
 		perror("Can't determine the constructor-method of SVMLightModel: perror()");
 		exit(1);
 	}
 
+	// documents in CSR layout don't have a class
+	if (tdata == NULL) {
+		ids->tDataSize = 0;
+		return ids;
+	}
+
 	// Bestimmen der Groesse des uebergebenen Arrays (mit Trainingsdokumenten) tdata
 	ids->tDataSize = (*env)->GetArrayLength(env, *tdata);
 	if (ids->tDataSize<1) {
@@ -213,6 +215,7 @@ JTrainParams* GetJTrainParamIDs(JNIEnv * env, jobject* tparam) {
 	tids->argc = (*env)->GetIntField(env, tids->lp, argcID);
 
 	jobjectArray sfield = (*env)->GetObjectField(env, tids->lp, argvID);
+	tids->argv = NULL;
 	if (tids->argc > 0) {
 		tids->argv = (char**) my_malloc(sizeof(char*) * tids->argc);
 		int j;
@@ -230,6 +233,17 @@ JTrainParams* GetJTrainParamIDs(JNIEnv * env, jobject* tparam) {
 
 }
 
+void freeJTrainParams(JTrainParams *tparm) {
+	int j;
+	if (tparm->argv != NULL) {
+		for (j=0; j<tparm->argc; j++) {
+			my_free((tparm->argv)[j]);
+		}
+		my_free(tparm->argv);
+	}
+	my_free(tparm);
+}
+
 void SVMparmInit(KERNEL_CACHE* kernel_cache, LEARN_PARM* learn_parm,
 		KERNEL_PARM* kernel_parm, MODEL* model, JTrainParams* tparm) {
 	char type[100] = " ";
@@ -611,101 +625,303 @@ void SVMparmInit(KERNEL_CACHE* kernel_cache, LEARN_PARM* learn_parm,
 
 }
 
-JNIEXPORT jdouble JNICALL Java_jnisvmlight_SVMLightInterface_classifyNative(JNIEnv * env, jobject jo1, jobject testdoc) {
-	DOC *doc; /* test example */
-	WORD *words;
-	SVECTOR *sv;
-	long j,wpos,queryid,slackid,max_words_doc;
-	double dist,costfactor;
+/* jfieldIDs stay valid as long as their class is loaded, so they are looked up once when the library is loaded */
+static jfieldID ID_FeatureVector_dims;
+static jfieldID ID_FeatureVector_vals;
+static jfieldID ID_NativeModelHandle_address;
 
-	jclass classid = (*env)->GetObjectClass(env, testdoc);
+/* the scratch buffer for the features of a classified vector, one for each thread, grown to the longest vector seen so far */
+static THREAD_LOCAL WORD *scratchWords;
+static THREAD_LOCAL long scratchSize;
 
-	jintArray dim = (*env)->GetObjectField(env, testdoc, (*env)->GetFieldID(env, classid, "m_dims", "[I"));
-	jdoubleArray val = (*env)->GetObjectField(env, testdoc, (*env)->GetFieldID(env, classid, "m_vals", "[D"));
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved) {
+	JNIEnv *env;
+	jclass cls;
 
-	jsize dimLen = (*env)->GetArrayLength(env, dim);
-	jsize valLen = (*env)->GetArrayLength(env, val);
+	if ((*vm)->GetEnv(vm, (void **) &env, JNI_VERSION_1_6) != JNI_OK) {
+		return JNI_ERR;
+	}
+	cls = (*env)->FindClass(env, "jnisvmlight/FeatureVector");
+	if (cls == NULL) {
+		return JNI_ERR;
+	}
+	ID_FeatureVector_dims = (*env)->GetFieldID(env, cls, "m_dims", "[I");
+	ID_FeatureVector_vals = (*env)->GetFieldID(env, cls, "m_vals", "[D");
+	(*env)->DeleteLocalRef(env, cls);
+	cls = (*env)->FindClass(env, "jnisvmlight/NativeModel$Handle");
+	if (cls == NULL) {
+		return JNI_ERR;
+	}
+	ID_NativeModelHandle_address = (*env)->GetFieldID(env, cls, "m_address", "J");
+	(*env)->DeleteLocalRef(env, cls);
+	if (ID_FeatureVector_dims == NULL || ID_FeatureVector_vals == NULL || ID_NativeModelHandle_address == NULL) {
+		return JNI_ERR;
+	}
+	return JNI_VERSION_1_6;
+}
 
-	jint *dimEl = (*env)->GetIntArrayElements(env, dim, 0);
-	jdouble *valEl = (*env)->GetDoubleArrayElements(env, val, 0);
+WORD *getScratchWords(long n) {
+	if (n > scratchSize) {
+		my_free(scratchWords);
+		scratchWords = (WORD *)my_malloc(sizeof(WORD)*n);
+		scratchSize = n;
+	}
+	return scratchWords;
+}
 
-	int* ds;
-	double *vs;
+/* Classifies the vector with the features dims[0..n-1] and vals[0..n-1]. The vector and its document live on the stack and take their
+   features from the scratch buffer, so nothing is allocated per vector. */
+double classifyFeatures(MODEL *model, const jint *dims, const jdouble *vals, long n) {
+	WORD *words = getScratchWords(n+1);
+	SVECTOR vec;
+	DOC doc;
+	long j, k;
 
-	if (sizeof(int) == sizeof(jint)) {
-		ds = (int*) dimEl;
-	} else {
-		int fi=0;
-		printf("!!!!!!!!!!!!!!! Warning: java datatype \"jint\" isn't of the same size as C datatype \"int\"\n");
-		ds = (int*) my_malloc(sizeof(int)*dimLen);
-		for(fi=0;fi<dimLen;fi++) {
-			ds[fi] = (int) dimEl[fi];
+	for (j=0, k=0; j<n; j++) {
+		if (dims[j]<=0) {
+			perror("Feature numbers must be larger or equal to 1!!!\n");
+			exit(1);
 		}
-	}
-
-	if (sizeof(double) == sizeof(jdouble)) {
-		vs = (double*) valEl;
-	} else {
-		int fi=0;
-		printf("!!!!!!!!!!!!!!! Warning: Java-Datatype (jdouble) isn't of the same size as C datatype");
-		vs = (double*) my_malloc(sizeof(double)*valLen);
-		for(fi=0;fi<valLen;fi++) {
-			vs[fi] = (double) valEl[fi];
+		if ((j>0) && (dims[j-1] >= dims[j])) {
+			perror("Features must be in increasing order!!!\n");
+			exit(1);
+		}
+		if ((model->lin_weights) && (dims[j]>model->totwords)) {
+			continue; /* the linear weight vector has no weights for features beyond the model */
 		}
+		words[k].wnum = (FNUM) dims[j];
+		words[k].weight = (FVAL) vals[j];
+		k++;
 	}
-	//fprintf("totalwords: %ld \n",(int)dimLen);
+	words[k].wnum = 0;
+
+	vec.words = words;
+	vec.twonorm_sq = sprod_ss(&vec, &vec);
+	vec.userdefined = NULL;
+	vec.kernel_id = 0;
+	vec.next = NULL;
+	vec.factor = 1.0;
+	doc.docnum = -1;
+	doc.queryid = 0;
+	doc.costfactor = 0.0;
+	doc.slackid = 0;
+	doc.fvec = &vec;
+	return classify_example(model, &doc);
+}
 
-	max_words_doc=dimLen;
-	words = (WORD *)my_malloc(sizeof(WORD)*(dimLen+10));
-	jparse_document(words,&queryid,&slackid,&costfactor,&wpos,max_words_doc,ds,vs);
+JNIEXPORT jdouble JNICALL Java_jnisvmlight_NativeModel_classifynative(JNIEnv * env, jclass cls, jlong handle, jobject testdoc) {
+	MODEL *model = HANDLE_TO_MODEL(handle);
+	double dist;
 
-	(*env)->ReleaseIntArrayElements(env,dim,dimEl,0);
-	(*env)->ReleaseDoubleArrayElements(env,val,valEl,0);
+	jintArray dim = (*env)->GetObjectField(env, testdoc, ID_FeatureVector_dims);
+	jdoubleArray val = (*env)->GetObjectField(env, testdoc, ID_FeatureVector_vals);
+	jsize dimLen = (*env)->GetArrayLength(env, dim);
 
-	if(_model->kernel_parm.kernel_type == 0) { /* linear kernel */
-		for(j=0;(words[j]).wnum != 0;j++) { /* Check if feature numbers   */
-			if((words[j]).wnum>_model->totwords) /* are not larger than in     */
-			(words[j]).wnum=0; /* model. Remove feature if   */
-		} /* necessary.                 */
-		sv = create_svector2(words,1.0);
-		doc = create_example(-1,0,0,0.0,sv);
-		dist=classify_example_linear(_model,doc);
-	} else { /* non-linear kernel */
-		sv = create_svector2(words,1.0);
-		doc = create_example(-1,0,0,0.0,sv);
-		dist=classify_example(_model,doc);
+	// pin the arrays instead of copying them; no other JNI functions may be called until they are released
+	jint *dimEl = (*env)->GetPrimitiveArrayCritical(env, dim, NULL);
+	jdouble *valEl = (*env)->GetPrimitiveArrayCritical(env, val, NULL);
+	if (dimEl == NULL || valEl == NULL) {
+		perror("Can't access the vector to classify: perror()");
+		exit(1);
 	}
 
-	free(words);
-	free(doc);
+	dist = classifyFeatures(model, dimEl, valEl, (long) dimLen);
+
+	(*env)->ReleasePrimitiveArrayCritical(env, val, valEl, JNI_ABORT);
+	(*env)->ReleasePrimitiveArrayCritical(env, dim, dimEl, JNI_ABORT);
 
 	return (jdouble)dist;
 }
 
-SVECTOR *create_svector2(WORD *words, double factor) {
-	SVECTOR *vec;
-	long fnum, i;
+JNIEXPORT void JNICALL Java_jnisvmlight_NativeModel_classifybatchnative(JNIEnv * env, jclass cls, jlong handle, jint rows,
+		jintArray offsets, jintArray dims, jdoubleArray values, jdoubleArray results) {
+	MODEL *model = HANDLE_TO_MODEL(handle);
+	jint i;
+
+	jint *offsetEl = (*env)->GetPrimitiveArrayCritical(env, offsets, NULL);
+	jint *dimEl = (*env)->GetPrimitiveArrayCritical(env, dims, NULL);
+	jdouble *valEl = (*env)->GetPrimitiveArrayCritical(env, values, NULL);
+	jdouble *resultEl = (*env)->GetPrimitiveArrayCritical(env, results, NULL);
+	if (offsetEl == NULL || dimEl == NULL || valEl == NULL || resultEl == NULL) {
+		perror("Can't access the vectors to classify in CSR layout: perror()");
+		exit(1);
+	}
+
+	for (i=0; i<rows; i++) {
+		resultEl[i] = (jdouble) classifyFeatures(model, dimEl+offsetEl[i], valEl+offsetEl[i], (long) (offsetEl[i+1]-offsetEl[i]));
+	}
+
+	// only the results are copied back, if the VM handed out copies at all
+	(*env)->ReleasePrimitiveArrayCritical(env, results, resultEl, 0);
+	(*env)->ReleasePrimitiveArrayCritical(env, values, valEl, JNI_ABORT);
+	(*env)->ReleasePrimitiveArrayCritical(env, dims, dimEl, JNI_ABORT);
+	(*env)->ReleasePrimitiveArrayCritical(env, offsets, offsetEl, JNI_ABORT);
+}
+
+JNIEXPORT jlong JNICALL Java_jnisvmlight_NativeModel_createmodel(JNIEnv * env, jclass cls, jlong kernelType, jlong polyDegree,
+		jdouble rbfGamma, jdouble coefLin, jdouble coefConst, jstring custom, jlong totdoc, jdouble threshold, jdoubleArray alphas,
+		jintArray offsets, jintArray dims, jdoubleArray values) {
+	MODEL *model = (MODEL *)my_malloc(sizeof(MODEL));
+	long n = (long) (*env)->GetArrayLength(env, alphas);
+	const char *customChars;
+
+	model->sv_num = n+1;
+	model->at_upper_bound = 0;
+	model->b = (double) threshold;
+	model->supvec = (DOC **)my_malloc(sizeof(DOC *)*(n+1));
+	model->alpha = (double *)my_malloc(sizeof(double)*(n+1));
+	model->supvec[0] = NULL; /* element 0 reserved and empty like in a trained model */
+	model->alpha[0] = 0;
+	model->index = NULL;
+	model->totwords = 0;
+	model->totdoc = (long) totdoc;
+	model->kernel_parm.kernel_type = (long) kernelType;
+	model->kernel_parm.poly_degree = (long) polyDegree;
+	model->kernel_parm.rbf_gamma = (double) rbfGamma;
+	model->kernel_parm.coef_lin = (double) coefLin;
+	model->kernel_parm.coef_const = (double) coefConst;
+	customChars = (*env)->GetStringUTFChars(env, custom, NULL);
+	strncpy(model->kernel_parm.custom, customChars, sizeof(model->kernel_parm.custom)-1);
+	model->kernel_parm.custom[sizeof(model->kernel_parm.custom)-1] = '\0';
+	(*env)->ReleaseStringUTFChars(env, custom, customChars);
+	model->loo_error = -1;
+	model->loo_recall = -1;
+	model->loo_precision = -1;
+	model->xa_error = -1;
+	model->xa_recall = -1;
+	model->xa_precision = -1;
+	model->lin_weights = NULL;
+	model->maxdiff = 0;
+
+	// the support vectors are documents labeled with their alphas, starting at element 1
+	jdouble *alphaEl = (*env)->GetPrimitiveArrayCritical(env, alphas, NULL);
+	jint *offsetEl = (*env)->GetPrimitiveArrayCritical(env, offsets, NULL);
+	jint *dimEl = (*env)->GetPrimitiveArrayCritical(env, dims, NULL);
+	jdouble *valEl = (*env)->GetPrimitiveArrayCritical(env, values, NULL);
+	if (alphaEl == NULL || offsetEl == NULL || dimEl == NULL || valEl == NULL) {
+		perror("Can't access the support vectors in CSR layout: perror()");
+		exit(1);
+	}
+	createDOCsFromCSR(0, n, alphaEl, NULL, offsetEl, NULL, 0, dimEl, valEl, model->supvec+1, model->alpha+1, &(model->totwords));
+	(*env)->ReleasePrimitiveArrayCritical(env, values, valEl, JNI_ABORT);
+	(*env)->ReleasePrimitiveArrayCritical(env, dims, dimEl, JNI_ABORT);
+	(*env)->ReleasePrimitiveArrayCritical(env, offsets, offsetEl, JNI_ABORT);
+	(*env)->ReleasePrimitiveArrayCritical(env, alphas, alphaEl, JNI_ABORT);
+
+	if (model->kernel_parm.kernel_type == LINEAR) {
+		add_weight_vector_to_linear_model(model);
+	}
+	return createNativeModel(model, NULL, 0);
+}
+
+JNIEXPORT jlong JNICALL Java_jnisvmlight_NativeModel_readmodel(JNIEnv * env, jclass cls, jstring path) {
+	MODEL *model;
+	long i, j;
+	const char *file = (*env)->GetStringUTFChars(env, path, NULL);
+
+	model = read_model((char *) file);
+	(*env)->ReleaseStringUTFChars(env, path, file);
+
+	if (model->kernel_parm.kernel_type == LINEAR) {
+		/* size the weight vector by the features of the support vectors rather than the highest feature index of the file, which
+		   may be far larger */
+		model->totwords = 0;
+		for (i=1; i<model->sv_num; i++) {
+			for (j=0; (model->supvec[i]->fvec->words[j]).wnum; j++) {
+				if ((model->supvec[i]->fvec->words[j]).wnum > model->totwords)
+					model->totwords = (model->supvec[i]->fvec->words[j]).wnum;
+			}
+		}
+		add_weight_vector_to_linear_model(model);
+	}
+	return createNativeModel(model, NULL, 0);
+}
+
+jlong createNativeModel(MODEL *model, DOC **docs, long totdoc) {
+	NATIVE_MODEL *native = (NATIVE_MODEL *)my_malloc(sizeof(NATIVE_MODEL));
+	native->model = model;
+	native->docs = docs;
+	native->totdoc = totdoc;
+	return NATIVE_TO_HANDLE(native);
+}
+
+JNIEXPORT void JNICALL Java_jnisvmlight_NativeModel_freemodel(JNIEnv * env, jclass cls, jlong handle) {
+	NATIVE_MODEL *native = HANDLE_TO_NATIVE(handle);
+	long i;
 
-	fnum=0;
-	while (words[fnum].wnum) {
-		fnum++;
+	if (native->docs != NULL) {
+		free_model(native->model, 0);
+		for (i=0; i<native->totdoc; i++) {
+			free_example(native->docs[i], 1);
+		}
+		my_free(native->docs);
+	} else {
+		free_model(native->model, 1);
 	}
-	fnum++;
+	my_free(native);
+}
+
+JNIEXPORT jlong JNICALL Java_jnisvmlight_NativeMemory_allocatedbytes(JNIEnv * env, jclass cls) {
+	return (jlong) ATOMIC_ADD(allocated_bytes, 0);
+}
+
+JNIEXPORT jlong JNICALL Java_jnisvmlight_NativeMemory_freedbytes(JNIEnv * env, jclass cls) {
+	return (jlong) ATOMIC_ADD(freed_bytes, 0);
+}
 
-	vec = (SVECTOR *)my_malloc(sizeof(SVECTOR));
-	vec->words = (WORD *)my_malloc(sizeof(WORD)*(fnum));
-	for (i=0; i<fnum; i++) {
-		vec->words[i]=words[i];
+long jni_training_progress(long iteration, long activenum, double maxdiff,
+		long kernel_evaluations, void *data) {
+	JTrainingMonitor *monitor = (JTrainingMonitor *) data;
+	JNIEnv *env = monitor->env;
+	jboolean stop = (*env)->CallBooleanMethod(env, monitor->monitor, monitor->ID_iteration,
+			(jlong) iteration, (jlong) activenum, (jdouble) maxdiff, (jlong) kernel_evaluations);
+	// the monitor catches exceptions of the listener, anything else stops training
+	if ((*env)->ExceptionCheck(env)) {
+		(*env)->ExceptionDescribe(env);
+		(*env)->ExceptionClear(env);
+		return 1;
 	}
-	vec->twonorm_sq=sprod_ss(vec, vec);
-	vec->kernel_id=0;
-	vec->next=NULL;
-	vec->factor=factor;
-	return (vec);
+	return stop ? 1 : 0;
 }
 
 JNIEXPORT jobject JNICALL Java_jnisvmlight_SVMLightInterface_trainmodel
-(JNIEnv * env, jobject obj, jobjectArray tdata, jobject tparm)
+(JNIEnv * env, jobject obj, jobjectArray tdata, jobject tparm, jobject monitor, jobject handle)
+{
+	JDocArray source;
+	source.JIDs = GetJParamIDs(env, &tdata);
+	source.tdata = tdata;
+	return trainDOCs(env, obj, source.JIDs, readDocArray, &source, tparm, monitor, handle);
+}
+
+JNIEXPORT jobject JNICALL Java_jnisvmlight_SVMLightInterface_trainmodelarrays
+(JNIEnv * env, jobject obj, jdoubleArray labels, jintArray qids, jintArray offsets, jintArray dims, jdoubleArray values, jobject tparm, jobject monitor, jobject handle)
+{
+	JCSRArrays source;
+	source.size = (*env)->GetArrayLength(env, labels);
+	source.labels = labels;
+	source.qids = qids;
+	source.offsets = offsets;
+	source.dims = dims;
+	source.values = values;
+	return trainDOCs(env, obj, GetJParamIDs(env, NULL), readCSRArrays, &source, tparm, monitor, handle);
+}
+
+JNIEXPORT jobject JNICALL Java_jnisvmlight_SVMLightInterface_trainmodelbuffers
+(JNIEnv * env, jobject obj, jint size, jobject labels, jobject qids, jobject offsets, jintArray segmentStarts, jobjectArray dims, jobjectArray values, jobject tparm, jobject monitor, jobject handle)
+{
+	JCSRBuffers source;
+	source.size = size;
+	source.labels = labels;
+	source.qids = qids;
+	source.offsets = offsets;
+	source.segmentStarts = segmentStarts;
+	source.dims = dims;
+	source.values = values;
+	return trainDOCs(env, obj, GetJParamIDs(env, NULL), readCSRBuffers, &source, tparm, monitor, handle);
+}
+
+/* trains a model on the documents read by the reader from the source, and hands it over to the NativeModel; releases the JIDs */
+jobject trainDOCs(JNIEnv * env, jobject obj, JavaParamIDs *JIDs, DOC_READER reader, void *source, jobject tparm, jobject monitor, jobject handle)
 {
 	DOC **docs; /* training examples */
 	long i;
@@ -714,16 +930,31 @@ JNIEXPORT jobject JNICALL Java_jnisvmlight_SVMLightInterface_trainmodel
 	long* ndocuments = (long*) my_malloc(sizeof(long));
 	double *target=NULL;
 	double *alpha_in=NULL;
-	KERNEL_CACHE *kernel_cache;
+	KERNEL_CACHE *kernel_cache=NULL;
 	LEARN_PARM learn_parm;
 	KERNEL_PARM kernel_parm;
-	_model=(MODEL *)my_malloc(sizeof(MODEL));
+	MODEL *model=(MODEL *)my_malloc(sizeof(MODEL));
 
 	// --------------------- init stuff  ----------------------------
 
-	JavaParamIDs *JIDs = GetJParamIDs(env, &tdata);
+	reset_qp_state();
 	JTrainParams* targs = GetJTrainParamIDs(env,&tparm);
-	SVMparmInit(kernel_cache,&learn_parm,&kernel_parm,_model,targs);
+	SVMparmInit(kernel_cache,&learn_parm,&kernel_parm,model,targs);
+
+	JTrainingMonitor jmonitor;
+	learn_parm.progress=NULL;
+	learn_parm.progress_data=NULL;
+	if (monitor != NULL) {
+		jmonitor.env = env;
+		jmonitor.monitor = monitor;
+		jmonitor.ID_iteration = (*env)->GetMethodID(env, (*env)->GetObjectClass(env, monitor), "iteration", "(JJDJ)Z");
+		if (jmonitor.ID_iteration == 0) {
+			perror("Can't determine the method 'iteration' of the training monitor: perror()");
+			exit(1);
+		}
+		learn_parm.progress = jni_training_progress;
+		learn_parm.progress_data = &jmonitor;
+	}
 
 	if(verbosity>=1) {
 		printf("\n --- Native C function: scanning examples, now .. (JNI Interface)\n"); fflush(stdout);
@@ -733,7 +964,7 @@ JNIEXPORT jobject JNICALL Java_jnisvmlight_SVMLightInterface_trainmodel
 
 	// allocate memory for all training documents
 
-	createDOCs(env,JIDs,&tdata,&docs,&target,totwords,totdoc,ndocuments);
+	reader(env,source,&docs,&target,totwords,totdoc,ndocuments);
 
 	if(verbosity>=1)
 	printf(" --- Native C function: documents allocated successully.\n"); fflush(stdout);
@@ -805,6 +1036,10 @@ JNIEXPORT jobject JNICALL Java_jnisvmlight_SVMLightInterface_trainmodel
 		fprintf(dump,"svm_unlabbound: %.32g\n",learn_parm.svm_unlabbound);
 	}
 
+	/* svm_learn_* allocate the costs of the documents themselves */
+	my_free(learn_parm.svm_cost);
+	learn_parm.svm_cost=NULL;
+
 	if (*ndocuments > 0) {
 
 		if(kernel_parm.kernel_type == LINEAR) { /* don't need the cache */
@@ -820,44 +1055,44 @@ JNIEXPORT jobject JNICALL Java_jnisvmlight_SVMLightInterface_trainmodel
 		printf(" --- Native C function: engaging the training process.\n"); fflush(stdout);
 
 		if(learn_parm.type == CLASSIFICATION) {
-			svm_learn_classification(docs,target,*totdoc,*totwords,&learn_parm,&kernel_parm,kernel_cache,_model,alpha_in);
+			svm_learn_classification(docs,target,*totdoc,*totwords,&learn_parm,&kernel_parm,kernel_cache,model,alpha_in);
 		}
 		else if(learn_parm.type == REGRESSION) {
-			svm_learn_regression(docs,target,*totdoc,*totwords,&learn_parm,&kernel_parm,&kernel_cache,_model);
+			svm_learn_regression(docs,target,*totdoc,*totwords,&learn_parm,&kernel_parm,&kernel_cache,model);
 		}
 		else if(learn_parm.type == RANKING) {
-			svm_learn_ranking(docs,target,*totdoc,*totwords,&learn_parm,&kernel_parm,&kernel_cache,_model);
+			svm_learn_ranking(docs,target,*totdoc,*totwords,&learn_parm,&kernel_parm,&kernel_cache,model);
 		}
 		else if(learn_parm.type == OPTIMIZATION) {
-			svm_learn_ranking(docs,target,*totdoc,*totwords,&learn_parm,&kernel_parm,&kernel_cache,_model);
+			svm_learn_ranking(docs,target,*totdoc,*totwords,&learn_parm,&kernel_parm,&kernel_cache,model);
 		}
 		if(verbosity>=1)
 		printf(" --- Native C function: training has been done.\n"); fflush(stdout);
 
-		if(_model->kernel_parm.kernel_type == 0) { /* linear kernel */
+		if(model->kernel_parm.kernel_type == 0) { /* linear kernel */
 			/* compute weight vector */
-			add_weight_vector_to_linear_model(_model);
+			add_weight_vector_to_linear_model(model);
 		}
 
 	} else {
-		_model->supvec = (DOC **)my_malloc(sizeof(DOC *)*2);
-		_model->alpha = (double *)my_malloc(sizeof(double)*2);
-		_model->index = (long *)my_malloc(sizeof(long)*2);
-		_model->at_upper_bound=0;
-		_model->b=0;
-		_model->supvec[0]=0; /* element 0 reserved and empty for now */
-		_model->alpha[0]=0;
-		_model->lin_weights=NULL;
-		_model->totwords=0;
-		_model->totdoc=0;
-		_model->kernel_parm=(kernel_parm);
-		_model->sv_num=1;
-		_model->loo_error=-1;
-		_model->loo_recall=-1;
-		_model->loo_precision=-1;
-		_model->xa_error=-1;
-		_model->xa_recall=-1;
-		_model->xa_precision=-1;
+		model->supvec = (DOC **)my_malloc(sizeof(DOC *)*2);
+		model->alpha = (double *)my_malloc(sizeof(double)*2);
+		model->index = (long *)my_malloc(sizeof(long)*2);
+		model->at_upper_bound=0;
+		model->b=0;
+		model->supvec[0]=0; /* element 0 reserved and empty for now */
+		model->alpha[0]=0;
+		model->lin_weights=NULL;
+		model->totwords=0;
+		model->totdoc=0;
+		model->kernel_parm=(kernel_parm);
+		model->sv_num=1;
+		model->loo_error=-1;
+		model->loo_recall=-1;
+		model->loo_precision=-1;
+		model->xa_error=-1;
+		model->xa_recall=-1;
+		model->xa_precision=-1;
 	}
 
 	if (verbosity>10) {
@@ -868,133 +1103,95 @@ JNIEXPORT jobject JNICALL Java_jnisvmlight_SVMLightInterface_trainmodel
 	// ---------------------- build the model -----------------------
 
 	if (verbosity>10)
-	write_model("model-jnisvmlib.dat",_model);
+	write_model("model-jnisvmlib.dat",model);
 
 	// baue C-Struktur des SVMLight-Models in Java-Objekt um.
 	if(verbosity>=1)
 	printf(" --- Native C function: creating Java return type.\n"); fflush(stdout);
-	jobject ret = buildModelData(env,obj,_model,JIDs);
+	jobject ret = buildModelData(env,obj,model,JIDs);
 	if(verbosity>=1)
 	printf(" --- Native C function: creating Java object has been done.\n"); fflush(stdout);
 
-	// Uncomment the following when using Java-side classification only!
-	// For native classification we need to remember all model-related parameters.
+	// hand the native model over to the handle of its Java owner, native classification uses it instead of a global model. The support vectors
+	// point to the training documents, so these are released together with the model.
+	(*env)->SetLongField(env, handle, ID_NativeModelHandle_address, createNativeModel(model, docs, *totdoc));
 
-	//free(alpha_in);
-	//free_model(_model,0);
-	//for(i=0;i<*(totdoc);i++) 
-	//free_example(docs[i],1);
-	//free(docs);
-	//free(target);
-	//free(totdoc);
-	//free(totwords);
-	//free(ndocuments);
+	if (kernel_cache) {
+		kernel_cache_cleanup(kernel_cache);
+	}
+	my_free(alpha_in);
+	my_free(target);
+	my_free(totdoc);
+	my_free(totwords);
+	my_free(ndocuments);
+	freeJTrainParams(targs);
+	my_free(JIDs);
 
 	return ret;
 }
 
 jobject buildModelData(JNIEnv *env, jobject obj, MODEL* model, JavaParamIDs* ids) {
 	SVECTOR *v;
-	long NUM_DOCS, NUM_FEAT, j;
+	long NUM_DOCS, NUM_FEAT, j, u;
 	NUM_DOCS = model->sv_num;
-	jobjectArray doks = NULL;
-
-	if (NUM_DOCS > 1) {
-		// Erstelle ein Java-Array vom Typ jnisvmlight/LabeledFeatureVector 
-		doks = (*env)->NewObjectArray(env, (jsize) NUM_DOCS-1, ids->tDataCls,
-				NULL);
-		if (doks == 0) {
-			perror("perror: Can't create Java array of type jnisvmlight/LabeledFeatureVector!");
-			(*env)->ExceptionDescribe(env);
-			exit(1);
-		}
 
-		long u;
-		for (u=1; u<NUM_DOCS; u++) {
-			// erzeuge fuer alle Dokumente ein neues Objekt vom Typ jnisvmlight/LabeledFeatureVector 
-			jobject Data =(*env)->NewObject(env, ids->tDataCls,
-					ids->ConstructorID_tDataCls);
-
-			if (Data == NULL) {
-				perror("perror: Can't create object of type  LabeledFeatureVector!");
-				(*env)->ExceptionDescribe(env);
-			}
-
-			// fuelle die lable-Membervariable mit zugehoerigem Wert
-			jdouble label = (jdouble) model->alpha[u];
-			(*env)->SetDoubleField(env, Data, ids->ID_double_label,
-					label);
-
-			// fuelle die factor-Membervariable mit zugehoerigem Wert
-			jdouble factor = (jdouble) ((model->supvec[u])->fvec)->factor;
-			//(*env)->SetDoubleField(env, Data, ids->ID_double_label, label);
-
-			v = (model->supvec[u])->fvec;
-			for (j=0; (v->words[j]).wnum; j++)
-				;
-			NUM_FEAT = j;
-
-			//XXX: goes wrong, if NUM_FEAT is too big!!!!
-			//jint size = (jint) NUM_FEAT;
-			//(*env)->SetIntField(env, Data, ids->MemVarID_size, size);
-
-			// Reserviere Speicherplatz fuer int/double Array zum Aufnehmen der Dokumentenfeatures
-			int* intar = (int*) my_malloc(NUM_FEAT*sizeof(int));
-			double* doublear = (double*) my_malloc(NUM_FEAT*sizeof(double));
-			// Erstelle korrespondierende Java-Arrays
-			jintArray dim = (*env)->NewIntArray(env, (jsize) NUM_FEAT);
-			jdoubleArray val = (*env)->NewDoubleArray(env, (jsize) NUM_FEAT);
-
-			if (dim && val == NULL) {
-				perror("perror: Can't create jint- or jdoubleArrray! :");
-				(*env)->ExceptionDescribe(env);
-				exit(1);
-			}
-
-			for (j=0; j<NUM_FEAT; j++) {
-				// Fuelle int/double Arrays mit zugehoerigen Werten
-				intar[j] = (int)((v->words[j]).wnum);
-				doublear[j] = (double) ((v->words[j]).weight);
-				// Lege Referenz auf int/double Werte in Java-Array ab
-				(*env)->SetIntArrayRegion(env, dim, (jsize) j,
-						(jsize) 1, (jint*) &intar[j]);
-				(*env)->SetDoubleArrayRegion(env, val, (jsize) j,
-						(jsize) 1, (jdouble*) &doublear[j]);
-			}
-
-			// Lege Java-Arrays in Objekt des Typs jnisvmlight/LabeledFeatureVector ab
-			(*env)->SetObjectField(env, Data,
-					ids->ID_intArray_dimensions, dim);
-			(*env)->SetObjectField(env, Data,
-					ids->ID_doubleArray_values, val);
-			// lege Objekt vom Type jnisvmlight/LabeledFeatureVector in jnisvmlight/LabeledFeatureVector-Array ab (an Position u-1)
-			(*env)->SetObjectArrayElement(env, doks, (jsize) u-1, Data);
-
-			// ------------------------------------------------------------
-			// XXX: TODO: check if i am allowed to free these arrays!!!
-			free(intar);
-			free(doublear);
-			// ------------------------------------------------------------
-
-		}
-
-		// Lege jnisvmlight/LabeledFeatureVector-Array in zugehoeriger Membervariable des Objekts vom Type SVMLightModel ab
-		//  	(*env)->SetObjectField(env, SVMLightModel, ids->ID_labeledFeatureVectorArray_docs, doks);
-	} else {
+	if (NUM_DOCS < 2) {
 		fprintf(
 				stderr,
 				"-------------------------------------------------------------------------------\nThe number of suppert vecors (model->sv_num: %ld) is less than 2!\nThere must be at least 2 support vectors. Model can't be built.\n",
 				model->sv_num);
-		// 	(*env)->SetObjectField(env, SVMLightModel, ids->ID_labeledFeatureVectorArray_docs, NULL);
+		NUM_DOCS = 1;
+	}
+
+	// Die Support-Vektoren werden im CSR-Format uebergeben: Zeile u-1 umfasst [offsets[u-1], offsets[u]) in dims/vals
+	int* offsets = (int*) my_malloc(NUM_DOCS*sizeof(int));
+	double* alphas = (double*) my_malloc(NUM_DOCS*sizeof(double));
+	offsets[0] = 0;
+	for (u=1; u<NUM_DOCS; u++) {
+		v = (model->supvec[u])->fvec;
+		for (j=0; (v->words[j]).wnum; j++)
+			;
+		offsets[u] = offsets[u-1] + (int) j;
+		alphas[u-1] = model->alpha[u] * v->factor;
+	}
+	NUM_FEAT = offsets[NUM_DOCS-1];
+
+	int* intar = (int*) my_malloc((NUM_FEAT+1)*sizeof(int));
+	double* doublear = (double*) my_malloc((NUM_FEAT+1)*sizeof(double));
+	for (u=1; u<NUM_DOCS; u++) {
+		v = (model->supvec[u])->fvec;
+		for (j=0; j<offsets[u]-offsets[u-1]; j++) {
+			intar[offsets[u-1]+j] = (int)((v->words[j]).wnum);
+			doublear[offsets[u-1]+j] = (double) ((v->words[j]).weight);
+		}
+	}
 
+	// Erstelle korrespondierende Java-Arrays und kopiere sie in einem Schritt
+	jintArray joffsets = (*env)->NewIntArray(env, (jsize) NUM_DOCS);
+	jintArray jdims = (*env)->NewIntArray(env, (jsize) NUM_FEAT);
+	jdoubleArray jvals = (*env)->NewDoubleArray(env, (jsize) NUM_FEAT);
+	jdoubleArray jalphas = (*env)->NewDoubleArray(env, (jsize) NUM_DOCS-1);
+	if (joffsets == NULL || jdims == NULL || jvals == NULL || jalphas == NULL) {
+		perror("perror: Can't create jint- or jdoubleArrray! :");
+		(*env)->ExceptionDescribe(env);
+		exit(1);
 	}
+	(*env)->SetIntArrayRegion(env, joffsets, 0, (jsize) NUM_DOCS, (jint*) offsets);
+	(*env)->SetIntArrayRegion(env, jdims, 0, (jsize) NUM_FEAT, (jint*) intar);
+	(*env)->SetDoubleArrayRegion(env, jvals, 0, (jsize) NUM_FEAT, (jdouble*) doublear);
+	(*env)->SetDoubleArrayRegion(env, jalphas, 0, (jsize) NUM_DOCS-1, (jdouble*) alphas);
+
+	my_free(offsets);
+	my_free(alphas);
+	my_free(intar);
+	my_free(doublear);
 
 	char* text = "SVM-light Version ";
 	char* dummy = (char*) my_malloc(((int)strlen(VERSION)+strlen(text)+1)
 			*sizeof(char));
 	sprintf(dummy, "%s%s", text, VERSION);
 
-	// kreiere ein neues Objekt vom Typ SVMLightModel 
+	// kreiere ein neues Objekt vom Typ SVMLightModel; die Gewichte linearer Modelle berechnet der Konstruktor
 	jobject SVMLightModel =(*env)->NewObject(env, ids->SVMLightModelCls,
 			ids->ConstructorID_SVMLightModelCls, (*env)->NewStringUTF(env, dummy),
 			(jlong) (model->kernel_parm.kernel_type),
@@ -1004,7 +1201,7 @@ jobject buildModelData(JNIEnv *env, jobject obj, MODEL* model, JavaParamIDs* ids
 			(jdouble) (model->kernel_parm.coef_const), (*env)->NewStringUTF(env, (model->kernel_parm.custom)),
 			(jlong) (model->totwords), (jlong) (model->totdoc),
 			(jlong) (model->sv_num), (jdouble) (model->b),
-			((model->sv_num > 1) ? doks : (jobjectArray) NULL));
+			joffsets, jdims, jvals, jalphas);
 
 	if (SVMLightModel == 0) {
 		perror("perror: Can't create a new SVMLightModel-Object :");
@@ -1012,34 +1209,7 @@ jobject buildModelData(JNIEnv *env, jobject obj, MODEL* model, JavaParamIDs* ids
 		exit(1);
 	}
 
-	if ( (model->kernel_parm.kernel_type) == 0) {
-		jdoubleArray val = (*env)->NewDoubleArray(env, (jsize) model->totwords +1);
-		for (j=0; j<model->totwords +1; j++) {
-			(*env)->SetDoubleArrayRegion(env, val, (jsize) j, (jsize) 1,
-					(jdouble*) &(model->lin_weights)[j]);
-		}
-		(*env)->SetObjectField(env, SVMLightModel,
-				ids->ID_doubleArray_linWeights, val);
-	} else {
-		double nullpointer = 0;
-		(*env)->SetObjectField(env, SVMLightModel,
-				ids->ID_doubleArray_linWeights, &nullpointer);
-	}
-
-	// Belege restliche Membervariablen des Objekts vom Typ SVMLightModel mit zugehoerigen Werten
-	//(*env)->SetObjectField(env, SVMLightModel, ids->ID_string_format, ((*env)->NewStringUTF(env, dummy)));
-	free(dummy);
-
-	//(*env)->SetLongField(env, SVMLightModel, ids->ID_long_kType, (jlong) (model->kernel_parm.kernel_type));
-	//(*env)->SetLongField(env, SVMLightModel, ids->ID_long_dParam, (jlong) (model->kernel_parm.poly_degree));
-	//(*env)->SetDoubleField(env, SVMLightModel, ids->ID_double_gParam, (jdouble) (model->kernel_parm.rbf_gamma));
-	//(*env)->SetDoubleField(env, SVMLightModel, ids->ID_double_sParam, (jdouble)  (model->kernel_parm.coef_lin));
-	//(*env)->SetDoubleField(env, SVMLightModel, ids->ID_double_rParam, (jdouble) (model->kernel_parm.coef_const) );
-	//(*env)->SetObjectField(env, SVMLightModel, ids->ID_string_uParam, (*env)->NewStringUTF(env, (model->kernel_parm.custom)));
-	//(*env)->SetLongField(env, SVMLightModel, ids->ID_long_highFeatIdx, (jlong) (model->totwords) );
-	//(*env)->SetLongField(env, SVMLightModel, ids->ID_long_trainDocs, (jlong) (model->totdoc));
-	//(*env)->SetLongField(env, SVMLightModel, ids->ID_long_numSupVecs, (jlong) (model->sv_num));
-	//(*env)->SetDoubleField(env, SVMLightModel, ids->ID_double_threshold, (jdouble) (model->b));
+	my_free(dummy);
 
 	if (verbosity>=1)
 		printf(" --- Native C function: classifier model created successfully.\n");
@@ -1047,6 +1217,137 @@ jobject buildModelData(JNIEnv *env, jobject obj, MODEL* model, JavaParamIDs* ids
 	return SVMLightModel;
 }
 
+void readDocArray(JNIEnv * env, void *source, DOC*** docs, double** target, long* totwords, long* totdoc, long* ndocuments) {
+	JDocArray *array = (JDocArray *) source;
+	createDOCs(env, array->JIDs, &(array->tdata), docs, target, totwords, totdoc, ndocuments);
+}
+
+void readCSRArrays(JNIEnv * env, void *source, DOC*** docs, double** target, long* totwords, long* totdoc, long* ndocuments) {
+	JCSRArrays *csr = (JCSRArrays *) source;
+	long n = (long) csr->size;
+
+	*totwords = 0;
+	*totdoc = n;
+	*ndocuments = n;
+	(*docs) = (DOC **)my_malloc(sizeof(DOC *)*(n+3));
+	(*target) = (double *)my_malloc(sizeof(double)*(n+3));
+
+	// pin the arrays instead of copying them; no other JNI functions may be called until they are released
+	jdouble *labels = (*env)->GetPrimitiveArrayCritical(env, csr->labels, NULL);
+	jint *qids = csr->qids != NULL ? (*env)->GetPrimitiveArrayCritical(env, csr->qids, NULL) : NULL;
+	jint *offsets = (*env)->GetPrimitiveArrayCritical(env, csr->offsets, NULL);
+	jint *dims = (*env)->GetPrimitiveArrayCritical(env, csr->dims, NULL);
+	jdouble *vals = (*env)->GetPrimitiveArrayCritical(env, csr->values, NULL);
+	if (labels == NULL || (csr->qids != NULL && qids == NULL) || offsets == NULL || dims == NULL || vals == NULL) {
+		perror("Can't access the training documents in CSR layout: perror()");
+		exit(1);
+	}
+
+	createDOCsFromCSR(0, n, labels, qids, offsets, NULL, 0, dims, vals, *docs, *target, totwords);
+
+	(*env)->ReleasePrimitiveArrayCritical(env, csr->values, vals, JNI_ABORT);
+	(*env)->ReleasePrimitiveArrayCritical(env, csr->dims, dims, JNI_ABORT);
+	(*env)->ReleasePrimitiveArrayCritical(env, csr->offsets, offsets, JNI_ABORT);
+	if (qids != NULL)
+		(*env)->ReleasePrimitiveArrayCritical(env, csr->qids, qids, JNI_ABORT);
+	(*env)->ReleasePrimitiveArrayCritical(env, csr->labels, labels, JNI_ABORT);
+
+	if (verbosity>=1) {
+		fprintf(stdout, "OK. (%ld examples read)\n", *ndocuments);
+		fflush(stdout);
+	}
+}
+
+void readCSRBuffers(JNIEnv * env, void *source, DOC*** docs, double** target, long* totwords, long* totdoc, long* ndocuments) {
+	JCSRBuffers *csr = (JCSRBuffers *) source;
+	long n = (long) csr->size;
+	jsize s, segments;
+
+	*totwords = 0;
+	*totdoc = n;
+	*ndocuments = n;
+	(*docs) = (DOC **)my_malloc(sizeof(DOC *)*(n+3));
+	(*target) = (double *)my_malloc(sizeof(double)*(n+3));
+
+	jdouble *labels = (*env)->GetDirectBufferAddress(env, csr->labels);
+	jint *qids = (*env)->GetDirectBufferAddress(env, csr->qids);
+	jlong *offsets = (*env)->GetDirectBufferAddress(env, csr->offsets);
+	if (labels == NULL || qids == NULL || offsets == NULL) {
+		perror("Can't access the direct buffers of the training documents: perror()");
+		exit(1);
+	}
+
+	segments = (*env)->GetArrayLength(env, csr->dims);
+	jint *starts = (*env)->GetIntArrayElements(env, csr->segmentStarts, NULL);
+	for (s=0; s<segments; s++) {
+		jobject dimsBuffer = (*env)->GetObjectArrayElement(env, csr->dims, s);
+		jobject valsBuffer = (*env)->GetObjectArrayElement(env, csr->values, s);
+		jint *dims = (*env)->GetDirectBufferAddress(env, dimsBuffer);
+		jdouble *vals = (*env)->GetDirectBufferAddress(env, valsBuffer);
+		if (dims == NULL || vals == NULL) {
+			perror("Can't access the direct buffers of the training documents: perror()");
+			exit(1);
+		}
+		// each segment starts with the features of its first document
+		createDOCsFromCSR(starts[s], starts[s+1], labels, qids, NULL, offsets, offsets[starts[s]], dims, vals, *docs, *target, totwords);
+		(*env)->DeleteLocalRef(env, dimsBuffer);
+		(*env)->DeleteLocalRef(env, valsBuffer);
+	}
+	(*env)->ReleaseIntArrayElements(env, csr->segmentStarts, starts, JNI_ABORT);
+
+	if (verbosity>=1) {
+		fprintf(stdout, "OK. (%ld examples read)\n", *ndocuments);
+		fflush(stdout);
+	}
+}
+
+/* Creates the documents first to last-1 straight from columns in CSR layout: document i has the features offsets[i]-base to
+   offsets[i+1]-base-1 of dims and vals. The offsets are either 32 or 64 bit, the other one is NULL. */
+void createDOCsFromCSR(long first, long last, const jdouble *labels, const jint *qids, const jint *offsets32, const jlong *offsets64,
+		jlong base, const jint *dims, const jdouble *vals, DOC **docs, double *target, long *totwords) {
+	long i, j, from, to;
+	SVECTOR *vec;
+
+	for (i=first; i<last; i++) {
+		from = (long) ((offsets32 != NULL ? (jlong) offsets32[i] : offsets64[i]) - base);
+		to = (long) ((offsets32 != NULL ? (jlong) offsets32[i+1] : offsets64[i+1]) - base);
+
+		vec = (SVECTOR *)my_malloc(sizeof(SVECTOR));
+		vec->words = (WORD *)my_malloc(sizeof(WORD)*(to-from+1));
+		for (j=0; j<to-from; j++) {
+			(vec->words[j]).wnum = (FNUM) dims[from+j];
+			(vec->words[j]).weight = (FVAL) vals[from+j];
+			if ((vec->words[j]).wnum<=0) {
+				perror("Feature numbers must be larger or equal to 1!!!\n");
+				exit(1);
+			}
+			if ((j>0) && ((vec->words[j-1]).wnum >= (vec->words[j]).wnum)) {
+				perror("Features must be in increasing order!!!\n");
+				exit(1);
+			}
+		}
+		(vec->words[j]).wnum = 0;
+		if ((j>0) && ((vec->words[j-1]).wnum>(*totwords)))
+			(*totwords) = (vec->words[j-1]).wnum;
+		vec->twonorm_sq = sprod_ss(vec, vec);
+		vec->userdefined = (char *)my_malloc(sizeof(char)); /* empty like in create_svector, the ranking constraints copy it */
+		vec->userdefined[0] = '\0';
+		vec->kernel_id = 0;
+		vec->next = NULL;
+		vec->factor = 1.0;
+
+		target[i] = (double) labels[i];
+		docs[i] = create_example(i, qids != NULL ? (long) qids[i] : 0, 0, 1.0, vec);
+	}
+
+	if ((*totwords) > MAXFEATNUM) {
+		printf(
+				"\nMaximum feature number exceeds limit defined in MAXFEATNUM! (%ld>MAXFEATNUM:%ld)\n",
+				*totwords, (long int)MAXFEATNUM);
+		exit(1);
+	}
+}
+
 void createDOCs(JNIEnv * env, JavaParamIDs *JIDs, jobjectArray* tdata,
 		DOC*** docs, double** target, long* totwords, long* totdoc,
 		long* ndocuments) {
@@ -1167,7 +1468,7 @@ void createDOCs(JNIEnv * env, JavaParamIDs *JIDs, jobjectArray* tdata,
 		// ------------------------------- fill DOCs --------------------------------------------
 
 		if (dimLen>max_words_doc) {
-			free(words);
+			my_free(words);
 			max_words_doc=dimLen;
 			words = (WORD *)my_malloc(sizeof(WORD)*(dimLen+10));
 		}
@@ -1185,7 +1486,7 @@ void createDOCs(JNIEnv * env, JavaParamIDs *JIDs, jobjectArray* tdata,
 		(*env)->ReleaseDoubleArrayElements(env, val, valEl, 0);
 	}
 
-	free(words);
+	my_free(words);
 	if (verbosity>=1) {
 		fprintf(stdout, "OK. (%ld examples read)\n", *ndocuments);
 		fflush(stdout);
@@ -3,14 +3,28 @@
 # include <math.h>
 # include <string.h>
 # include <stdlib.h>
+# include <stdint.h>
 # include "jnisvmlight_SVMLightInterface.h"
+# include "jnisvmlight_NativeModel.h"
+# include "jnisvmlight_NativeMemory.h"
 # include "svm_common.h"
 # include "svm_learn.h"
 
 extern void print_help();
 extern void wait_any_key();
+extern void reset_qp_state();
 
-static MODEL * _model;
+/* A MODEL is handed to Java as a jlong handle to a NATIVE_MODEL, which is owned by a jnisvmlight.NativeModel object and released by
+   its close method. */
+typedef struct nativemodel {
+	MODEL *model;
+	DOC **docs; /* the training documents the support vectors of a trained model point to, NULL if the model owns its support vectors */
+	long totdoc;
+} NATIVE_MODEL;
+
+# define NATIVE_TO_HANDLE(native) ((jlong) (intptr_t) (native))
+# define HANDLE_TO_NATIVE(handle) ((NATIVE_MODEL *) (intptr_t) (handle))
+# define HANDLE_TO_MODEL(handle) (HANDLE_TO_NATIVE(handle)->model)
 
 typedef struct javaparamids {
 	
@@ -38,14 +52,18 @@ typedef struct javaparamids {
 	jfieldID ID_long_trainDocs;
 	jfieldID ID_long_numSupVecs; 
 	jfieldID ID_double_threshold;
-	jfieldID ID_labeledFeatureVectorArray_docs;
-	jfieldID ID_doubleArray_linWeights;
 	jmethodID ConstructorID_SVMLightModelCls;
 	
 
 	
 } JavaParamIDs;
 
+typedef struct jtrainingmonitor {
+	JNIEnv * env;
+	jobject monitor;
+	jmethodID ID_iteration;
+} JTrainingMonitor;
+
 typedef struct jtrainparams {
 	JNIEnv * env;
 	int argc;
@@ -103,10 +121,46 @@ typedef struct jtrainparams {
 	
 } JTrainParams;
 
+/* Reads the training documents of a native training call, see trainDOCs */
+typedef void (*DOC_READER)(JNIEnv * env, void *source, DOC*** docs, double** target, long* totwords, long* totdoc, long* ndocuments);
+
+typedef struct jdocarray { /* an array of LabeledFeatureVectors */
+	JavaParamIDs *JIDs;
+	jobjectArray tdata;
+} JDocArray;
+
+typedef struct jcsrarrays { /* documents in CSR layout in Java arrays */
+	jsize size;
+	jdoubleArray labels;
+	jintArray qids; /* may be NULL */
+	jintArray offsets;
+	jintArray dims;
+	jdoubleArray values;
+} JCSRArrays;
+
+typedef struct jcsrbuffers { /* documents in CSR layout in direct buffers, the features split into segments of whole documents */
+	jsize size;
+	jobject labels;
+	jobject qids;
+	jobject offsets; /* LongBuffer */
+	jintArray segmentStarts;
+	jobjectArray dims;
+	jobjectArray values;
+} JCSRBuffers;
+
 JavaParamIDs* GetJParamIDs(JNIEnv * env, jobjectArray *tdata); 
+void freeJTrainParams(JTrainParams *tparm);
+jlong createNativeModel(MODEL *model, DOC **docs, long totdoc);
+jobject trainDOCs(JNIEnv * env, jobject obj, JavaParamIDs *JIDs, DOC_READER reader, void *source, jobject tparm, jobject monitor, jobject handle);
+void readDocArray(JNIEnv * env, void *source, DOC*** docs, double** target, long* totwords, long* totdoc, long* ndocuments);
+void readCSRArrays(JNIEnv * env, void *source, DOC*** docs, double** target, long* totwords, long* totdoc, long* ndocuments);
+void readCSRBuffers(JNIEnv * env, void *source, DOC*** docs, double** target, long* totwords, long* totdoc, long* ndocuments);
+void createDOCsFromCSR(long first, long last, const jdouble *labels, const jint *qids, const jint *offsets32, const jlong *offsets64, jlong base, const jint *dims, const jdouble *vals, DOC **docs, double *target, long *totwords);
 void createDOCs(JNIEnv * env,JavaParamIDs *JIDs,jobjectArray* tdata,DOC*** docs, double** target, long* totwords, long* totdoc, long* ndocuments);
 void SVMparmInit(KERNEL_CACHE* kernel_cache,LEARN_PARM* learn_parm,KERNEL_PARM* kernel_parm, MODEL* model,JTrainParams* tparam);
 jobject buildModelData(JNIEnv *env, jobject obj, MODEL * model,JavaParamIDs* ids);
 void jinit_traindoc(double doc_label, DOC ***docs, double **label, long max_words_doc, long int *totwords, long int *totdoc, int* dims, double *vals, long* ndocuments, WORD* words, FILE* test, double qid);
 int jparse_document(WORD *words, long *queryid, long *slackid, double *costfactor,  long int *numwords, long int max_words_doc, int *dims, double *vals);
-SVECTOR *create_svector2(WORD *words, double factor);
+WORD *getScratchWords(long n);
+double classifyFeatures(MODEL *model, const jint *dims, const jdouble *vals, long n);
+long jni_training_progress(long iteration, long activenum, double maxdiff, long kernel_evaluations, void *data);
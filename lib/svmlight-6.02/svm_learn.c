@@ -207,10 +207,10 @@ void svm_learn_classification(DOC **docs, double *class, long int
     for(i=0;i<totdoc;i++) {    /* copy initial alphas */
       a[i]=alpha[i];
     }
-    free(index);
-    free(index2dnum);
-    free(weights);
-    free(aicache);
+    my_free(index);
+    my_free(index2dnum);
+    my_free(weights);
+    my_free(aicache);
     if(verbosity>=1) {
       printf("done.\n");  fflush(stdout);
     }   
@@ -452,15 +452,15 @@ void svm_learn_classification(DOC **docs, double *class, long int
     write_alphas(learn_parm->alphafile,a,label,totdoc);
   
   shrink_state_cleanup(&shrink_state);
-  free(label);
-  free(inconsistent);
-  free(unlabeled);
-  free(c);
-  free(a);
-  free(a_fullset);
-  free(xi_fullset);
-  free(lin);
-  free(learn_parm->svm_cost);
+  my_free(label);
+  my_free(inconsistent);
+  my_free(unlabeled);
+  my_free(c);
+  my_free(a);
+  my_free(a_fullset);
+  my_free(xi_fullset);
+  my_free(lin);
+  my_free(learn_parm->svm_cost);
 }
 
 
@@ -688,16 +688,16 @@ void svm_learn_regression(DOC **docs, double *value, long int totdoc,
   shrink_state_cleanup(&shrink_state);
   for(i=0;i<totdoc;i++)
     free_example(docs[i],0);
-  free(docs);
-  free(label);
-  free(inconsistent);
-  free(unlabeled);
-  free(c);
-  free(a);
-  free(a_fullset);
-  free(xi_fullset);
-  free(lin);
-  free(learn_parm->svm_cost);
+  my_free(docs);
+  my_free(label);
+  my_free(inconsistent);
+  my_free(unlabeled);
+  my_free(c);
+  my_free(a);
+  my_free(a_fullset);
+  my_free(xi_fullset);
+  my_free(lin);
+  my_free(learn_parm->svm_cost);
 }
 
 void svm_learn_ranking(DOC **docs, double *rankvalue, long int totdoc, 
@@ -836,16 +836,16 @@ void svm_learn_ranking(DOC **docs, double *rankvalue, long int totdoc,
   model->xa_recall=-1;
   model->xa_precision=-1;
 
-  free(alpha);
-  free(greater);
-  free(lesser);
-  free(target);
+  my_free(alpha);
+  my_free(greater);
+  my_free(lesser);
+  my_free(target);
 
   /* If you would like to output the original model on pairs of
      document, replace the following lines with '(*model)=(*pairmodel);' */
   for(i=0;i<totpair;i++)
     free_example(docdiff[i],1);
-  free(docdiff);
+  my_free(docdiff);
   free_model(pairmodel,0);
 }
 
@@ -1008,10 +1008,10 @@ void svm_learn_optimization(DOC **docs, double *rhs, long int
     for(i=0;i<totdoc;i++) {    /* copy initial alphas */
       a[i]=alpha[i];
     }
-    free(index);
-    free(index2dnum);
-    free(weights);
-    free(aicache);
+    my_free(index);
+    my_free(index2dnum);
+    my_free(weights);
+    my_free(aicache);
     if(verbosity>=1) {
       printf("done.\n");  fflush(stdout);
     }   
@@ -1115,10 +1115,10 @@ void svm_learn_optimization(DOC **docs, double *rhs, long int
       if(alphaslack[i] > learn_parm->epsilon_a)
 	svsetnum++;
     }
-    free(index);
-    free(index2dnum);
-    free(slack);
-    free(alphaslack);
+    my_free(index);
+    my_free(index2dnum);
+    my_free(slack);
+    my_free(alphaslack);
   }
   
   if((verbosity>=1) && (!learn_parm->skip_final_opt_check)) {
@@ -1159,13 +1159,13 @@ void svm_learn_optimization(DOC **docs, double *rhs, long int
     write_alphas(learn_parm->alphafile,a,label,totdoc);
   
   shrink_state_cleanup(&shrink_state);
-  free(label);
-  free(unlabeled);
-  free(inconsistent);
-  free(c);
-  free(a);
-  free(lin);
-  free(learn_parm->svm_cost);
+  my_free(label);
+  my_free(unlabeled);
+  my_free(inconsistent);
+  my_free(c);
+  my_free(a);
+  my_free(lin);
+  my_free(learn_parm->svm_cost);
 }
 
 
@@ -1463,6 +1463,16 @@ long optimize_to_convergence(DOC **docs, long int *label, long int totdoc,
       if(verbosity>=1) 
 	printf("\nWARNING: Relaxing KT-Conditions due to slow progress! Terminating!\n");
     }
+    if((learn_parm->progress)
+       && (learn_parm->progress(iteration,activenum,(*maxdiff),
+				kernel_cache_statistic,
+				learn_parm->progress_data))) {
+      /* stopped by the caller, keep the current solution */
+      terminate=1;
+      retrain=0;
+      if(verbosity>=1) 
+	printf("\nTraining stopped by the progress callback! Terminating!\n");
+    }
 
     noshrink=0;
     if((!retrain) && (inactivenum>0) 
@@ -1587,23 +1597,23 @@ long optimize_to_convergence(DOC **docs, long int *label, long int totdoc,
     }
   } /* end of loop */
 
-  free(chosen);
-  free(last_suboptimal_at);
-  free(key);
-  free(selcrit);
-  free(selexam);
-  free(a_old);
-  free(aicache);
-  free(working2dnum);
-  free(active2dnum);
-  free(qp.opt_ce);
-  free(qp.opt_ce0);
-  free(qp.opt_g);
-  free(qp.opt_g0);
-  free(qp.opt_xinit);
-  free(qp.opt_low);
-  free(qp.opt_up);
-  free(weights);
+  my_free(chosen);
+  my_free(last_suboptimal_at);
+  my_free(key);
+  my_free(selcrit);
+  my_free(selexam);
+  my_free(a_old);
+  my_free(aicache);
+  my_free(working2dnum);
+  my_free(active2dnum);
+  my_free(qp.opt_ce);
+  my_free(qp.opt_ce0);
+  my_free(qp.opt_g);
+  my_free(qp.opt_g0);
+  my_free(qp.opt_xinit);
+  my_free(qp.opt_low);
+  my_free(qp.opt_up);
+  my_free(weights);
 
   learn_parm->epsilon_crit=epsilon_crit_org; /* restore org */
   model->maxdiff=(*maxdiff);
@@ -1928,6 +1938,16 @@ long optimize_to_convergence_sharedslack(DOC **docs, long int *label,
       if(verbosity>=1) 
 	printf("\nWARNING: Relaxing KT-Conditions due to slow progress! Terminating!\n");
     }
+    if((learn_parm->progress)
+       && (learn_parm->progress(iteration,activenum,(*maxdiff),
+				kernel_cache_statistic,
+				learn_parm->progress_data))) {
+      /* stopped by the caller, keep the current solution */
+      terminate=1;
+      retrain=0;
+      if(verbosity>=1) 
+	printf("\nTraining stopped by the progress callback! Terminating!\n");
+    }
 
     noshrink=0; 
 
@@ -2014,28 +2034,28 @@ long optimize_to_convergence_sharedslack(DOC **docs, long int *label,
   } /* end of loop */
 
 
-  free(alphaslack);
-  free(slack);
-  free(chosen);
-  free(unlabeled);
-  free(inconsistent);
-  free(ignore);
-  free(last_suboptimal_at);
-  free(key);
-  free(selcrit);
-  free(selexam);
-  free(a_old);
-  free(aicache);
-  free(working2dnum);
-  free(active2dnum);
-  free(qp.opt_ce);
-  free(qp.opt_ce0);
-  free(qp.opt_g);
-  free(qp.opt_g0);
-  free(qp.opt_xinit);
-  free(qp.opt_low);
-  free(qp.opt_up);
-  free(weights);
+  my_free(alphaslack);
+  my_free(slack);
+  my_free(chosen);
+  my_free(unlabeled);
+  my_free(inconsistent);
+  my_free(ignore);
+  my_free(last_suboptimal_at);
+  my_free(key);
+  my_free(selcrit);
+  my_free(selexam);
+  my_free(a_old);
+  my_free(aicache);
+  my_free(working2dnum);
+  my_free(active2dnum);
+  my_free(qp.opt_ce);
+  my_free(qp.opt_ce0);
+  my_free(qp.opt_g);
+  my_free(qp.opt_g0);
+  my_free(qp.opt_xinit);
+  my_free(qp.opt_low);
+  my_free(qp.opt_up);
+  my_free(weights);
 
   learn_parm->epsilon_crit=epsilon_crit_org; /* restore org */
   model->maxdiff=(*maxdiff);
@@ -2642,10 +2662,10 @@ long incorporate_unlabeled_examples(MODEL *model, long int *label,
   double dist,model_length,posratio,negratio;
   long check_every=2;
   double loss;
-  static double switchsens=0.0,switchsensorg=0.0;
+  static THREAD_LOCAL double switchsens=0.0,switchsensorg=0.0;
   double umin,umax,sumalpha;
   long imin=0,imax=0;
-  static long switchnum=0;
+  static THREAD_LOCAL long switchnum=0;
 
   switchsens/=1.2;
 
@@ -3227,13 +3247,13 @@ void init_shrink_state(SHRINK_STATE *shrink_state, long int totdoc,
 
 void shrink_state_cleanup(SHRINK_STATE *shrink_state)
 {
-  free(shrink_state->active);
-  free(shrink_state->inactive_since);
+  my_free(shrink_state->active);
+  my_free(shrink_state->inactive_since);
   if(shrink_state->deactnum > 0) 
-    free(shrink_state->a_history[shrink_state->deactnum-1]);
-  free(shrink_state->a_history);
-  free(shrink_state->last_a);
-  free(shrink_state->last_lin);
+    my_free(shrink_state->a_history[shrink_state->deactnum-1]);
+  my_free(shrink_state->a_history);
+  my_free(shrink_state->last_a);
+  my_free(shrink_state->last_lin);
 }
 
 long shrink_problem(DOC **docs,
@@ -3381,10 +3401,10 @@ void reactivate_inactive_examples(long int *label,
 	}
       }
     }
-    free(changed);
-    free(changed2dnum);
-    free(inactive);
-    free(inactive2dnum);
+    my_free(changed);
+    my_free(changed2dnum);
+    my_free(inactive);
+    my_free(inactive2dnum);
   }
   (*maxdiff)=0;
   for(i=0;i<totdoc;i++) {
@@ -3422,7 +3442,7 @@ void reactivate_inactive_examples(long int *label,
       (shrink_state->a_history[shrink_state->deactnum-1])[i]=a[i];
     }
     for(t=shrink_state->deactnum-2;(t>=0) && shrink_state->a_history[t];t--) {
-      free(shrink_state->a_history[t]);
+      my_free(shrink_state->a_history[t]);
       shrink_state->a_history[t]=0;
     }
   }
@@ -3565,7 +3585,7 @@ void kernel_cache_shrink(KERNEL_CACHE *kernel_cache, long int totdoc,
     kernel_cache->max_elems=totdoc;
   }
 
-  free(keep);
+  my_free(keep);
 
   if(verbosity>=2) {
     printf("done.\n"); fflush(stdout);
@@ -3635,14 +3655,14 @@ void kernel_cache_reset_lru(KERNEL_CACHE *kernel_cache)
 
 void kernel_cache_cleanup(KERNEL_CACHE *kernel_cache)
 {
-  free(kernel_cache->index);
-  free(kernel_cache->occu);
-  free(kernel_cache->lru);
-  free(kernel_cache->invindex);
-  free(kernel_cache->active2totdoc);
-  free(kernel_cache->totdoc2active);
-  free(kernel_cache->buffer);
-  free(kernel_cache);
+  my_free(kernel_cache->index);
+  my_free(kernel_cache->occu);
+  my_free(kernel_cache->lru);
+  my_free(kernel_cache->invindex);
+  my_free(kernel_cache->active2totdoc);
+  my_free(kernel_cache->totdoc2active);
+  my_free(kernel_cache->buffer);
+  my_free(kernel_cache);
 }
 
 long kernel_cache_malloc(KERNEL_CACHE *kernel_cache)
@@ -3814,8 +3834,8 @@ void compute_xa_estimates(MODEL *model, long int *label,
   (*precision)=(((double)totposex-(double)looposerror)
     /((double)totposex-(double)looposerror+(double)loonegerror))*100.0;
 
-  free(sv);
-  free(sv2dnum);
+  my_free(sv);
+  my_free(sv2dnum);
 }
 
 
@@ -3900,8 +3920,8 @@ double distribute_alpha_t_greedily(long int *sv2dnum, long int svnum,
     }
   }    
 
-  free(cache);
-  free(trow);
+  my_free(cache);
+  my_free(trow);
 
   /*  printf("Distribute[%ld](%ld)=%f, ",docnum,best_depth,best); */
   return(best);
@@ -94,12 +94,12 @@ int main (int argc, char* argv[])
   /* deep_copy_of_model=copy_model(model); */
   write_model(modelfile,model);
 
-  free(alpha_in);
+  my_free(alpha_in);
   free_model(model,0);
   for(i=0;i<totdoc;i++) 
     free_example(docs[i],1);
-  free(docs);
-  free(target);
+  my_free(docs);
+  my_free(target);
 
   return(0);
 }
@@ -139,6 +139,8 @@ void read_input_parameters(int argc,char *argv[],char *docfile,char *modelfile,
   learn_parm->compute_loo=0;
   learn_parm->rho=1.0;
   learn_parm->xa_depth=0;
+  learn_parm->progress=NULL;
+  learn_parm->progress_data=NULL;
   kernel_parm->kernel_type=0;
   kernel_parm->poly_degree=3;
   kernel_parm->rbf_gamma=1.0;
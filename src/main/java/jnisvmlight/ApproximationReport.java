@@ -0,0 +1,103 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+/**
+ * Describes how far the decision values of an approximated model deviate from those of the exact model on a set of validation vectors.
+ *
+ * @author Anja Pilz
+ */
+public final class ApproximationReport {
+
+    private final int m_count;
+
+    private final double m_maxDeviation;
+
+    private final double m_meanDeviation;
+
+    private final int m_signAgreements;
+
+    private ApproximationReport(int count, double maxDeviation, double meanDeviation, int signAgreements) {
+        m_count = count;
+        m_maxDeviation = maxDeviation;
+        m_meanDeviation = meanDeviation;
+        m_signAgreements = signAgreements;
+    }
+
+    /**
+     * Compares the decision values of an approximated model with the exact ones.
+     *
+     * @param exact       the decision values of the exact model.
+     * @param approximate the decision values of the approximated model, in the same order.
+     */
+    static ApproximationReport compare(double[] exact, double[] approximate) {
+        if (exact.length != approximate.length) {
+            throw new IllegalArgumentException(
+                    "Cannot compare " + exact.length + " exact with " + approximate.length + " approximate decision values.");
+        }
+        double max = 0;
+        double sum = 0;
+        int agreements = 0;
+        for (int i = 0; i < exact.length; i++) {
+            double deviation = Math.abs(exact[i] - approximate[i]);
+            max = Math.max(max, deviation);
+            sum += deviation;
+            if ((exact[i] > 0) == (approximate[i] > 0)) {
+                agreements++;
+            }
+        }
+        return new ApproximationReport(exact.length, max, exact.length > 0 ? sum / exact.length : 0, agreements);
+    }
+
+    /**
+     * Returns the number of validation vectors.
+     */
+    public int getNumberOfVectors() {
+        return m_count;
+    }
+
+    /**
+     * Returns the largest absolute difference between an exact and an approximated decision value.
+     */
+    public double getMaxDeviation() {
+        return m_maxDeviation;
+    }
+
+    /**
+     * Returns the mean absolute difference between the exact and the approximated decision values.
+     */
+    public double getMeanDeviation() {
+        return m_meanDeviation;
+    }
+
+    /**
+     * Returns the fraction of validation vectors that both models put on the same side of the hyperplane, 1 for an empty validation set.
+     */
+    public double getSignAgreement() {
+        return m_count > 0 ? (double) m_signAgreements / m_count : 1;
+    }
+
+    public String toString() {
+        return "ApproximationReport(vectors: " + m_count + ", max deviation: " + m_maxDeviation + ", mean deviation: " + m_meanDeviation +
+                ", sign agreement: " + getSignAgreement() + ")";
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes primitive values to a file channel in little-endian byte order through a buffer, for the binary {@link Dataset} and
+ * {@link MappedModel} files.
+ *
+ * @author Anja Pilz
+ */
+class ChannelOutput {
+
+    final FileChannel m_channel;
+
+    private final ByteBuffer m_buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+    private long m_position;
+
+    ChannelOutput(FileChannel channel) {
+        m_channel = channel;
+    }
+
+    void putInt(int value) throws IOException {
+        reserve(Integer.BYTES);
+        m_buffer.putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+        reserve(Long.BYTES);
+        m_buffer.putLong(value);
+    }
+
+    void putDouble(double value) throws IOException {
+        reserve(Double.BYTES);
+        m_buffer.putDouble(value);
+    }
+
+    void put(byte[] bytes) throws IOException {
+        for (byte b : bytes) {
+            reserve(1);
+            m_buffer.put(b);
+        }
+    }
+
+    /**
+     * Writes zeros up to the next multiple of 8 bytes.
+     */
+    void align() throws IOException {
+        while ((position() & 7) != 0) {
+            reserve(1);
+            m_buffer.put((byte) 0);
+        }
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     */
+    long position() {
+        return m_position + m_buffer.position();
+    }
+
+    private void reserve(int bytes) throws IOException {
+        if (m_buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    void flush() throws IOException {
+        m_buffer.flip();
+        m_position += m_buffer.remaining();
+        write(m_channel, m_buffer);
+        m_buffer.clear();
+    }
+
+    static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
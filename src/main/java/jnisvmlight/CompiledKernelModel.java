@@ -0,0 +1,556 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * The compiled scoring form of a non-linear {@link SVMLightModel}. It is built once when the model is loaded or trained and evaluates the
+ * same decision function as the {@link Kernel} hierarchy, but keeps every support vector's alpha and squared norm at hand, so that a query
+ * costs one sparse dot product per support vector.
+ *
+ * @author Anja Pilz
+ */
+final class CompiledKernelModel {
+
+    /**
+     * The largest number of feature ids for which a query is scattered into a dense buffer. Each scoring thread keeps one such buffer for
+     * all models, i.e. up to 8 MB. Models over larger feature spaces always walk the sorted dimensions of query and support vector.
+     */
+    static final int MAX_DENSE_DIMENSION = 1 << 20;
+
+    /**
+     * A query is scattered into the dense buffer unless it is more than this many times shorter than the average support vector. For very
+     * short queries the merge walk only touches a few dimensions of each support vector.
+     */
+    private static final int SPARSE_QUERY_RATIO = 16;
+
+    /**
+     * A query is scored through the inverted index if its posting lists hold at most this fraction of the values of all support vectors.
+     * The index is only built if a posting list is on average at most this fraction of the number of support vectors long, as otherwise
+     * few queries would benefit from it. Scoring through the index accesses memory at random, so it has to save most of the work of a
+     * full scan to pay off.
+     */
+    private static final int INDEX_WORK_RATIO = 4;
+
+    private final int m_kType;
+
+    private final PackedSupportVectors m_supportVectors;
+
+    private final double[] m_alphas;
+
+    private final double[] m_squaredNorms;
+
+    private final double m_gamma;
+
+    private final double m_a;
+
+    private final double m_c;
+
+    private final double m_degree;
+
+    /**
+     * The polynomial degree if it is a whole number, which is evaluated by repeated multiplication instead of {@link Math#pow}.
+     */
+    private final int m_intDegree;
+
+    private final boolean m_isIntDegree;
+
+    /**
+     * The size of the dense scatter buffer, one more than the highest feature id of the model, or 0 if the model's feature space is too
+     * large for a dense buffer.
+     */
+    private final int m_denseDimension;
+
+    private final double m_meanRowLength;
+
+    /**
+     * The inverted index over the support vectors, or null if the model's features are too common for an index to pay off.
+     */
+    private final InvertedIndex m_index;
+
+    /**
+     * The sum of all alphas, weighted by the kernel value of a support vector without any feature in common with the query. For the radial
+     * base kernel the weight of each support vector depends on its norm, see {@link #m_rbfWeights}.
+     */
+    private final double m_disjointSum;
+
+    /**
+     * For the radial base kernel, {@code alpha * exp(-gamma * |sv|^2)} of every support vector, i.e. its contribution to the decision value
+     * of a query without common features before multiplying with {@code exp(-gamma * |v|^2)}.
+     */
+    private final double[] m_rbfWeights;
+
+    /**
+     * The support vectors with a non-zero alpha in order of decreasing absolute alpha, the order in which they are evaluated by
+     * {@link #predict(FeatureVector, double, ScoringScratch)}.
+     */
+    private final int[] m_order;
+
+    /**
+     * The sum of the absolute alphas of the support vectors from the {@code t}-th one in {@link #m_order} on.
+     */
+    private final double[] m_remainingAlphas;
+
+    /**
+     * The largest norm of the support vectors from the {@code t}-th one in {@link #m_order} on.
+     */
+    private final double[] m_remainingNorms;
+
+    /**
+     * Compiles the support vectors of a model.
+     *
+     * @param kType          the kernel type, one of the {@link KernelParam} constants.
+     * @param supportVectors the packed support vectors.
+     * @param highFeatIdx    the highest feature index of the model.
+     * @param degree         the degree of a polynomial kernel.
+     * @param gamma          the gamma of a radial base kernel.
+     * @param a              the linear coefficient of a polynomial or sigmoid kernel.
+     * @param c              the constant coefficient of a polynomial or sigmoid kernel.
+     */
+    CompiledKernelModel(int kType, PackedSupportVectors supportVectors, long highFeatIdx, double degree, double gamma, double a,
+                        double c) {
+        m_kType = kType;
+        m_gamma = gamma;
+        m_a = a;
+        m_c = c;
+        m_degree = degree;
+        m_isIntDegree = degree == Math.rint(degree) && Math.abs(degree) <= Integer.MAX_VALUE;
+        m_intDegree = (int) degree;
+        m_supportVectors = supportVectors;
+        m_alphas = supportVectors.m_alphas;
+        m_squaredNorms = new double[m_alphas.length];
+        for (int i = 0; i < m_alphas.length; i++) {
+            m_squaredNorms[i] = supportVectors.squaredNorm(i);
+        }
+        long maxDim = highFeatIdx;
+        for (int dim : supportVectors.m_dims) {
+            maxDim = Math.max(maxDim, dim);
+        }
+        m_denseDimension = maxDim < MAX_DENSE_DIMENSION ? (int) maxDim + 1 : 0;
+        m_meanRowLength = m_alphas.length > 0 ? (double) supportVectors.m_dims.length / m_alphas.length : 0;
+
+        // the index is only built if it is kept
+        int numFeatures = InvertedIndex.countFeatures(supportVectors, maxDim);
+        m_index = (double) supportVectors.m_dims.length / Math.max(1, numFeatures) * INDEX_WORK_RATIO <= m_alphas.length ?
+                InvertedIndex.of(supportVectors) : null;
+        double disjointSum = 0;
+        if (m_kType == KernelParam.RBF) {
+            m_rbfWeights = new double[m_alphas.length];
+            for (int i = 0; i < m_alphas.length; i++) {
+                m_rbfWeights[i] = m_alphas[i] * Math.exp(-m_gamma * m_squaredNorms[i]);
+                disjointSum += m_rbfWeights[i];
+            }
+        } else {
+            m_rbfWeights = null;
+            for (double alpha : m_alphas) {
+                if (alpha != 0) {
+                    disjointSum += alpha * disjointKernel();
+                }
+            }
+        }
+        m_disjointSum = disjointSum;
+
+        m_order = IntStream.range(0, m_alphas.length).filter(i -> m_alphas[i] != 0).boxed()
+                .sorted(Comparator.comparingDouble(i -> -Math.abs(m_alphas[i]))).mapToInt(Integer::intValue).toArray();
+        m_remainingAlphas = new double[m_order.length + 1];
+        m_remainingNorms = new double[m_order.length + 1];
+        for (int t = m_order.length - 1; t >= 0; t--) {
+            m_remainingAlphas[t] = m_remainingAlphas[t + 1] + Math.abs(m_alphas[m_order[t]]);
+            m_remainingNorms[t] = Math.max(m_remainingNorms[t + 1], Math.sqrt(m_squaredNorms[m_order[t]]));
+        }
+    }
+
+    /**
+     * Returns the scratch buffers of the calling thread, for callers that score many vectors in a row.
+     */
+    ScoringScratch scratch() {
+        return ScoringScratch.get();
+    }
+
+    /**
+     * Returns the weighted kernel sum over all support vectors, i.e. the decision value of {@code v} before applying the vector's factor
+     * and the model's threshold. Short queries over a model with an inverted index are scored through the index. Otherwise the dot
+     * products of the query with all support vectors are computed first, either by scattering the query into a dense buffer and gathering
+     * each support vector from it, or by walking the sorted dimensions of query and support vector; then the kernel function is applied to
+     * them.
+     */
+    double evaluate(FeatureVector v, ScoringScratch scratch) {
+        if (m_index != null && postings(v) * INDEX_WORK_RATIO <= m_supportVectors.m_dims.length) {
+            return evaluateIndexed(v, scratch);
+        }
+        return evaluateAll(v, scratch);
+    }
+
+    /**
+     * Returns the same value as {@link #evaluate(FeatureVector, ScoringScratch)} by computing the dot product of the query with every
+     * support vector.
+     */
+    double evaluateAll(FeatureVector v, ScoringScratch scratch) {
+        double[] dots = scratch.dots(m_alphas.length);
+        if (useDenseQuery(v)) {
+            double[] dense = scratch.dense(m_denseDimension);
+            scatter(v, dense);
+            for (int i = 0; i < m_alphas.length; i++) {
+                dots[i] = m_supportVectors.gather(i, dense);
+            }
+            clear(v, dense);
+        } else {
+            for (int i = 0; i < m_alphas.length; i++) {
+                dots[i] = m_supportVectors.dot(i, v.m_dims, v.m_vals);
+            }
+        }
+        return sum(dots, v);
+    }
+
+    /**
+     * Applies the kernel function to the dot products of the query with every support vector and returns the sum weighted by alpha.
+     * Support vectors with an alpha of zero do not contribute.
+     */
+    private double sum(double[] dots, FeatureVector v) {
+        double sum = 0;
+        switch (m_kType) {
+            case KernelParam.POLYNOMIAL:
+                for (int i = 0; i < m_alphas.length; i++) {
+                    if (m_alphas[i] != 0) {
+                        sum += m_alphas[i] * polynomial(dots[i]);
+                    }
+                }
+                break;
+            case KernelParam.RBF:
+                double queryNorm = dot(v, v);
+                for (int i = 0; i < m_alphas.length; i++) {
+                    if (m_alphas[i] != 0) {
+                        sum += m_alphas[i] * Math.exp(-m_gamma * (m_squaredNorms[i] - 2 * dots[i] + queryNorm));
+                    }
+                }
+                break;
+            case KernelParam.SIGMOID:
+                for (int i = 0; i < m_alphas.length; i++) {
+                    if (m_alphas[i] != 0) {
+                        sum += m_alphas[i] * Math.tanh(m_a * dots[i] + m_c);
+                    }
+                }
+                break;
+            default:
+                for (int i = 0; i < m_alphas.length; i++) {
+                    sum += m_alphas[i] * dots[i];
+                }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the weighted kernel sum over all support vectors by accumulating the dot products of the query only for the support vectors
+     * in its posting lists. All other support vectors have a dot product of zero with the query; their contribution is the precomputed
+     * {@link #m_disjointSum}, corrected by the difference the touched support vectors make.
+     */
+    double evaluateIndexed(FeatureVector v, ScoringScratch scratch) {
+        double[] dots = scratch.dots(m_alphas.length);
+        int[] touched = scratch.rows(m_alphas.length);
+        boolean[] marks = scratch.marks(m_alphas.length);
+        int[] rows = m_index.m_rows;
+        int[] positions = m_index.m_positions;
+        int[] dims = v.m_dims;
+        double[] vals = v.m_vals;
+        int count = 0;
+        for (int j = 0; j < dims.length; j++) {
+            int f = m_index.find(dims[j]);
+            if (f < 0) {
+                continue;
+            }
+            for (int p = m_index.from(f), end = m_index.to(f); p < end; p++) {
+                int row = rows[p];
+                double product = m_supportVectors.value(row, positions[p]) * vals[j];
+                if (marks[row]) {
+                    dots[row] += product;
+                } else {
+                    marks[row] = true;
+                    touched[count++] = row;
+                    dots[row] = product;
+                }
+            }
+        }
+
+        double sum = 0;
+        switch (m_kType) {
+            case KernelParam.POLYNOMIAL:
+                double disjoint = disjointKernel();
+                for (int t = 0; t < count; t++) {
+                    if (m_alphas[touched[t]] != 0) {
+                        sum += m_alphas[touched[t]] * (polynomial(dots[touched[t]]) - disjoint);
+                    }
+                }
+                sum += m_disjointSum;
+                break;
+            case KernelParam.RBF:
+                double queryNorm = dot(v, v);
+                double queryWeight = Math.exp(-m_gamma * queryNorm);
+                for (int t = 0; t < count; t++) {
+                    int i = touched[t];
+                    if (m_alphas[i] != 0) {
+                        sum += m_alphas[i] * Math.exp(-m_gamma * (m_squaredNorms[i] - 2 * dots[i] + queryNorm)) -
+                                m_rbfWeights[i] * queryWeight;
+                    }
+                }
+                sum += m_disjointSum * queryWeight;
+                break;
+            case KernelParam.SIGMOID:
+                disjoint = disjointKernel();
+                for (int t = 0; t < count; t++) {
+                    if (m_alphas[touched[t]] != 0) {
+                        sum += m_alphas[touched[t]] * (Math.tanh(m_a * dots[touched[t]] + m_c) - disjoint);
+                    }
+                }
+                sum += m_disjointSum;
+                break;
+            default:
+                for (int t = 0; t < count; t++) {
+                    sum += m_alphas[touched[t]] * dots[touched[t]];
+                }
+        }
+        for (int t = 0; t < count; t++) {
+            marks[touched[t]] = false;
+        }
+        return sum;
+    }
+
+    /**
+     * Predicts the label of a query, i.e. the sign of its decision value, evaluating as few support vectors as possible. The support
+     * vectors are evaluated in order of decreasing absolute alpha. After each one the absolute value the remaining ones can add is bounded
+     * by {@link #remainingBound(int, double)}; once the partial decision value is further from zero than that bound, its sign is the
+     * label.
+     *
+     * @param v         the query.
+     * @param threshold the threshold of the model.
+     * @param scratch   the scratch buffers of the calling thread.
+     */
+    LabelPrediction predict(FeatureVector v, double threshold, ScoringScratch scratch) {
+        double queryNorm = dot(v, v);
+        double factor = v.m_factor;
+        double decision = -threshold;
+        boolean useDense = useDenseQuery(v);
+        double[] dense = null;
+        if (useDense) {
+            dense = scratch.dense(m_denseDimension);
+            scatter(v, dense);
+        }
+        int t = 0;
+        while (t < m_order.length && Math.abs(decision) <= Math.abs(factor) * remainingBound(t, queryNorm)) {
+            int i = m_order[t++];
+            double dot = useDense ? m_supportVectors.gather(i, dense) : m_supportVectors.dot(i, v.m_dims, v.m_vals);
+            decision += factor * m_alphas[i] * kernel(i, dot, queryNorm);
+        }
+        if (useDense) {
+            clear(v, dense);
+        }
+        return new LabelPrediction(decision > 0 ? 1 : -1, t);
+    }
+
+    /**
+     * Returns an upper bound of the absolute weighted kernel sum over the support vectors from the {@code t}-th one in {@link #m_order}
+     * on. The radial base and sigmoid kernels are bounded by 1; for the polynomial and sigmoid kernels the dot product is bounded by the
+     * product of the norms (Cauchy-Schwarz). Negative polynomial degrees are not bounded.
+     */
+    private double remainingBound(int t, double queryNorm) {
+        switch (m_kType) {
+            case KernelParam.POLYNOMIAL:
+                if (m_degree < 0) {
+                    return Double.POSITIVE_INFINITY;
+                }
+                double base = Math.abs(m_a) * m_remainingNorms[t] * Math.sqrt(queryNorm) + Math.abs(m_c);
+                return m_remainingAlphas[t] * Math.pow(base, m_degree);
+            case KernelParam.SIGMOID:
+                return m_remainingAlphas[t] * Math.tanh(Math.abs(m_a) * m_remainingNorms[t] * Math.sqrt(queryNorm) + Math.abs(m_c));
+            case KernelParam.RBF:
+                return m_remainingAlphas[t];
+            default:
+                return m_remainingAlphas[t] * m_remainingNorms[t] * Math.sqrt(queryNorm);
+        }
+    }
+
+    /**
+     * Returns the kernel value of a support vector and a query, given their dot product.
+     */
+    private double kernel(int i, double dot, double queryNorm) {
+        return kernel(dot, m_squaredNorms[i], queryNorm);
+    }
+
+    /**
+     * Returns the kernel value of two vectors, given their dot product and squared norms.
+     */
+    double kernel(double dot, double squaredNorm, double queryNorm) {
+        switch (m_kType) {
+            case KernelParam.POLYNOMIAL:
+                return polynomial(dot);
+            case KernelParam.RBF:
+                return Math.exp(-m_gamma * (squaredNorm - 2 * dot + queryNorm));
+            case KernelParam.SIGMOID:
+                return Math.tanh(m_a * dot + m_c);
+            default:
+                return dot;
+        }
+    }
+
+    /**
+     * Returns whether another model uses the same kernel function, i.e. the same kernel type and parameters.
+     */
+    boolean hasSameKernel(CompiledKernelModel other) {
+        return m_kType == other.m_kType && Double.compare(m_gamma, other.m_gamma) == 0 && Double.compare(m_a, other.m_a) == 0 &&
+                Double.compare(m_c, other.m_c) == 0 && Double.compare(m_degree, other.m_degree) == 0;
+    }
+
+    /**
+     * Returns the total length of the posting lists of the query's features.
+     */
+    private long postings(FeatureVector v) {
+        long postings = 0;
+        for (int dim : v.m_dims) {
+            int f = m_index.find(dim);
+            if (f >= 0) {
+                postings += m_index.to(f) - m_index.from(f);
+            }
+        }
+        return postings;
+    }
+
+    /**
+     * Returns the kernel value of a dot product of zero for the kernels that only depend on the dot product.
+     */
+    private double disjointKernel() {
+        switch (m_kType) {
+            case KernelParam.POLYNOMIAL:
+                return polynomial(0);
+            case KernelParam.SIGMOID:
+                return Math.tanh(m_c);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Returns the number of bytes taken by the arrays this model keeps in addition to the support vectors.
+     */
+    long bytes() {
+        return 8L * m_squaredNorms.length + 4L * m_order.length + 16L * (m_order.length + 1) +
+                (m_rbfWeights != null ? 8L * m_rbfWeights.length : 0) + (m_index != null ? m_index.bytes() : 0);
+    }
+
+    /**
+     * Returns whether this model has an inverted index over its support vectors.
+     */
+    boolean isIndexed() {
+        return m_index != null;
+    }
+
+    private boolean useDenseQuery(FeatureVector v) {
+        return m_denseDimension > 0 && v.m_dims.length * SPARSE_QUERY_RATIO >= m_meanRowLength;
+    }
+
+    /**
+     * Writes the query's values into the dense buffer at their feature ids. Features beyond the model's feature space cannot match any
+     * support vector and are left out.
+     */
+    private void scatter(FeatureVector v, double[] dense) {
+        int[] dims = v.m_dims;
+        double[] vals = v.m_vals;
+        for (int j = 0; j < dims.length; j++) {
+            if (dims[j] < m_denseDimension) {
+                dense[dims[j]] = vals[j];
+            }
+        }
+    }
+
+    private void clear(FeatureVector v, double[] dense) {
+        int[] dims = v.m_dims;
+        for (int j = 0; j < dims.length; j++) {
+            if (dims[j] < m_denseDimension) {
+                dense[dims[j]] = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of support vectors.
+     */
+    int size() {
+        return m_alphas.length;
+    }
+
+    private double polynomial(double dot) {
+        double base = m_a * dot + m_c;
+        if (!m_isIntDegree) {
+            return Math.pow(base, m_degree);
+        }
+        switch (m_intDegree) {
+            case 1:
+                return base;
+            case 2:
+                return base * base;
+            case 3:
+                return base * base * base;
+            default:
+                return power(base, m_intDegree);
+        }
+    }
+
+    /**
+     * Raises {@code base} to a whole-numbered {@code exponent} by repeated squaring.
+     */
+    static double power(double base, int exponent) {
+        if (exponent < 0) {
+            return 1.0 / power(base, -exponent);
+        }
+        double result = 1.0;
+        while (exponent != 0) {
+            if ((exponent & 1) != 0) {
+                result *= base;
+            }
+            base *= base;
+            exponent >>>= 1;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the dot product of two sparse vectors with dimensions in ascending order.
+     */
+    static double dot(FeatureVector fv1, FeatureVector fv2) {
+        int[] dims1 = fv1.m_dims;
+        int[] dims2 = fv2.m_dims;
+        double[] vals1 = fv1.m_vals;
+        double[] vals2 = fv2.m_vals;
+        double result = 0.0;
+        int i = 0, j = 0;
+        while (i < dims1.length && j < dims2.length) {
+            if (dims1[i] > dims2[j]) {
+                j++;
+            } else if (dims1[i] < dims2[j]) {
+                i++;
+            } else {
+                result += vals1[i++] * vals2[j++];
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * A set of labeled documents in a compact binary file that is memory-mapped instead of parsed. The file consists of a header and one
+ * column per attribute in compressed sparse row (CSR) layout, all in little-endian byte order:
+ * <pre>
+ *   header     magic, version, number of documents n, number of values m, largest dimension (64 bytes)
+ *   labels     double[n]
+ *   factors    double[n]   the cost factors, see {@link FeatureVector#getFactor()}
+ *   qids       int[n]      the query ids, 0 if there are none
+ *   offsets    long[n + 1] document i has the features offsets[i] to offsets[i + 1] - 1
+ *   dims       int[m]      the dimensions of each document in ascending order
+ *   values     double[m]
+ * </pre>
+ * Each column starts at a multiple of 8 bytes. Opening a dataset only maps the file, at once if it is at most 2 GB large; the documents
+ * are read from the page cache when they are accessed, and the feature views returned by {@link #getDimensions(int)} and
+ * {@link #getValues(int)} share the mapped memory, which is released when the dataset and its views are garbage collected. Datasets are
+ * written by {@link DatasetWriter}, {@link #write(LabeledFeatureVector[], Path)} or {@link #convert(Path, int, Path)}, and can be read
+ * by several threads at once.
+ *
+ * @author Anja Pilz
+ */
+public final class Dataset {
+
+    static final int MAGIC = 0x444D5653;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 64;
+
+    /**
+     * The largest number of documents, for which a column of doubles can still be mapped at once.
+     */
+    static final int MAX_DOCUMENTS = Integer.MAX_VALUE / Long.BYTES - 1;
+
+    /**
+     * The largest part of the dims and values columns mapped at once. A segment always holds whole documents.
+     */
+    private static final long SEGMENT_BYTES = 1 << 30;
+
+    private final int m_size;
+
+    private final long m_numValues;
+
+    private final int m_maxDimension;
+
+    private final DoubleBuffer m_labels;
+
+    private final DoubleBuffer m_factors;
+
+    private final IntBuffer m_qids;
+
+    private final LongBuffer m_offsets;
+
+    /**
+     * The first document of each segment of the dims and values columns, followed by the number of documents.
+     */
+    private final int[] m_segmentStarts;
+
+    private final IntBuffer[] m_dims;
+
+    private final DoubleBuffer[] m_vals;
+
+    /**
+     * Whether {@link #checkDimensions()} has passed.
+     */
+    private volatile boolean m_dimensionsChecked;
+
+    private Dataset(FileChannel channel, String source, long segmentBytes) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < HEADER_BYTES) {
+            throw new IOException("'" + source + "' is not a dataset file.");
+        }
+        // files up to 2 GB are mapped at once, the columns of larger files one by one
+        ByteBuffer file = fileSize <= Integer.MAX_VALUE ? map(channel, null, 0, fileSize) : null;
+        ByteBuffer header = map(channel, file, 0, HEADER_BYTES);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("'" + source + "' is not a dataset file.");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported version " + header.getInt(4) + " of dataset file '" + source + "'.");
+        }
+        long size = header.getLong(8);
+        m_numValues = header.getLong(16);
+        m_maxDimension = header.getInt(24);
+        if (size < 0 || size > MAX_DOCUMENTS || m_numValues < 0 ||
+                fileSize != columnStart(size, m_numValues, 6)) {
+            throw new IOException("The dataset file '" + source + "' is corrupt or truncated.");
+        }
+        m_size = (int) size;
+        m_labels = map(channel, file, columnStart(size, m_numValues, 0), Double.BYTES * size).asDoubleBuffer();
+        m_factors = map(channel, file, columnStart(size, m_numValues, 1), Double.BYTES * size).asDoubleBuffer();
+        m_qids = map(channel, file, columnStart(size, m_numValues, 2), Integer.BYTES * size).asIntBuffer();
+        m_offsets = map(channel, file, columnStart(size, m_numValues, 3), Long.BYTES * (size + 1)).asLongBuffer();
+        if (m_offsets.get(0) != 0 || m_offsets.get(m_size) != m_numValues) {
+            throw new IOException("The dataset file '" + source + "' is corrupt or truncated.");
+        }
+        for (int i = 0; i < m_size; i++) {
+            if (m_offsets.get(i) > m_offsets.get(i + 1)) {
+                throw new IOException("The dataset file '" + source + "' is corrupt, the offsets of document " + i + " are descending.");
+            }
+        }
+
+        // split the features into segments of whole documents that can be mapped
+        int[] starts = new int[8];
+        int segments = 0;
+        for (int start = 0; start < m_size || segments == 0; segments++) {
+            int end = lastDocumentWithin(start, segmentBytes / Double.BYTES);
+            if (segments + 1 >= starts.length) {
+                starts = Arrays.copyOf(starts, 2 * starts.length);
+            }
+            starts[segments] = start;
+            start = end;
+        }
+        starts[segments] = m_size;
+        m_segmentStarts = Arrays.copyOf(starts, segments + 1);
+        m_dims = new IntBuffer[segments];
+        m_vals = new DoubleBuffer[segments];
+        long dimsStart = columnStart(size, m_numValues, 4);
+        long valsStart = columnStart(size, m_numValues, 5);
+        for (int i = 0; i < segments; i++) {
+            long from = m_offsets.get(m_segmentStarts[i]);
+            long count = m_offsets.get(m_segmentStarts[i + 1]) - from;
+            m_dims[i] = map(channel, file, dimsStart + Integer.BYTES * from, Integer.BYTES * count).asIntBuffer();
+            m_vals[i] = map(channel, file, valsStart + Double.BYTES * from, Double.BYTES * count).asDoubleBuffer();
+        }
+    }
+
+    /**
+     * Opens a dataset file by mapping it into memory.
+     *
+     * @param file the file written by {@link DatasetWriter}.
+     * @return the dataset.
+     * @throws IOException if the file cannot be read or is not a valid dataset file.
+     */
+    public static Dataset open(Path file) throws IOException {
+        return open(file, SEGMENT_BYTES);
+    }
+
+    static Dataset open(Path file, long segmentBytes) throws IOException {
+        // the mappings stay valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Dataset(channel, file.toString(), segmentBytes);
+        }
+    }
+
+    /**
+     * Writes documents to a dataset file.
+     *
+     * @param docs the documents.
+     * @param file the file, which is replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(LabeledFeatureVector[] docs, Path file) throws IOException {
+        try (DatasetWriter writer = new DatasetWriter(file)) {
+            for (LabeledFeatureVector doc : docs) {
+                writer.add(doc);
+            }
+        }
+    }
+
+    /**
+     * Converts a file in the SVM-light document format, as read by {@link SVMLightInterface#fromPath(Path, int)}, to a dataset file. The
+     * documents are written while the text is parsed and are never all held in memory.
+     *
+     * @param textFile         the SVM-light document file.
+     * @param numOfLinesToSkip the number of lines in the text file that we should ignore.
+     * @param file             the dataset file, which is replaced if it exists. It is left unchanged if the text file cannot be converted.
+     * @return the number of documents written.
+     * @throws IOException              if a file cannot be read or written.
+     * @throws ParseException           if a feature is not a "dimension:value" pair.
+     * @throws IllegalArgumentException if a line does not match the expected format (e.g. contains less than two entries).
+     */
+    public static int convert(Path textFile, int numOfLinesToSkip, Path file) throws IOException, ParseException {
+        DatasetWriter writer = new DatasetWriter(file);
+        try {
+            DocumentReader.read(textFile, numOfLinesToSkip, writer::add);
+        } catch (IOException | ParseException | RuntimeException e) {
+            try {
+                writer.abort();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        writer.close();
+        return writer.size();
+    }
+
+    /**
+     * @return the number of documents.
+     */
+    public int size() {
+        return m_size;
+    }
+
+    /**
+     * @return the number of features of all documents.
+     */
+    public long getNumberOfValues() {
+        return m_numValues;
+    }
+
+    /**
+     * @return the largest dimension of all features, or 0 if there are none.
+     */
+    public int getMaxDimension() {
+        return m_maxDimension;
+    }
+
+    public double getLabel(int i) {
+        return m_labels.get(i);
+    }
+
+    public double getFactor(int i) {
+        return m_factors.get(i);
+    }
+
+    public int getQueryId(int i) {
+        return m_qids.get(i);
+    }
+
+    /**
+     * @return the number of features of a document.
+     */
+    public int getNumberOfFeatures(int i) {
+        return (int) (m_offsets.get(i + 1) - m_offsets.get(i));
+    }
+
+    /**
+     * Returns the dimensions of a document in ascending order, as a read-only view of the mapped file.
+     */
+    public IntBuffer getDimensions(int i) {
+        int segment = segment(i);
+        IntBuffer view = m_dims[segment].duplicate();
+        long base = m_offsets.get(m_segmentStarts[segment]);
+        view.limit((int) (m_offsets.get(i + 1) - base)).position((int) (m_offsets.get(i) - base));
+        return view.slice();
+    }
+
+    /**
+     * Returns the values of a document in the order of its dimensions, as a read-only view of the mapped file.
+     */
+    public DoubleBuffer getValues(int i) {
+        int segment = segment(i);
+        DoubleBuffer view = m_vals[segment].duplicate();
+        long base = m_offsets.get(m_segmentStarts[segment]);
+        view.limit((int) (m_offsets.get(i + 1) - base)).position((int) (m_offsets.get(i) - base));
+        return view.slice();
+    }
+
+    /**
+     * Copies a document into a new {@link LabeledFeatureVector}.
+     */
+    public LabeledFeatureVector get(int i) {
+        LabeledFeatureVector doc = new LabeledFeatureVector();
+        doc.m_label = getLabel(i);
+        doc.m_factor = getFactor(i);
+        doc.m_qid = getQueryId(i);
+        int segment = segment(i);
+        int from = (int) (m_offsets.get(i) - m_offsets.get(m_segmentStarts[segment]));
+        doc.m_dims = new int[getNumberOfFeatures(i)];
+        doc.m_vals = new double[doc.m_dims.length];
+        for (int k = 0; k < doc.m_dims.length; k++) {
+            doc.m_dims[k] = m_dims[segment].get(from + k);
+            doc.m_vals[k] = m_vals[segment].get(from + k);
+        }
+        return doc;
+    }
+
+    /**
+     * Copies all documents into {@link LabeledFeatureVector}s, e.g. for {@link SVMLightInterface#trainModel(LabeledFeatureVector[])}.
+     */
+    public LabeledFeatureVector[] toArray() {
+        LabeledFeatureVector[] docs = new LabeledFeatureVector[m_size];
+        for (int i = 0; i < docs.length; i++) {
+            docs[i] = get(i);
+        }
+        return docs;
+    }
+
+    /**
+     * Checks once that the dimensions of each document are at least 1 and strictly ascending, before the columns are handed to the native
+     * library, which stops the process on other documents.
+     *
+     * @throws IllegalArgumentException if they are not.
+     */
+    void checkDimensions() {
+        if (m_dimensionsChecked) {
+            return;
+        }
+        for (int segment = 0; segment < m_dims.length; segment++) {
+            IntBuffer dims = m_dims[segment];
+            long base = m_offsets.get(m_segmentStarts[segment]);
+            for (int i = m_segmentStarts[segment]; i < m_segmentStarts[segment + 1]; i++) {
+                int from = (int) (m_offsets.get(i) - base);
+                int to = (int) (m_offsets.get(i + 1) - base);
+                for (int k = from; k < to; k++) {
+                    if (dims.get(k) < 1 || (k > from && dims.get(k - 1) >= dims.get(k))) {
+                        throw new IllegalArgumentException("The dimensions of document " + i + " must be at least 1 and strictly ascending!");
+                    }
+                }
+            }
+        }
+        m_dimensionsChecked = true;
+    }
+
+    DoubleBuffer labels() {
+        return m_labels;
+    }
+
+    IntBuffer queryIds() {
+        return m_qids;
+    }
+
+    LongBuffer offsets() {
+        return m_offsets;
+    }
+
+    /**
+     * Returns the first document of each segment of the dims and values columns, followed by the number of documents.
+     */
+    int[] segmentStarts() {
+        return m_segmentStarts;
+    }
+
+    IntBuffer[] dimensionSegments() {
+        return m_dims;
+    }
+
+    DoubleBuffer[] valueSegments() {
+        return m_vals;
+    }
+
+    private int segment(int i) {
+        if (i < 0 || i >= m_size) {
+            throw new IndexOutOfBoundsException("Document " + i + " of " + m_size);
+        }
+        int segment = Arrays.binarySearch(m_segmentStarts, 0, m_segmentStarts.length - 1, i);
+        return segment >= 0 ? segment : -segment - 2;
+    }
+
+    /**
+     * Returns the end of the longest run of documents from {@code start} that has at most {@code maxValues} features, but at least one
+     * document.
+     */
+    private int lastDocumentWithin(int start, long maxValues) {
+        long limit = m_offsets.get(start) + maxValues;
+        int low = start + 1;
+        int high = m_size;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (m_offsets.get(mid) <= limit) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return Math.min(low, m_size);
+    }
+
+    /**
+     * Returns the position of a column in a file with {@code size} documents and {@code values} features, or the file size for column 6.
+     */
+    static long columnStart(long size, long values, int column) {
+        long[] bytes = {Double.BYTES * size, Double.BYTES * size, Integer.BYTES * size, Long.BYTES * (size + 1), Integer.BYTES * values,
+                Double.BYTES * values};
+        long position = HEADER_BYTES;
+        for (int i = 0; i < column; i++) {
+            position += bytes[i] + (-bytes[i] & 7);
+        }
+        return position;
+    }
+
+    /**
+     * Returns a part of a file, as a slice of the mapped file if it is given and otherwise mapped separately.
+     */
+    static ByteBuffer map(FileChannel channel, ByteBuffer file, long position, long bytes) throws IOException {
+        if (file != null) {
+            ByteBuffer slice = file.duplicate();
+            slice.limit((int) (position + bytes)).position((int) position);
+            return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("A column of " + bytes + " bytes cannot be mapped.");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes);
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes documents to a file in the binary {@link Dataset} format. Documents are added one at a time and streamed into one temporary
+ * file per column next to the target file, so that writing takes little memory however large the dataset is; the file itself is
+ * assembled under a temporary name when the writer is closed and then moved over the target file. A file that is replaced this way stays
+ * readable by the {@link Dataset}s that have it open. If adding a document fails, or the writer is aborted, the target file is left
+ * unchanged. The features of each document are stored with ascending dimensions, the documents added are not modified.
+ *
+ * @author Anja Pilz
+ */
+public final class DatasetWriter implements Closeable {
+
+    private final Path m_file;
+
+    private final Column m_labels;
+
+    private final Column m_factors;
+
+    private final Column m_qids;
+
+    private final Column m_offsets;
+
+    private final Column m_dims;
+
+    private final Column m_vals;
+
+    private int m_documents;
+
+    private long m_values;
+
+    private int m_maxDimension;
+
+    private long[] m_order = new long[64];
+
+    private boolean m_closed;
+
+    /**
+     * Whether adding a document has failed, which may have left the columns out of step.
+     */
+    private boolean m_failed;
+
+    /**
+     * @param file the file to write, which is replaced if it exists.
+     * @throws IOException if the temporary column files cannot be created.
+     */
+    public DatasetWriter(Path file) throws IOException {
+        m_file = file;
+        Path directory = file.toAbsolutePath().getParent();
+        m_labels = Column.create(directory);
+        m_factors = Column.create(directory);
+        m_qids = Column.create(directory);
+        m_offsets = Column.create(directory);
+        m_dims = Column.create(directory);
+        m_vals = Column.create(directory);
+        m_offsets.putLong(0);
+    }
+
+    /**
+     * Appends a document.
+     *
+     * @param doc the document.
+     * @throws IOException if a column cannot be written.
+     */
+    public void add(LabeledFeatureVector doc) throws IOException {
+        if (m_closed) {
+            throw new IllegalStateException("The writer is closed.");
+        }
+        if (m_documents == Dataset.MAX_DOCUMENTS) {
+            throw new IllegalStateException("A dataset must not have more than " + Dataset.MAX_DOCUMENTS + " documents.");
+        }
+        try {
+            write(doc);
+        } catch (IOException | RuntimeException e) {
+            m_failed = true;
+            throw e;
+        }
+        m_documents++;
+    }
+
+    private void write(LabeledFeatureVector doc) throws IOException {
+        m_labels.putDouble(doc.m_label);
+        m_factors.putDouble(doc.m_factor);
+        m_qids.putInt(doc.m_qid);
+        int[] dims = doc.m_dims;
+        double[] vals = doc.m_vals;
+        if (isAscending(dims)) {
+            for (int k = 0; k < dims.length; k++) {
+                m_dims.putInt(dims[k]);
+                m_vals.putDouble(vals[k]);
+            }
+        } else {
+            // sort the positions by dimension, packed as dimension << 32 | position
+            if (m_order.length < dims.length) {
+                m_order = new long[Math.max(dims.length, 2 * m_order.length)];
+            }
+            for (int k = 0; k < dims.length; k++) {
+                m_order[k] = (long) dims[k] << 32 | k;
+            }
+            Arrays.sort(m_order, 0, dims.length);
+            for (int k = 0; k < dims.length; k++) {
+                int position = (int) m_order[k];
+                m_dims.putInt(dims[position]);
+                m_vals.putDouble(vals[position]);
+            }
+        }
+        for (int dim : dims) {
+            m_maxDimension = Math.max(m_maxDimension, dim);
+        }
+        m_values += dims.length;
+        m_offsets.putLong(m_values);
+    }
+
+    /**
+     * @return the number of documents added so far.
+     */
+    public int size() {
+        return m_documents;
+    }
+
+    /**
+     * Writes the file from the columns, replaces the target file with it and deletes the temporary files.
+     *
+     * @throws IOException if the file cannot be written, or adding a document has failed. The target file is left unchanged then.
+     */
+    @Override
+    public void close() throws IOException {
+        if (m_closed) {
+            return;
+        }
+        if (m_failed) {
+            abort();
+            throw new IOException("The dataset " + m_file + " has not been written, adding a document failed.");
+        }
+        m_closed = true;
+        Column[] columns = {m_labels, m_factors, m_qids, m_offsets, m_dims, m_vals};
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(m_file.toAbsolutePath().getParent(), "dataset", ".tmp");
+            ByteBuffer header = ByteBuffer.allocate(Dataset.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(Dataset.MAGIC).putInt(Dataset.VERSION).putLong(m_documents).putLong(m_values).putInt(m_maxDimension);
+            header.clear();
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ChannelOutput.write(out, header);
+                for (Column column : columns) {
+                    column.flush();
+                    long size = column.m_channel.size();
+                    for (long position = 0; position < size; ) {
+                        position += column.m_channel.transferTo(position, size - position, out);
+                    }
+                    // align the next column to 8 bytes
+                    ChannelOutput.write(out, ByteBuffer.allocate((int) (-size & 7)));
+                }
+            }
+            // datasets that map the file being replaced keep reading it
+            Files.move(temp, m_file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temp = null;
+        } finally {
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+            }
+            for (Column column : columns) {
+                column.delete();
+            }
+        }
+    }
+
+    /**
+     * Deletes the temporary files without writing the file, e.g. if the documents to add cannot be read. The target file is left
+     * unchanged. Aborting a closed writer has no effect.
+     *
+     * @throws IOException if a temporary file cannot be deleted.
+     */
+    public void abort() throws IOException {
+        if (m_closed) {
+            return;
+        }
+        m_closed = true;
+        for (Column column : new Column[]{m_labels, m_factors, m_qids, m_offsets, m_dims, m_vals}) {
+            column.delete();
+        }
+    }
+
+    private static boolean isAscending(int[] dims) {
+        for (int k = 1; k < dims.length; k++) {
+            if (dims[k] < dims[k - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A column streamed to a temporary file.
+     */
+    private static final class Column extends ChannelOutput {
+
+        private final Path m_path;
+
+        private Column(Path path) throws IOException {
+            super(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            m_path = path;
+        }
+
+        static Column create(Path directory) throws IOException {
+            return new Column(Files.createTempFile(directory, "dataset", ".column"));
+        }
+
+        void delete() throws IOException {
+            m_channel.close();
+            Files.deleteIfExists(m_path);
+        }
+    }
+}
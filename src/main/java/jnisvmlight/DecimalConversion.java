@@ -0,0 +1,154 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.math.BigInteger;
+
+/**
+ * Converts decimal numbers, given as a mantissa and a power of ten, to the nearest double, i.e. to the same value as
+ * {@link Double#parseDouble(String)}. Numbers whose mantissa and power of ten are exact doubles take one multiplication or division
+ * (Clinger's fast path), the others are converted with the algorithm of Eisel and Lemire (D. Lemire, Number Parsing at a Gigabyte per
+ * Second, Software: Practice and Experience 51(8), 2021). The few numbers for which the algorithm cannot decide the rounding, and
+ * subnormal or overflowing results, are reported as NaN and left to the caller.
+ *
+ * @author Anja Pilz
+ */
+final class DecimalConversion {
+
+    /**
+     * The largest mantissa that is an exact double.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * The powers of ten that are exact doubles.
+     */
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14,
+            1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private static final int MIN_EXPONENT = -342;
+
+    private static final int MAX_EXPONENT = 308;
+
+    private DecimalConversion() {
+    }
+
+    /**
+     * @param mantissa a non-negative mantissa.
+     * @param exponent the power of ten.
+     * @return the double nearest to {@code mantissa * 10^exponent}, or NaN if it is not computed here.
+     */
+    static double toDouble(long mantissa, int exponent) {
+        if (mantissa == 0) {
+            return 0;
+        }
+        if (mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            return exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        }
+        if (exponent < MIN_EXPONENT || exponent > MAX_EXPONENT) {
+            return Double.NaN;
+        }
+        int lz = Long.numberOfLeadingZeros(mantissa);
+        long w = mantissa << lz;
+        int index = exponent - MIN_EXPONENT;
+        long hi = multiplyHigh(w, PowersOfFive.HIGH[index]);
+        long lo = w * PowersOfFive.HIGH[index];
+        if ((hi & 0x1FF) == 0x1FF) {
+            long carry = multiplyHigh(w, PowersOfFive.LOW[index]);
+            long sum = lo + carry;
+            if (Long.compareUnsigned(sum, lo) < 0) {
+                hi++;
+            }
+            lo = sum;
+            if ((hi & 0x1FF) == 0x1FF && lo == -1L) {
+                // the truncated product may be too small to decide the rounding
+                return Double.NaN;
+            }
+        }
+        int upperBit = (int) (hi >>> 63);
+        long bits = hi >>> (upperBit + 9);
+        int power2 = ((217706 * exponent) >> 16) + 63 + upperBit - lz + 1023;
+        if (power2 <= 0) {
+            return Double.NaN;
+        }
+        if (Long.compareUnsigned(lo, 1) <= 0 && exponent >= -4 && exponent <= 23 && (bits & 3) == 1 &&
+                bits << (upperBit + 9) == hi) {
+            // exactly halfway between two doubles, round to even
+            bits &= ~1L;
+        }
+        bits += bits & 1;
+        bits >>>= 1;
+        if (bits >= 2L << 52) {
+            bits = 1L << 52;
+            power2++;
+        }
+        if (power2 >= 0x7FF) {
+            return Double.NaN;
+        }
+        return Double.longBitsToDouble((bits & ~(1L << 52)) | ((long) power2 << 52));
+    }
+
+    /**
+     * @return the upper 64 bits of the unsigned 128 bit product of two unsigned longs.
+     */
+    static long multiplyHigh(long x, long y) {
+        long x0 = x & 0xFFFFFFFFL;
+        long x1 = x >>> 32;
+        long y0 = y & 0xFFFFFFFFL;
+        long y1 = y >>> 32;
+        long middle = x1 * y0 + ((x0 * y0) >>> 32) + ((x0 * y1) & 0xFFFFFFFFL);
+        return x1 * y1 + (middle >>> 32) + ((x0 * y1) >>> 32);
+    }
+
+    /**
+     * 128 bit approximations of the powers of five from {@link #MIN_EXPONENT} to {@link #MAX_EXPONENT}, normalized to a set most
+     * significant bit. Computed when first needed.
+     */
+    private static final class PowersOfFive {
+
+        static final long[] HIGH = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+
+        static final long[] LOW = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+
+        static {
+            BigInteger five = BigInteger.valueOf(5);
+            for (int q = MIN_EXPONENT; q <= MAX_EXPONENT; q++) {
+                BigInteger c;
+                if (q >= 0) {
+                    c = five.pow(q);
+                    c = c.bitLength() < 128 ? c.shiftLeft(128 - c.bitLength()) : c.shiftRight(c.bitLength() - 128);
+                } else {
+                    // rounded up reciprocal
+                    BigInteger power = five.pow(-q);
+                    int z = power.bitLength();
+                    int b = q >= -27 ? z + 127 : 2 * z + 128;
+                    c = BigInteger.ONE.shiftLeft(b).divide(power).add(BigInteger.ONE);
+                    if (c.bitLength() > 128) {
+                        c = c.shiftRight(c.bitLength() - 128);
+                    }
+                }
+                HIGH[q - MIN_EXPONENT] = c.shiftRight(64).longValue();
+                LOW[q - MIN_EXPONENT] = c.longValue();
+            }
+        }
+    }
+}
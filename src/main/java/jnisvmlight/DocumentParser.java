@@ -0,0 +1,123 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import com.google.common.collect.Lists;
+
+import java.text.ParseException;
+import java.util.List;
+
+/**
+ * Parses single lines of the SVM-light document format, {@code <label> [qid:<id>] <dim>:<value> ... [# comment]}.
+ *
+ * @author Anja Pilz
+ */
+final class DocumentParser {
+
+    private DocumentParser() {
+    }
+
+    /**
+     * Parses a line that is not a comment line.
+     *
+     * @param line       the line.
+     * @param lineNumber the number of the line, for error messages.
+     * @param source     the name of the input, for error messages.
+     * @return the document, or null if the line only consists of a label and a comment.
+     * @throws ParseException           if a feature is not a "dimension:value" pair.
+     * @throws IllegalArgumentException if the line does not contain a label and a feature.
+     * @throws NumberFormatException    if the label, query id or a feature is not a number.
+     */
+    static LabeledFeatureVector parse(String line, int lineNumber, String source) throws ParseException {
+        return parse(line, lineNumber, source, false);
+    }
+
+    /**
+     * Parses a line that is not a comment line for classification, like svm_classify parses it: a line without features, i.e. a blank
+     * line or a line with only a label, a query id or a comment, is a vector without features.
+     *
+     * @param line       the line.
+     * @param lineNumber the number of the line, for error messages.
+     * @param source     the name of the input, for error messages.
+     * @return the vector.
+     * @throws ParseException        if a feature is not a "dimension:value" pair.
+     * @throws NumberFormatException if the label, query id or a feature is not a number.
+     */
+    static FeatureVector parseQuery(String line, int lineNumber, String source) throws ParseException {
+        LabeledFeatureVector v = parse(line, lineNumber, source, true);
+        if (v != null) {
+            return v;
+        }
+        FeatureVector empty = new FeatureVector();
+        empty.m_dims = new int[0];
+        empty.m_vals = new double[0];
+        return empty;
+    }
+
+    private static LabeledFeatureVector parse(String line, int lineNumber, String source, boolean allowLabelOnly) throws ParseException {
+        String tokens[] = line.trim().split("[ \\t\\n\\x0B\\f\\r\\[\\]]");
+        String queryId = null;
+        if (tokens.length < 2) {
+            if (allowLabelOnly) {
+                return null;
+            }
+            throw new IllegalArgumentException("Each line must contain a label and a feature");
+        }
+        String label = tokens[0];
+        int featureStart = 1;
+        if (tokens[1].startsWith("qid")) {
+            queryId = tokens[1].substring(tokens[1].indexOf(":") + 1, tokens[1].length());
+            featureStart = 2;
+        }
+
+        List<String> dimensionsList = Lists.newArrayList();
+        List<String> valuesList = Lists.newArrayList();
+        for (int tokenCounter = featureStart; tokenCounter < tokens.length; tokenCounter++) {
+            String dimensionValue = tokens[tokenCounter];
+            if (dimensionValue.trim().startsWith("#")) {
+                // this could be a comment at the end of the line.
+                break;
+            }
+
+            int idx = dimensionValue.indexOf(':');
+            if (idx >= 0) {
+                dimensionsList.add(dimensionValue.substring(0, idx));
+                valuesList.add(dimensionValue.substring(idx + 1, dimensionValue.length()));
+            } else {
+                throw new ParseException(
+                        "Parse error in FeatureVector of file '" + source + "' at line: " + lineNumber + ", token: " + tokenCounter +
+                                ". Could not estimate a \"int:double\" pair ?! " + source + " contains a wrongly defined feature vector!", 0);
+            }
+        }
+        if (dimensionsList.isEmpty()) {
+            return null;
+        }
+        double labelValue = Double.parseDouble(label);
+        int[] dimensions = dimensionsList.stream().mapToInt(Integer::parseInt).toArray();
+        double[] values = valuesList.stream().mapToDouble(Double::parseDouble).toArray();
+        LabeledFeatureVector labeledFeatureVector = new LabeledFeatureVector(labelValue, dimensions, values);
+        if (queryId != null) {
+            labeledFeatureVector.setQueryId(Integer.parseInt(queryId));
+        }
+        return labeledFeatureVector;
+    }
+}
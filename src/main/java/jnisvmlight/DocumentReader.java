@@ -0,0 +1,565 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads SVM-light document files through memory-mapped windows and parses labels, query ids and features directly from the bytes into
+ * reused primitive buffers. Lines in the common format, i.e. ASCII tokens separated by single blanks or tabs, never become strings. All
+ * other lines, including every line that is not valid, are handed to {@link DocumentParser}, so that the results and errors are the same
+ * as for a file read line by line.
+ *
+ * @author Anja Pilz
+ */
+final class DocumentReader {
+
+    /**
+     * The largest part of a file mapped at once. A line must not be longer.
+     */
+    static final int MAP_WINDOW = 1 << 28;
+
+    /**
+     * The smallest part of a file parsed by one task when reading in parallel. Smaller files are read by the calling thread.
+     */
+    static final int MIN_PARALLEL_CHUNK = 1 << 22;
+
+    /**
+     * The number of chunks per available worker a file is split into when reading in parallel.
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /**
+     * Marks a line that only consists of a label, an optional query id and a comment.
+     */
+    private static final LabeledFeatureVector NO_FEATURES = new LabeledFeatureVector();
+
+    private final String m_source;
+
+    private final int m_numOfLinesToSkip;
+
+    /**
+     * The number of lines read that are not comment lines.
+     */
+    private int m_lines;
+
+    private int[] m_dims = new int[64];
+
+    private double[] m_vals = new double[64];
+
+    /**
+     * The position of the next byte to parse in the current line.
+     */
+    private int m_pos;
+
+    /**
+     * The value of the last number parsed by {@link #parseInt(ByteBuffer, int)} or {@link #parseDouble(ByteBuffer, int)}.
+     */
+    private int m_int;
+
+    private double m_double;
+
+    /**
+     * Receives the documents of a file in the order of the file, e.g. {@code list::add} or {@link DatasetWriter#add(LabeledFeatureVector)}.
+     */
+    interface DocumentSink {
+
+        void add(LabeledFeatureVector document) throws IOException;
+    }
+
+    DocumentReader(String source, int numOfLinesToSkip) {
+        this(source, numOfLinesToSkip, 0);
+    }
+
+    /**
+     * @param linesBefore the number of lines that are not comment lines before the part of the input read.
+     */
+    DocumentReader(String source, int numOfLinesToSkip, int linesBefore) {
+        m_source = source;
+        m_numOfLinesToSkip = numOfLinesToSkip;
+        m_lines = linesBefore;
+    }
+
+    /**
+     * Reads all documents of a file. Lines starting with '#' are comments; of the other lines, the first {@code numOfLinesToSkip} are
+     * skipped.
+     *
+     * @param path             the file.
+     * @param numOfLinesToSkip the number of lines to skip, not counting comment lines.
+     * @param documents        receives the documents, in the order of the file.
+     * @return the number of lines read that are not comment lines.
+     * @throws IOException    if the file cannot be read or is not valid UTF-8.
+     * @throws ParseException if a feature is not a "dimension:value" pair.
+     */
+    static int read(Path path, int numOfLinesToSkip, DocumentSink documents) throws IOException, ParseException {
+        DocumentReader reader = new DocumentReader(path.toString(), numOfLinesToSkip);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            reader.read(channel, 0, channel.size(), documents);
+        }
+        return reader.m_lines;
+    }
+
+    /**
+     * Reads all documents of a file like {@link #read(Path, int, DocumentSink)}, but splits the file into chunks of whole lines that are parsed
+     * by separate tasks. The lines of all chunks are counted first, so that each task knows the number of the first line of its chunk
+     * for skipping lines and for error messages. If several chunks contain errors, the error of the first one is thrown.
+     *
+     * @param executor the executor to run the tasks on.
+     */
+    static int read(Path path, int numOfLinesToSkip, DocumentSink documents, ExecutorService executor) throws IOException,
+            ParseException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int parallelism = executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism() :
+                    Runtime.getRuntime().availableProcessors();
+            long chunk = Math.min(MAP_WINDOW, Math.max(MIN_PARALLEL_CHUNK, size / ((long) parallelism * CHUNKS_PER_WORKER) + 1));
+            if (size <= chunk) {
+                DocumentReader reader = new DocumentReader(path.toString(), numOfLinesToSkip);
+                reader.read(channel, 0, size, documents);
+                return reader.m_lines;
+            }
+            List<Long> bounds = new ArrayList<>();
+            bounds.add(0L);
+            for (long position = chunk; position < size; position = bounds.get(bounds.size() - 1) + chunk) {
+                long start = lineStart(channel, position, size);
+                if (start == size) {
+                    break;
+                }
+                bounds.add(start);
+            }
+            bounds.add(size);
+            int chunks = bounds.size() - 1;
+
+            List<Future<Chunk>> counts = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                Chunk counter = new Chunk(new DocumentReader(path.toString(), numOfLinesToSkip), bounds.get(i), bounds.get(i + 1), null);
+                counts.add(executor.submit(() -> counter.read(channel)));
+            }
+            int[] linesBefore = new int[chunks + 1];
+            for (int i = 0; i < chunks; i++) {
+                linesBefore[i + 1] = linesBefore[i] + get(counts, i).m_reader.m_lines;
+            }
+
+            List<Future<Chunk>> parts = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                Chunk part = new Chunk(new DocumentReader(path.toString(), numOfLinesToSkip, linesBefore[i]), bounds.get(i),
+                        bounds.get(i + 1), new ArrayList<>());
+                parts.add(executor.submit(() -> part.read(channel)));
+            }
+            for (int i = 0; i < chunks; i++) {
+                for (LabeledFeatureVector document : get(parts, i).m_documents) {
+                    documents.add(document);
+                }
+            }
+            return linesBefore[chunks];
+        }
+    }
+
+    /**
+     * A part of a file read by one task. Errors are kept rather than thrown, so that they reach the caller unchanged by the executor.
+     */
+    private static final class Chunk {
+
+        private final DocumentReader m_reader;
+
+        private final long m_from;
+
+        private final long m_to;
+
+        private final List<LabeledFeatureVector> m_documents;
+
+        private Exception m_failure;
+
+        Chunk(DocumentReader reader, long from, long to, List<LabeledFeatureVector> documents) {
+            m_reader = reader;
+            m_from = from;
+            m_to = to;
+            m_documents = documents;
+        }
+
+        Chunk read(FileChannel channel) {
+            try {
+                m_reader.read(channel, m_from, m_to, m_documents != null ? m_documents::add : null);
+            } catch (IOException | ParseException | RuntimeException e) {
+                m_failure = e;
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Waits for a chunk to be read and cancels all other tasks if reading failed.
+     */
+    private static Chunk get(List<Future<Chunk>> futures, int i) throws IOException, ParseException {
+        Chunk chunk;
+        try {
+            chunk = futures.get(i).get();
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading a file in parallel", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw new IllegalStateException(e.getCause());
+        }
+        if (chunk.m_failure != null) {
+            futures.forEach(f -> f.cancel(true));
+            if (chunk.m_failure instanceof IOException) {
+                throw (IOException) chunk.m_failure;
+            } else if (chunk.m_failure instanceof ParseException) {
+                throw (ParseException) chunk.m_failure;
+            }
+            throw (RuntimeException) chunk.m_failure;
+        }
+        return chunk;
+    }
+
+    /**
+     * @return the start of the first line that starts at or after {@code position}, or {@code size} if there is none.
+     */
+    static long lineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        // the line starts at position if it follows a line break, so start with the byte before
+        long offset = position - 1;
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    return offset + i + 1;
+                } else if (b == '\r') {
+                    if (offset + i + 1 == size) {
+                        return size;
+                    }
+                    // a line feed following a carriage return belongs to the same line break
+                    ByteBuffer next = ByteBuffer.allocate(1);
+                    channel.read(next, offset + i + 1);
+                    return next.get(0) == '\n' ? offset + i + 2 : offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    /**
+     * Reads the lines within {@code [from, to)} of a file through mapped windows.
+     *
+     * @param from      the start of a line.
+     * @param to        the end of the input or the start of a line.
+     * @param documents receives the documents, or null to only count the lines.
+     */
+    private void read(FileChannel channel, long from, long to, DocumentSink documents) throws IOException, ParseException {
+        long position = from;
+        while (position < to) {
+            int length = (int) Math.min(MAP_WINDOW, to - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            int consumed = readLines(buffer, 0, length, position + length == to, documents);
+            if (consumed == 0) {
+                throw new IOException("Line " + (m_lines + 1) + " of file '" + m_source + "' is longer than " + MAP_WINDOW + " bytes.");
+            }
+            position += consumed;
+        }
+    }
+
+    /**
+     * Reads the lines within {@code [from, to)} of a buffer.
+     *
+     * @param last      whether {@code to} is the end of the input. Otherwise a line that is not terminated before {@code to} is left
+     *                  for the next call.
+     * @param documents receives the documents, or null to only count the lines.
+     * @return the position after the last line read.
+     */
+    int readLines(ByteBuffer buffer, int from, int to, boolean last, DocumentSink documents) throws IOException, ParseException {
+        int start = from;
+        while (start < to) {
+            int end = start;
+            boolean ascii = true;
+            byte b = 0;
+            while (end < to && (b = buffer.get(end)) != '\n' && b != '\r') {
+                ascii &= b >= 0;
+                end++;
+            }
+            int next;
+            if (end == to) {
+                if (!last) {
+                    return start;
+                }
+                next = to;
+            } else if (b == '\r') {
+                if (end + 1 == to && !last) {
+                    // the line feed of a CR LF pair may follow in the next window
+                    return start;
+                }
+                next = end + 1 < to && buffer.get(end + 1) == '\n' ? end + 2 : end + 1;
+            } else {
+                next = end + 1;
+            }
+            if (documents == null) {
+                if (end == start || buffer.get(start) != '#') {
+                    m_lines++;
+                }
+            } else {
+                LabeledFeatureVector document = readLine(buffer, start, end, ascii);
+                if (document != null) {
+                    documents.add(document);
+                }
+            }
+            start = next;
+        }
+        return start;
+    }
+
+    private LabeledFeatureVector readLine(ByteBuffer buffer, int from, int to, boolean ascii) throws CharacterCodingException,
+            ParseException {
+        boolean comment = to > from && buffer.get(from) == '#';
+        if (!comment) {
+            m_lines++;
+        }
+        if (comment || m_lines <= m_numOfLinesToSkip) {
+            if (!ascii) {
+                // files that are not valid UTF-8 are rejected as a whole
+                decode(buffer, from, to);
+            }
+            return null;
+        }
+        if (!ascii) {
+            return DocumentParser.parse(decode(buffer, from, to), m_lines, m_source);
+        }
+        LabeledFeatureVector document = parse(buffer, from, to);
+        if (document == null) {
+            return DocumentParser.parse(ascii(buffer, from, to), m_lines, m_source);
+        }
+        return document == NO_FEATURES ? null : document;
+    }
+
+    /**
+     * Parses an ASCII line in the common format.
+     *
+     * @return the document, {@link #NO_FEATURES}, or null if the line is not in the common format and needs to be parsed by
+     * {@link DocumentParser}.
+     */
+    private LabeledFeatureVector parse(ByteBuffer buffer, int from, int to) {
+        while (from < to && buffer.get(from) <= ' ') {
+            from++;
+        }
+        while (to > from && buffer.get(to - 1) <= ' ') {
+            to--;
+        }
+        m_pos = from;
+        if (!parseDouble(buffer, to) || !separator(buffer, to) || m_pos == to) {
+            return null;
+        }
+        double label = m_double;
+        boolean hasQueryId = false;
+        int queryId = 0;
+        if (m_pos + 3 <= to && buffer.get(m_pos) == 'q' && buffer.get(m_pos + 1) == 'i' && buffer.get(m_pos + 2) == 'd') {
+            m_pos += 3;
+            if (m_pos == to || buffer.get(m_pos) != ':') {
+                return null;
+            }
+            m_pos++;
+            if (!parseInt(buffer, to) || !separator(buffer, to)) {
+                return null;
+            }
+            hasQueryId = true;
+            queryId = m_int;
+        }
+        int size = 0;
+        while (m_pos < to && buffer.get(m_pos) != '#') {
+            if (!parseInt(buffer, to) || m_int <= 0 || m_pos == to || buffer.get(m_pos) != ':') {
+                return null;
+            }
+            int dim = m_int;
+            m_pos++;
+            if (!parseDouble(buffer, to) || !separator(buffer, to)) {
+                return null;
+            }
+            if (size == m_dims.length) {
+                m_dims = Arrays.copyOf(m_dims, 2 * size);
+                m_vals = Arrays.copyOf(m_vals, 2 * size);
+            }
+            m_dims[size] = dim;
+            m_vals[size] = m_double;
+            size++;
+        }
+        if (size == 0) {
+            return NO_FEATURES;
+        }
+        LabeledFeatureVector document = new LabeledFeatureVector();
+        document.m_label = label;
+        document.m_dims = Arrays.copyOf(m_dims, size);
+        document.m_vals = Arrays.copyOf(m_vals, size);
+        if (hasQueryId) {
+            document.m_qid = queryId;
+        }
+        return document;
+    }
+
+    /**
+     * Moves past the single blank or tab that ends a token, unless the token ends the line.
+     *
+     * @return false if the token is followed by anything else, or by a second separator.
+     */
+    private boolean separator(ByteBuffer buffer, int to) {
+        if (m_pos == to) {
+            return true;
+        }
+        byte b = buffer.get(m_pos);
+        if (b != ' ' && b != '\t') {
+            return false;
+        }
+        m_pos++;
+        return m_pos < to && (b = buffer.get(m_pos)) != ' ' && b != '\t';
+    }
+
+    /**
+     * Parses an integer of up to nine digits and an optional sign into {@link #m_int}.
+     *
+     * @return false if there is no such number at the current position.
+     */
+    private boolean parseInt(ByteBuffer buffer, int to) {
+        int pos = m_pos;
+        boolean negative = false;
+        if (pos < to && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+            negative = buffer.get(pos) == '-';
+            pos++;
+        }
+        int start = pos;
+        int value = 0;
+        byte b;
+        while (pos < to && (b = buffer.get(pos)) >= '0' && b <= '9') {
+            value = 10 * value + (b - '0');
+            pos++;
+        }
+        if (pos == start || pos - start > 9) {
+            return false;
+        }
+        m_int = negative ? -value : value;
+        m_pos = pos;
+        return true;
+    }
+
+    /**
+     * Parses a decimal number with an optional sign, fraction and exponent into {@link #m_double}. The number is converted by
+     * {@link DecimalConversion} if it has at most 18 significant digits and an exponent of at most 4 digits, and by
+     * {@link Double#parseDouble(String)} otherwise.
+     *
+     * @return false if there is no such number at the current position.
+     */
+    private boolean parseDouble(ByteBuffer buffer, int to) {
+        int pos = m_pos;
+        boolean negative = false;
+        if (pos < to && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+            negative = buffer.get(pos) == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int significant = 0;
+        int exponent = 0;
+        byte b = 0;
+        while (pos < to && (b = buffer.get(pos)) >= '0' && b <= '9') {
+            if ((mantissa != 0 || b != '0') && significant++ < 18) {
+                mantissa = 10 * mantissa + (b - '0');
+            }
+            digits++;
+            pos++;
+        }
+        if (pos < to && b == '.') {
+            pos++;
+            while (pos < to && (b = buffer.get(pos)) >= '0' && b <= '9') {
+                if ((mantissa != 0 || b != '0') && significant++ < 18) {
+                    mantissa = 10 * mantissa + (b - '0');
+                }
+                exponent--;
+                digits++;
+                pos++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        boolean exact = significant <= 18;
+        if (pos < to && ((b = buffer.get(pos)) == 'e' || b == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < to && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+                negativeExponent = buffer.get(pos) == '-';
+                pos++;
+            }
+            int start = pos;
+            int value = 0;
+            while (pos < to && (b = buffer.get(pos)) >= '0' && b <= '9') {
+                value = 10 * value + (b - '0');
+                pos++;
+            }
+            if (pos == start) {
+                return false;
+            }
+            exact &= pos - start <= 4;
+            exponent += negativeExponent ? -value : value;
+        }
+        double value = exact ? DecimalConversion.toDouble(mantissa, exponent) : Double.NaN;
+        if (Double.isNaN(value)) {
+            // the syntax has been checked, so this does not fail
+            m_double = Double.parseDouble(ascii(buffer, m_pos, pos));
+        } else {
+            m_double = negative ? -value : value;
+        }
+        m_pos = pos;
+        return true;
+    }
+
+    private static String ascii(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static String decode(ByteBuffer buffer, int from, int to) throws CharacterCodingException {
+        ByteBuffer line = buffer.duplicate();
+        line.limit(to).position(from);
+        return StandardCharsets.UTF_8.newDecoder().decode(line).toString();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.util.Arrays;
+
+/**
+ * The features of a vector, compared by value, to find identical support vectors.
+ *
+ * @author Anja Pilz
+ */
+final class FeatureKey {
+
+    private final int[] m_dims;
+
+    private final double[] m_vals;
+
+    FeatureKey(FeatureVector v) {
+        m_dims = v.m_dims;
+        m_vals = v.m_vals;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FeatureKey && Arrays.equals(m_dims, ((FeatureKey) o).m_dims) && Arrays.equals(m_vals, ((FeatureKey) o).m_vals);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(m_dims) + Arrays.hashCode(m_vals);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An inverted index over the support vectors of a {@link CompiledKernelModel}: for every feature id that occurs in a support vector it
+ * lists the support vectors containing it, together with the position of the feature's value in the packed value array. Scoring a short
+ * query through the index only touches the support vectors that share a feature with it.
+ * <p>
+ * The posting lists are stored back to back like the support vectors themselves; the postings of the {@code f}-th indexed feature span
+ * {@code [postingOffsets[f], postingOffsets[f + 1])}.
+ *
+ * @author Anja Pilz
+ */
+final class InvertedIndex {
+
+    /**
+     * The indexed feature ids in ascending order.
+     */
+    private final int[] m_features;
+
+    private final int[] m_postingOffsets;
+
+    /**
+     * The support vector of each posting.
+     */
+    final int[] m_rows;
+
+    /**
+     * The position of each posting's value in the packed value array of the support vectors.
+     */
+    final int[] m_positions;
+
+    private InvertedIndex(int[] features, int[] postingOffsets, int[] rows, int[] positions) {
+        m_features = features;
+        m_postingOffsets = postingOffsets;
+        m_rows = rows;
+        m_positions = positions;
+    }
+
+    /**
+     * Builds the index of a set of support vectors. Within each posting list the support vectors are in ascending order.
+     */
+    static InvertedIndex of(PackedSupportVectors supportVectors) {
+        int[] dims = supportVectors.m_dims;
+        // sort the positions of all values by feature id, keeping the position in the lower half of each key
+        long[] keys = new long[dims.length];
+        for (int k = 0; k < dims.length; k++) {
+            keys[k] = ((long) dims[k] << 32) | k;
+        }
+        Arrays.sort(keys);
+        int numFeatures = 0;
+        for (int k = 0; k < keys.length; k++) {
+            if (k == 0 || (keys[k] >>> 32) != (keys[k - 1] >>> 32)) {
+                numFeatures++;
+            }
+        }
+        int[] features = new int[numFeatures];
+        int[] postingOffsets = new int[numFeatures + 1];
+        int[] rows = new int[keys.length];
+        int[] positions = new int[keys.length];
+        int[] rowOfPosition = new int[keys.length];
+        for (int i = 0; i < supportVectors.size(); i++) {
+            Arrays.fill(rowOfPosition, supportVectors.m_offsets[i], supportVectors.m_offsets[i + 1], i);
+        }
+        for (int k = 0, f = -1; k < keys.length; k++) {
+            if (k == 0 || (keys[k] >>> 32) != (keys[k - 1] >>> 32)) {
+                features[++f] = (int) (keys[k] >>> 32);
+                postingOffsets[f] = k;
+            }
+            positions[k] = (int) keys[k];
+            rows[k] = rowOfPosition[positions[k]];
+        }
+        postingOffsets[numFeatures] = keys.length;
+        return new InvertedIndex(features, postingOffsets, rows, positions);
+    }
+
+    /**
+     * Returns the number of distinct feature ids of a set of support vectors, i.e. the number of posting lists of their index, without
+     * building it. Feature spaces of at most 64 ids per value are counted in a bit set, larger ones by sorting a copy of the ids.
+     *
+     * @param supportVectors the support vectors.
+     * @param maxDim         the highest feature id of the support vectors.
+     */
+    static int countFeatures(PackedSupportVectors supportVectors, long maxDim) {
+        int[] dims = supportVectors.m_dims;
+        if (maxDim < Integer.MAX_VALUE && maxDim <= 64L * dims.length) {
+            BitSet features = new BitSet((int) maxDim + 1);
+            for (int dim : dims) {
+                features.set(dim);
+            }
+            return features.cardinality();
+        }
+        int[] sorted = dims.clone();
+        Arrays.sort(sorted);
+        int numFeatures = 0;
+        for (int k = 0; k < sorted.length; k++) {
+            if (k == 0 || sorted[k] != sorted[k - 1]) {
+                numFeatures++;
+            }
+        }
+        return numFeatures;
+    }
+
+    /**
+     * Returns the number of indexed feature ids.
+     */
+    int numFeatures() {
+        return m_features.length;
+    }
+
+    /**
+     * Returns the index of a feature id among the indexed features, or a negative number if no support vector contains it.
+     */
+    int find(int dim) {
+        return Arrays.binarySearch(m_features, dim);
+    }
+
+    /**
+     * Returns the start of the posting list of the {@code f}-th indexed feature.
+     */
+    int from(int f) {
+        return m_postingOffsets[f];
+    }
+
+    /**
+     * Returns the end (exclusive) of the posting list of the {@code f}-th indexed feature.
+     */
+    int to(int f) {
+        return m_postingOffsets[f + 1];
+    }
+
+    /**
+     * Returns the number of bytes taken by the arrays of the index.
+     */
+    long bytes() {
+        return 4L * m_features.length + 4L * m_postingOffsets.length + 8L * m_rows.length;
+    }
+}
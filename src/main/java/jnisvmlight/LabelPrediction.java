@@ -0,0 +1,58 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+/**
+ * The label predicted by {@link SVMLightModel#predictLabel(FeatureVector)}, together with the number of support vectors that had to be
+ * evaluated to determine it.
+ *
+ * @author Anja Pilz
+ */
+public final class LabelPrediction {
+
+    private final int m_label;
+
+    private final int m_evaluatedSupportVectors;
+
+    LabelPrediction(int label, int evaluatedSupportVectors) {
+        m_label = label;
+        m_evaluatedSupportVectors = evaluatedSupportVectors;
+    }
+
+    /**
+     * Returns the predicted label, +1 or -1.
+     */
+    public int getLabel() {
+        return m_label;
+    }
+
+    /**
+     * Returns the number of support vectors whose kernel value was computed before the label was certain.
+     */
+    public int getEvaluatedSupportVectors() {
+        return m_evaluatedSupportVectors;
+    }
+
+    public String toString() {
+        return "LabelPrediction(label: " + m_label + ", evaluated support vectors: " + m_evaluatedSupportVectors + ")";
+    }
+}
@@ -73,6 +73,12 @@ public class LearnParam {
      */
     public long compute_loo;
 
+    /**
+     * Wall-clock deadline in milliseconds since the epoch (see {@link System#currentTimeMillis()}). Training stops with the current
+     * solution after the first iteration of the optimizer that ends past the deadline. Zero for no deadline.
+     */
+    public long deadline_millis;
+
     /**
      * Regression epsilon (eps=1.0 for classification).
      */
@@ -241,5 +247,6 @@ public class LearnParam {
         this.compute_loo = 0;
         this.rho = 1.0;
         this.xa_depth = 0;
+        this.deadline_millis = 0;
     }
 }
@@ -0,0 +1,641 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.util.Arrays;
+
+/**
+ * The weight vector of a linear {@link SVMLightModel}. Depending on how many features of the model's feature space carry a non-zero
+ * weight, the weights are stored either densely, indexed by feature id, or sparsely as sorted feature ids and their weights. The sparse
+ * form keeps linear models over hashed feature spaces with hundreds of millions of ids at a size proportional to their non-zero weights.
+ * <p>
+ * Both forms exist for each {@link ModelPrecision}. Quantized weights share one scale per block of {@value #INT8_BLOCK} consecutive
+ * stored weights.
+ *
+ * @author Anja Pilz
+ */
+abstract class LinearWeights {
+
+    /**
+     * Weights are stored sparsely if at most this fraction of the feature space has a non-zero weight. A sparse weight takes 12 bytes and
+     * a dense one 8, so at this ratio the sparse form needs at most 3/8 of the dense memory.
+     */
+    static final double MAX_SPARSE_FILL_RATIO = 0.25;
+
+    /**
+     * Feature spaces up to this size are summed up in a dense array before the representation is chosen. Larger ones are summed up by
+     * sorting the support vectors' features, which needs memory proportional to the number of features instead.
+     */
+    private static final int MAX_DENSE_ACCUMULATION = 1 << 22;
+
+    /**
+     * The number of consecutive stored weights that share one scale in the 8 bit integer forms.
+     */
+    static final int INT8_BLOCK = 64;
+
+    /**
+     * Sums up the weight vector sum(alpha_i * x_i) of a set of support vectors and stores it in the more compact form, in double
+     * precision.
+     *
+     * @param supportVectors the support vectors.
+     * @param highFeatIdx    the highest feature index of the model.
+     */
+    static LinearWeights of(PackedSupportVectors supportVectors, long highFeatIdx) {
+        int[] offsets = supportVectors.m_offsets;
+        int[] dims = supportVectors.m_dims;
+        double[] alphas = supportVectors.m_alphas;
+        long maxDim = highFeatIdx;
+        for (int dim : dims) {
+            maxDim = Math.max(maxDim, dim);
+        }
+
+        if (maxDim < MAX_DENSE_ACCUMULATION) {
+            double[] weights = new double[(int) maxDim + 1];
+            for (int i = 0; i < alphas.length; i++) {
+                for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                    weights[dims[k]] += alphas[i] * supportVectors.value(i, k);
+                }
+            }
+            int nonZero = 0;
+            for (double weight : weights) {
+                if (weight != 0) {
+                    nonZero++;
+                }
+            }
+            if (nonZero > MAX_SPARSE_FILL_RATIO * weights.length) {
+                return new Dense(weights);
+            }
+            int[] sparseDims = new int[nonZero];
+            double[] sparseVals = new double[nonZero];
+            for (int dim = 0, j = 0; dim < weights.length; dim++) {
+                if (weights[dim] != 0) {
+                    sparseDims[j] = dim;
+                    sparseVals[j++] = weights[dim];
+                }
+            }
+            return new Sparse(sparseDims, sparseVals, (int) maxDim + 1);
+        }
+
+        // sort the features of all support vectors by id, keeping their position in the lower half of each key
+        long[] keys = new long[dims.length];
+        double[] contributions = new double[dims.length];
+        for (int i = 0; i < alphas.length; i++) {
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                keys[k] = ((long) dims[k] << 32) | k;
+                contributions[k] = alphas[i] * supportVectors.value(i, k);
+            }
+        }
+        Arrays.sort(keys);
+        int[] sparseDims = new int[keys.length];
+        double[] sparseVals = new double[keys.length];
+        int nonZero = 0;
+        for (int k = 0; k < keys.length; ) {
+            int dim = (int) (keys[k] >>> 32);
+            double weight = 0;
+            for (; k < keys.length && (int) (keys[k] >>> 32) == dim; k++) {
+                weight += contributions[(int) keys[k]];
+            }
+            if (weight != 0) {
+                sparseDims[nonZero] = dim;
+                sparseVals[nonZero++] = weight;
+            }
+        }
+        Sparse sparse = new Sparse(Arrays.copyOf(sparseDims, nonZero), Arrays.copyOf(sparseVals, nonZero), maxDim + 1);
+        if (nonZero > MAX_SPARSE_FILL_RATIO * (maxDim + 1) && maxDim < Integer.MAX_VALUE - 8) {
+            return new Dense(sparse.toArray());
+        }
+        return sparse;
+    }
+
+    /**
+     * Returns the dot product of the weights with a feature vector. Features beyond the model's feature space have no weight.
+     */
+    abstract double dot(FeatureVector v);
+
+    /**
+     * Returns the weight of a feature, 0 for features without a weight.
+     */
+    abstract double get(int dim);
+
+    /**
+     * Returns the number of features with a non-zero weight.
+     */
+    abstract int nonZeros();
+
+    /**
+     * Returns the weights as a dense array indexed by feature id. The dense double precision form returns its backing array, all others
+     * a new one.
+     *
+     * @throws ArithmeticException if the feature space is too large for an array.
+     */
+    abstract double[] toArray();
+
+    /**
+     * Returns the non-zero weights as a support vector with an alpha of 1, which alone has the same decision function as the model.
+     */
+    LabeledFeatureVector toSupportVector() {
+        double[] weights = toArray();
+        int nonZero = nonZeros();
+        int[] dims = new int[nonZero];
+        double[] vals = new double[nonZero];
+        for (int dim = 0, j = 0; dim < weights.length; dim++) {
+            if (weights[dim] != 0) {
+                dims[j] = dim;
+                vals[j++] = weights[dim];
+            }
+        }
+        return supportVector(dims, vals);
+    }
+
+    /**
+     * Returns the weights as a support vector with an alpha of 1. The weights of a model may all be zero, which the public constructor
+     * rejects.
+     */
+    private static LabeledFeatureVector supportVector(int[] dims, double[] vals) {
+        LabeledFeatureVector sv = new LabeledFeatureVector();
+        sv.m_label = 1;
+        sv.m_dims = dims;
+        sv.m_vals = vals;
+        return sv;
+    }
+
+    /**
+     * Returns whether only the non-zero weights are stored.
+     */
+    abstract boolean isSparse();
+
+    /**
+     * Returns the precision the weights are stored in.
+     */
+    abstract ModelPrecision precision();
+
+    /**
+     * Returns the number of bytes taken by the arrays of these weights.
+     */
+    abstract long bytes();
+
+    /**
+     * Returns these weights stored in the given precision, keeping the dense or sparse form.
+     */
+    abstract LinearWeights convert(ModelPrecision precision);
+
+    /**
+     * Quantizes values to 8 bit integers with one scale per block of {@link #INT8_BLOCK} values and returns the scales.
+     */
+    static float[] quantize(double[] values, byte[] quantized) {
+        float[] scales = new float[(values.length + INT8_BLOCK - 1) / INT8_BLOCK];
+        for (int b = 0; b < scales.length; b++) {
+            int from = b * INT8_BLOCK;
+            int to = Math.min(values.length, from + INT8_BLOCK);
+            double max = 0;
+            for (int k = from; k < to; k++) {
+                max = Math.max(max, Math.abs(values[k]));
+            }
+            scales[b] = (float) (max / Byte.MAX_VALUE);
+            for (int k = from; k < to; k++) {
+                quantized[k] = scales[b] == 0 ? 0 : (byte) Math.max(-Byte.MAX_VALUE, Math.min(Byte.MAX_VALUE, Math.round(values[k] / scales[b])));
+            }
+        }
+        return scales;
+    }
+
+    static LinearWeights dense(double[] weights, ModelPrecision precision) {
+        switch (precision) {
+            case FLOAT32:
+                float[] floats = new float[weights.length];
+                for (int k = 0; k < weights.length; k++) {
+                    floats[k] = (float) weights[k];
+                }
+                return new DenseFloat32(floats);
+            case INT8:
+                byte[] bytes = new byte[weights.length];
+                return new DenseInt8(bytes, quantize(weights, bytes));
+            default:
+                return new Dense(weights);
+        }
+    }
+
+    static LinearWeights sparse(int[] dims, double[] vals, long dimension, ModelPrecision precision) {
+        switch (precision) {
+            case FLOAT32:
+                float[] floats = new float[vals.length];
+                for (int k = 0; k < vals.length; k++) {
+                    floats[k] = (float) vals[k];
+                }
+                return new SparseFloat32(dims, floats, dimension);
+            case INT8:
+                byte[] bytes = new byte[vals.length];
+                return new SparseInt8(dims, bytes, quantize(vals, bytes), dimension);
+            default:
+                return new Sparse(dims, vals, dimension);
+        }
+    }
+
+    /**
+     * Weights in double precision indexed by feature id.
+     */
+    static final class Dense extends LinearWeights {
+
+        private final double[] m_weights;
+
+        Dense(double[] weights) {
+            m_weights = weights;
+        }
+
+        @Override
+        double dot(FeatureVector v) {
+            int[] dims = v.m_dims;
+            double[] vals = v.m_vals;
+            double result = 0;
+            for (int i = 0; i < dims.length; i++) {
+                if (dims[i] < m_weights.length) {
+                    result += m_weights[dims[i]] * vals[i];
+                }
+            }
+            return result;
+        }
+
+        @Override
+        double get(int dim) {
+            return dim >= 0 && dim < m_weights.length ? m_weights[dim] : 0;
+        }
+
+        @Override
+        int nonZeros() {
+            int nonZero = 0;
+            for (double weight : m_weights) {
+                if (weight != 0) {
+                    nonZero++;
+                }
+            }
+            return nonZero;
+        }
+
+        @Override
+        double[] toArray() {
+            return m_weights;
+        }
+
+        @Override
+        boolean isSparse() {
+            return false;
+        }
+
+        @Override
+        ModelPrecision precision() {
+            return ModelPrecision.FLOAT64;
+        }
+
+        @Override
+        long bytes() {
+            return 8L * m_weights.length;
+        }
+
+        @Override
+        LinearWeights convert(ModelPrecision precision) {
+            return dense(m_weights, precision);
+        }
+    }
+
+    /**
+     * Weights in single precision indexed by feature id.
+     */
+    static final class DenseFloat32 extends LinearWeights {
+
+        private final float[] m_weights;
+
+        DenseFloat32(float[] weights) {
+            m_weights = weights;
+        }
+
+        @Override
+        double dot(FeatureVector v) {
+            int[] dims = v.m_dims;
+            double[] vals = v.m_vals;
+            double result = 0;
+            for (int i = 0; i < dims.length; i++) {
+                if (dims[i] < m_weights.length) {
+                    result += m_weights[dims[i]] * vals[i];
+                }
+            }
+            return result;
+        }
+
+        @Override
+        double get(int dim) {
+            return dim >= 0 && dim < m_weights.length ? m_weights[dim] : 0;
+        }
+
+        @Override
+        int nonZeros() {
+            int nonZero = 0;
+            for (float weight : m_weights) {
+                if (weight != 0) {
+                    nonZero++;
+                }
+            }
+            return nonZero;
+        }
+
+        @Override
+        double[] toArray() {
+            double[] weights = new double[m_weights.length];
+            for (int k = 0; k < weights.length; k++) {
+                weights[k] = m_weights[k];
+            }
+            return weights;
+        }
+
+        @Override
+        boolean isSparse() {
+            return false;
+        }
+
+        @Override
+        ModelPrecision precision() {
+            return ModelPrecision.FLOAT32;
+        }
+
+        @Override
+        long bytes() {
+            return 4L * m_weights.length;
+        }
+
+        @Override
+        LinearWeights convert(ModelPrecision precision) {
+            return precision == ModelPrecision.FLOAT32 ? this : dense(toArray(), precision);
+        }
+    }
+
+    /**
+     * Weights quantized to 8 bit integers indexed by feature id.
+     */
+    static final class DenseInt8 extends LinearWeights {
+
+        private final byte[] m_weights;
+
+        private final float[] m_scales;
+
+        DenseInt8(byte[] weights, float[] scales) {
+            m_weights = weights;
+            m_scales = scales;
+        }
+
+        @Override
+        double dot(FeatureVector v) {
+            int[] dims = v.m_dims;
+            double[] vals = v.m_vals;
+            double result = 0;
+            for (int i = 0; i < dims.length; i++) {
+                if (dims[i] < m_weights.length) {
+                    result += m_scales[dims[i] / INT8_BLOCK] * m_weights[dims[i]] * vals[i];
+                }
+            }
+            return result;
+        }
+
+        @Override
+        double get(int dim) {
+            return dim >= 0 && dim < m_weights.length ? (double) m_scales[dim / INT8_BLOCK] * m_weights[dim] : 0;
+        }
+
+        @Override
+        int nonZeros() {
+            int nonZero = 0;
+            for (byte weight : m_weights) {
+                if (weight != 0) {
+                    nonZero++;
+                }
+            }
+            return nonZero;
+        }
+
+        @Override
+        double[] toArray() {
+            double[] weights = new double[m_weights.length];
+            for (int k = 0; k < weights.length; k++) {
+                weights[k] = get(k);
+            }
+            return weights;
+        }
+
+        @Override
+        boolean isSparse() {
+            return false;
+        }
+
+        @Override
+        ModelPrecision precision() {
+            return ModelPrecision.INT8;
+        }
+
+        @Override
+        long bytes() {
+            return m_weights.length + 4L * m_scales.length;
+        }
+
+        @Override
+        LinearWeights convert(ModelPrecision precision) {
+            return precision == ModelPrecision.INT8 ? this : dense(toArray(), precision);
+        }
+    }
+
+    /**
+     * Non-zero weights as feature ids in ascending order. The subclasses store the weights themselves.
+     */
+    abstract static class SparseWeights extends LinearWeights {
+
+        final int[] m_dims;
+
+        final long m_dimension;
+
+        SparseWeights(int[] dims, long dimension) {
+            m_dims = dims;
+            m_dimension = dimension;
+        }
+
+        /**
+         * Returns the weight stored at a position.
+         */
+        abstract double value(int pos);
+
+        /**
+         * Looks up each feature of {@code v} by binary search. While the features of {@code v} ascend, as they do for vectors that are
+         * sorted for SVM-light, each search starts behind the position of the previous one.
+         */
+        @Override
+        double dot(FeatureVector v) {
+            int[] dims = v.m_dims;
+            double[] vals = v.m_vals;
+            double result = 0;
+            int from = 0;
+            int previous = Integer.MIN_VALUE;
+            for (int i = 0; i < dims.length; i++) {
+                if (dims[i] < previous) {
+                    from = 0;
+                }
+                previous = dims[i];
+                int pos = Arrays.binarySearch(m_dims, from, m_dims.length, dims[i]);
+                if (pos >= 0) {
+                    result += value(pos) * vals[i];
+                    from = pos + 1;
+                } else {
+                    from = -pos - 1;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        double get(int dim) {
+            int pos = Arrays.binarySearch(m_dims, dim);
+            return pos >= 0 ? value(pos) : 0;
+        }
+
+        @Override
+        int nonZeros() {
+            return m_dims.length;
+        }
+
+        @Override
+        double[] toArray() {
+            double[] weights = new double[Math.toIntExact(m_dimension)];
+            for (int j = 0; j < m_dims.length; j++) {
+                weights[m_dims[j]] = value(j);
+            }
+            return weights;
+        }
+
+        @Override
+        LabeledFeatureVector toSupportVector() {
+            double[] vals = new double[m_dims.length];
+            for (int j = 0; j < vals.length; j++) {
+                vals[j] = value(j);
+            }
+            return supportVector(m_dims.clone(), vals);
+        }
+
+        @Override
+        boolean isSparse() {
+            return true;
+        }
+
+        @Override
+        LinearWeights convert(ModelPrecision precision) {
+            if (precision == precision()) {
+                return this;
+            }
+            double[] vals = new double[m_dims.length];
+            for (int j = 0; j < vals.length; j++) {
+                vals[j] = value(j);
+            }
+            return sparse(m_dims, vals, m_dimension, precision);
+        }
+    }
+
+    /**
+     * Non-zero weights in double precision.
+     */
+    static final class Sparse extends SparseWeights {
+
+        private final double[] m_vals;
+
+        Sparse(int[] dims, double[] vals, long dimension) {
+            super(dims, dimension);
+            m_vals = vals;
+        }
+
+        @Override
+        double value(int pos) {
+            return m_vals[pos];
+        }
+
+        @Override
+        ModelPrecision precision() {
+            return ModelPrecision.FLOAT64;
+        }
+
+        @Override
+        long bytes() {
+            return 12L * m_dims.length;
+        }
+    }
+
+    /**
+     * Non-zero weights in single precision.
+     */
+    static final class SparseFloat32 extends SparseWeights {
+
+        private final float[] m_vals;
+
+        SparseFloat32(int[] dims, float[] vals, long dimension) {
+            super(dims, dimension);
+            m_vals = vals;
+        }
+
+        @Override
+        double value(int pos) {
+            return m_vals[pos];
+        }
+
+        @Override
+        ModelPrecision precision() {
+            return ModelPrecision.FLOAT32;
+        }
+
+        @Override
+        long bytes() {
+            return 8L * m_dims.length;
+        }
+    }
+
+    /**
+     * Non-zero weights quantized to 8 bit integers.
+     */
+    static final class SparseInt8 extends SparseWeights {
+
+        private final byte[] m_vals;
+
+        private final float[] m_scales;
+
+        SparseInt8(int[] dims, byte[] vals, float[] scales, long dimension) {
+            super(dims, dimension);
+            m_vals = vals;
+            m_scales = scales;
+        }
+
+        @Override
+        double value(int pos) {
+            return (double) m_scales[pos / INT8_BLOCK] * m_vals[pos];
+        }
+
+        @Override
+        ModelPrecision precision() {
+            return ModelPrecision.INT8;
+        }
+
+        @Override
+        long bytes() {
+            return 5L * m_dims.length + 4L * m_scales.length;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+
+/**
+ * An {@link SVMLightModel} in a binary file that is memory-mapped instead of parsed. The file consists of a header with the kernel
+ * parameters and sizes, followed by the support vectors in compressed sparse row (CSR) layout and, for linear models, their weight
+ * vector, all in little-endian byte order:
+ * <pre>
+ *   header     magic, version, kernel type and parameters, highest feature index, number of training documents, number of support
+ *              vectors plus 1, threshold, precision, number of support vectors n, number of values m, form, number w and dimension
+ *              of the linear weights, lengths of the format and -u strings (128 bytes)
+ *   strings    the format and -u parameter in UTF-8
+ *   alphas     double[n]    alpha * y of each support vector
+ *   offsets    int[n + 1]   support vector i has the features offsets[i] to offsets[i + 1] - 1
+ *   dims       int[m]       the dimensions of each support vector in ascending order
+ *   values     double[m]
+ *   weights    int[w]       the feature ids of sparse linear weights, absent for dense ones
+ *              double[w]    the linear weights
+ * </pre>
+ * Each section starts at a multiple of 8 bytes. Values and weights are stored in double precision; a model in a lower
+ * {@link ModelPrecision} stores the values it represents and is converted back to that precision by {@link #toModel()}, which gives the
+ * same values again.
+ * <p>
+ * The support vectors, alphas and linear weights can be read straight from the mapped file, e.g. to inspect a model, and
+ * {@link #toModel()} copies them in bulk into a model that can classify. Models are written by
+ * {@link SVMLightModel#writeBinaryModelToFile(Path)} and read by {@link SVMLightModel#fromBinaryPath(Path)}.
+ *
+ * @author Anja Pilz
+ */
+public final class MappedModel {
+
+    static final int MAGIC = 0x4D4D5653;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 128;
+
+    static final int NO_WEIGHTS = 0;
+
+    static final int DENSE_WEIGHTS = 1;
+
+    static final int SPARSE_WEIGHTS = 2;
+
+    private final String m_format;
+
+    private final long m_kType;
+
+    private final long m_dParam;
+
+    private final double m_gParam;
+
+    private final double m_sParam;
+
+    private final double m_rParam;
+
+    private final String m_uParam;
+
+    private final long m_highFeatIdx;
+
+    private final long m_trainDocs;
+
+    private final long m_numSupVecs;
+
+    private final double m_threshold;
+
+    private final ModelPrecision m_precision;
+
+    private final DoubleBuffer m_alphas;
+
+    private final IntBuffer m_offsets;
+
+    private final IntBuffer m_dims;
+
+    private final DoubleBuffer m_vals;
+
+    private final int m_weightForm;
+
+    private final long m_weightDimension;
+
+    private final IntBuffer m_weightDims;
+
+    private final DoubleBuffer m_weightVals;
+
+    private MappedModel(FileChannel channel, String source) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < HEADER_BYTES) {
+            throw new IOException("'" + source + "' is not a binary model file.");
+        }
+        ByteBuffer file = fileSize <= Integer.MAX_VALUE ? Dataset.map(channel, null, 0, fileSize) : null;
+        ByteBuffer header = Dataset.map(channel, file, 0, HEADER_BYTES);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("'" + source + "' is not a binary model file.");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported version " + header.getInt(4) + " of binary model file '" + source + "'.");
+        }
+        m_kType = header.getLong(8);
+        m_dParam = header.getLong(16);
+        m_gParam = header.getDouble(24);
+        m_sParam = header.getDouble(32);
+        m_rParam = header.getDouble(40);
+        m_highFeatIdx = header.getLong(48);
+        m_trainDocs = header.getLong(56);
+        m_numSupVecs = header.getLong(64);
+        m_threshold = header.getDouble(72);
+        int precision = header.getInt(80);
+        int size = header.getInt(84);
+        long values = header.getLong(88);
+        m_weightForm = header.getInt(96);
+        int weights = header.getInt(100);
+        m_weightDimension = header.getLong(104);
+        int formatBytes = header.getInt(112);
+        int uParamBytes = header.getInt(116);
+        if (precision < 0 || precision >= ModelPrecision.values().length || size < 0 || values < 0 || values > Integer.MAX_VALUE ||
+                m_weightForm < NO_WEIGHTS || m_weightForm > SPARSE_WEIGHTS || weights < 0 || formatBytes < 0 || uParamBytes < 0 ||
+                fileSize != sectionStart(formatBytes + uParamBytes, size, (int) values, m_weightForm, weights, 6)) {
+            throw new IOException("The binary model file '" + source + "' is corrupt or truncated.");
+        }
+        m_precision = ModelPrecision.values()[precision];
+        ByteBuffer strings = Dataset.map(channel, file, HEADER_BYTES, formatBytes + uParamBytes);
+        byte[] bytes = new byte[formatBytes + uParamBytes];
+        strings.get(bytes);
+        m_format = new String(bytes, 0, formatBytes, StandardCharsets.UTF_8);
+        m_uParam = new String(bytes, formatBytes, uParamBytes, StandardCharsets.UTF_8);
+        int stringBytes = formatBytes + uParamBytes;
+        m_alphas = Dataset.map(channel, file, sectionStart(stringBytes, size, (int) values, m_weightForm, weights, 0),
+                (long) Double.BYTES * size).asDoubleBuffer();
+        m_offsets = Dataset.map(channel, file, sectionStart(stringBytes, size, (int) values, m_weightForm, weights, 1),
+                (long) Integer.BYTES * (size + 1)).asIntBuffer();
+        m_dims = Dataset.map(channel, file, sectionStart(stringBytes, size, (int) values, m_weightForm, weights, 2),
+                Integer.BYTES * values).asIntBuffer();
+        m_vals = Dataset.map(channel, file, sectionStart(stringBytes, size, (int) values, m_weightForm, weights, 3),
+                Double.BYTES * values).asDoubleBuffer();
+        m_weightDims = Dataset.map(channel, file, sectionStart(stringBytes, size, (int) values, m_weightForm, weights, 4),
+                m_weightForm == SPARSE_WEIGHTS ? (long) Integer.BYTES * weights : 0).asIntBuffer();
+        m_weightVals = Dataset.map(channel, file, sectionStart(stringBytes, size, (int) values, m_weightForm, weights, 5),
+                (long) Double.BYTES * weights).asDoubleBuffer();
+        if (m_offsets.get(0) != 0 || m_offsets.get(size) != values) {
+            throw new IOException("The binary model file '" + source + "' is corrupt or truncated.");
+        }
+        for (int i = 0; i < size; i++) {
+            if (m_offsets.get(i) > m_offsets.get(i + 1)) {
+                throw new IOException(
+                        "The binary model file '" + source + "' is corrupt, the offsets of support vector " + i + " are descending.");
+            }
+        }
+    }
+
+    /**
+     * Opens a binary model file by mapping it into memory.
+     *
+     * @param file the file written by {@link SVMLightModel#writeBinaryModelToFile(Path)}.
+     * @return the mapped model.
+     * @throws IOException if the file cannot be read or is not a valid binary model file.
+     */
+    public static MappedModel open(Path file) throws IOException {
+        // the mappings stay valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedModel(channel, file.toString());
+        }
+    }
+
+    /**
+     * Returns whether a file starts like a binary model file.
+     *
+     * @throws IOException if the file cannot be read.
+     */
+    static boolean isBinaryModelFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining()) {
+                if (channel.read(magic) < 0) {
+                    return false;
+                }
+            }
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Converts an SVM-light model file to a binary model file.
+     *
+     * @param textFile the SVM-light model file.
+     * @param file     the binary model file, which is replaced if it exists.
+     * @throws IOException    if the binary model file cannot be written.
+     * @throws ParseException if the SVM-light model file cannot be read.
+     */
+    public static void convertToBinary(Path textFile, Path file) throws IOException, ParseException {
+        SVMLightModel.fromPath(textFile).writeBinaryModelToFile(file);
+    }
+
+    /**
+     * Converts a binary model file to an SVM-light model file.
+     *
+     * @param file     the binary model file.
+     * @param textFile the SVM-light model file, which is replaced if it exists.
+     * @throws IOException if the binary model file cannot be read.
+     */
+    public static void convertToText(Path file, Path textFile) throws IOException {
+        open(file).toModel().writeModelToFile(textFile.toString());
+    }
+
+    /**
+     * Copies the support vectors and linear weights into a model in the precision it was written in.
+     */
+    public SVMLightModel toModel() {
+        int size = getNumberOfSupportVectors();
+        double[] alphas = new double[size];
+        int[] offsets = new int[size + 1];
+        int[] dims = new int[m_dims.capacity()];
+        double[] vals = new double[m_vals.capacity()];
+        m_alphas.duplicate().get(alphas);
+        m_offsets.duplicate().get(offsets);
+        m_dims.duplicate().get(dims);
+        m_vals.duplicate().get(vals);
+        PackedSupportVectors supportVectors = new PackedSupportVectors.Float64(offsets, dims, vals, alphas).convert(m_precision);
+
+        LinearWeights weights = null;
+        if (m_weightForm != NO_WEIGHTS) {
+            double[] weightVals = new double[m_weightVals.capacity()];
+            m_weightVals.duplicate().get(weightVals);
+            if (m_weightForm == DENSE_WEIGHTS) {
+                weights = LinearWeights.dense(weightVals, m_precision);
+            } else {
+                int[] weightDims = new int[m_weightDims.capacity()];
+                m_weightDims.duplicate().get(weightDims);
+                weights = LinearWeights.sparse(weightDims, weightVals, m_weightDimension, m_precision);
+            }
+        }
+        return new SVMLightModel(m_format, m_kType, m_dParam, m_gParam, m_sParam, m_rParam, m_uParam, m_highFeatIdx, m_trainDocs,
+                m_numSupVecs, m_threshold, supportVectors, weights);
+    }
+
+    public long getKernelType() {
+        return m_kType;
+    }
+
+    public double getThreshold() {
+        return m_threshold;
+    }
+
+    /**
+     * Returns the precision the model was stored in before it was written.
+     */
+    public ModelPrecision getPrecision() {
+        return m_precision;
+    }
+
+    public int getNumberOfSupportVectors() {
+        return m_alphas.capacity();
+    }
+
+    /**
+     * Returns alpha * y of a support vector.
+     */
+    public double getAlpha(int i) {
+        return m_alphas.get(i);
+    }
+
+    /**
+     * Returns the dimensions of a support vector in ascending order, as a read-only view of the mapped file.
+     */
+    public IntBuffer getDimensions(int i) {
+        IntBuffer view = m_dims.duplicate();
+        view.limit(m_offsets.get(i + 1)).position(m_offsets.get(i));
+        return view.slice();
+    }
+
+    /**
+     * Returns the values of a support vector in the order of its dimensions, as a read-only view of the mapped file.
+     */
+    public DoubleBuffer getValues(int i) {
+        DoubleBuffer view = m_vals.duplicate();
+        view.limit(m_offsets.get(i + 1)).position(m_offsets.get(i));
+        return view.slice();
+    }
+
+    /**
+     * Returns whether the file holds the weight vector of a linear model.
+     */
+    public boolean hasLinearWeights() {
+        return m_weightForm != NO_WEIGHTS;
+    }
+
+    /**
+     * Returns the weight of a single feature for linear models, 0 for features without a weight.
+     *
+     * @param dim the feature id.
+     * @throws IllegalStateException if the file does not hold a linear model.
+     */
+    public double getLinearWeight(int dim) {
+        if (m_weightForm == NO_WEIGHTS) {
+            throw new IllegalStateException("Only linear models have a weight vector.");
+        }
+        if (m_weightForm == DENSE_WEIGHTS) {
+            return dim >= 0 && dim < m_weightVals.capacity() ? m_weightVals.get(dim) : 0;
+        }
+        int low = 0;
+        int high = m_weightDims.capacity() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midDim = m_weightDims.get(mid);
+            if (midDim < dim) {
+                low = mid + 1;
+            } else if (midDim > dim) {
+                high = mid - 1;
+            } else {
+                return m_weightVals.get(mid);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the position of a section in a file, or the file size for section 6.
+     */
+    static long sectionStart(int stringBytes, int size, int values, int weightForm, int weights, int section) {
+        long[] bytes = {Double.BYTES * (long) size, Integer.BYTES * (size + 1L), Integer.BYTES * (long) values,
+                Double.BYTES * (long) values, weightForm == SPARSE_WEIGHTS ? Integer.BYTES * (long) weights : 0,
+                Double.BYTES * (long) weights};
+        long position = HEADER_BYTES + stringBytes + (-stringBytes & 7);
+        for (int i = 0; i < section; i++) {
+            position += bytes[i] + (-bytes[i] & 7);
+        }
+        return position;
+    }
+}
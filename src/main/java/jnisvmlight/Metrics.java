@@ -0,0 +1,108 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+/**
+ * Instrumentation of classification, training and model input/output. Instrumentation is disabled until a {@link MetricsListener} is
+ * added; while no listener is registered, an instrumented call costs one volatile read and does not query the clock.
+ *
+ * @author Anja Pilz
+ */
+public final class Metrics {
+
+    /**
+     * The start time returned by {@link #start()} while instrumentation is disabled.
+     */
+    static final long DISABLED = Long.MIN_VALUE;
+
+    private static final MetricsListener[] NO_LISTENERS = new MetricsListener[0];
+
+    private static volatile MetricsListener[] listeners = NO_LISTENERS;
+
+    private Metrics() {
+    }
+
+    /**
+     * Registers a listener for all subsequently completed operations. Adding the same listener twice reports each operation to it twice.
+     */
+    public static synchronized void addListener(MetricsListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("The listener must not be null.");
+        }
+        MetricsListener[] current = listeners;
+        MetricsListener[] updated = new MetricsListener[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = listener;
+        listeners = updated;
+    }
+
+    /**
+     * Removes one registration of a listener. Operations already in progress may still be reported to it.
+     *
+     * @return {@code true} if the listener was registered.
+     */
+    public static synchronized boolean removeListener(MetricsListener listener) {
+        MetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                MetricsListener[] updated = new MetricsListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                listeners = updated.length == 0 ? NO_LISTENERS : updated;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether any listener is registered.
+     */
+    public static boolean isEnabled() {
+        return listeners.length > 0;
+    }
+
+    /**
+     * @return the current time in nanoseconds to pass to {@link #record(Operation, long, long)}, or {@link #DISABLED} if no listener is
+     * registered.
+     */
+    static long start() {
+        return listeners.length == 0 ? DISABLED : System.nanoTime();
+    }
+
+    /**
+     * Reports a completed operation to all registered listeners, unless instrumentation was disabled when it started.
+     *
+     * @param operation the operation.
+     * @param start     the value returned by {@link #start()} when the operation started.
+     * @param count     the number of items processed.
+     */
+    static void record(Operation operation, long start, long count) {
+        if (start == DISABLED) {
+            return;
+        }
+        long duration = System.nanoTime() - start;
+        for (MetricsListener listener : listeners) {
+            listener.operationCompleted(operation, duration, count);
+        }
+    }
+}
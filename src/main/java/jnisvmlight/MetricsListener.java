@@ -0,0 +1,42 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+/**
+ * Receives the duration of each completed {@link Operation} while registered with {@link Metrics#addListener(MetricsListener)}. Listeners
+ * are called synchronously on the thread that performed the operation, possibly from many threads at once, so they need to be thread-safe,
+ * fast and must not throw. The jfr module provides a listener that records JDK Flight Recorder events.
+ *
+ * @author Anja Pilz
+ * @see MetricsRegistry
+ */
+public interface MetricsListener {
+
+    /**
+     * Called after an operation completed normally.
+     *
+     * @param operation     the operation.
+     * @param durationNanos the wall-clock duration of the operation in nanoseconds.
+     * @param count         the number of items the operation processed, see {@link Operation}.
+     */
+    void operationCompleted(Operation operation, long durationNanos, long count);
+}
@@ -0,0 +1,71 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A {@link MetricsListener} that keeps counters and a latency histogram per {@link Operation}. Register it with
+ * {@link Metrics#addListener(MetricsListener)} and read the {@link OperationMetrics} of each operation at any time.
+ *
+ * @author Anja Pilz
+ */
+public class MetricsRegistry implements MetricsListener {
+
+    private final Map<Operation, OperationMetrics> m_metrics = new EnumMap<>(Operation.class);
+
+    public MetricsRegistry() {
+        for (Operation operation : Operation.values()) {
+            m_metrics.put(operation, new OperationMetrics(operation));
+        }
+    }
+
+    @Override
+    public void operationCompleted(Operation operation, long durationNanos, long count) {
+        m_metrics.get(operation).record(durationNanos, count);
+    }
+
+    public OperationMetrics getMetrics(Operation operation) {
+        return m_metrics.get(operation);
+    }
+
+    /**
+     * Resets the counters and histograms of all operations.
+     */
+    public void reset() {
+        for (OperationMetrics metrics : m_metrics.values()) {
+            metrics.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (OperationMetrics metrics : m_metrics.values()) {
+            if (metrics.getCalls() > 0) {
+                sb.append(metrics).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A model version borrowed from a {@link ModelRegistry}. The version stays usable until the lease is closed, even if a newer version is
+ * registered in the meantime. Leases are meant to be short-lived, e.g. for one request:
+ * <pre>
+ *   try (ModelLease lease = registry.acquire("ranker")) {
+ *       return lease.getModel().classify(v);
+ *   }
+ * </pre>
+ *
+ * @author Anja Pilz
+ */
+public final class ModelLease implements AutoCloseable {
+
+    private static final AtomicIntegerFieldUpdater<ModelLease> CLOSED = AtomicIntegerFieldUpdater.newUpdater(ModelLease.class,
+            "m_closed");
+
+    private final ModelVersion m_version;
+
+    private final SVMLightModel m_model;
+
+    private volatile int m_closed;
+
+    /**
+     * @param version a version that has been retained for this lease.
+     */
+    ModelLease(ModelVersion version) {
+        m_version = version;
+        m_model = version.model();
+    }
+
+    public SVMLightModel getModel() {
+        if (m_closed != 0) {
+            throw new IllegalStateException("The lease of " + m_version + " is closed.");
+        }
+        return m_model;
+    }
+
+    public ModelVersion getVersion() {
+        return m_version;
+    }
+
+    /**
+     * Returns the lease. Closing it again has no effect.
+     */
+    @Override
+    public void close() {
+        if (CLOSED.compareAndSet(this, 0, 1)) {
+            m_version.release();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+/**
+ * The precision in which an {@link SVMLightModel} stores the values of its support vectors and its linear weights. Lower precisions
+ * trade a small deviation of the decision values for less memory and memory bandwidth per query. The alphas and the threshold are always
+ * kept in double precision.
+ *
+ * @author Anja Pilz
+ * @see SVMLightModel#withPrecision(ModelPrecision)
+ */
+public enum ModelPrecision {
+
+    /**
+     * 64 bit floating point values, exactly as written by SVM-light.
+     */
+    FLOAT64,
+
+    /**
+     * 32 bit floating point values, half the memory of {@link #FLOAT64}.
+     */
+    FLOAT32,
+
+    /**
+     * 8 bit integers with a scale per support vector, a quarter of the memory of {@link #FLOAT64}. Each support vector is scaled so that
+     * its largest absolute value maps onto 127. The weights of linear models are scaled in blocks of 64 consecutive weights.
+     */
+    INT8
+}
@@ -0,0 +1,421 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serves named models that are replaced by new versions at runtime. New versions are loaded and warmed up in the background and then
+ * swapped in atomically, so that a {@link #classify(String, FeatureVector)} or {@link #acquire(String)} never sees a partially loaded
+ * model and never waits for a load. A replaced version stays usable for the leases acquired before the swap and is released with the
+ * last of them.
+ * <p>
+ * Model files are read with {@link SVMLightModel#fromBinaryPath(Path)} if they are binary model files, see {@link MappedModel}, and
+ * with {@link SVMLightModel#fromPath(Path)} otherwise. A registry can also {@link #watch(Path)} a directory and load each model file
+ * that appears or changes there. If a version fails to load, the previous version keeps being served.
+ *
+ * @author Anja Pilz
+ */
+public class ModelRegistry implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModelRegistry.class);
+
+    /**
+     * The time a watched file must not change before it is loaded, so that a file that is still being written is not loaded.
+     */
+    static final long WATCH_QUIET_MILLIS = 500;
+
+    /**
+     * The number of warm-up classifications of each new version.
+     */
+    private static final int WARMUP_CLASSIFICATIONS = 10000;
+
+    /**
+     * The longest time spent on warming up a new version.
+     */
+    private static final long MAX_WARMUP_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * The number of support vectors used as warm-up queries if no warm-up vectors are set.
+     */
+    private static final int WARMUP_SUPPORT_VECTORS = 100;
+
+    private final Map<String, Slot> m_slots = new ConcurrentHashMap<>();
+
+    private final ExecutorService m_loader;
+
+    private final boolean m_ownsLoader;
+
+    private final List<Watcher> m_watchers = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile FeatureVector[] m_warmupVectors;
+
+    private volatile boolean m_closed;
+
+    /**
+     * Creates a registry that loads models on its own background thread.
+     */
+    public ModelRegistry() {
+        this(Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("model-registry-loader-%d").setDaemon(true)
+                .build()), true);
+    }
+
+    /**
+     * Creates a registry that loads models on the given executor, which it does not shut down.
+     */
+    public ModelRegistry(ExecutorService loader) {
+        this(loader, false);
+    }
+
+    private ModelRegistry(ExecutorService loader, boolean ownsLoader) {
+        m_loader = loader;
+        m_ownsLoader = ownsLoader;
+    }
+
+    /**
+     * Sets the vectors new versions are warmed up with, typically a sample of real queries. By default, a model is warmed up with its
+     * own first support vectors.
+     *
+     * @param vectors the warm-up vectors, or null for the default.
+     */
+    public void setWarmupVectors(FeatureVector[] vectors) {
+        m_warmupVectors = vectors;
+    }
+
+    /**
+     * Loads a model file in the background, warms it up and makes it the current version of {@code name}. If a newer version has been
+     * registered in the meantime, the loaded one is dropped.
+     *
+     * @param name the name of the model.
+     * @param file the model file.
+     * @return the version, or a future failed with the error of the load.
+     */
+    public CompletableFuture<ModelVersion> load(String name, Path file) {
+        checkOpen();
+        Slot slot = slot(name);
+        long version = slot.m_versions.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            SVMLightModel model;
+            try {
+                model = read(file);
+            } catch (IOException | ParseException | RuntimeException e) {
+                LOGGER.error("Could not load version {} of model '{}' from {}: {}", version, name, file, e.getMessage());
+                throw new IllegalStateException("Could not load model '" + name + "' from " + file, e);
+            }
+            return publish(slot, version, file, model, System.nanoTime() - start);
+        }, m_loader);
+    }
+
+    /**
+     * Warms up a model on the calling thread and makes it the current version of {@code name}. The registry takes the model over: the
+     * {@link NativeModel} of a natively trained model is closed once the version is released.
+     *
+     * @param name  the name of the model.
+     * @param model the model.
+     * @return the version.
+     */
+    public ModelVersion register(String name, SVMLightModel model) {
+        checkOpen();
+        Slot slot = slot(name);
+        return publish(slot, slot.m_versions.incrementAndGet(), null, model, 0);
+    }
+
+    /**
+     * Leases the current version of a model. The lease must be closed when the model is no longer used.
+     *
+     * @param name the name of the model.
+     * @return the lease.
+     * @throws IllegalStateException if no model is registered under {@code name}.
+     */
+    public ModelLease acquire(String name) {
+        Slot slot = m_slots.get(name);
+        for (; ; ) {
+            ModelVersion version = slot != null ? slot.m_current.get() : null;
+            if (version == null) {
+                throw new IllegalStateException("No model is registered as '" + name + "'.");
+            }
+            // the version may have been replaced and released since it was read
+            if (version.retain()) {
+                return new ModelLease(version);
+            }
+        }
+    }
+
+    /**
+     * Classifies a vector with the current version of a model.
+     *
+     * @see SVMLightModel#classify(FeatureVector)
+     */
+    public double classify(String name, FeatureVector v) {
+        try (ModelLease lease = acquire(name)) {
+            return lease.getModel().classify(v);
+        }
+    }
+
+    /**
+     * Returns the current version of a model, or null if no model is registered under {@code name}.
+     */
+    public ModelVersion getVersion(String name) {
+        Slot slot = m_slots.get(name);
+        return slot != null ? slot.m_current.get() : null;
+    }
+
+    /**
+     * Returns the names of the registered models.
+     */
+    public Set<String> getNames() {
+        Set<String> names = new TreeSet<>();
+        m_slots.forEach((name, slot) -> {
+            if (slot.m_current.get() != null) {
+                names.add(name);
+            }
+        });
+        return names;
+    }
+
+    /**
+     * Unregisters a model. Its current version is released when its last lease is closed.
+     *
+     * @return whether a model was registered under {@code name}.
+     */
+    public boolean remove(String name) {
+        Slot slot = m_slots.get(name);
+        ModelVersion version = slot != null ? slot.m_current.getAndSet(null) : null;
+        if (version != null) {
+            version.replace();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Loads all model files of a directory and watches it for new and changed files, which are loaded as the next version of the model
+     * named like the file up to its first dot, e.g. "ranker" for "ranker.model" or "ranker.bin". Hidden files and files ending in ".tmp"
+     * are ignored. A file is loaded once it has not changed for {@value #WATCH_QUIET_MILLIS} ms; writing a file under a temporary name
+     * and moving it into the directory avoids loading half-written files altogether. Deleted files do not unregister their model.
+     *
+     * @param directory the directory.
+     * @throws IOException if the directory cannot be read or watched.
+     */
+    public void watch(Path directory) throws IOException {
+        checkOpen();
+        WatchService service = directory.getFileSystem().newWatchService();
+        try {
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    if (isModelFile(file)) {
+                        load(modelName(file), file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            service.close();
+            throw e;
+        }
+        Watcher watcher = new Watcher(directory, service);
+        m_watchers.add(watcher);
+        watcher.start();
+    }
+
+    /**
+     * Stops watching directories, unregisters all models and shuts down the loader thread if the registry created it. Open leases stay
+     * usable until they are closed.
+     */
+    @Override
+    public void close() throws IOException {
+        m_closed = true;
+        synchronized (m_watchers) {
+            for (Watcher watcher : m_watchers) {
+                watcher.m_service.close();
+            }
+            m_watchers.clear();
+        }
+        if (m_ownsLoader) {
+            m_loader.shutdownNow();
+        }
+        for (String name : m_slots.keySet()) {
+            remove(name);
+        }
+    }
+
+    private void checkOpen() {
+        if (m_closed) {
+            throw new IllegalStateException("The model registry is closed.");
+        }
+    }
+
+    private Slot slot(String name) {
+        return m_slots.computeIfAbsent(name, Slot::new);
+    }
+
+    private static SVMLightModel read(Path file) throws IOException, ParseException {
+        return MappedModel.isBinaryModelFile(file) ? SVMLightModel.fromBinaryPath(file) : SVMLightModel.fromPath(file);
+    }
+
+    /**
+     * Warms up a model and swaps it in as the current version, unless a newer version is current already.
+     */
+    private ModelVersion publish(Slot slot, long version, Path source, SVMLightModel model, long loadNanos) {
+        long start = System.nanoTime();
+        FeatureVector[] vectors = m_warmupVectors;
+        if (vectors == null) {
+            vectors = new FeatureVector[Math.min(WARMUP_SUPPORT_VECTORS, model.getNumberOfSupportVectors())];
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = model.getSupportVector(i);
+            }
+        }
+        model.warmUp(vectors, WARMUP_CLASSIFICATIONS, MAX_WARMUP_NANOS);
+        ModelVersion next = new ModelVersion(slot.m_name, version, source, model, loadNanos, System.nanoTime() - start);
+        for (; ; ) {
+            ModelVersion current = slot.m_current.get();
+            if (m_closed) {
+                next.replace();
+                return next;
+            }
+            if (current != null && current.getVersion() > version) {
+                LOGGER.info("Dropped {}, {} is newer.", next, current);
+                next.replace();
+                return next;
+            }
+            if (slot.m_current.compareAndSet(current, next)) {
+                if (current != null) {
+                    current.replace();
+                }
+                LOGGER.info("Serving {} ({} ms to load, {} ms to warm up).", next, TimeUnit.NANOSECONDS.toMillis(loadNanos),
+                        TimeUnit.NANOSECONDS.toMillis(next.getWarmupNanos()));
+                return next;
+            }
+        }
+    }
+
+    private static boolean isModelFile(Path file) {
+        String fileName = file.getFileName().toString();
+        return !fileName.startsWith(".") && !fileName.endsWith(".tmp") && Files.isRegularFile(file);
+    }
+
+    static String modelName(Path file) {
+        String fileName = file.getFileName().toString();
+        int dot = fileName.indexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    /**
+     * The versions of one model name.
+     */
+    private static final class Slot {
+
+        private final String m_name;
+
+        private final AtomicReference<ModelVersion> m_current = new AtomicReference<>();
+
+        /**
+         * The last version number handed out.
+         */
+        private final AtomicLong m_versions = new AtomicLong();
+
+        Slot(String name) {
+            m_name = name;
+        }
+    }
+
+    /**
+     * Loads the files of a watched directory once they have not changed for {@link #WATCH_QUIET_MILLIS}.
+     */
+    private final class Watcher extends Thread {
+
+        private final Path m_directory;
+
+        private final WatchService m_service;
+
+        /**
+         * The changed files and the time of their last change.
+         */
+        private final Map<Path, Long> m_pending = new HashMap<>();
+
+        Watcher(Path directory, WatchService service) {
+            super("model-registry-watcher-" + directory.getFileName());
+            setDaemon(true);
+            m_directory = directory;
+            m_service = service;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (; ; ) {
+                    WatchKey key = m_pending.isEmpty() ? m_service.take() : m_service.poll(WATCH_QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (event.context() instanceof Path) {
+                                m_pending.put(m_directory.resolve((Path) event.context()), System.nanoTime());
+                            }
+                        }
+                        key.reset();
+                    }
+                    long now = System.nanoTime();
+                    for (Iterator<Map.Entry<Path, Long>> it = m_pending.entrySet().iterator(); it.hasNext(); ) {
+                        Map.Entry<Path, Long> entry = it.next();
+                        if (now - entry.getValue() >= TimeUnit.MILLISECONDS.toNanos(WATCH_QUIET_MILLIS)) {
+                            it.remove();
+                            if (isModelFile(entry.getKey()) && !m_closed) {
+                                load(modelName(entry.getKey()), entry.getKey());
+                            }
+                        }
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // the registry is closed
+            }
+        }
+    }
+}
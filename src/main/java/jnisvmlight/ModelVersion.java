@@ -0,0 +1,175 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A version of a model in a {@link ModelRegistry}, with the metadata of its loading. The model itself is only handed out through
+ * {@link ModelLease}s. A version is referenced by the registry while it is the current version of its name and by each open lease; once
+ * it has been replaced and the last lease is closed, it is released and drops its model, closing the {@link NativeModel} of a natively
+ * trained model.
+ *
+ * @author Anja Pilz
+ */
+public final class ModelVersion {
+
+    private final String m_name;
+
+    private final long m_version;
+
+    private final Path m_source;
+
+    private final long m_loadedAtMillis;
+
+    private final long m_loadNanos;
+
+    private final long m_warmupNanos;
+
+    private final int m_numSupportVectors;
+
+    /**
+     * The references of the registry and of the open leases. The registry's reference is dropped when the version is replaced.
+     */
+    private final AtomicInteger m_references = new AtomicInteger(1);
+
+    private volatile boolean m_replaced;
+
+    private volatile SVMLightModel m_model;
+
+    ModelVersion(String name, long version, Path source, SVMLightModel model, long loadNanos, long warmupNanos) {
+        m_name = name;
+        m_version = version;
+        m_source = source;
+        m_model = model;
+        m_loadedAtMillis = System.currentTimeMillis();
+        m_loadNanos = loadNanos;
+        m_warmupNanos = warmupNanos;
+        m_numSupportVectors = model.getNumberOfSupportVectors();
+    }
+
+    /**
+     * Returns the name the model is registered as.
+     */
+    public String getName() {
+        return m_name;
+    }
+
+    /**
+     * Returns the version number, which increases with each model registered under the same name.
+     */
+    public long getVersion() {
+        return m_version;
+    }
+
+    /**
+     * Returns the file the model was loaded from, or null if it was registered directly.
+     */
+    public Path getSource() {
+        return m_source;
+    }
+
+    /**
+     * Returns the time the version was ready to be served, in milliseconds since the epoch.
+     */
+    public long getLoadedAtMillis() {
+        return m_loadedAtMillis;
+    }
+
+    /**
+     * Returns the time taken to read the model file, 0 if the model was registered directly.
+     */
+    public long getLoadNanos() {
+        return m_loadNanos;
+    }
+
+    /**
+     * Returns the time taken to warm the model up.
+     */
+    public long getWarmupNanos() {
+        return m_warmupNanos;
+    }
+
+    public int getNumberOfSupportVectors() {
+        return m_numSupportVectors;
+    }
+
+    /**
+     * Returns the number of open leases of this version.
+     */
+    public int getLeases() {
+        return Math.max(0, m_references.get() - (m_replaced ? 0 : 1));
+    }
+
+    /**
+     * Returns whether this version has been replaced and all its leases have been closed.
+     */
+    public boolean isReleased() {
+        return m_references.get() == 0;
+    }
+
+    /**
+     * Adds a reference, unless the version has already been released.
+     */
+    boolean retain() {
+        for (; ; ) {
+            int references = m_references.get();
+            if (references == 0) {
+                return false;
+            }
+            if (m_references.compareAndSet(references, references + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Drops a reference and releases the version with the last one.
+     */
+    void release() {
+        if (m_references.decrementAndGet() == 0) {
+            NativeModel nativeModel = m_model.getNativeModel();
+            m_model = null;
+            if (nativeModel != null) {
+                nativeModel.close();
+            }
+        }
+    }
+
+    /**
+     * Drops the reference of the registry when this version is replaced or removed.
+     */
+    void replace() {
+        m_replaced = true;
+        release();
+    }
+
+    SVMLightModel model() {
+        return m_model;
+    }
+
+    @Override
+    public String toString() {
+        return m_name + " v" + m_version + (m_source != null ? " from " + m_source : "");
+    }
+}
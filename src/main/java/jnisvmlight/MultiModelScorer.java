@@ -0,0 +1,376 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scores a query against a set of models over the same feature space in one pass, e.g. the binary models of a one-vs-rest setup, and
+ * returns all decision values in the order of the models.
+ * <ul>
+ * <li>The weights of all linear models are stacked into one feature-major matrix, so each feature of the query is looked up once and
+ * multiplied with the weights of all linear models in a contiguous row.</li>
+ * <li>The support vectors of all non-linear models are deduplicated into one pool. The dot product of the query with each pooled support
+ * vector is computed once, and models with the same kernel function also share the kernel value; each model only adds up its alphas.</li>
+ * <li>The query's norm and its dense scatter buffer are set up once for all models.</li>
+ * </ul>
+ *
+ * @author Anja Pilz
+ */
+public final class MultiModelScorer {
+
+    private final int m_numModels;
+
+    private final double[] m_thresholds;
+
+    /**
+     * The model of each column of the stacked linear weights.
+     */
+    private final int[] m_linearModels;
+
+    /**
+     * The feature ids with a non-zero weight in any linear model, in ascending order. Row {@code r} of {@link #m_weights} holds the
+     * weights of feature {@code m_weightDims[r]}.
+     */
+    private final int[] m_weightDims;
+
+    /**
+     * The row of each feature id in {@link #m_weights}, -1 for features without a weight, or null if the feature space is too large for a
+     * lookup table and rows are found by binary search in {@link #m_weightDims}.
+     */
+    private final int[] m_weightRows;
+
+    /**
+     * The weights of all linear models, feature-major: one row of {@code m_linearModels.length} weights per feature.
+     */
+    private final double[] m_weights;
+
+    private final PackedSupportVectors m_pool;
+
+    private final double[] m_poolNorms;
+
+    private final int m_denseDimension;
+
+    private final KernelGroup[] m_groups;
+
+    /**
+     * Creates a scorer for a set of models.
+     *
+     * @param models the models, all over the same feature space.
+     */
+    public MultiModelScorer(List<SVMLightModel> models) {
+        m_numModels = models.size();
+        m_thresholds = new double[m_numModels];
+        List<Integer> linearModels = new ArrayList<>();
+        List<LabeledFeatureVector> linearWeights = new ArrayList<>();
+        Map<FeatureKey, Integer> poolIndex = new HashMap<>();
+        List<LabeledFeatureVector> pool = new ArrayList<>();
+        List<GroupBuilder> groups = new ArrayList<>();
+        for (int m = 0; m < m_numModels; m++) {
+            SVMLightModel model = models.get(m);
+            m_thresholds[m] = model.getThreshold();
+            if (model.kernelType() == KernelParam.LINEAR) {
+                linearModels.add(m);
+                linearWeights.add(model.linearWeights().toSupportVector());
+                continue;
+            }
+            GroupBuilder group = null;
+            for (GroupBuilder candidate : groups) {
+                if (candidate.m_kernel.hasSameKernel(model.compiled())) {
+                    group = candidate;
+                }
+            }
+            if (group == null) {
+                group = new GroupBuilder(model.compiled());
+                groups.add(group);
+            }
+            for (int i = 0; i < model.getNumberOfSupportVectors(); i++) {
+                LabeledFeatureVector sv = model.getSupportVector(i);
+                if (sv.m_label == 0) {
+                    continue;
+                }
+                Integer index = poolIndex.putIfAbsent(new FeatureKey(sv), pool.size());
+                if (index == null) {
+                    index = pool.size();
+                    pool.add(sv);
+                }
+                group.add(index, m, sv.m_label);
+            }
+        }
+
+        m_linearModels = linearModels.stream().mapToInt(Integer::intValue).toArray();
+        m_weightDims = linearWeights.stream().flatMapToInt(w -> Arrays.stream(w.m_dims)).distinct().sorted().toArray();
+        int maxDim = m_weightDims.length > 0 ? m_weightDims[m_weightDims.length - 1] : 0;
+        if (maxDim < CompiledKernelModel.MAX_DENSE_DIMENSION) {
+            m_weightRows = new int[maxDim + 1];
+            Arrays.fill(m_weightRows, -1);
+            for (int r = 0; r < m_weightDims.length; r++) {
+                m_weightRows[m_weightDims[r]] = r;
+            }
+        } else {
+            m_weightRows = null;
+        }
+        m_weights = new double[m_weightDims.length * m_linearModels.length];
+        for (int l = 0; l < m_linearModels.length; l++) {
+            LabeledFeatureVector w = linearWeights.get(l);
+            for (int j = 0; j < w.m_dims.length; j++) {
+                m_weights[Arrays.binarySearch(m_weightDims, w.m_dims[j]) * m_linearModels.length + l] = w.m_vals[j];
+            }
+        }
+
+        m_pool = PackedSupportVectors.pack(pool.toArray(new LabeledFeatureVector[pool.size()]));
+        m_poolNorms = new double[m_pool.size()];
+        long poolMaxDim = 0;
+        for (int i = 0; i < m_poolNorms.length; i++) {
+            m_poolNorms[i] = m_pool.squaredNorm(i);
+        }
+        for (int dim : m_pool.m_dims) {
+            poolMaxDim = Math.max(poolMaxDim, dim);
+        }
+        m_denseDimension = poolMaxDim < CompiledKernelModel.MAX_DENSE_DIMENSION ? (int) poolMaxDim + 1 : 0;
+        m_groups = groups.stream().map(GroupBuilder::build).toArray(KernelGroup[]::new);
+    }
+
+    /**
+     * Returns the number of models.
+     */
+    public int getNumberOfModels() {
+        return m_numModels;
+    }
+
+    /**
+     * Returns the number of distinct support vectors of all non-linear models.
+     */
+    public int getNumberOfSupportVectors() {
+        return m_pool.size();
+    }
+
+    /**
+     * Returns the decision values of all models for a query.
+     *
+     * @return one decision value per model, in the order of the models.
+     */
+    public double[] classify(FeatureVector v) {
+        double[] result = new double[m_numModels];
+        classify(v, result);
+        return result;
+    }
+
+    /**
+     * Stores the decision values of all models for a query in {@code result}. This method does not allocate once the scratch buffers of
+     * the calling thread have grown to their final size.
+     *
+     * @param v      the query.
+     * @param result a buffer with at least one entry per model.
+     */
+    public void classify(FeatureVector v, double[] result) {
+        Arrays.fill(result, 0, m_numModels, 0);
+        ScoringScratch scratch = ScoringScratch.get();
+        if (m_linearModels.length > 0) {
+            addLinear(v, result, scratch);
+        }
+        if (m_groups.length > 0) {
+            addKernels(v, result, scratch);
+        }
+        for (int m = 0; m < m_numModels; m++) {
+            result[m] = v.m_factor * result[m] - m_thresholds[m];
+        }
+    }
+
+    /**
+     * Returns the decision values of all models for a batch of queries, scored in parallel on the common fork-join pool.
+     *
+     * @return one array of decision values per query, in the order of the queries.
+     */
+    public double[][] classify(FeatureVector[] vectors) {
+        double[][] result = new double[vectors.length][];
+        Arrays.parallelSetAll(result, i -> classify(vectors[i]));
+        return result;
+    }
+
+    /**
+     * Returns the index of the model with the largest decision value for a query, e.g. the predicted class of a one-vs-rest setup.
+     */
+    public int argmax(FeatureVector v) {
+        double[] scores = ScoringScratch.get().sums(m_numModels);
+        classify(v, scores);
+        return argmax(scores, m_numModels);
+    }
+
+    /**
+     * Returns the index of the model with the largest decision value for each query of a batch, scored in parallel on the common fork-join
+     * pool.
+     */
+    public int[] argmax(FeatureVector[] vectors) {
+        int[] result = new int[vectors.length];
+        Arrays.parallelSetAll(result, i -> argmax(vectors[i]));
+        return result;
+    }
+
+    /**
+     * Returns the index of the largest of the first {@code length} scores, the first one if several are equal, or -1 if there are none.
+     */
+    static int argmax(double[] scores, int length) {
+        int best = length > 0 ? 0 : -1;
+        for (int m = 1; m < length; m++) {
+            if (scores[m] > scores[best]) {
+                best = m;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Adds the dot products of the query with the weights of all linear models, walking the query once.
+     */
+    private void addLinear(FeatureVector v, double[] result, ScoringScratch scratch) {
+        int columns = m_linearModels.length;
+        double[] sums = scratch.dots(columns);
+        Arrays.fill(sums, 0, columns, 0);
+        int[] dims = v.m_dims;
+        double[] vals = v.m_vals;
+        for (int j = 0; j < dims.length; j++) {
+            int row = weightRow(dims[j]);
+            if (row >= 0) {
+                double val = vals[j];
+                for (int l = 0, base = row * columns; l < columns; l++) {
+                    sums[l] += val * m_weights[base + l];
+                }
+            }
+        }
+        for (int l = 0; l < columns; l++) {
+            result[m_linearModels[l]] = sums[l];
+        }
+    }
+
+    private int weightRow(int dim) {
+        if (m_weightRows != null) {
+            return dim >= 0 && dim < m_weightRows.length ? m_weightRows[dim] : -1;
+        }
+        int row = Arrays.binarySearch(m_weightDims, dim);
+        return row >= 0 ? row : -1;
+    }
+
+    /**
+     * Adds the weighted kernel sums of all non-linear models. The dot product of the query with every pooled support vector is computed
+     * once, by scattering the query into a dense buffer if the pool's feature space allows it.
+     */
+    private void addKernels(FeatureVector v, double[] result, ScoringScratch scratch) {
+        double[] dots = scratch.dots(m_pool.size());
+        if (m_denseDimension > 0) {
+            double[] dense = scratch.dense(m_denseDimension);
+            int[] dims = v.m_dims;
+            for (int j = 0; j < dims.length; j++) {
+                if (dims[j] < m_denseDimension) {
+                    dense[dims[j]] = v.m_vals[j];
+                }
+            }
+            for (int i = 0; i < m_pool.size(); i++) {
+                dots[i] = m_pool.gather(i, dense);
+            }
+            for (int j = 0; j < dims.length; j++) {
+                if (dims[j] < m_denseDimension) {
+                    dense[dims[j]] = 0;
+                }
+            }
+        } else {
+            for (int i = 0; i < m_pool.size(); i++) {
+                dots[i] = m_pool.dot(i, v.m_dims, v.m_vals);
+            }
+        }
+        double queryNorm = CompiledKernelModel.dot(v, v);
+        for (KernelGroup group : m_groups) {
+            for (int t = 0; t < group.m_svs.length; t++) {
+                int sv = group.m_svs[t];
+                double k = group.m_kernel.kernel(dots[sv], m_poolNorms[sv], queryNorm);
+                for (int p = group.m_offsets[t], end = group.m_offsets[t + 1]; p < end; p++) {
+                    result[group.m_models[p]] += group.m_alphas[p] * k;
+                }
+            }
+        }
+    }
+
+    /**
+     * The models sharing one kernel function. For each pooled support vector used by any of them, the group lists the models using it and
+     * their alphas, in CSR layout: the entries of the {@code t}-th support vector span {@code [offsets[t], offsets[t + 1])}.
+     */
+    private static final class KernelGroup {
+
+        private final CompiledKernelModel m_kernel;
+
+        private final int[] m_svs;
+
+        private final int[] m_offsets;
+
+        private final int[] m_models;
+
+        private final double[] m_alphas;
+
+        KernelGroup(CompiledKernelModel kernel, int[] svs, int[] offsets, int[] models, double[] alphas) {
+            m_kernel = kernel;
+            m_svs = svs;
+            m_offsets = offsets;
+            m_models = models;
+            m_alphas = alphas;
+        }
+    }
+
+    /**
+     * Collects the (support vector, model, alpha) entries of a kernel group.
+     */
+    private static final class GroupBuilder {
+
+        private final CompiledKernelModel m_kernel;
+
+        private final Map<Integer, List<double[]>> m_entries = new HashMap<>();
+
+        GroupBuilder(CompiledKernelModel kernel) {
+            m_kernel = kernel;
+        }
+
+        void add(int sv, int model, double alpha) {
+            m_entries.computeIfAbsent(sv, k -> new ArrayList<>()).add(new double[]{model, alpha});
+        }
+
+        KernelGroup build() {
+            int[] svs = m_entries.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            int[] offsets = new int[svs.length + 1];
+            for (int t = 0; t < svs.length; t++) {
+                offsets[t + 1] = offsets[t] + m_entries.get(svs[t]).size();
+            }
+            int[] models = new int[offsets[svs.length]];
+            double[] alphas = new double[offsets[svs.length]];
+            for (int t = 0; t < svs.length; t++) {
+                List<double[]> entries = m_entries.get(svs[t]);
+                for (int e = 0; e < entries.size(); e++) {
+                    models[offsets[t] + e] = (int) entries.get(e)[0];
+                    alphas[offsets[t] + e] = entries.get(e)[1];
+                }
+            }
+            return new KernelGroup(m_kernel, svs, offsets, models, alphas);
+        }
+    }
+}
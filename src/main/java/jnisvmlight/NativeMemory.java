@@ -0,0 +1,66 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+/**
+ * Reports the memory allocated by the native SVM-light library, which is outside the Java heap. All native allocations of training,
+ * native models and native classification are counted, across all threads. The bytes in use include the models that have not been
+ * closed, see {@link NativeModel#close()}, and a scratch buffer for classification in each thread that classified natively.
+ *
+ * @author Anja Pilz
+ */
+public final class NativeMemory {
+
+    static {
+        SVMLightInterface.loadLibrary();
+    }
+
+    private NativeMemory() {
+    }
+
+    /**
+     * @return the number of bytes allocated by the native library since it was loaded.
+     */
+    public static long getAllocatedBytes() {
+        return allocatedbytes();
+    }
+
+    /**
+     * @return the number of bytes released by the native library since it was loaded.
+     */
+    public static long getFreedBytes() {
+        return freedbytes();
+    }
+
+    /**
+     * @return the number of bytes currently allocated by the native library.
+     */
+    public static long getUsedBytes() {
+        // read the released bytes first, so that concurrent allocations cannot make the result negative
+        long freed = freedbytes();
+        return allocatedbytes() - freed;
+    }
+
+    private static native long allocatedbytes();
+
+    private static native long freedbytes();
+}
@@ -0,0 +1,276 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A model held by the native SVM-light library, as it was trained by a native call of {@link SVMLightInterface}, copied from an
+ * {@link SVMLightModel} with {@link SVMLightModel#toNativeModel()} or read from an SVM-light model file with {@link #fromPath(Path)}. Each
+ * model has its own native handle, so that several models can be scored natively side by side, and from several threads at the same
+ * time.
+ * <p>
+ * The native memory of a model, including the training documents its support vectors point to, is held until the model is closed. Closing
+ * waits for the classifications in progress, later ones fail with an {@link IllegalStateException}. A {@link ModelRegistry} closes the
+ * native model of a registered model once the last lease of its version is returned. Models that become unreachable without being closed
+ * are released after they have been garbage collected, which may take long or not happen at all while the Java heap has room, so this is
+ * a safety net rather than a replacement for closing. {@link NativeMemory} reports the native memory in use.
+ *
+ * @author Anja Pilz
+ */
+public final class NativeModel implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NativeModel.class);
+
+    /**
+     * Receives the handles of the models that have been garbage collected without being closed.
+     */
+    private static final ReferenceQueue<NativeModel> UNREACHABLE = new ReferenceQueue<>();
+
+    /**
+     * The handles of the models that have not been closed yet, which keeps them reachable until they are enqueued.
+     */
+    private static final Set<Handle> OPEN = ConcurrentHashMap.newKeySet();
+
+    static {
+        SVMLightInterface.loadLibrary();
+        Thread cleaner = new Thread(NativeModel::releaseUnreachable, "svmlight-native-model-cleaner");
+        cleaner.setDaemon(true);
+        cleaner.start();
+    }
+
+    /**
+     * The first line of the SVM-light model files the native library reads.
+     */
+    private static final String MODEL_FORMAT = "SVM-light Version V6.02";
+
+    private final Handle m_handle;
+
+    NativeModel() {
+        m_handle = new Handle(this);
+    }
+
+    private NativeModel(long address) {
+        this();
+        m_handle.m_address = address;
+    }
+
+    /**
+     * Reads an SVM-light model file with the native library, without creating an {@link SVMLightModel} in Java. Only the version line of
+     * the file is checked before; as the native reader stops the process on malformed support vectors, use this for files written by
+     * SVM-light or {@link SVMLightModel#writeModelToFile(String)} only, and {@link SVMLightModel#fromPath(Path)} followed by
+     * {@link SVMLightModel#toNativeModel()} for all others.
+     *
+     * @param file the model file.
+     * @return the native model.
+     * @throws IOException    if the file cannot be read.
+     * @throws ParseException if the file is not an SVM-light model file of the version of the native library.
+     */
+    public static NativeModel fromPath(Path file) throws IOException, ParseException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            String format = reader.readLine();
+            if (format == null || !format.trim().equals(MODEL_FORMAT)) {
+                throw new ParseException("Not an svmlight-model file of version " + MODEL_FORMAT + ": '" + file + "'.", 0);
+            }
+        }
+        return new NativeModel(readmodel(file.toAbsolutePath().toString()));
+    }
+
+    /**
+     * Creates a native model from the parameters and support vectors of a model held in Java, see {@link SVMLightModel#toNativeModel()}.
+     */
+    static NativeModel create(long kernelType, long polyDegree, double rbfGamma, double coefLin, double coefConst, String custom,
+                              long trainDocs, double threshold, double[] alphas, int[] offsets, int[] dims, double[] values) {
+        return new NativeModel(createmodel(kernelType, polyDegree, rbfGamma, coefLin, coefConst, custom, trainDocs, threshold, alphas,
+                offsets, dims, values));
+    }
+
+    /**
+     * Performs a classification step as a native call to SVM-light with this model. Changes to the Java-side {@link SVMLightModel}, e.g. of
+     * its threshold, are not seen by the native model.
+     *
+     * @throws IllegalArgumentException if the dimensions of the vector are not at least 1 and strictly ascending.
+     */
+    public double classify(FeatureVector doc) {
+        SVMLightInterface.checkDimensions(doc.m_dims, 0, doc.m_dims.length, 0);
+        long start = Metrics.start();
+        double result;
+        long address = m_handle.acquire();
+        try {
+            result = classifynative(address, doc);
+        } finally {
+            m_handle.release();
+        }
+        Metrics.record(Operation.CLASSIFY_NATIVE, start, 1);
+        return result;
+    }
+
+    /**
+     * Classifies a batch of vectors in compressed sparse row (CSR) layout with one native call: vector {@code i} has the features
+     * {@code offsets[i]} to {@code offsets[i + 1] - 1} of {@code dims} and {@code values}, sorted by ascending dimension. The arrays are
+     * pinned rather than copied, and the vectors are scored from a reusable scratch buffer, so no native memory is allocated per vector.
+     * Garbage collection may be held off while the arrays are pinned, so very large sets should be split into batches of some thousand
+     * vectors.
+     *
+     * @param offsets the offsets of the features of each vector, followed by the end of the features of the last vector.
+     * @param dims    the dimensions of the features.
+     * @param values  the values of the features.
+     * @param results receives the result of vector {@code i} at index {@code i}.
+     * @throws IllegalArgumentException if the arrays do not match, or the dimensions of a vector are not at least 1 and strictly ascending.
+     */
+    public void classify(int[] offsets, int[] dims, double[] values, double[] results) {
+        int rows = offsets.length - 1;
+        Preconditions.checkArgument(rows >= 0, "There must be at least one offset!");
+        Preconditions.checkArgument(results.length >= rows, "There must be a result for each vector!");
+        Preconditions.checkArgument(dims.length == values.length, "The number of dimensions and values must be the same!");
+        for (int i = 0; i < rows; i++) {
+            Preconditions.checkArgument(offsets[i] >= 0 && offsets[i] <= offsets[i + 1], "The offsets must be in ascending order!");
+        }
+        Preconditions.checkArgument(rows == 0 || offsets[rows] <= dims.length, "The offsets exceed the features!");
+        for (int i = 0; i < rows; i++) {
+            SVMLightInterface.checkDimensions(dims, offsets[i], offsets[i + 1], i);
+        }
+        long start = Metrics.start();
+        long address = m_handle.acquire();
+        try {
+            classifybatchnative(address, rows, offsets, dims, values, results);
+        } finally {
+            m_handle.release();
+        }
+        Metrics.record(Operation.CLASSIFY_NATIVE, start, rows);
+    }
+
+    /**
+     * Releases the native memory of this model once the classifications in progress have finished. Closing a closed model has no effect.
+     */
+    @Override
+    public void close() {
+        m_handle.free();
+    }
+
+    /**
+     * Returns the handle the native training call sets the address of the model in.
+     */
+    Handle handle() {
+        return m_handle;
+    }
+
+    private static void releaseUnreachable() {
+        for (; ; ) {
+            try {
+                Handle handle = (Handle) UNREACHABLE.remove();
+                if (handle.free()) {
+                    LOGGER.debug("Released a native model that has not been closed.");
+                }
+            } catch (InterruptedException e) {
+                // the cleaner runs as long as the JVM
+            }
+        }
+    }
+
+    /**
+     * The address of a native model, which outlives the model until it is freed, so that a model that has not been closed can be freed
+     * once it has been garbage collected. Native calls hold the read lock while they use the address and {@link #free()} takes the
+     * write lock, so a model is never freed while it is classifying.
+     */
+    static final class Handle extends PhantomReference<NativeModel> {
+
+        private final ReentrantReadWriteLock m_lock = new ReentrantReadWriteLock();
+
+        /**
+         * The address of the native model, set by the native training call and reset to 0 when the model is freed.
+         */
+        private volatile long m_address;
+
+        Handle(NativeModel model) {
+            super(model, UNREACHABLE);
+            OPEN.add(this);
+        }
+
+        /**
+         * Returns the address of the native model, which is not freed until {@link #release()} is called.
+         *
+         * @throws IllegalStateException if the model has not been created or has been closed.
+         */
+        long acquire() {
+            m_lock.readLock().lock();
+            if (m_address == 0) {
+                m_lock.readLock().unlock();
+                throw new IllegalStateException("The native model has not been created or has been closed.");
+            }
+            return m_address;
+        }
+
+        void release() {
+            m_lock.readLock().unlock();
+        }
+
+        /**
+         * Frees the native model once the native calls in progress have finished.
+         *
+         * @return whether the model has been freed by this call.
+         */
+        boolean free() {
+            long address;
+            m_lock.writeLock().lock();
+            try {
+                address = m_address;
+                m_address = 0;
+            } finally {
+                m_lock.writeLock().unlock();
+            }
+            clear();
+            OPEN.remove(this);
+            if (address == 0) {
+                return false;
+            }
+            freemodel(address);
+            return true;
+        }
+    }
+
+    private static native long createmodel(long kernelType, long polyDegree, double rbfGamma, double coefLin, double coefConst,
+                                           String custom, long trainDocs, double threshold, double[] alphas, int[] offsets, int[] dims,
+                                           double[] values);
+
+    private static native long readmodel(String path);
+
+    private static native void freemodel(long handle);
+
+    private static native double classifynative(long handle, FeatureVector doc);
+
+    private static native void classifybatchnative(long handle, int rows, int[] offsets, int[] dims, double[] values, double[] results);
+}
@@ -0,0 +1,61 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+/**
+ * The operations reported to a {@link MetricsListener}. Each operation names what the count passed along with its duration refers to.
+ *
+ * @author Anja Pilz
+ */
+public enum Operation {
+    /**
+     * {@link SVMLightModel#classify(FeatureVector)}, counting the support vectors evaluated. Linear models are scored through their weight
+     * vector and evaluate no support vector.
+     */
+    CLASSIFY,
+    /**
+     * Batch classification with {@link SVMLightModel#classify(FeatureVector[])} and its overloads, counting the documents classified.
+     */
+    CLASSIFY_BATCH,
+    /**
+     * {@link SVMLightInterface#classifyNative(FeatureVector)} and the batch classification of {@link NativeModel}, counting the documents
+     * classified.
+     */
+    CLASSIFY_NATIVE,
+    /**
+     * Reading documents with {@link SVMLightInterface#fromPath(java.nio.file.Path, int)}, counting the documents read.
+     */
+    PARSE_DOCUMENTS,
+    /**
+     * Loading a model with {@link SVMLightModel#fromPath(java.nio.file.Path)}, counting the support vectors read. The support vectors are
+     * read by {@link SVMLightInterface#fromPath(java.nio.file.Path, int)}, which reports {@link #PARSE_DOCUMENTS} on its own.
+     */
+    LOAD_MODEL,
+    /**
+     * Writing a model with {@link SVMLightModel#writeModelToFile(String)}, counting the support vectors written.
+     */
+    WRITE_MODEL,
+    /**
+     * Training with {@link SVMLightInterface#trainModel(LabeledFeatureVector[])} and its overloads, counting the training documents.
+     */
+    TRAIN_MODEL
+}
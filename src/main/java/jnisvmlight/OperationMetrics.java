@@ -0,0 +1,180 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and a latency histogram of one {@link Operation}, updated by a {@link MetricsRegistry}. The histogram has eight buckets per
+ * power of two, so percentiles are reported with a relative error of at most 12.5%. Values read while operations complete concurrently
+ * are not an atomic snapshot of each other.
+ *
+ * @author Anja Pilz
+ */
+public final class OperationMetrics {
+
+    /**
+     * The number of buckets per power of two, as a power of two itself.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final Operation m_operation;
+
+    private final LongAdder m_calls = new LongAdder();
+
+    private final LongAdder m_count = new LongAdder();
+
+    private final LongAdder m_totalNanos = new LongAdder();
+
+    private final LongAccumulator m_maxNanos = new LongAccumulator(Math::max, 0);
+
+    private final AtomicLongArray m_histogram = new AtomicLongArray(BUCKETS);
+
+    OperationMetrics(Operation operation) {
+        m_operation = operation;
+    }
+
+    void record(long durationNanos, long count) {
+        long nanos = Math.max(0, durationNanos);
+        m_calls.increment();
+        m_count.add(count);
+        m_totalNanos.add(nanos);
+        m_maxNanos.accumulate(nanos);
+        m_histogram.incrementAndGet(bucket(nanos));
+    }
+
+    /**
+     * @return the bucket of a non-negative duration. Durations below {@link #SUB_BUCKETS} nanoseconds have a bucket each.
+     */
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the smallest duration falling into a bucket.
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    public Operation getOperation() {
+        return m_operation;
+    }
+
+    /**
+     * @return the number of completed operations.
+     */
+    public long getCalls() {
+        return m_calls.sum();
+    }
+
+    /**
+     * @return the sum of the counts reported with each operation, see {@link Operation}.
+     */
+    public long getCount() {
+        return m_count.sum();
+    }
+
+    public long getTotalNanos() {
+        return m_totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return m_maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        long calls = getCalls();
+        return calls == 0 ? 0 : (double) getTotalNanos() / calls;
+    }
+
+    /**
+     * @return the number of items processed per second of operation time, e.g. documents per second for {@link Operation#PARSE_DOCUMENTS}.
+     */
+    public double getThroughput() {
+        long nanos = getTotalNanos();
+        return nanos == 0 ? 0 : getCount() * 1e9 / nanos;
+    }
+
+    /**
+     * Estimates a latency percentile from the histogram.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return an upper bound of the duration in nanoseconds that the given share of operations did not exceed, or 0 if no operation
+     * completed.
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100 but is " + percentile + ".");
+        }
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = m_histogram.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long upper = i + 1 < BUCKETS ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(upper, getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    void reset() {
+        m_calls.reset();
+        m_count.reset();
+        m_totalNanos.reset();
+        m_maxNanos.reset();
+        for (int i = 0; i < BUCKETS; i++) {
+            m_histogram.set(i, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return m_operation + ": calls=" + getCalls() + ", count=" + getCount() + ", meanNanos=" + getMeanNanos() + ", p50Nanos=" +
+                getPercentileNanos(50) + ", p99Nanos=" + getPercentileNanos(99) + ", maxNanos=" + getMaxNanos();
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.util.Arrays;
+
+/**
+ * The support vectors of an {@link SVMLightModel} packed into a compressed sparse row (CSR) layout: the dimensions and values of all
+ * support vectors are stored back to back in one contiguous array each, and row {@code i} spans the range {@code [offsets[i],
+ * offsets[i + 1])}. Compared to one {@link LabeledFeatureVector} per support vector this saves two array headers and one object header
+ * per support vector and lets the scoring loops stream through memory.
+ * <p>
+ * The values are stored in one of the {@link ModelPrecision}s by the subclasses, which also implement the dot products the scoring loops
+ * are built from. Alphas are kept in double precision in all of them.
+ *
+ * @author Anja Pilz
+ */
+abstract class PackedSupportVectors {
+
+    /**
+     * Support vectors without any features.
+     */
+    static final PackedSupportVectors EMPTY = new Float64(new int[]{0}, new int[0], new double[0], new double[0]);
+
+    final int[] m_offsets;
+
+    final int[] m_dims;
+
+    /**
+     * The alphas (alpha * y) of the support vectors.
+     */
+    final double[] m_alphas;
+
+    PackedSupportVectors(int[] offsets, int[] dims, int numValues, double[] alphas) {
+        if (offsets.length != alphas.length + 1 || dims.length != numValues || offsets[alphas.length] != dims.length) {
+            throw new IllegalArgumentException(
+                    "Inconsistent support vector arrays: " + offsets.length + " offsets, " + alphas.length + " alphas, " + dims.length +
+                            " dimensions and " + numValues + " values.");
+        }
+        m_offsets = offsets;
+        m_dims = dims;
+        m_alphas = alphas;
+    }
+
+    /**
+     * Packs an array of support vectors, labeled with alpha * y.
+     */
+    static PackedSupportVectors pack(LabeledFeatureVector[] docs) {
+        if (docs == null) {
+            return EMPTY;
+        }
+        int[] offsets = new int[docs.length + 1];
+        for (int i = 0; i < docs.length; i++) {
+            offsets[i + 1] = offsets[i] + docs[i].m_dims.length;
+        }
+        int[] dims = new int[offsets[docs.length]];
+        double[] vals = new double[offsets[docs.length]];
+        double[] alphas = new double[docs.length];
+        for (int i = 0; i < docs.length; i++) {
+            System.arraycopy(docs[i].m_dims, 0, dims, offsets[i], docs[i].m_dims.length);
+            System.arraycopy(docs[i].m_vals, 0, vals, offsets[i], docs[i].m_vals.length);
+            alphas[i] = docs[i].m_label * docs[i].m_factor;
+        }
+        return new Float64(offsets, dims, vals, alphas);
+    }
+
+    /**
+     * Returns the precision the values are stored in.
+     */
+    abstract ModelPrecision precision();
+
+    /**
+     * Returns the value at a position of the CSR value array, which lies in the given row.
+     */
+    abstract double value(int row, int k);
+
+    /**
+     * Returns the dot product of a support vector with a query scattered into a dense buffer indexed by feature id.
+     */
+    abstract double gather(int row, double[] dense);
+
+    /**
+     * Returns the dot product of a support vector with a sparse vector by walking both sets of ascending dimensions.
+     */
+    abstract double dot(int row, int[] dims, double[] vals);
+
+    /**
+     * Returns the number of bytes taken by the arrays of these support vectors.
+     */
+    abstract long bytes();
+
+    /**
+     * Returns these support vectors with their values stored in the given precision. The dimension, offset and alpha arrays are shared.
+     */
+    PackedSupportVectors convert(ModelPrecision precision) {
+        if (precision == precision()) {
+            return this;
+        }
+        switch (precision) {
+            case FLOAT32:
+                float[] floats = new float[m_dims.length];
+                for (int i = 0; i < size(); i++) {
+                    for (int k = m_offsets[i]; k < m_offsets[i + 1]; k++) {
+                        floats[k] = (float) value(i, k);
+                    }
+                }
+                return new Float32(m_offsets, m_dims, floats, m_alphas);
+            case INT8:
+                byte[] bytes = new byte[m_dims.length];
+                float[] scales = new float[size()];
+                for (int i = 0; i < scales.length; i++) {
+                    double max = 0;
+                    for (int k = m_offsets[i]; k < m_offsets[i + 1]; k++) {
+                        max = Math.max(max, Math.abs(value(i, k)));
+                    }
+                    scales[i] = (float) (max / Byte.MAX_VALUE);
+                    for (int k = m_offsets[i]; k < m_offsets[i + 1]; k++) {
+                        bytes[k] = scales[i] == 0 ? 0 : (byte) Math.max(-Byte.MAX_VALUE, Math.min(Byte.MAX_VALUE,
+                                Math.round(value(i, k) / scales[i])));
+                    }
+                }
+                return new Int8(m_offsets, m_dims, bytes, scales, m_alphas);
+            default:
+                double[] doubles = new double[m_dims.length];
+                for (int i = 0; i < size(); i++) {
+                    for (int k = m_offsets[i]; k < m_offsets[i + 1]; k++) {
+                        doubles[k] = value(i, k);
+                    }
+                }
+                return new Float64(m_offsets, m_dims, doubles, m_alphas);
+        }
+    }
+
+    /**
+     * Returns the number of support vectors.
+     */
+    int size() {
+        return m_alphas.length;
+    }
+
+    /**
+     * Returns the alpha (alpha * y) of a support vector.
+     */
+    double alpha(int row) {
+        return m_alphas[row];
+    }
+
+    /**
+     * Returns the dot product of a support vector with itself, in the precision it is stored in.
+     */
+    double squaredNorm(int row) {
+        double result = 0;
+        for (int k = m_offsets[row]; k < m_offsets[row + 1]; k++) {
+            result += value(row, k) * value(row, k);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a support vector as a {@link LabeledFeatureVector}, labeled with its alpha.
+     */
+    LabeledFeatureVector get(int row) {
+        LabeledFeatureVector doc = new LabeledFeatureVector();
+        doc.m_label = m_alphas[row];
+        doc.m_dims = Arrays.copyOfRange(m_dims, m_offsets[row], m_offsets[row + 1]);
+        doc.m_vals = new double[doc.m_dims.length];
+        for (int k = m_offsets[row]; k < m_offsets[row + 1]; k++) {
+            doc.m_vals[k - m_offsets[row]] = value(row, k);
+        }
+        return doc;
+    }
+
+    /**
+     * Appends a support vector in the SVM-light model file format, i.e. its alpha followed by its "dimension:value" pairs.
+     */
+    void append(int row, StringBuilder sb) {
+        sb.append(m_alphas[row]).append(' ');
+        for (int k = m_offsets[row]; k < m_offsets[row + 1]; k++) {
+            if (k > m_offsets[row]) {
+                sb.append(' ');
+            }
+            sb.append(m_dims[k]).append(':').append(value(row, k));
+        }
+        sb.append('\n');
+    }
+
+    /**
+     * Returns the number of bytes taken by the dimension, offset and alpha arrays.
+     */
+    long sharedBytes() {
+        return 4L * m_offsets.length + 4L * m_dims.length + 8L * m_alphas.length;
+    }
+
+    /**
+     * Support vector values in double precision.
+     */
+    static final class Float64 extends PackedSupportVectors {
+
+        final double[] m_vals;
+
+        /**
+         * Creates packed support vectors from their CSR arrays. The arrays are not copied.
+         *
+         * @param offsets the row offsets, one more than there are support vectors.
+         * @param dims    the dimensions of all support vectors, in ascending order within each row.
+         * @param vals    the values of all support vectors.
+         * @param alphas  the alphas (alpha * y) of all support vectors.
+         */
+        Float64(int[] offsets, int[] dims, double[] vals, double[] alphas) {
+            super(offsets, dims, vals.length, alphas);
+            m_vals = vals;
+        }
+
+        @Override
+        ModelPrecision precision() {
+            return ModelPrecision.FLOAT64;
+        }
+
+        @Override
+        double value(int row, int k) {
+            return m_vals[k];
+        }
+
+        @Override
+        double gather(int row, double[] dense) {
+            double result = 0.0;
+            for (int k = m_offsets[row], end = m_offsets[row + 1]; k < end; k++) {
+                result += m_vals[k] * dense[m_dims[k]];
+            }
+            return result;
+        }
+
+        @Override
+        double dot(int row, int[] dims, double[] vals) {
+            double result = 0.0;
+            int i = m_offsets[row], end = m_offsets[row + 1], j = 0;
+            while (i < end && j < dims.length) {
+                if (m_dims[i] > dims[j]) {
+                    j++;
+                } else if (m_dims[i] < dims[j]) {
+                    i++;
+                } else {
+                    result += m_vals[i++] * vals[j++];
+                }
+            }
+            return result;
+        }
+
+        @Override
+        long bytes() {
+            return sharedBytes() + 8L * m_vals.length;
+        }
+    }
+
+    /**
+     * Support vector values in single precision.
+     */
+    static final class Float32 extends PackedSupportVectors {
+
+        final float[] m_vals;
+
+        Float32(int[] offsets, int[] dims, float[] vals, double[] alphas) {
+            super(offsets, dims, vals.length, alphas);
+            m_vals = vals;
+        }
+
+        @Override
+        ModelPrecision precision() {
+            return ModelPrecision.FLOAT32;
+        }
+
+        @Override
+        double value(int row, int k) {
+            return m_vals[k];
+        }
+
+        @Override
+        double gather(int row, double[] dense) {
+            double result = 0.0;
+            for (int k = m_offsets[row], end = m_offsets[row + 1]; k < end; k++) {
+                result += m_vals[k] * dense[m_dims[k]];
+            }
+            return result;
+        }
+
+        @Override
+        double dot(int row, int[] dims, double[] vals) {
+            double result = 0.0;
+            int i = m_offsets[row], end = m_offsets[row + 1], j = 0;
+            while (i < end && j < dims.length) {
+                if (m_dims[i] > dims[j]) {
+                    j++;
+                } else if (m_dims[i] < dims[j]) {
+                    i++;
+                } else {
+                    result += m_vals[i++] * vals[j++];
+                }
+            }
+            return result;
+        }
+
+        @Override
+        long bytes() {
+            return sharedBytes() + 4L * m_vals.length;
+        }
+    }
+
+    /**
+     * Support vector values quantized to 8 bit integers with one scale per support vector: a value is {@code scale[row] * quantized[k]},
+     * where the scale maps the largest absolute value of the support vector onto 127.
+     */
+    static final class Int8 extends PackedSupportVectors {
+
+        final byte[] m_vals;
+
+        final float[] m_scales;
+
+        Int8(int[] offsets, int[] dims, byte[] vals, float[] scales, double[] alphas) {
+            super(offsets, dims, vals.length, alphas);
+            if (scales.length != alphas.length) {
+                throw new IllegalArgumentException("Expected one scale per support vector, got " + scales.length + " scales.");
+            }
+            m_vals = vals;
+            m_scales = scales;
+        }
+
+        @Override
+        ModelPrecision precision() {
+            return ModelPrecision.INT8;
+        }
+
+        @Override
+        double value(int row, int k) {
+            return (double) m_scales[row] * m_vals[k];
+        }
+
+        @Override
+        double squaredNorm(int row) {
+            double result = 0;
+            for (int k = m_offsets[row]; k < m_offsets[row + 1]; k++) {
+                result += m_vals[k] * m_vals[k];
+            }
+            return result * m_scales[row] * m_scales[row];
+        }
+
+        @Override
+        double gather(int row, double[] dense) {
+            double result = 0.0;
+            for (int k = m_offsets[row], end = m_offsets[row + 1]; k < end; k++) {
+                result += m_vals[k] * dense[m_dims[k]];
+            }
+            return result * m_scales[row];
+        }
+
+        @Override
+        double dot(int row, int[] dims, double[] vals) {
+            double result = 0.0;
+            int i = m_offsets[row], end = m_offsets[row + 1], j = 0;
+            while (i < end && j < dims.length) {
+                if (m_dims[i] > dims[j]) {
+                    j++;
+                } else if (m_dims[i] < dims[j]) {
+                    i++;
+                } else {
+                    result += m_vals[i++] * vals[j++];
+                }
+            }
+            return result * m_scales[row];
+        }
+
+        @Override
+        long bytes() {
+            return sharedBytes() + m_vals.length + 4L * m_scales.length;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+/**
+ * A seeded random Fourier feature map, which approximates the radial base kernel {@code exp(-gamma * |x - y|^2)} by the dot product
+ * of two finite-dimensional dense vectors {@code z(x) * z(y)} (Rahimi &amp; Recht, 2007). Each of the {@code D} output features is
+ * {@code sqrt(2 / D) * cos(w * x + b)}, where the entries of {@code w} are drawn from a normal distribution with variance
+ * {@code 2 * gamma} and {@code b} uniformly from {@code [0, 2 * pi)}.
+ * <p>
+ * The random numbers are derived from the seed, the feature id and the output feature by hashing, so a map is fully determined by its
+ * dimension, gamma and seed. The projection weights of the features up to the model's highest feature index are kept in single precision
+ * if they take at most {@link #MAX_CACHED_WEIGHTS} entries; the weights of all other features are computed when a vector is mapped.
+ *
+ * @author Anja Pilz
+ */
+public final class RandomFourierFeatures {
+
+    /**
+     * The largest number of projection weights kept in memory, i.e. 64 MB.
+     */
+    static final int MAX_CACHED_WEIGHTS = 1 << 24;
+
+    private final int m_dimension;
+
+    private final double m_gamma;
+
+    private final long m_seed;
+
+    private final double m_scale;
+
+    private final double[] m_phases;
+
+    /**
+     * The projection weights, feature-major: the weights of feature {@code dim} span {@code [dim * D, (dim + 1) * D)}.
+     */
+    private final float[] m_weights;
+
+    private final int m_cachedFeatures;
+
+    /**
+     * Creates a feature map.
+     *
+     * @param dimension   the number of output features {@code D}.
+     * @param gamma       the gamma of the approximated radial base kernel.
+     * @param seed        the seed of the random projection.
+     * @param highFeatIdx the highest feature id whose projection weights are computed up front.
+     */
+    public RandomFourierFeatures(int dimension, double gamma, long seed, long highFeatIdx) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("The dimension must be positive, got " + dimension + ".");
+        }
+        m_dimension = dimension;
+        m_gamma = gamma;
+        m_seed = seed;
+        m_scale = Math.sqrt(2.0 / dimension);
+        m_phases = new double[dimension];
+        for (int k = 0; k < dimension; k++) {
+            m_phases[k] = 2 * Math.PI * uniform(mix(m_seed ^ mix(-1L << 32 | k)));
+        }
+        long cached = highFeatIdx + 1;
+        m_cachedFeatures = cached * dimension <= MAX_CACHED_WEIGHTS ? (int) cached : 0;
+        m_weights = new float[m_cachedFeatures * dimension];
+        for (int dim = 0; dim < m_cachedFeatures; dim++) {
+            for (int k = 0; k < dimension; k++) {
+                m_weights[dim * dimension + k] = (float) weight(dim, k);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of output features.
+     */
+    public int getDimension() {
+        return m_dimension;
+    }
+
+    /**
+     * Returns the gamma of the approximated radial base kernel.
+     */
+    public double getGamma() {
+        return m_gamma;
+    }
+
+    /**
+     * Returns the seed of the random projection.
+     */
+    public long getSeed() {
+        return m_seed;
+    }
+
+    /**
+     * Maps a vector into the random feature space. The vector's factor is not applied. This method does not allocate.
+     *
+     * @param v      the vector to map.
+     * @param result a buffer with at least {@link #getDimension()} entries that receives the mapped vector.
+     */
+    public void map(FeatureVector v, double[] result) {
+        int[] dims = v.m_dims;
+        double[] vals = v.m_vals;
+        System.arraycopy(m_phases, 0, result, 0, m_dimension);
+        for (int j = 0; j < dims.length; j++) {
+            int dim = dims[j];
+            double val = vals[j];
+            if (dim >= 0 && dim < m_cachedFeatures) {
+                for (int k = 0, base = dim * m_dimension; k < m_dimension; k++) {
+                    result[k] += val * m_weights[base + k];
+                }
+            } else {
+                for (int k = 0; k < m_dimension; k++) {
+                    result[k] += val * (float) weight(dim, k);
+                }
+            }
+        }
+        for (int k = 0; k < m_dimension; k++) {
+            result[k] = m_scale * Math.cos(result[k]);
+        }
+    }
+
+    /**
+     * Maps a vector into the random feature space.
+     *
+     * @return the mapped vector, with {@link #getDimension()} entries.
+     */
+    public double[] map(FeatureVector v) {
+        double[] result = new double[m_dimension];
+        map(v, result);
+        return result;
+    }
+
+    /**
+     * Returns the number of bytes taken by the arrays of this map.
+     */
+    long bytes() {
+        return 8L * m_phases.length + 4L * m_weights.length;
+    }
+
+    /**
+     * Returns the projection weight of a feature for an output feature, a normal variate with variance {@code 2 * gamma} generated by
+     * the Box-Muller transform from two hashed uniform variates.
+     */
+    private double weight(int dim, int k) {
+        long hash = mix(m_seed ^ mix((long) dim << 32 | k));
+        double radius = Math.sqrt(-2 * Math.log(1 - uniform(hash)));
+        return Math.sqrt(2 * m_gamma) * radius * Math.cos(2 * Math.PI * uniform(mix(hash)));
+    }
+
+    /**
+     * Returns a uniform variate in {@code [0, 1)} from the upper 53 bits of a hash.
+     */
+    private static double uniform(long hash) {
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * The finalizer of the SplitMix64 generator, which turns consecutive numbers into well-distributed hashes.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
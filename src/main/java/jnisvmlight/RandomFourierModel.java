@@ -0,0 +1,130 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+/**
+ * A linear model over a {@link RandomFourierFeatures} map that approximates the decision function of a model with a radial base kernel.
+ * Scoring a vector costs one pass over the projection weights of its features and one cosine per output feature, independent of the
+ * number of support vectors of the original model.
+ *
+ * @author Anja Pilz
+ * @see SVMLightModel#toRandomFourierModel(int, long)
+ */
+public final class RandomFourierModel {
+
+    private final RandomFourierFeatures m_featureMap;
+
+    private final double[] m_weights;
+
+    private final double m_threshold;
+
+    /**
+     * Creates a model from the weights of the mapped features.
+     *
+     * @param featureMap the feature map.
+     * @param weights    one weight per output feature of the map.
+     * @param threshold  the threshold b.
+     */
+    RandomFourierModel(RandomFourierFeatures featureMap, double[] weights, double threshold) {
+        if (weights.length != featureMap.getDimension()) {
+            throw new IllegalArgumentException(
+                    "Expected " + featureMap.getDimension() + " weights for the feature map, got " + weights.length + ".");
+        }
+        m_featureMap = featureMap;
+        m_weights = weights;
+        m_threshold = threshold;
+    }
+
+    /**
+     * Returns the approximate decision value of a vector. The mapped vector is kept in the scoring buffers of the calling thread, see
+     * {@link ScoringScratch}, so this method does not allocate once the thread has scored a vector of a model of this size.
+     */
+    public double classify(FeatureVector v) {
+        return classify(v, ScoringScratch.get().features(m_weights.length));
+    }
+
+    /**
+     * Returns the approximate decision value of a vector, mapping it into the given buffer. This method does not allocate.
+     *
+     * @param v      the vector to classify.
+     * @param buffer a buffer with at least {@link RandomFourierFeatures#getDimension()} entries.
+     */
+    public double classify(FeatureVector v, double[] buffer) {
+        m_featureMap.map(v, buffer);
+        double sum = 0;
+        for (int k = 0; k < m_weights.length; k++) {
+            sum += m_weights[k] * buffer[k];
+        }
+        return v.m_factor * sum - m_threshold;
+    }
+
+    /**
+     * Returns the approximate decision values of a batch of vectors.
+     */
+    public double[] classify(FeatureVector[] vectors) {
+        double[] buffer = ScoringScratch.get().features(m_weights.length);
+        double[] result = new double[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            result[i] = classify(vectors[i], buffer);
+        }
+        return result;
+    }
+
+    /**
+     * Compares the approximate decision values of this model with the exact ones of the model it was converted from.
+     *
+     * @param exact      the exact model.
+     * @param validation the validation vectors.
+     * @return the deviation of this model's decision values from the exact ones.
+     */
+    public ApproximationReport deviationFrom(SVMLightModel exact, FeatureVector[] validation) {
+        return ApproximationReport.compare(exact.classify(validation), classify(validation));
+    }
+
+    /**
+     * Returns the feature map of this model.
+     */
+    public RandomFourierFeatures getFeatureMap() {
+        return m_featureMap;
+    }
+
+    /**
+     * Returns a copy of the weights of the mapped features.
+     */
+    public double[] getWeights() {
+        return m_weights.clone();
+    }
+
+    /**
+     * Returns the threshold b.
+     */
+    public double getThreshold() {
+        return m_threshold;
+    }
+
+    /**
+     * Returns the number of bytes taken by the weights and the feature map of this model, without object headers.
+     */
+    public long getMemoryBytes() {
+        return 8L * m_weights.length + m_featureMap.bytes();
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compresses the support vector set of an {@link SVMLightModel} after training.
+ * <ul>
+ * <li>Identical support vectors are merged by adding up their alphas, and support vectors with an alpha of zero are dropped. Both steps
+ * do not change the decision function.</li>
+ * <li>A linear model is replaced by a single support vector, its weight vector with an alpha of 1, which is exact as well.</li>
+ * <li>Polynomial and radial base models keep the support vectors chosen by a pivoted, incomplete Cholesky decomposition of the kernel
+ * matrix: the next support vector is the one with the largest absolute alpha times its distance in feature space from the span of those
+ * chosen before, so that near-duplicates of a chosen support vector are not chosen again. The alphas of the kept support vectors are
+ * refitted so that they approximate the full weight vector in feature space as closely as possible, i.e. by solving
+ * {@code K_SS * beta = K_S * alpha}, where {@code S} are the kept support vectors. Support vectors close to a kept one thereby hand their
+ * weight over to it, which merges near-duplicates.</li>
+ * <li>Sigmoid kernels are not positive definite, so they keep the support vectors with the largest absolute alphas, with their original
+ * alphas.</li>
+ * </ul>
+ *
+ * @author Anja Pilz
+ */
+final class ReducedSetCompression {
+
+    /**
+     * The largest number of kept support vectors whose alphas are refitted. The refit solves a dense linear system of this size; larger
+     * sets keep their original alphas.
+     */
+    static final int MAX_REFIT_SIZE = 4096;
+
+    /**
+     * The regularization added to the diagonal of the kernel matrix, relative to its largest diagonal entry, so that the refit also works
+     * for kept support vectors that are nearly linearly dependent in feature space.
+     */
+    private static final double RIDGE = 1e-10;
+
+    /**
+     * The largest number of entries of the partial Cholesky factor computed to choose the kept support vectors, i.e. 128 MB. If the
+     * factor would be larger, the remaining support vectors are chosen by their absolute alpha.
+     */
+    private static final int MAX_PIVOT_ENTRIES = 1 << 24;
+
+    private final SVMLightModel m_model;
+
+    private final long m_kType;
+
+    /**
+     * The distinct support vectors with a non-zero alpha, in order of decreasing absolute alpha.
+     */
+    private final LabeledFeatureVector[] m_supportVectors;
+
+    ReducedSetCompression(SVMLightModel model) {
+        m_model = model;
+        m_kType = model.kernelType();
+        m_supportVectors = merge(model);
+    }
+
+    /**
+     * Returns a model with at most {@code size} support vectors.
+     */
+    SVMLightModel compress(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("A compressed model needs at least one support vector, got a target size of " + size + ".");
+        }
+        if (m_kType == KernelParam.LINEAR) {
+            return m_model.withSupportVectors(new LabeledFeatureVector[]{m_model.linearWeights().toSupportVector()});
+        }
+        size = Math.min(size, m_supportVectors.length);
+        return reduce(order(size), size);
+    }
+
+    /**
+     * Returns the model with the fewest support vectors whose decision values deviate from the original ones by at most
+     * {@code maxDeviation} on the validation vectors. The number of support vectors is doubled until the budget is met and then narrowed
+     * down by bisection.
+     */
+    SVMLightModel compress(double maxDeviation, FeatureVector[] validation) {
+        if (m_kType == KernelParam.LINEAR || m_supportVectors.length == 0) {
+            return compress(1);
+        }
+        int[] order = order(MAX_REFIT_SIZE);
+        int upper = 1;
+        // the decision values of the original model are computed once for all candidates
+        double[] reference = m_model.classify(validation);
+        SVMLightModel best = reduce(order, upper);
+        while (upper < m_supportVectors.length && maxDeviation(best, reference, validation) > maxDeviation) {
+            upper = Math.min(m_supportVectors.length, upper * 2);
+            best = reduce(order, upper);
+        }
+        int lower = upper / 2;
+        while (upper - lower > 1) {
+            int mid = (lower + upper) >>> 1;
+            SVMLightModel candidate = reduce(order, mid);
+            if (maxDeviation(candidate, reference, validation) <= maxDeviation) {
+                upper = mid;
+                best = candidate;
+            } else {
+                lower = mid;
+            }
+        }
+        return best;
+    }
+
+    private static double maxDeviation(SVMLightModel candidate, double[] reference, FeatureVector[] validation) {
+        return ApproximationReport.compare(reference, candidate.classify(validation)).getMaxDeviation();
+    }
+
+    /**
+     * Returns the order in which support vectors are kept. For polynomial and radial base kernels the first {@code pivots} are chosen by a
+     * pivoted Cholesky decomposition of the kernel matrix, the rest by their absolute alpha.
+     */
+    private int[] order(int pivots) {
+        int n = m_supportVectors.length;
+        int[] order = new int[n];
+        boolean[] chosen = new boolean[n];
+        int count = 0;
+        if (m_kType == KernelParam.POLYNOMIAL || m_kType == KernelParam.RBF) {
+            Kernel kernel = m_model.getKernel();
+            pivots = Math.min(Math.min(pivots, n), MAX_PIVOT_ENTRIES / Math.max(1, n));
+            double[][] factor = new double[pivots][];
+            double[] residual = new double[n];
+            for (int i = 0; i < n; i++) {
+                residual[i] = kernel.evaluate(m_supportVectors[i], m_supportVectors[i]);
+            }
+            for (int j = 0; j < pivots; j++) {
+                int pivot = -1;
+                double best = 0;
+                for (int i = 0; i < n; i++) {
+                    double score = chosen[i] ? 0 : Math.abs(m_supportVectors[i].m_label) * Math.sqrt(Math.max(0, residual[i]));
+                    if (score > best) {
+                        best = score;
+                        pivot = i;
+                    }
+                }
+                if (pivot < 0) {
+                    break;
+                }
+                chosen[pivot] = true;
+                order[count++] = pivot;
+                double norm = Math.sqrt(residual[pivot]);
+                factor[j] = new double[n];
+                for (int i = 0; i < n; i++) {
+                    if (!chosen[i]) {
+                        double value = kernel.evaluate(m_supportVectors[i], m_supportVectors[pivot]);
+                        for (int t = 0; t < j; t++) {
+                            value -= factor[t][i] * factor[t][pivot];
+                        }
+                        factor[j][i] = value / norm;
+                        residual[i] -= factor[j][i] * factor[j][i];
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (!chosen[i]) {
+                order[count++] = i;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Returns the model made of the first {@code size} support vectors in {@code order}, with refitted alphas where possible.
+     */
+    private SVMLightModel reduce(int[] order, int size) {
+        LabeledFeatureVector[] kept = new LabeledFeatureVector[size];
+        for (int i = 0; i < size; i++) {
+            LabeledFeatureVector sv = m_supportVectors[order[i]];
+            // support vectors may have no features, which the public constructor rejects
+            kept[i] = new LabeledFeatureVector();
+            kept[i].m_label = sv.m_label;
+            kept[i].m_dims = sv.m_dims;
+            kept[i].m_vals = sv.m_vals;
+        }
+        if (size < m_supportVectors.length && size <= MAX_REFIT_SIZE &&
+                (m_kType == KernelParam.POLYNOMIAL || m_kType == KernelParam.RBF)) {
+            double[] alphas = refit(kept);
+            if (alphas != null) {
+                for (int i = 0; i < size; i++) {
+                    kept[i].m_label = alphas[i];
+                }
+            }
+        }
+        return m_model.withSupportVectors(kept);
+    }
+
+    /**
+     * Solves {@code K_SS * beta = K_S * alpha} for the alphas {@code beta} of the kept support vectors. The right hand side is the weighted
+     * kernel sum of the original model at each kept support vector, i.e. its decision value plus the threshold.
+     *
+     * @return the refitted alphas, or null if the kernel matrix of the kept support vectors is not positive definite.
+     */
+    private double[] refit(LabeledFeatureVector[] kept) {
+        int n = kept.length;
+        FeatureVector[] queries = new FeatureVector[n];
+        for (int i = 0; i < n; i++) {
+            queries[i] = new FeatureVector();
+            queries[i].m_dims = kept[i].m_dims;
+            queries[i].m_vals = kept[i].m_vals;
+        }
+        double[] beta = m_model.classify(queries);
+        for (int i = 0; i < n; i++) {
+            beta[i] += m_model.getThreshold();
+        }
+        Kernel kernel = m_model.getKernel();
+        double[] matrix = new double[n * n];
+        double maxDiagonal = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                matrix[i * n + j] = kernel.evaluate(queries[i], queries[j]);
+            }
+            maxDiagonal = Math.max(maxDiagonal, matrix[i * n + i]);
+        }
+        for (int i = 0; i < n; i++) {
+            matrix[i * n + i] += RIDGE * maxDiagonal;
+        }
+        return cholesky(matrix, n) ? solve(matrix, n, beta) : null;
+    }
+
+    /**
+     * Replaces the lower triangle of a symmetric matrix by its Cholesky factor {@code L} with {@code A = L * L^T}.
+     *
+     * @return false if the matrix is not positive definite.
+     */
+    static boolean cholesky(double[] matrix, int n) {
+        for (int j = 0; j < n; j++) {
+            double diagonal = matrix[j * n + j];
+            for (int k = 0; k < j; k++) {
+                diagonal -= matrix[j * n + k] * matrix[j * n + k];
+            }
+            if (!(diagonal > 0)) {
+                return false;
+            }
+            double pivot = Math.sqrt(diagonal);
+            matrix[j * n + j] = pivot;
+            for (int i = j + 1; i < n; i++) {
+                double sum = matrix[i * n + j];
+                for (int k = 0; k < j; k++) {
+                    sum -= matrix[i * n + k] * matrix[j * n + k];
+                }
+                matrix[i * n + j] = sum / pivot;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solves {@code L * L^T * x = b} in place of {@code b}, given the Cholesky factor {@code L} in the lower triangle of {@code matrix}.
+     */
+    static double[] solve(double[] matrix, int n, double[] b) {
+        for (int i = 0; i < n; i++) {
+            double sum = b[i];
+            for (int k = 0; k < i; k++) {
+                sum -= matrix[i * n + k] * b[k];
+            }
+            b[i] = sum / matrix[i * n + i];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = b[i];
+            for (int k = i + 1; k < n; k++) {
+                sum -= matrix[k * n + i] * b[k];
+            }
+            b[i] = sum / matrix[i * n + i];
+        }
+        return b;
+    }
+
+    /**
+     * Merges identical support vectors of a model, drops those with an alpha of zero and orders the rest by decreasing absolute alpha.
+     */
+    private static LabeledFeatureVector[] merge(SVMLightModel model) {
+        Map<FeatureKey, LabeledFeatureVector> distinct = new HashMap<>();
+        List<LabeledFeatureVector> order = new ArrayList<>();
+        for (int i = 0; i < model.getNumberOfSupportVectors(); i++) {
+            LabeledFeatureVector sv = model.getSupportVector(i);
+            LabeledFeatureVector merged = distinct.putIfAbsent(new FeatureKey(sv), sv);
+            if (merged != null) {
+                merged.m_label += sv.m_label;
+            } else {
+                order.add(sv);
+            }
+        }
+        return order.stream().filter(sv -> sv.m_label != 0).sorted((sv1, sv2) -> Double.compare(Math.abs(sv2.m_label),
+                Math.abs(sv1.m_label))).toArray(LabeledFeatureVector[]::new);
+    }
+}
@@ -21,40 +21,75 @@
 
 package jnisvmlight;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.Buffer;
+import java.nio.ByteOrder;
 import java.nio.file.Path;
 import java.text.ParseException;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * The main interface class that transfers the training data to the SVM-light library by a native call. Optionally takes as input an
  * individually modified set of training parameters or an array of string parameters that exactly simulate the command line input parameters
  * used by the SVM-light binaries. This class can also be used for native classification calls.
+ * <p>
+ * Each trained model is kept in its own {@link NativeModel}, so several models can be trained and classified in parallel, also by the
+ * same instance. Training vectors are sorted in place, see {@link #setSortInputVectors(boolean)}, so parallel training runs should not
+ * share unsorted vectors.
+ * <p>
+ * The native model of a trained model, with the training documents it refers to, stays in native memory until it is closed with
+ * {@code model.getNativeModel().close()}, or until the model has been garbage collected, see {@link NativeModel}. Services that train
+ * repeatedly should close the native models they no longer classify with rather than wait for the garbage collector.
  *
  * @author Tom Crecelius & Martin Theobald, including a bug fix by George Shaw (MIT)
  * @author Anja Pilz
  */
 public class SVMLightInterface {
     private static final Logger LOGGER = LoggerFactory.getLogger(SVMLightInterface.class);
+    /**
+     * The system property with the path of the native library to load instead of the one in target/native.
+     */
+    public static final String LIBRARY_PROPERTY = "jnisvmlight.library";
     /**
      * Apply an in-place quicksort prior to each native training call to SVM-light. SVM-light requires each input feature vector to be
      * sorted in ascending order of dimensions. Disable this option if you are sure to provide sorted vectors already.
+     *
+     * @deprecated this is only the default for new instances, set the option per instance with {@link #setSortInputVectors(boolean)}.
      */
+    @Deprecated
     public static boolean SORT_INPUT_VECTORS = true;
 
     static {
+        loadLibrary();
+    }
+
+    /**
+     * Loads the native SVM-light library, if it has not been loaded yet. Classes with native methods call this in their static
+     * initializer, so that they can be used without loading this class first.
+     * <p>
+     * The library is the one the maven build compiles into target/native for the current platform, unless the system property
+     * {@value #LIBRARY_PROPERTY} gives the path of another build of it.
+     */
+    static void loadLibrary() {
         // TODO: this not good practice. Either the client code should issue this statement accordingly or
         // the path must be set more elegantly.
-        System.load(System.getProperty("user.dir") + "/lib/svmlight-64.dll");
+        String library = System.getProperty(LIBRARY_PROPERTY);
+        if (library == null) {
+            library = System.getProperty("user.dir") + "/target/native/" + System.mapLibraryName("svmlight");
+        }
+        System.load(new File(library).getAbsolutePath());
     }
 
     /**
      * Reads a set of labeled training vectors from a path. The format is compatible to the SVM-light training files.
+     * The file is memory-mapped and parsed from its bytes; lines in an uncommon format are parsed like single strings.
      *
      * @param path             the path to the file.
      * @param numOfLinesToSkip the number of lines in the file that we should ignore.
@@ -64,70 +99,36 @@ public class SVMLightInterface {
      */
     //@SuppressWarnings({"unchecked", "rawtypes"})
     public static LabeledFeatureVector[] fromPath(Path path, int numOfLinesToSkip) throws ParseException {
+        return fromPath(path, numOfLinesToSkip, null);
+    }
+
+    /**
+     * Reads a set of labeled training vectors from a path like {@link #fromPath(Path, int)}, but parses the file in parallel. The file is
+     * split into chunks of whole lines, which are parsed by separate tasks and combined in their original order. Lines are skipped and
+     * numbered in errors as when reading sequentially.
+     *
+     * @param path             the path to the file.
+     * @param numOfLinesToSkip the number of lines in the file that we should ignore.
+     * @param executor         the executor to parse the chunks on, e.g. {@link java.util.concurrent.ForkJoinPool#commonPool()}, or null to
+     *                         read the file on the calling thread.
+     * @return an array of {@link LabeledFeatureVector}.
+     * @throws ParseException
+     * @throws IllegalArgumentException, thrown if a line does not match the expected format (e.g. contains less than two entries).
+     */
+    public static LabeledFeatureVector[] fromPath(Path path, int numOfLinesToSkip, ExecutorService executor) throws ParseException {
 
         LOGGER.info("Reading from {}", path);
+        long start = Metrics.start();
         List<LabeledFeatureVector> data = Lists.newArrayList();
         LabeledFeatureVector[] trainingData = null;
         try {
-            List<String> lines = Files.readAllLines(path);
-            int cnt = 0;
-            for (String line : lines) {
-                if (line.startsWith("#")) {
-                    // Skip lines indicated as a comment.
-                    continue;
-                }
-                cnt++;
-                if (cnt <= numOfLinesToSkip) {
-                    continue;
-                }
-                String tokens[] = line.trim().split("[ \\t\\n\\x0B\\f\\r\\[\\]]");
-                String queryId = null;
-                if (tokens.length < 2) {
-                    throw new IllegalArgumentException("Each line must contain a label and a feature");
-                }
-                String label = tokens[0];
-                int featureStart = 1;
-                if (tokens[1].startsWith("qid")) {
-                    queryId = tokens[1].substring(tokens[1].indexOf(":") + 1, tokens[1].length());
-                    featureStart = 2;
-                }
-
-                List<String> dimensionsList = Lists.newArrayList();
-                List<String> valuesList = Lists.newArrayList();
-                for (int tokenCounter = featureStart; tokenCounter < tokens.length; tokenCounter++) {
-                    String dimensionValue = tokens[tokenCounter];
-                    if (dimensionValue.trim().startsWith("#")) {
-                        // this could be a comment at the end of the line.
-                        break;
-                    }
-
-                    int idx = dimensionValue.indexOf(':');
-                    if (idx >= 0) {
-                        dimensionsList.add(dimensionValue.substring(0, idx));
-                        valuesList.add(dimensionValue.substring(idx + 1, dimensionValue.length()));
-                    } else {
-                        throw new ParseException(
-                                "Parse error in FeatureVector of file '" + path.toString() + "' at line: " + cnt + ", token: " +
-                                        tokenCounter + ". Could not estimate a \"int:double\" pair ?! " + path +
-                                        " contains a wrongly defined feature vector!", 0);
-                    }
-                }
-                if (dimensionsList.size() > 0) {
-                    double labelValue = Double.parseDouble(label);
-                    int[] dimensions = dimensionsList.stream().mapToInt(Integer::parseInt).toArray();
-                    double[] values = valuesList.stream().mapToDouble(Double::parseDouble).toArray();
-                    LabeledFeatureVector labeledFeatureVector = new LabeledFeatureVector(labelValue, dimensions, values);
-                    if (queryId != null) {
-                        labeledFeatureVector.setQueryId(Integer.parseInt(queryId));
-                    }
-                    data.add(labeledFeatureVector);
-                }
-
-            }
+            int cnt = executor == null ? DocumentReader.read(path, numOfLinesToSkip, data::add) :
+                    DocumentReader.read(path, numOfLinesToSkip, data::add, executor);
             if (data.size() == 0) {
                 throw new IllegalArgumentException("No labeled features found within " + cnt + " lines of file '" + path + "'.");
             }
             trainingData = data.toArray(new LabeledFeatureVector[data.size()]);
+            Metrics.record(Operation.PARSE_DOCUMENTS, start, trainingData.length);
         } catch (IOException e) {
             LOGGER.error(e.getMessage(), e);
         }
@@ -135,20 +136,80 @@ public class SVMLightInterface {
     }
 
     /**
-     * Internal usage...
+     * The parameters of the last training run, for {@link #getTrainingParameters()} only. Training runs use their own parameters, so that
+     * several models can be trained in parallel.
      */
-    protected TrainingParameters m_tp;
+    protected volatile TrainingParameters m_tp;
+
+    private volatile boolean m_sortInputVectors = SORT_INPUT_VECTORS;
+
+    private volatile boolean m_trainingStopped;
+
+    private volatile NativeModel m_nativeModel;
 
     /**
-     * Performs a classification step as a native call to SVM-light. If this method is used exclusively, no additional SVMLightModel object
-     * has to be kept in the Java runtime process.
+     * Performs a classification step as a native call to SVM-light, with the model of the last training run of this instance. If this
+     * method is used exclusively, no additional SVMLightModel object has to be kept in the Java runtime process. Use
+     * {@link SVMLightModel#getNativeModel()} to classify with one of several models trained by this instance.
+     *
+     * @throws IllegalStateException if no model has been trained yet.
      */
-    public native double classifyNative(FeatureVector doc);
+    public double classifyNative(FeatureVector doc) {
+        NativeModel nativeModel = m_nativeModel;
+        if (nativeModel == null) {
+            throw new IllegalStateException("No model has been trained for native classification.");
+        }
+        return nativeModel.classify(doc);
+    }
 
+    /**
+     * Classifies a batch of vectors in compressed sparse row (CSR) layout with one native call, using the model of the last training run of
+     * this instance. See {@link NativeModel#classify(int[], int[], double[], double[])}.
+     *
+     * @throws IllegalStateException if no model has been trained yet.
+     */
+    public void classifyNative(int[] offsets, int[] dims, double[] values, double[] results) {
+        NativeModel nativeModel = m_nativeModel;
+        if (nativeModel == null) {
+            throw new IllegalStateException("No model has been trained for native classification.");
+        }
+        nativeModel.classify(offsets, dims, values, results);
+    }
+
+    /**
+     * @return the parameters of the last training run of this instance.
+     */
     public TrainingParameters getTrainingParameters() {
         return m_tp;
     }
 
+    /**
+     * @return whether the last training run of this instance was stopped by its {@link TrainingListener} or its deadline, see
+     * {@link LearnParam#deadline_millis}, before the optimizer converged.
+     * @deprecated the last run of an instance that trains in parallel is not known to the caller, use
+     * {@link SVMLightModel#isTrainingStopped()} of the trained model.
+     */
+    @Deprecated
+    public boolean isTrainingStopped() {
+        return m_trainingStopped;
+    }
+
+    /**
+     * @return whether feature vectors are sorted before training, see {@link #setSortInputVectors(boolean)}.
+     */
+    public boolean isSortInputVectors() {
+        return m_sortInputVectors;
+    }
+
+    /**
+     * Apply an in-place quicksort prior to each native training call to SVM-light. SVM-light requires each input feature vector to be
+     * sorted in ascending order of dimensions. Disable this option if you are sure to provide sorted vectors already. Defaults to
+     * {@link #SORT_INPUT_VECTORS}.
+     */
+    public void setSortInputVectors(boolean sortInputVectors) {
+        m_sortInputVectors = sortInputVectors;
+    }
+
     private void quicksort(int[] dims, double[] vals, int low, int high) {
         if (low >= high) {
             return;
@@ -192,24 +253,128 @@ public class SVMLightInterface {
         }
     }
 
-    private native SVMLightModel trainmodel(LabeledFeatureVector[] traindata, TrainingParameters p);
+    private native SVMLightModel trainmodel(LabeledFeatureVector[] traindata, TrainingParameters p, TrainingMonitor monitor,
+                                            NativeModel.Handle handle);
 
     public SVMLightModel trainModel(LabeledFeatureVector[] trainingData) {
-        this.m_tp = new TrainingParameters();
-        return this.trainmodel(trainingData, this.m_tp);
+        return trainModel(trainingData, new TrainingParameters());
     }
 
     public SVMLightModel trainModel(LabeledFeatureVector[] trainingData, String[] argv) {
-        this.m_tp = new TrainingParameters(argv);
-        return this.trainmodel(trainingData, this.m_tp);
+        return trainModel(trainingData, new TrainingParameters(argv));
     }
 
     public SVMLightModel trainModel(LabeledFeatureVector[] trainingData, TrainingParameters tp) {
-        this.m_tp = tp;
-        if (SORT_INPUT_VECTORS) {
+        if (m_sortInputVectors) {
             sort(trainingData);
         }
-        return trainmodel(trainingData, m_tp);
+        return train(trainingData.length, tp, (monitor, handle) -> trainmodel(trainingData, tp, monitor, handle));
+    }
+
+    /**
+     * Trains a model on documents in compressed sparse row (CSR) layout: document {@code i} has the features {@code offsets[i]} to
+     * {@code offsets[i + 1] - 1} of {@code dims} and {@code values}. The arrays are pinned and SVM-light's documents are built straight
+     * from them, without any JNI calls per document, which saves most of the setup time of large trainings with many short documents. The
+     * features of each document are sorted in place like those of {@link LabeledFeatureVector}s, see {@link #setSortInputVectors(boolean)}.
+     *
+     * @param labels  the labels of the documents.
+     * @param qids    the query ids of the documents, or null if there are none.
+     * @param offsets the offsets of the features of each document, starting with 0, followed by the number of features.
+     * @param dims    the dimensions of the features.
+     * @param values  the values of the features.
+     * @param tp      the training parameters.
+     * @return the trained model.
+     * @throws IllegalArgumentException if the offsets are not ascending or the dimensions of a document are not at least 1 and, after
+     *                                  the optional sorting, strictly ascending.
+     */
+    public SVMLightModel trainModel(double[] labels, int[] qids, int[] offsets, int[] dims, double[] values, TrainingParameters tp) {
+        Preconditions.checkArgument(offsets.length == labels.length + 1, "There must be one offset more than labels!");
+        Preconditions.checkArgument(qids == null || qids.length == labels.length, "There must be as many query ids as labels!");
+        Preconditions.checkArgument(dims.length == values.length, "The number of dimensions and values must be the same!");
+        Preconditions.checkArgument(offsets[0] == 0 && offsets[labels.length] <= dims.length, "The offsets exceed the features!");
+        for (int i = 0; i < labels.length; i++) {
+            Preconditions.checkArgument(offsets[i] <= offsets[i + 1], "The offsets must be in ascending order!");
+            if (m_sortInputVectors) {
+                quicksort(dims, values, offsets[i], offsets[i + 1] - 1);
+            }
+            checkDimensions(dims, offsets[i], offsets[i + 1], i);
+        }
+        return train(labels.length, tp, (monitor, handle) ->
+                trainmodelarrays(labels, qids, offsets, dims, values, tp, monitor, handle));
+    }
+
+    /**
+     * Trains a model on a {@link Dataset}. SVM-light's documents are built straight from the mapped file, which saves the copies of
+     * {@link Dataset#toArray()} and most of the setup time of the training.
+     *
+     * @param dataset the documents.
+     * @param tp      the training parameters.
+     * @return the trained model.
+     * @throws IllegalArgumentException if the dimensions of a document are not at least 1 and strictly ascending.
+     */
+    public SVMLightModel trainModel(Dataset dataset, TrainingParameters tp) {
+        if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+            // the native library reads the little-endian columns as they are
+            return trainModel(dataset.toArray(), tp);
+        }
+        dataset.checkDimensions();
+        return train(dataset.size(), tp, (monitor, handle) ->
+                trainmodelbuffers(dataset.size(), dataset.labels(), dataset.queryIds(), dataset.offsets(), dataset.segmentStarts(),
+                        dataset.dimensionSegments(), dataset.valueSegments(), tp, monitor, handle));
+    }
+
+    /**
+     * Checks that the dimensions {@code from} to {@code to - 1} of a document are at least 1 and strictly ascending, as SVM-light requires;
+     * the native library stops the process on other documents.
+     *
+     * @throws IllegalArgumentException if they are not.
+     */
+    static void checkDimensions(int[] dims, int from, int to, int doc) {
+        for (int k = from; k < to; k++) {
+            if (dims[k] < 1 || (k > from && dims[k - 1] >= dims[k])) {
+                throw new IllegalArgumentException("The dimensions of document " + doc + " must be at least 1 and strictly ascending!");
+            }
+        }
+    }
+
+    private native SVMLightModel trainmodelarrays(double[] labels, int[] qids, int[] offsets, int[] dims, double[] values,
+                                                  TrainingParameters p, TrainingMonitor monitor, NativeModel.Handle handle);
+
+    private native SVMLightModel trainmodelbuffers(int size, Buffer labels, Buffer qids, Buffer offsets, int[] segmentStarts,
+                                                   Buffer[] dims, Buffer[] values, TrainingParameters p, TrainingMonitor monitor,
+                                                   NativeModel.Handle handle);
+
+    /**
+     * One of the native training calls.
+     */
+    private interface NativeTraining {
+        SVMLightModel train(TrainingMonitor monitor, NativeModel.Handle handle);
+    }
+
+    private SVMLightModel train(int size, TrainingParameters tp, NativeTraining training) {
+        long start = Metrics.start();
+        long deadline = tp.getLearningParameters().deadline_millis;
+        TrainingMonitor monitor = tp.getTrainingListener() != null || deadline > 0 ?
+                new TrainingMonitor(tp.getTrainingListener(), deadline) : null;
+        NativeModel nativeModel = new NativeModel();
+        SVMLightModel model = training.train(monitor, nativeModel.handle());
+        boolean stopped = monitor != null && monitor.isStopped();
+        model.setNativeModel(nativeModel);
+        model.setTrainingStopped(stopped);
+        m_tp = tp;
+        m_trainingStopped = stopped;
+        if (monitor != null && monitor.getFailure() != null) {
+            // the model is not handed out, so its native memory is released right away
+            nativeModel.close();
+            throw monitor.getFailure();
+        }
+        // the native model of the previous run stays with its SVMLightModel, it is released when that closes it or is garbage collected
+        m_nativeModel = nativeModel;
+        if (stopped) {
+            LOGGER.warn("Training was stopped before the optimizer converged.");
+        }
+        Metrics.record(Operation.TRAIN_MODEL, start, size);
+        return model;
     }
 
 }
@@ -22,9 +22,19 @@
 package jnisvmlight;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * SVM classifier model returned by SVM-light.
@@ -34,12 +44,23 @@ import java.text.ParseException;
  */
 public class SVMLightModel {
 
+    /**
+     * The smallest number of vectors a worker classifies in one go during batch classification. Smaller ranges are not split any further.
+     */
+    private static final int MIN_BATCH_CHUNK = 64;
+
+    /**
+     * The number of chunks per available worker a batch is split into, so that workers finishing early can pick up remaining work.
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+
     /**
      * Reads an SVM-light model from a URL and creates an SVMLightModel object in Java. The format is compatible to the SVM-light model
      * files.
      */
     public static SVMLightModel fromPath(Path file) throws ParseException {
 
+        long start = Metrics.start();
         LabeledFeatureVector[] lfv;
 
         String format;
@@ -114,20 +135,45 @@ public class SVMLightModel {
                             "'. Not an svmlight-model file ?!", 0);
         }
 
-        lfv = SVMLightInterface.fromPath(Paths.get(file.toString()), linecnt);
+        // a model without support vectors has no lines after its header
+        lfv = numSupVecs > 1 ? SVMLightInterface.fromPath(Paths.get(file.toString()), linecnt) : new LabeledFeatureVector[0];
 
         SVMLightModel model =
                 new SVMLightModel(format, kType, dParam, gParam, sParam, rParam, uParam, highFeatIdx, trainDocs, numSupVecs, threshold,
                         lfv);
 
-        if (kType == 0) {
-            model.addWeightVectorToLinearModel();
-        }
+        Metrics.record(Operation.LOAD_MODEL, start, lfv.length);
+        return model;
+    }
 
+    /**
+     * Reads a model from a binary model file, see {@link MappedModel}. The file is memory-mapped and its support vectors and linear
+     * weights are copied in bulk, without parsing.
+     *
+     * @param file the file written by {@link #writeBinaryModelToFile(Path)}.
+     * @return the model, in the precision it was written in.
+     * @throws IOException if the file cannot be read or is not a valid binary model file.
+     */
+    public static SVMLightModel fromBinaryPath(Path file) throws IOException {
+        long start = Metrics.start();
+        SVMLightModel model = MappedModel.open(file).toModel();
+        Metrics.record(Operation.LOAD_MODEL, start, model.getNumberOfSupportVectors());
         return model;
     }
 
-    private LabeledFeatureVector[] m_docs;
+    /**
+     * Reads an SVM-light model from a file and stores its support vectors and weights in the given precision. The model is read in double
+     * precision first, so loading needs as much memory as {@link #fromPath(Path)}.
+     *
+     * @see #withPrecision(ModelPrecision)
+     */
+    public static SVMLightModel fromPath(Path file, ModelPrecision precision) throws ParseException {
+        return fromPath(file).withPrecision(precision);
+    }
+
+    private CompiledKernelModel m_compiled;
+
+    private PackedSupportVectors m_supportVectors;
 
     private long m_dParam;
 
@@ -141,6 +187,16 @@ public class SVMLightModel {
 
     private long m_kType;
 
+    private LinearWeights m_linearWeights;
+
+    /**
+     * The weights of a linear model, if they are stored densely in double precision, as the array the model classifies with; otherwise
+     * null.
+     *
+     * @deprecated linear weights may be stored sparsely or in a lower precision, use {@link #getLinearWeights()} or
+     * {@link #getLinearWeight(int)}.
+     */
+    @Deprecated
     protected double[] m_linWeights;
 
     private long m_numSupVecs;
@@ -155,8 +211,62 @@ public class SVMLightModel {
 
     private String m_uParam;
 
+    private NativeModel m_nativeModel;
+
+    private boolean m_trainingStopped;
+
     protected SVMLightModel(String format, long ktype, long dparm, double gparm, double sparm, double rparm, String uparm, long hfi,
                             long tdocs, long nsv, double threshold, LabeledFeatureVector[] docs) {
+        this(format, ktype, dparm, gparm, sparm, rparm, uparm, hfi, tdocs, nsv, threshold, PackedSupportVectors.pack(docs));
+    }
+
+    /**
+     * Creates a copy of a model with its support vectors and weights stored in the given precision.
+     */
+    private SVMLightModel(SVMLightModel model, ModelPrecision precision) {
+        m_format = model.m_format;
+        m_kType = model.m_kType;
+        m_dParam = model.m_dParam;
+        m_gParam = model.m_gParam;
+        m_sParam = model.m_sParam;
+        m_rParam = model.m_rParam;
+        m_uParam = model.m_uParam;
+        m_highFeatIdx = model.m_highFeatIdx;
+        m_trainDocs = model.m_trainDocs;
+        m_numSupVecs = model.m_numSupVecs;
+        m_threshold = model.m_threshold;
+        m_trainingStopped = model.m_trainingStopped;
+        m_kernel = model.m_kernel;
+        m_supportVectors = model.m_supportVectors.convert(precision);
+        if (model.m_linearWeights != null) {
+            m_linearWeights = model.m_linearWeights.convert(precision);
+            m_linWeights = denseWeights(m_linearWeights);
+        } else {
+            m_compiled = new CompiledKernelModel((int) m_kType, m_supportVectors, m_highFeatIdx, m_dParam, m_gParam, m_sParam, m_rParam);
+        }
+    }
+
+    /**
+     * Creates a model from support vectors in CSR layout, as returned by the native training call. Row {@code i} of the support vectors
+     * spans {@code [offsets[i], offsets[i + 1])} in {@code dims} and {@code vals}. The arrays are not copied.
+     */
+    protected SVMLightModel(String format, long ktype, long dparm, double gparm, double sparm, double rparm, String uparm, long hfi,
+                            long tdocs, long nsv, double threshold, int[] offsets, int[] dims, double[] vals, double[] alphas) {
+        this(format, ktype, dparm, gparm, sparm, rparm, uparm, hfi, tdocs, nsv, threshold,
+                new PackedSupportVectors.Float64(offsets, dims, vals, alphas));
+    }
+
+    private SVMLightModel(String format, long ktype, long dparm, double gparm, double sparm, double rparm, String uparm, long hfi,
+                          long tdocs, long nsv, double threshold, PackedSupportVectors supportVectors) {
+        this(format, ktype, dparm, gparm, sparm, rparm, uparm, hfi, tdocs, nsv, threshold, supportVectors, null);
+    }
+
+    /**
+     * Creates a model from packed support vectors and, for linear models, their weights in the same precision. The weights are summed
+     * up from the support vectors if they are null.
+     */
+    SVMLightModel(String format, long ktype, long dparm, double gparm, double sparm, double rparm, String uparm, long hfi, long tdocs,
+                  long nsv, double threshold, PackedSupportVectors supportVectors, LinearWeights linearWeights) {
 
         m_format = format;
         m_kType = ktype;
@@ -169,8 +279,7 @@ public class SVMLightModel {
         m_trainDocs = tdocs;
         m_numSupVecs = nsv;
         m_threshold = threshold;
-        m_docs = docs;
-        m_linWeights = null;
+        m_supportVectors = supportVectors;
 
         switch ((int) m_kType) {
             case 0:
@@ -188,40 +297,406 @@ public class SVMLightModel {
             default:
                 throw new RuntimeException("This type of kernel is not supported!");
         }
+        if (m_kType == KernelParam.LINEAR) {
+            m_linearWeights = linearWeights != null ? linearWeights : LinearWeights.of(m_supportVectors, m_highFeatIdx);
+            m_linWeights = denseWeights(m_linearWeights);
+        } else {
+            m_compiled = new CompiledKernelModel((int) m_kType, m_supportVectors, m_highFeatIdx, m_dParam, m_gParam, m_sParam, m_rParam);
+        }
     }
 
-    private void addWeightVectorToLinearModel() {
-        this.m_linWeights = new double[(int) m_highFeatIdx + 1];
-        for (int i = 0; i < m_docs.length; i++) {
-            for (int j = 0; j < m_docs[i].m_dims.length; j++) {
-
-                m_linWeights[m_docs[i].m_dims[j]] += m_docs[i].m_factor * m_docs[i].m_label * m_docs[i].m_vals[j];
-            }
-        }
+    private static double[] denseWeights(LinearWeights linearWeights) {
+        return linearWeights instanceof LinearWeights.Dense ? linearWeights.toArray() : null;
     }
 
     public double classify(FeatureVector v) {
+        long start = Metrics.start();
+        double result = classify(v, m_compiled != null ? m_compiled.scratch() : null);
+        Metrics.record(Operation.CLASSIFY, start, m_compiled != null ? m_supportVectors.size() : 0);
+        return result;
+    }
+
+    private double classify(FeatureVector v, ScoringScratch scratch) {
         double delta = 0;
         if (m_kType == 0) {
-            for (int i = 0; i < v.m_dims.length; i++) {
-                delta += v.m_factor * m_linWeights[v.m_dims[i]] * v.m_vals[i];
-            }
+            delta = v.m_factor * m_linearWeights.dot(v);
+        } else {
+            delta = v.m_factor * m_compiled.evaluate(v, scratch);
+        }
+        return delta - m_threshold;
+    }
+
+    /**
+     * Predicts the label of a feature vector, i.e. the sign of {@link #classify(FeatureVector)}, for callers that do not need the decision
+     * value itself. The support vectors of a non-linear model are evaluated in order of decreasing absolute alpha until the remaining ones
+     * cannot change the sign of the decision value any more. Linear models are scored through their weight vector and evaluate no
+     * support vector.
+     *
+     * @param v the vector to classify.
+     * @return the label, +1 for a positive decision value and -1 otherwise, and the number of support vectors evaluated.
+     */
+    public LabelPrediction predictLabel(FeatureVector v) {
+        if (m_compiled == null) {
+            return new LabelPrediction(classify(v) > 0 ? 1 : -1, 0);
+        }
+        return m_compiled.predict(v, m_threshold, m_compiled.scratch());
+    }
+
+    /**
+     * Classifies a batch of feature vectors in parallel on the common fork-join pool.
+     *
+     * @param vectors the vectors to classify.
+     * @return the decision values, in the order of {@code vectors}.
+     */
+    public double[] classify(FeatureVector[] vectors) {
+        return classify(vectors, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Classifies a list of feature vectors in parallel on the common fork-join pool.
+     *
+     * @param vectors the vectors to classify.
+     * @return the decision values, in the order of {@code vectors}.
+     */
+    public double[] classify(List<? extends FeatureVector> vectors) {
+        return classify(vectors.toArray(new FeatureVector[vectors.size()]));
+    }
+
+    /**
+     * Classifies a batch of feature vectors in parallel on the given executor. The batch is split into contiguous chunks and each chunk is
+     * scored by one task, so that per-worker state is set up once per chunk rather than once per vector.
+     *
+     * @param vectors  the vectors to classify.
+     * @param executor the executor to run the chunks on. A {@link ForkJoinPool} splits the work recursively.
+     * @return the decision values, in the order of {@code vectors}.
+     */
+    public double[] classify(FeatureVector[] vectors, ExecutorService executor) {
+        double[] result = new double[vectors.length];
+        if (vectors.length == 0) {
+            return result;
+        }
+        long started = Metrics.start();
+        int parallelism = executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism() :
+                Runtime.getRuntime().availableProcessors();
+        int chunk = Math.max(MIN_BATCH_CHUNK, vectors.length / (parallelism * CHUNKS_PER_WORKER) + 1);
+        if (vectors.length <= chunk) {
+            classifyRange(vectors, result, 0, vectors.length);
+        } else if (executor instanceof ForkJoinPool) {
+            ((ForkJoinPool) executor).invoke(new ClassifyTask(vectors, result, 0, vectors.length, chunk));
         } else {
-            for (int i = 0; i < m_docs.length; i++) {
-                double alpha = m_docs[i].getLabel();
-                if (alpha != 0) {
-                    delta += v.m_factor * alpha * m_kernel.evaluate(m_docs[i], v);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int from = 0; from < vectors.length; from += chunk) {
+                final int start = from;
+                final int end = Math.min(vectors.length, from + chunk);
+                futures.add(executor.submit(() -> classifyRange(vectors, result, start, end)));
+            }
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                futures.forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while classifying a batch of " + vectors.length + " vectors", e);
+            } catch (ExecutionException e) {
+                futures.forEach(f -> f.cancel(true));
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
                 }
+                throw new IllegalStateException(e.getCause());
             }
         }
-        return delta - m_threshold;
+        Metrics.record(Operation.CLASSIFY_BATCH, started, vectors.length);
+        return result;
+    }
+
+    /**
+     * Classifies the vectors in {@code [from, to)} and stores their decision values at the same positions in {@code result}. The scratch
+     * buffers of the worker thread are looked up once for the whole range.
+     */
+    private void classifyRange(FeatureVector[] vectors, double[] result, int from, int to) {
+        ScoringScratch scratch = m_compiled != null ? m_compiled.scratch() : null;
+        for (int i = from; i < to; i++) {
+            result[i] = classify(vectors[i], scratch);
+        }
+    }
+
+    /**
+     * Recursively halves a range of a batch until it is small enough to be classified by a single worker.
+     */
+    private class ClassifyTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FeatureVector[] m_vectors;
+        private final double[] m_result;
+        private final int m_from;
+        private final int m_to;
+        private final int m_chunk;
+
+        ClassifyTask(FeatureVector[] vectors, double[] result, int from, int to, int chunk) {
+            m_vectors = vectors;
+            m_result = result;
+            m_from = from;
+            m_to = to;
+            m_chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (m_to - m_from <= m_chunk) {
+                classifyRange(m_vectors, m_result, m_from, m_to);
+            } else {
+                int mid = (m_from + m_to) >>> 1;
+                invokeAll(new ClassifyTask(m_vectors, m_result, m_from, mid, m_chunk),
+                        new ClassifyTask(m_vectors, m_result, mid, m_to, m_chunk));
+            }
+        }
+    }
+
+    /**
+     * Classifies vectors on the calling thread until the scoring code has been compiled and the thread's scratch buffers have grown to
+     * their final size, without recording {@link Metrics}.
+     *
+     * @param vectors         the vectors to classify in turn.
+     * @param classifications the number of classifications.
+     * @param maxNanos        the time after which warming up stops early.
+     * @return the number of classifications done.
+     */
+    int warmUp(FeatureVector[] vectors, int classifications, long maxNanos) {
+        if (vectors.length == 0) {
+            return 0;
+        }
+        long started = System.nanoTime();
+        ScoringScratch scratch = m_compiled != null ? m_compiled.scratch() : null;
+        int done = 0;
+        while (done < classifications && System.nanoTime() - started < maxNanos) {
+            for (int i = 0; i < vectors.length && done < classifications; i++, done++) {
+                classify(vectors[i], scratch);
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Returns a copy of this model that stores the values of its support vectors and its linear weights in the given precision. The
+     * alphas and the threshold stay in double precision. Use {@link #deviationFrom(SVMLightModel, FeatureVector[])} to check how far the
+     * decision values of the copy deviate from this model's.
+     *
+     * @param precision the precision of the copy.
+     * @return this model if it is already stored in {@code precision}, a new model otherwise.
+     */
+    public SVMLightModel withPrecision(ModelPrecision precision) {
+        if (precision == getPrecision()) {
+            return this;
+        }
+        return new SVMLightModel(this, precision);
+    }
+
+    /**
+     * Returns the precision the support vectors and linear weights of this model are stored in.
+     */
+    public ModelPrecision getPrecision() {
+        return m_supportVectors.precision();
+    }
+
+    /**
+     * Returns the number of bytes taken by the support vectors, linear weights and scoring structures of this model, without object
+     * headers.
+     */
+    public long getMemoryBytes() {
+        return m_supportVectors.bytes() + (m_linearWeights != null ? m_linearWeights.bytes() : 0) +
+                (m_compiled != null ? m_compiled.bytes() : 0);
+    }
+
+    /**
+     * Compares the decision values of this model with those of a reference model, typically the double precision model this one was
+     * converted from, on a set of validation vectors.
+     *
+     * @param reference  the model to compare with.
+     * @param validation the validation vectors.
+     * @return the deviation of this model's decision values from the reference's.
+     */
+    public ApproximationReport deviationFrom(SVMLightModel reference, FeatureVector[] validation) {
+        return ApproximationReport.compare(reference.classify(validation), classify(validation));
+    }
+
+    /**
+     * Approximates this radial base kernel model by a linear model over random Fourier features. The weight of each mapped feature is the
+     * alpha-weighted sum of the mapped support vectors, so that the approximate decision value of {@code v} is
+     * {@code sum_i(alpha_i * z(sv_i) * z(v)) - b}. The approximation error shrinks with the square root of the dimension; use
+     * {@link RandomFourierModel#deviationFrom(SVMLightModel, FeatureVector[])} to check it on a validation set.
+     *
+     * @param dimension the number of random features.
+     * @param seed      the seed of the random projection.
+     * @throws IllegalStateException if this model does not use a radial base kernel.
+     */
+    public RandomFourierModel toRandomFourierModel(int dimension, long seed) {
+        if (m_kType != KernelParam.RBF) {
+            throw new IllegalStateException("Only models with a radial base kernel can be approximated by random Fourier features.");
+        }
+        RandomFourierFeatures featureMap = new RandomFourierFeatures(dimension, m_gParam, seed, m_highFeatIdx);
+        double[] weights = new double[dimension];
+        double[] mapped = new double[dimension];
+        for (int i = 0; i < m_supportVectors.size(); i++) {
+            double alpha = m_supportVectors.alpha(i);
+            if (alpha != 0) {
+                featureMap.map(m_supportVectors.get(i), mapped);
+                for (int k = 0; k < dimension; k++) {
+                    weights[k] += alpha * mapped[k];
+                }
+            }
+        }
+        return new RandomFourierModel(featureMap, weights, m_threshold);
+    }
+
+    /**
+     * Compresses this model to at most {@code maxSupportVectors} support vectors. Identical support vectors are merged and those with an
+     * alpha of zero dropped; a linear model is reduced to its weight vector. Polynomial and radial base models keep the support vectors
+     * with the largest absolute alphas and refit their alphas to approximate the dropped ones. The compressed model has the same
+     * header as this one, apart from the number of support vectors, so {@link #writeModelToFile(String)} writes a regular SVM-light
+     * model file.
+     *
+     * @param maxSupportVectors the largest number of support vectors of the compressed model, at least 1.
+     * @return the compressed model, in the precision of this model.
+     */
+    public SVMLightModel compress(int maxSupportVectors) {
+        return new ReducedSetCompression(this).compress(maxSupportVectors);
+    }
+
+    /**
+     * Compresses this model to as few support vectors as possible while its decision values on a set of validation vectors deviate from
+     * this model's by at most {@code maxDeviation}. See {@link #compress(int)} for how support vectors are removed.
+     *
+     * @param maxDeviation the largest absolute deviation of a decision value allowed.
+     * @param validation   the validation vectors.
+     * @return the compressed model, in the precision of this model.
+     */
+    public SVMLightModel compress(double maxDeviation, FeatureVector[] validation) {
+        return new ReducedSetCompression(this).compress(maxDeviation, validation);
+    }
+
+    /**
+     * Returns a model with the header of this one and the given support vectors, in the precision of this model.
+     */
+    SVMLightModel withSupportVectors(LabeledFeatureVector[] docs) {
+        return new SVMLightModel(m_format, m_kType, m_dParam, m_gParam, m_sParam, m_rParam, m_uParam, m_highFeatIdx, m_trainDocs,
+                docs.length + 1, m_threshold, docs).withPrecision(getPrecision());
+    }
+
+    long kernelType() {
+        return m_kType;
+    }
+
+    LinearWeights linearWeights() {
+        return m_linearWeights;
+    }
+
+    CompiledKernelModel compiled() {
+        return m_compiled;
+    }
+
+    /**
+     * Returns the kernel of this model. It is the reference implementation of the decision function; {@link #classify(FeatureVector)}
+     * evaluates the same function on a compiled form of the support vectors.
+     */
+    public Kernel getKernel() {
+        return m_kernel;
+    }
+
+    /**
+     * Returns the native model this model was built from by a training call of {@link SVMLightInterface}, or null if this model is
+     * held in Java only, e.g. after reading it from a file or converting it with {@link #withPrecision(ModelPrecision)}. Such models
+     * can be copied into a native model with {@link #toNativeModel()}.
+     */
+    public NativeModel getNativeModel() {
+        return m_nativeModel;
+    }
+
+    /**
+     * Copies this model into a new {@link NativeModel}, so that it can be scored by the native SVM-light library, e.g. after reading it
+     * from a file. The support vectors are copied in the precision they are stored in; later changes of this model, e.g. of its threshold,
+     * are not seen by the native model. Natively trained models already have a native model, see {@link #getNativeModel()}.
+     *
+     * @throws IllegalArgumentException if the dimensions of a support vector are not at least 1 and strictly ascending, e.g. those of a
+     *                                  model file that has not been written by SVM-light.
+     */
+    public NativeModel toNativeModel() {
+        PackedSupportVectors.Float64 svs = (PackedSupportVectors.Float64) m_supportVectors.convert(ModelPrecision.FLOAT64);
+        for (int i = 0; i < svs.size(); i++) {
+            SVMLightInterface.checkDimensions(svs.m_dims, svs.m_offsets[i], svs.m_offsets[i + 1], i);
+        }
+        return NativeModel.create(m_kType, m_dParam, m_gParam, m_sParam, m_rParam, m_uParam != null ? m_uParam : "", m_trainDocs,
+                m_threshold, svs.m_alphas, svs.m_offsets, svs.m_dims, svs.m_vals);
+    }
+
+    void setNativeModel(NativeModel nativeModel) {
+        m_nativeModel = nativeModel;
     }
 
     /**
-     * Returns a vector with the weights of all features for linear kernels. For non-linear kernels this is null.
+     * Returns whether the training run of this model was stopped by its {@link TrainingListener} or its deadline, see
+     * {@link LearnParam#deadline_millis}, before the optimizer converged. Models read from a file are taken as converged.
+     */
+    public boolean isTrainingStopped() {
+        return m_trainingStopped;
+    }
+
+    void setTrainingStopped(boolean trainingStopped) {
+        m_trainingStopped = trainingStopped;
+    }
+
+    /**
+     * Returns the number of support vectors of this model.
+     */
+    public int getNumberOfSupportVectors() {
+        return m_supportVectors.size();
+    }
+
+    /**
+     * Returns a copy of a support vector, labeled with its alpha * y.
+     *
+     * @param i the index of the support vector, between 0 and {@link #getNumberOfSupportVectors()} (exclusive).
+     */
+    public LabeledFeatureVector getSupportVector(int i) {
+        return m_supportVectors.get(i);
+    }
+
+    /**
+     * Returns a vector with the weights of all features for linear kernels, indexed by feature id. For non-linear kernels this is null.
+     * Weights stored densely in double precision are returned as the array the model classifies with. Linear models over large, sparsely
+     * used feature spaces store only their non-zero weights, and models in a lower precision quantized ones; for these a dense copy is
+     * created on every call, so prefer {@link #getLinearWeight(int)} for them.
      */
     public double[] getLinearWeights() {
-        return m_linWeights;
+        return m_linearWeights != null ? m_linearWeights.toArray() : null;
+    }
+
+    /**
+     * Returns the weight of a single feature for linear kernels, 0 for features without a weight.
+     *
+     * @param dim the feature id.
+     * @throws IllegalStateException if this model does not use a linear kernel.
+     */
+    public double getLinearWeight(int dim) {
+        if (m_linearWeights == null) {
+            throw new IllegalStateException("Only linear models have a weight vector.");
+        }
+        return m_linearWeights.get(dim);
+    }
+
+    /**
+     * Returns whether this linear model stores only its non-zero weights.
+     */
+    public boolean hasSparseLinearWeights() {
+        return m_linearWeights != null && m_linearWeights.isSparse();
+    }
+
+    /**
+     * Returns the threshold b of this model.
+     */
+    public double getThreshold() {
+        return m_threshold;
     }
 
     public void setThreshold(double threshold) {
@@ -229,12 +704,13 @@ public class SVMLightModel {
     }
 
     public String toString() {
+        PackedSupportVectors svs = m_supportVectors;
         String s = "\n(| Format     : " + m_format + "|\n" + "| KType      : " + m_kType + "\n" + "| dParam     : " + m_dParam + "\n" +
                 "| gParam     : " + m_gParam + "\n" + "| sParam     : " + m_sParam + "\n" + "| rParam     : " + m_rParam + "\n" +
                 "| uParam     : " + m_uParam + "\n" + "| HighFeatIdx   : " + m_highFeatIdx + "\n" + "| trainDocs  : " + m_trainDocs + "\n" +
                 "| numSupVecs : " + m_numSupVecs + "\n" + "| threshold  : " + m_threshold + "\n" +
-                (m_docs != null ? ("#SupportVectors:" + m_docs.length + "\n|[0]" + m_docs[0] + "|\n" +
-                        (0 < m_docs.length ? ("...\n" + "|[" + (m_docs.length - 1) + "]" + m_docs[m_docs.length - 1] + "|\n") : "")) : "");
+                (svs.size() > 0 ? ("#SupportVectors:" + svs.size() + "\n|[0]" + svs.get(0) + "|\n" +
+                        (0 < svs.size() ? ("...\n" + "|[" + (svs.size() - 1) + "]" + svs.get(svs.size() - 1) + "|\n") : "")) : "");
         return s;
     }
 
@@ -242,27 +718,105 @@ public class SVMLightModel {
      * Writes this SVMLightModel to a file. The format is compatible to the SVM-light model files.
      */
     public void writeModelToFile(String path) {
+        long start = Metrics.start();
         File dump = new File(path);
-        if (m_docs != null) {
-            String header = m_format + "\n" + m_kType + " # kernel type\n" + m_dParam + " # kernel parameter -d\n" + m_gParam +
-                    " # kernel parameter -g\n" + m_sParam + " # kernel parameter -s\n" + m_rParam + " # kernel parameter -r\n" + m_uParam +
-                    "# kernel parameter -u\n" + m_highFeatIdx + " # highest feature index\n" + m_trainDocs +
-                    " # number of training documents\n" + m_numSupVecs + " # number of support vectors plus 1\n" + m_threshold +
-                    " # threshold b, each following line is a SV (starting with alpha*y)\n";
+        String header = m_format + "\n" + m_kType + " # kernel type\n" + m_dParam + " # kernel parameter -d\n" + m_gParam +
+                " # kernel parameter -g\n" + m_sParam + " # kernel parameter -s\n" + m_rParam + " # kernel parameter -r\n" + m_uParam +
+                "# kernel parameter -u\n" + m_highFeatIdx + " # highest feature index\n" + m_trainDocs +
+                " # number of training documents\n" + m_numSupVecs + " # number of support vectors plus 1\n" + m_threshold +
+                " # threshold b, each following line is a SV (starting with alpha*y)\n";
 
-            try {
-                BufferedWriter bd = new BufferedWriter(new FileWriter(dump));
-                bd.write(header);
-                for (int i = 0; i < m_docs.length; i++) {
-                    bd.write(m_docs[i].toString());
-                }
-                bd.close();
-            } catch (IOException ioe) {
-                ioe.printStackTrace();
+        try {
+            BufferedWriter bd = new BufferedWriter(new FileWriter(dump));
+            bd.write(header);
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < m_supportVectors.size(); i++) {
+                line.setLength(0);
+                m_supportVectors.append(i, line);
+                bd.append(line);
             }
+            bd.close();
+            Metrics.record(Operation.WRITE_MODEL, start, m_supportVectors.size());
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
 
-        } else {
-            System.out.println("Cannot write model file..");
+    /**
+     * Writes this model to a binary model file, see {@link MappedModel}, which is read much faster than an SVM-light model file by
+     * {@link #fromBinaryPath(Path)}. Models in a lower {@link ModelPrecision} are read back in the same precision.
+     *
+     * @param path the file, which is replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeBinaryModelToFile(Path path) throws IOException {
+        long start = Metrics.start();
+        PackedSupportVectors svs = m_supportVectors;
+        byte[] format = (m_format != null ? m_format : "").getBytes(StandardCharsets.UTF_8);
+        byte[] uParam = (m_uParam != null ? m_uParam : "").getBytes(StandardCharsets.UTF_8);
+        LinearWeights.SparseWeights sparse =
+                m_linearWeights instanceof LinearWeights.SparseWeights ? (LinearWeights.SparseWeights) m_linearWeights : null;
+        double[] dense = m_linearWeights != null && sparse == null ? m_linearWeights.toArray() : null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ChannelOutput out = new ChannelOutput(channel);
+            out.putInt(MappedModel.MAGIC);
+            out.putInt(MappedModel.VERSION);
+            out.putLong(m_kType);
+            out.putLong(m_dParam);
+            out.putDouble(m_gParam);
+            out.putDouble(m_sParam);
+            out.putDouble(m_rParam);
+            out.putLong(m_highFeatIdx);
+            out.putLong(m_trainDocs);
+            out.putLong(m_numSupVecs);
+            out.putDouble(m_threshold);
+            out.putInt(getPrecision().ordinal());
+            out.putInt(svs.size());
+            out.putLong(svs.m_dims.length);
+            out.putInt(sparse != null ? MappedModel.SPARSE_WEIGHTS : dense != null ? MappedModel.DENSE_WEIGHTS : MappedModel.NO_WEIGHTS);
+            out.putInt(sparse != null ? sparse.m_dims.length : dense != null ? dense.length : 0);
+            out.putLong(sparse != null ? sparse.m_dimension : dense != null ? dense.length : 0);
+            out.putInt(format.length);
+            out.putInt(uParam.length);
+            while (out.position() < MappedModel.HEADER_BYTES) {
+                out.putLong(0);
+            }
+            out.put(format);
+            out.put(uParam);
+            out.align();
+            for (int i = 0; i < svs.size(); i++) {
+                out.putDouble(svs.alpha(i));
+            }
+            for (int offset : svs.m_offsets) {
+                out.putInt(offset);
+            }
+            out.align();
+            for (int dim : svs.m_dims) {
+                out.putInt(dim);
+            }
+            out.align();
+            for (int i = 0; i < svs.size(); i++) {
+                for (int k = svs.m_offsets[i]; k < svs.m_offsets[i + 1]; k++) {
+                    out.putDouble(svs.value(i, k));
+                }
+            }
+            if (sparse != null) {
+                for (int dim : sparse.m_dims) {
+                    out.putInt(dim);
+                }
+                out.align();
+                for (int j = 0; j < sparse.m_dims.length; j++) {
+                    out.putDouble(sparse.value(j));
+                }
+            } else if (dense != null) {
+                for (double weight : dense) {
+                    out.putDouble(weight);
+                }
+            }
+            out.flush();
         }
+        Metrics.record(Operation.WRITE_MODEL, start, svs.size());
     }
 }
@@ -0,0 +1,343 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Scores an SVM-light document file with a model and writes one prediction per document, in the format of SVM-light's svm_classify,
+ * without holding the documents in memory.
+ * <p>
+ * A reader thread reads the input line by line and hands chunks of {@value #LINES_PER_CHUNK} lines to a bounded queue. Worker threads
+ * parse and score the chunks, and the calling thread writes the predictions in input order. At most {@code queueCapacity + workers}
+ * chunks are in flight at any time, so memory stays constant no matter how large the input is.
+ * <p>
+ * Lines are parsed like {@link SVMLightInterface#fromPath(Path, int)} parses them, apart from lines without features: as svm_classify,
+ * the pipeline writes a prediction for every line that does not start with '#', and scores lines that only consist of a label, a query
+ * id or a comment as vectors without features. Parse errors report the physical line number of the input.
+ *
+ * @author Anja Pilz
+ */
+public final class ScoringPipeline {
+
+    /**
+     * The output format of svm_classify -f 0: {@code <value>:+1 <-value>:-1} or {@code <-value>:-1 <value>:+1}, the predicted class
+     * first.
+     */
+    public static final int OUTPUT_OLD_FORMAT = 0;
+
+    /**
+     * The output format of svm_classify -f 1, the default: the decision value of each document.
+     */
+    public static final int OUTPUT_DECISION_VALUES = 1;
+
+    /**
+     * The number of lines handed to a worker at once.
+     */
+    static final int LINES_PER_CHUNK = 256;
+
+    private static final MathContext PRINTF_PRECISION = new MathContext(8, RoundingMode.HALF_EVEN);
+
+    private static final Chunk END = new Chunk(-1);
+
+    private final SVMLightModel m_model;
+
+    private final int m_workers;
+
+    private final int m_queueCapacity;
+
+    private final int m_outputFormat;
+
+    /**
+     * Creates a pipeline with one worker per available processor that writes decision values.
+     */
+    public ScoringPipeline(SVMLightModel model) {
+        this(model, Runtime.getRuntime().availableProcessors(), 4 * Runtime.getRuntime().availableProcessors(), OUTPUT_DECISION_VALUES);
+    }
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param model         the model to score the documents with.
+     * @param workers       the number of scoring threads.
+     * @param queueCapacity the number of chunks of lines that may wait for a worker.
+     * @param outputFormat  {@link #OUTPUT_DECISION_VALUES} or {@link #OUTPUT_OLD_FORMAT}.
+     */
+    public ScoringPipeline(SVMLightModel model, int workers, int queueCapacity, int outputFormat) {
+        if (workers < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Need at least one worker and a queue capacity of at least 1, got " + workers + " and " +
+                    queueCapacity + ".");
+        }
+        if (outputFormat != OUTPUT_OLD_FORMAT && outputFormat != OUTPUT_DECISION_VALUES) {
+            throw new IllegalArgumentException("Output format can only take the values 0 or 1, got " + outputFormat + ".");
+        }
+        m_model = model;
+        m_workers = workers;
+        m_queueCapacity = queueCapacity;
+        m_outputFormat = outputFormat;
+    }
+
+    /**
+     * Scores the documents of a file and writes the predictions to another file.
+     *
+     * @return the number of documents scored.
+     */
+    public long score(Path input, Path output) throws IOException, ParseException {
+        try (BufferedReader reader = Files.newBufferedReader(input); BufferedWriter writer = Files.newBufferedWriter(output)) {
+            return score(reader, writer, input.toString());
+        }
+    }
+
+    /**
+     * Scores the documents read from {@code input} and writes the predictions to {@code output}. Neither is closed.
+     *
+     * @param source the name of the input, for error messages.
+     * @return the number of documents scored.
+     * @throws ParseException        if a feature is not a "dimension:value" pair.
+     * @throws NumberFormatException if a label, query id or feature is not a number.
+     */
+    public long score(BufferedReader input, Writer output, String source) throws IOException, ParseException {
+        BlockingQueue<Chunk> work = new ArrayBlockingQueue<>(m_queueCapacity);
+        BlockingQueue<Chunk> scored = new LinkedBlockingQueue<>();
+        Semaphore inFlight = new Semaphore(m_queueCapacity + m_workers);
+        AtomicLong numChunks = new AtomicLong(-1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ExecutorService threads = Executors.newFixedThreadPool(m_workers + 1);
+        try {
+            threads.execute(() -> {
+                try {
+                    numChunks.set(read(input, work, inFlight));
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    for (int w = 0; w < m_workers; w++) {
+                        work.offer(END);
+                    }
+                }
+            });
+            for (int w = 0; w < m_workers; w++) {
+                threads.execute(() -> {
+                    try {
+                        for (Chunk chunk = work.take(); chunk != END; chunk = work.take()) {
+                            chunk.score(m_model, source);
+                            scored.put(chunk);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                });
+            }
+            return write(output, scored, inFlight, numChunks, failure);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scoring " + source, e);
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads the input in chunks of lines and puts them into the work queue, waiting for a permit for each chunk.
+     *
+     * @return the number of chunks read.
+     */
+    private static long read(BufferedReader input, BlockingQueue<Chunk> work, Semaphore inFlight) throws IOException, InterruptedException {
+        long sequence = 0;
+        int lineNumber = 0;
+        Chunk chunk = new Chunk(sequence);
+        for (String line = input.readLine(); line != null; line = input.readLine()) {
+            lineNumber++;
+            if (line.startsWith("#")) {
+                continue;
+            }
+            chunk.add(line, lineNumber);
+            if (chunk.m_size == LINES_PER_CHUNK) {
+                inFlight.acquire();
+                work.put(chunk);
+                chunk = new Chunk(++sequence);
+            }
+        }
+        if (chunk.m_size > 0) {
+            inFlight.acquire();
+            work.put(chunk);
+            sequence++;
+        }
+        return sequence;
+    }
+
+    /**
+     * Writes the scored chunks in input order, releasing a permit for each chunk written.
+     *
+     * @return the number of predictions written.
+     */
+    private long write(Writer output, BlockingQueue<Chunk> scored, Semaphore inFlight, AtomicLong numChunks,
+                       AtomicReference<Throwable> failure) throws IOException, ParseException, InterruptedException {
+        Map<Long, Chunk> pending = new HashMap<>();
+        StringBuilder sb = new StringBuilder();
+        long next = 0;
+        long written = 0;
+        while (numChunks.get() < 0 || next < numChunks.get()) {
+            rethrow(failure.get());
+            Chunk chunk = scored.poll(10, TimeUnit.MILLISECONDS);
+            if (chunk != null) {
+                pending.put(chunk.m_sequence, chunk);
+            }
+            for (chunk = pending.remove(next); chunk != null; chunk = pending.remove(++next)) {
+                sb.setLength(0);
+                written += chunk.format(sb, m_outputFormat);
+                output.append(sb);
+                inFlight.release();
+            }
+        }
+        rethrow(failure.get());
+        output.flush();
+        return written;
+    }
+
+    private static void rethrow(Throwable failure) throws IOException, ParseException {
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof ParseException) {
+            throw (ParseException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IllegalStateException(failure);
+    }
+
+    /**
+     * Formats a number like C's {@code printf("%.8g")}, which svm_classify uses for its predictions: 8 significant digits without trailing
+     * zeros, in exponential notation if the exponent is below -4 or at least 8.
+     */
+    static String formatG(double value) {
+        if (Double.isNaN(value)) {
+            return "nan";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "inf" : "-inf";
+        }
+        if (value == 0) {
+            return 1 / value < 0 ? "-0" : "0";
+        }
+        BigDecimal rounded = new BigDecimal(value).round(PRINTF_PRECISION);
+        int exponent = rounded.precision() - rounded.scale() - 1;
+        if (exponent >= -4 && exponent < PRINTF_PRECISION.getPrecision()) {
+            return rounded.stripTrailingZeros().toPlainString();
+        }
+        String digits = rounded.stripTrailingZeros().unscaledValue().abs().toString();
+        StringBuilder sb = new StringBuilder();
+        if (value < 0) {
+            sb.append('-');
+        }
+        sb.append(digits.charAt(0));
+        if (digits.length() > 1) {
+            sb.append('.').append(digits, 1, digits.length());
+        }
+        sb.append(exponent < 0 ? "e-" : "e+");
+        if (Math.abs(exponent) < 10) {
+            sb.append('0');
+        }
+        return sb.append(Math.abs(exponent)).toString();
+    }
+
+    /**
+     * A chunk of consecutive input lines and, once scored, their decision values.
+     */
+    private static final class Chunk {
+
+        private final long m_sequence;
+
+        private final String[] m_lines = new String[LINES_PER_CHUNK];
+
+        private final int[] m_lineNumbers = new int[LINES_PER_CHUNK];
+
+        private final double[] m_scores = new double[LINES_PER_CHUNK];
+
+        private int m_size;
+
+        Chunk(long sequence) {
+            m_sequence = sequence;
+        }
+
+        void add(String line, int lineNumber) {
+            m_lines[m_size] = line;
+            m_lineNumbers[m_size++] = lineNumber;
+        }
+
+        /**
+         * Parses and scores the lines, dropping them once they are scored.
+         */
+        void score(SVMLightModel model, String source) throws ParseException {
+            for (int i = 0; i < m_size; i++) {
+                m_scores[i] = model.classify(DocumentParser.parseQuery(m_lines[i], m_lineNumbers[i], source));
+                m_lines[i] = null;
+            }
+        }
+
+        /**
+         * Appends one prediction per line and returns the number of predictions.
+         */
+        int format(StringBuilder sb, int outputFormat) {
+            for (int i = 0; i < m_size; i++) {
+                double dist = m_scores[i];
+                if (outputFormat == OUTPUT_OLD_FORMAT) {
+                    if (dist > 0) {
+                        sb.append(formatG(dist)).append(":+1 ").append(formatG(-dist)).append(":-1\n");
+                    } else {
+                        sb.append(formatG(-dist)).append(":-1 ").append(formatG(dist)).append(":+1\n");
+                    }
+                } else {
+                    sb.append(formatG(dist)).append('\n');
+                }
+            }
+            return m_size;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+/**
+ * Reusable per-thread buffers for scoring a query against the support vectors of a {@link CompiledKernelModel} or a
+ * {@link MultiModelScorer}, or against the mapped features of a {@link RandomFourierModel}. Each thread has one scratch object, see {@link #get()}, which is shared by all models it scores with and grows
+ * its buffers on first use, so that scoring does not allocate once the buffers have reached their final size. A model must not use the
+ * buffers beyond a single scoring call.
+ *
+ * @author Anja Pilz
+ */
+final class ScoringScratch {
+
+    private static final ThreadLocal<ScoringScratch> SCRATCH = ThreadLocal.withInitial(ScoringScratch::new);
+
+    private double[] m_dense = new double[0];
+
+    private double[] m_dots = new double[0];
+
+    private double[] m_sums = new double[0];
+
+    private double[] m_features = new double[0];
+
+    private int[] m_rows = new int[0];
+
+    private boolean[] m_marks = new boolean[0];
+
+    /**
+     * Returns the scratch buffers of the calling thread. As they are not owned by a model, replaced models do not leave buffers behind in
+     * pooled threads.
+     */
+    static ScoringScratch get() {
+        return SCRATCH.get();
+    }
+
+    /**
+     * Returns a buffer indexed by feature id with at least {@code size} entries. All entries are zero; callers that scatter a query into
+     * the buffer must reset the entries they have set before the buffer is used again.
+     */
+    double[] dense(int size) {
+        if (m_dense.length < size) {
+            m_dense = new double[size];
+        }
+        return m_dense;
+    }
+
+    /**
+     * Returns a buffer for one dot product per support vector with at least {@code size} entries. The contents are undefined.
+     */
+    double[] dots(int size) {
+        if (m_dots.length < size) {
+            m_dots = new double[size];
+        }
+        return m_dots;
+    }
+
+    /**
+     * Returns a buffer for one partial decision value per model with at least {@code size} entries. The contents are undefined.
+     */
+    double[] sums(int size) {
+        if (m_sums.length < size) {
+            m_sums = new double[size];
+        }
+        return m_sums;
+    }
+
+    /**
+     * Returns a buffer for the mapped features of a query with at least {@code size} entries. The contents are undefined.
+     */
+    double[] features(int size) {
+        if (m_features.length < size) {
+            m_features = new double[size];
+        }
+        return m_features;
+    }
+
+    /**
+     * Returns a buffer for a list of support vector indexes with at least {@code size} entries. The contents are undefined.
+     */
+    int[] rows(int size) {
+        if (m_rows.length < size) {
+            m_rows = new int[size];
+        }
+        return m_rows;
+    }
+
+    /**
+     * Returns one flag per support vector with at least {@code size} entries. All flags are false; callers must reset the flags they have
+     * set before the buffer is used again.
+     */
+    boolean[] marks(int size) {
+        if (m_marks.length < size) {
+            m_marks = new boolean[size];
+        }
+        return m_marks;
+    }
+}
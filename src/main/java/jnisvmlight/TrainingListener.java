@@ -0,0 +1,42 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+/**
+ * Receives the progress of a native training run after each iteration of the SVM-light optimizer. Set it with
+ * {@link TrainingParameters#setTrainingListener(TrainingListener)}. The listener is called on the training thread and blocks the optimizer
+ * while it runs.
+ *
+ * @author Anja Pilz
+ */
+public interface TrainingListener {
+
+    /**
+     * Called after each iteration of the optimizer.
+     *
+     * @param progress the state of the optimizer.
+     * @return {@code true} to continue training, {@code false} to stop it. A stopped training run returns the model of the current
+     * solution, which does not satisfy the stopping criterion yet, see {@link SVMLightModel#isTrainingStopped()}. Throwing a runtime
+     * exception stops training as well and is rethrown by {@link SVMLightInterface#trainModel(LabeledFeatureVector[], TrainingParameters)}.
+     */
+    boolean onIteration(TrainingProgress progress);
+}
@@ -0,0 +1,81 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+/**
+ * Called back by the native optimizer after each iteration of a training run. Stops training once the deadline of the learning parameters
+ * passed or the {@link TrainingListener} asks to stop. The first stop is sticky, so that optimizer runs following the stopped one, e.g.
+ * for leave-one-out estimates, end after their first iteration.
+ *
+ * @author Anja Pilz
+ */
+final class TrainingMonitor {
+
+    private final TrainingListener m_listener;
+
+    private final long m_deadlineMillis;
+
+    private final long m_start = System.nanoTime();
+
+    private boolean m_stopped;
+
+    private RuntimeException m_failure;
+
+    TrainingMonitor(TrainingListener listener, long deadlineMillis) {
+        m_listener = listener;
+        m_deadlineMillis = deadlineMillis;
+    }
+
+    /**
+     * Called by the native optimizer, see svm_jni.c.
+     *
+     * @return {@code true} to stop training.
+     */
+    boolean iteration(long iteration, long activeVariables, double maxViolation, long kernelEvaluations) {
+        if (m_stopped) {
+            return true;
+        }
+        if (m_deadlineMillis > 0 && System.currentTimeMillis() >= m_deadlineMillis) {
+            m_stopped = true;
+        } else if (m_listener != null) {
+            try {
+                m_stopped = !m_listener.onIteration(
+                        new TrainingProgress(iteration, activeVariables, maxViolation, kernelEvaluations, System.nanoTime() - m_start));
+            } catch (RuntimeException e) {
+                m_failure = e;
+                m_stopped = true;
+            }
+        }
+        return m_stopped;
+    }
+
+    boolean isStopped() {
+        return m_stopped;
+    }
+
+    /**
+     * @return the exception thrown by the listener, or null.
+     */
+    RuntimeException getFailure() {
+        return m_failure;
+    }
+}
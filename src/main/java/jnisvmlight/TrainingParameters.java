@@ -31,6 +31,7 @@ public class TrainingParameters {
     // field names must not be changed!
     private KernelParam m_kp;
     private LearnParam m_lp;
+    private TrainingListener m_listener;
 
     /**
      * Initializes the training parameters with the default values for the kernel and the learning parameters.
@@ -69,6 +70,19 @@ public class TrainingParameters {
         this.m_kp = kp;
     }
 
+    public TrainingListener getTrainingListener() {
+        return m_listener;
+    }
+
+    /**
+     * Sets a listener that is called after each iteration of the optimizer and may stop training.
+     *
+     * @param listener the listener, or null to train without progress reports.
+     */
+    public void setTrainingListener(TrainingListener listener) {
+        this.m_listener = listener;
+    }
+
     public TrainingParameters(String[] argv) {
         this();
         m_lp.argc = argv.length;
@@ -0,0 +1,91 @@
+/*
+ * JNI_SVM-light - A Java Native Interface for SVM-light
+ * 
+ * Copyright (C) 2005 
+ * Tom Crecelius & Martin Theobald 
+ * Max-Planck Institute for Computer Science
+ * 
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package jnisvmlight;
+
+/**
+ * The state of the SVM-light optimizer after one iteration, as reported to a {@link TrainingListener}. Ranking and leave-one-out training
+ * run the optimizer several times, in which case the iteration count starts over for each run.
+ *
+ * @author Anja Pilz
+ */
+public final class TrainingProgress {
+
+    private final long m_iteration;
+
+    private final long m_activeVariables;
+
+    private final double m_maxViolation;
+
+    private final long m_kernelEvaluations;
+
+    private final long m_elapsedNanos;
+
+    TrainingProgress(long iteration, long activeVariables, double maxViolation, long kernelEvaluations, long elapsedNanos) {
+        m_iteration = iteration;
+        m_activeVariables = activeVariables;
+        m_maxViolation = maxViolation;
+        m_kernelEvaluations = kernelEvaluations;
+        m_elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the iteration of the optimizer, starting with 1.
+     */
+    public long getIteration() {
+        return m_iteration;
+    }
+
+    /**
+     * @return the number of variables that have not been removed from the problem by shrinking.
+     */
+    public long getActiveVariables() {
+        return m_activeVariables;
+    }
+
+    /**
+     * @return the maximum violation of the KT-conditions. Training converges once it drops below
+     * {@link LearnParam#epsilon_crit}.
+     */
+    public double getMaxViolation() {
+        return m_maxViolation;
+    }
+
+    /**
+     * @return the number of kernel evaluations since training started.
+     */
+    public long getKernelEvaluations() {
+        return m_kernelEvaluations;
+    }
+
+    /**
+     * @return the wall-clock time since training was started.
+     */
+    public long getElapsedNanos() {
+        return m_elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "iteration=" + m_iteration + ", activeVariables=" + m_activeVariables + ", maxViolation=" + m_maxViolation +
+                ", kernelEvaluations=" + m_kernelEvaluations + ", elapsedMillis=" + m_elapsedNanos / 1000000;
+    }
+}
@@ -0,0 +1,209 @@
+package jnisvmlight;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DatasetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static LabeledFeatureVector[] documents(int count) {
+        Random random = new Random(3);
+        LabeledFeatureVector[] docs = new LabeledFeatureVector[count];
+        for (int i = 0; i < count; i++) {
+            int[] dims = new int[random.nextInt(6)];
+            double[] vals = new double[dims.length];
+            for (int k = 0; k < dims.length; k++) {
+                dims[k] = 1 + random.nextInt(1000);
+                vals[k] = random.nextGaussian();
+            }
+            docs[i] = new LabeledFeatureVector();
+            docs[i].m_label = random.nextInt(3) - 1;
+            docs[i].m_dims = dims;
+            docs[i].m_vals = vals;
+            docs[i].setFactor(random.nextDouble());
+            docs[i].setQueryId(random.nextInt(10));
+        }
+        return docs;
+    }
+
+    /**
+     * Returns a document as a string with its features sorted by dimension.
+     */
+    private static String describe(LabeledFeatureVector doc) {
+        long[] features = new long[doc.m_dims.length];
+        for (int k = 0; k < features.length; k++) {
+            features[k] = (long) doc.m_dims[k] << 32 | k;
+        }
+        Arrays.sort(features);
+        StringBuilder sb = new StringBuilder().append(doc.getLabel()).append(" qid:").append(doc.getQueryId()).append(" factor:").append(
+                doc.getFactor());
+        for (long feature : features) {
+            sb.append(' ').append(feature >> 32).append(':').append(doc.m_vals[(int) feature]);
+        }
+        return sb.toString();
+    }
+
+    private static void assertSame(Dataset dataset, LabeledFeatureVector[] docs) {
+        assertThat(dataset.size(), is(docs.length));
+        for (int i = 0; i < docs.length; i++) {
+            assertThat(describe(dataset.get(i)), is(describe(docs[i])));
+            assertThat(dataset.getNumberOfFeatures(i), is(docs[i].m_dims.length));
+        }
+    }
+
+    @Test
+    public void testWriteAndOpen() throws IOException {
+        LabeledFeatureVector[] docs = documents(1000);
+        Path file = folder.getRoot().toPath().resolve("docs.bin");
+        Dataset.write(docs, file);
+        Dataset dataset = Dataset.open(file);
+        assertSame(dataset, docs);
+
+        long values = 0;
+        int maxDimension = 0;
+        for (LabeledFeatureVector doc : docs) {
+            values += doc.m_dims.length;
+            for (int dim : doc.m_dims) {
+                maxDimension = Math.max(maxDimension, dim);
+            }
+        }
+        assertThat(dataset.getNumberOfValues(), is(values));
+        assertThat(dataset.getMaxDimension(), is(maxDimension));
+        // only the column files of the writer are temporary
+        assertThat(folder.getRoot().list().length, is(1));
+    }
+
+    @Test
+    public void testSegments() throws IOException {
+        LabeledFeatureVector[] docs = documents(500);
+        Path file = folder.getRoot().toPath().resolve("docs.bin");
+        Dataset.write(docs, file);
+        for (long segmentBytes : new long[]{8, 24, 100, 1000}) {
+            assertSame(Dataset.open(file, segmentBytes), docs);
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("empty.bin");
+        Dataset.write(new LabeledFeatureVector[0], file);
+        Dataset dataset = Dataset.open(file);
+        assertThat(dataset.size(), is(0));
+        assertThat(dataset.toArray().length, is(0));
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void testViewsAreReadOnly() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("docs.bin");
+        Dataset.write(new LabeledFeatureVector[]{new LabeledFeatureVector(1, new int[]{3, 1}, new double[]{0.5, 2})}, file);
+        IntBuffer dims = Dataset.open(file).getDimensions(0);
+        assertThat(dims.get(0), is(1));
+        assertThat(dims.get(1), is(3));
+        assertThat(Dataset.open(file).getValues(0).get(0), is(2.0));
+        dims.put(0, 2);
+    }
+
+    @Test
+    public void testConvert() throws IOException, ParseException {
+        Path text = Paths.get("data/example3/train.dat");
+        Path file = folder.getRoot().toPath().resolve("train.bin");
+        int count = Dataset.convert(text, 2, file);
+        LabeledFeatureVector[] docs = SVMLightInterface.fromPath(text, 2);
+        assertThat(count, is(docs.length));
+        assertSame(Dataset.open(file), docs);
+    }
+
+    @Test
+    public void testFailedConversionKeepsFile() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("docs.bin");
+        LabeledFeatureVector[] docs = documents(10);
+        Dataset.write(docs, file);
+        byte[] written = Files.readAllBytes(file);
+        Dataset dataset = Dataset.open(file);
+        Path text = folder.newFile("docs.dat").toPath();
+        Files.write(text, "1 1:0.5 3:1\n-1 2:x\n".getBytes(StandardCharsets.US_ASCII));
+        try {
+            Dataset.convert(text, 0, file);
+            throw new AssertionError("The text file must not be converted.");
+        } catch (ParseException | IllegalArgumentException e) {
+            // expected
+        }
+        assertThat(Files.readAllBytes(file), is(written));
+        assertSame(dataset, docs);
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            assertThat(files.count(), is(2L));
+        }
+
+        DatasetWriter writer = new DatasetWriter(file);
+        writer.add(docs[0]);
+        try {
+            writer.add(new LabeledFeatureVector());
+            throw new AssertionError("A document without features must not be added.");
+        } catch (NullPointerException e) {
+            // expected
+        }
+        try {
+            writer.close();
+            throw new AssertionError("A writer that failed to add a document must not write the file.");
+        } catch (IOException e) {
+            assertThat(e.getMessage().contains("has not been written"), is(true));
+        }
+        assertThat(Files.readAllBytes(file), is(written));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedFile() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("docs.bin");
+        Dataset.write(documents(10), file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 8);
+        }
+        Dataset.open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void testDescendingOffsets() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("docs.bin");
+        Dataset.write(documents(10), file);
+        long values = Dataset.open(file).getNumberOfValues();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer offset = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(0, values + 1);
+            channel.write(offset, Dataset.columnStart(10, values, 3) + Long.BYTES);
+        }
+        Dataset.open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTextFile() throws IOException {
+        Dataset.open(Paths.get("data/example3/train.dat"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testIndexOutOfBounds() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("docs.bin");
+        Dataset.write(documents(10), file);
+        Dataset.open(file).getDimensions(10);
+    }
+}
@@ -0,0 +1,72 @@
+package jnisvmlight;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DecimalConversionTest {
+
+    @Test
+    public void testRandomNumbers() {
+        Random random = new Random(7);
+        for (int i = 0; i < 200000; i++) {
+            int digits = 1 + random.nextInt(18);
+            long mantissa = 0;
+            for (int d = 0; d < digits; d++) {
+                mantissa = 10 * mantissa + random.nextInt(10);
+            }
+            int exponent = i % 2 == 0 ? random.nextInt(60) - 30 : random.nextInt(700) - 360;
+            assertConverted(mantissa, exponent);
+        }
+    }
+
+    @Test
+    public void testShortestRepresentations() {
+        Random random = new Random(11);
+        for (int i = 0; i < 100000; i++) {
+            BigDecimal decimal = new BigDecimal(Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20)));
+            assertConverted(decimal.unscaledValue().longValue(), -decimal.scale());
+        }
+    }
+
+    @Test
+    public void testHalfwayNumbers() {
+        Random random = new Random(13);
+        for (int i = 0; i < 100000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong() & 0x7FEFFFFFFFFFFFFFL);
+            BigDecimal halfway = new BigDecimal(value).add(new BigDecimal(Math.ulp(value) / 2)).stripTrailingZeros();
+            if (halfway.precision() <= 18) {
+                assertConverted(halfway.unscaledValue().longValue(), -halfway.scale());
+            }
+        }
+        assertConverted(9007199254740993L, 0);
+        assertConverted(9007199254740995L, 0);
+    }
+
+    @Test
+    public void testLimits() {
+        assertThat(DecimalConversion.toDouble(0, 400), is(0.0));
+        assertConverted(17976931348623157L, 292);
+        assertConverted(22250738585072014L, -324);
+        assertThat(Double.isNaN(DecimalConversion.toDouble(1, 309)), is(true));
+        assertThat(Double.isNaN(DecimalConversion.toDouble(1, -330)), is(true));
+    }
+
+    @Test
+    public void testMultiplyHigh() {
+        assertThat(DecimalConversion.multiplyHigh(-1L, -1L), is(-2L));
+        assertThat(DecimalConversion.multiplyHigh(1L << 32, 1L << 32), is(1L));
+        assertThat(DecimalConversion.multiplyHigh(Long.MAX_VALUE, 2), is(0L));
+    }
+
+    private static void assertConverted(long mantissa, int exponent) {
+        double value = DecimalConversion.toDouble(mantissa, exponent);
+        if (!Double.isNaN(value)) {
+            assertThat(mantissa + "e" + exponent, value, is(Double.parseDouble(mantissa + "e" + exponent)));
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package jnisvmlight;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DocumentReaderTest {
+
+    private static final String[] NUMBERS = {"0", "1", "-1", "+2", "0.5", ".5", "5.", "-0", "-0.0", "1e3", "1E-3", "2.5e+2", "0.1", "0.3",
+            "123456789.123456789", "1e300", "4.9e-324", "NaN", "-Infinity", "0x1p3", "1d", "1f", "00012", "0.000000000000000000001",
+            "9007199254740993", "1e", "1.2.3", "abc", "", "2147483647", "2147483648", "-5"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Reads a file like {@link SVMLightInterface#fromPath(Path, int)} did before it was mapped, line by line.
+     */
+    private static String readLineByLine(Path path, int numOfLinesToSkip) {
+        try {
+            List<String> lines = Files.readAllLines(path);
+            StringBuilder result = new StringBuilder();
+            int cnt = 0;
+            for (String line : lines) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
+                cnt++;
+                if (cnt <= numOfLinesToSkip) {
+                    continue;
+                }
+                LabeledFeatureVector v = DocumentParser.parse(line, cnt, path.toString());
+                if (v != null) {
+                    result.append(describe(v));
+                }
+            }
+            return result.append(cnt).toString();
+        } catch (Exception e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    private static String readMapped(Path path, int numOfLinesToSkip) {
+        try {
+            List<LabeledFeatureVector> documents = new ArrayList<>();
+            int cnt = DocumentReader.read(path, numOfLinesToSkip, documents::add);
+            StringBuilder result = new StringBuilder();
+            for (LabeledFeatureVector v : documents) {
+                result.append(describe(v));
+            }
+            return result.append(cnt).toString();
+        } catch (Exception e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    private static String readParallel(Path path, int numOfLinesToSkip) {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<LabeledFeatureVector> documents = new ArrayList<>();
+            int cnt = DocumentReader.read(path, numOfLinesToSkip, documents::add, pool);
+            StringBuilder result = new StringBuilder();
+            for (LabeledFeatureVector v : documents) {
+                result.append(describe(v));
+            }
+            return result.append(cnt).toString();
+        } catch (Exception e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Creates a file of several parallel chunks with documents, comment lines and mixed line breaks.
+     */
+    private Path largeFile(String badLine) throws IOException {
+        Random random = new Random(2);
+        StringBuilder content = new StringBuilder();
+        int lines = 0;
+        while (content.length() < 3 * DocumentReader.MIN_PARALLEL_CHUNK) {
+            if (random.nextInt(50) == 0) {
+                content.append("# comment ").append(lines);
+            } else {
+                content.append(random.nextInt(3) - 1).append(" qid:").append(random.nextInt(100));
+                int dim = 0;
+                for (int j = 0; j < 10; j++) {
+                    dim += 1 + random.nextInt(100);
+                    content.append(' ').append(dim).append(':').append(random.nextDouble());
+                }
+            }
+            if (badLine != null && lines == 40000) {
+                content.append('\n').append(badLine);
+            }
+            content.append(random.nextInt(10) == 0 ? "\r\n" : "\n");
+            lines++;
+        }
+        Path path = folder.newFile().toPath();
+        Files.write(path, content.toString().getBytes(StandardCharsets.US_ASCII));
+        return path;
+    }
+
+    @Test
+    public void testParallelReadIsSequentialRead() throws IOException {
+        Path path = largeFile(null);
+        for (int numOfLinesToSkip : new int[]{0, 7}) {
+            String sequential = readMapped(path, numOfLinesToSkip);
+            assertThat(sequential.startsWith("java"), is(false));
+            assertThat(readParallel(path, numOfLinesToSkip), is(sequential));
+        }
+    }
+
+    @Test
+    public void testParallelReadErrors() throws IOException {
+        for (String badLine : new String[]{"1 1:2 3", "1 1:x", "1"}) {
+            Path path = largeFile(badLine);
+            String sequential = readMapped(path, 0);
+            assertThat(sequential.startsWith("java"), is(true));
+            assertThat(readParallel(path, 0), is(sequential));
+        }
+    }
+
+    @Test
+    public void testLineStart() throws IOException {
+        String content = "1 1:2\n\r\n3 2:1\r4 5:6\r\n\n";
+        Path path = folder.newFile().toPath();
+        Files.write(path, content.getBytes(StandardCharsets.US_ASCII));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] expected = {0, 6, 6, 6, 6, 6, 6, 8, 8, 14, 14, 14, 14, 14, 14, 21, 21, 21, 21, 21, 21, 21, 22};
+            for (int position = 1; position <= content.length(); position++) {
+                assertThat(String.valueOf(position), DocumentReader.lineStart(channel, position, content.length()),
+                        is(expected[position]));
+            }
+        }
+    }
+
+    private static String describe(LabeledFeatureVector v) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(Double.doubleToRawLongBits(v.getLabel())).append(" qid:").append(v.getQueryId());
+        for (int i = 0; i < v.m_dims.length; i++) {
+            sb.append(' ').append(v.m_dims[i]).append(':').append(Double.doubleToRawLongBits(v.m_vals[i]));
+        }
+        return sb.append('|').append(v.m_factor).append('\n').toString();
+    }
+
+    private void assertSameAsLineByLine(String content, int numOfLinesToSkip) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        assertThat(content, readMapped(path, numOfLinesToSkip), is(readLineByLine(path, numOfLinesToSkip)));
+    }
+
+    @Test
+    public void testCommonFormat() throws IOException {
+        assertSameAsLineByLine("1 1:0.5 3:1.25\n-1 qid:3 2:1 4:-0.75 # comment\n# comment line\n2 qid:4 1:1e-3 7:3\n", 0);
+        assertSameAsLineByLine("1 1:0.5 3:1.25\r\n-1 2:1\r3 4:1", 0);
+        assertSameAsLineByLine("header\n# comment\n1 1:0.5\n2 2:0.5\n", 1);
+        assertSameAsLineByLine("1 #only a comment\n1 1:2\n", 0);
+        assertSameAsLineByLine("1\tqid:1\t1:2\t5:3\n", 0);
+        assertSameAsLineByLine("  1 1:2 5:3  \n", 0);
+        assertSameAsLineByLine("1 qid:x\n1 1:2\n", 0);
+        assertSameAsLineByLine("1 1:2 # \u00e4\u00f6\u00fc\n", 0);
+    }
+
+    @Test
+    public void testUncommonFormatAndErrors() throws IOException {
+        assertSameAsLineByLine("1  1:2\n", 0);
+        assertSameAsLineByLine("1 1:2 [3:4]\n", 0);
+        assertSameAsLineByLine("1 1:2 3\n", 0);
+        assertSameAsLineByLine("1\n", 0);
+        assertSameAsLineByLine("1 1:2\n\n2 1:3\n", 0);
+        assertSameAsLineByLine("1 0:2\n", 0);
+        assertSameAsLineByLine("1 1:2:3\n", 0);
+        assertSameAsLineByLine("1 qid 1:2\n", 0);
+        assertSameAsLineByLine("1 qidx:5 1:2\n", 0);
+        assertSameAsLineByLine("x 1:2\n", 0);
+        assertSameAsLineByLine("1 1:2\u000b3:4\n", 0);
+        assertSameAsLineByLine("# comment only\n", 0);
+        assertSameAsLineByLine("", 0);
+        assertSameAsLineByLine("1 1:2 # \u00e4\n\u00e4 1:2\n", 0);
+        Path path = folder.newFile().toPath();
+        Files.write(path, new byte[]{'1', ' ', '1', ':', '2', '\n', '#', (byte) 0xff, '\n'});
+        assertThat(readMapped(path, 0), is(readLineByLine(path, 0)));
+    }
+
+    @Test
+    public void testNumbers() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (String number : NUMBERS) {
+            content.setLength(0);
+            content.append(number).append(" 1:1\n");
+            assertSameAsLineByLine(content.toString(), 0);
+            assertSameAsLineByLine("1 1:" + number + "\n", 0);
+            assertSameAsLineByLine("1 " + number + ":1\n", 0);
+            assertSameAsLineByLine("1 qid:" + number + " 1:1\n", 0);
+        }
+    }
+
+    @Test
+    public void testRandomValues() throws IOException {
+        Random random = new Random(1);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            content.append(random.nextBoolean() ? 1 : -1);
+            int dim = 0;
+            for (int j = 0; j < 20; j++) {
+                dim += 1 + random.nextInt(100);
+                double value = random.nextGaussian() * Math.pow(10, random.nextInt(20) - 10);
+                content.append(' ').append(dim).append(':').append(random.nextBoolean() ? Double.toString(value) :
+                        String.format("%." + random.nextInt(12) + "f", value));
+            }
+            content.append('\n');
+        }
+        assertSameAsLineByLine(content.toString(), 3);
+    }
+
+    @Test
+    public void testLinesSpanningWindows() throws IOException, ParseException {
+        String content = "1 qid:2 1:0.5 3:1.25 # a\r\n# comment\r\n-1 2:1 4:-0.75\r2 7:3\n";
+        byte[] bytes = content.getBytes(StandardCharsets.US_ASCII);
+        List<LabeledFeatureVector> expected = new ArrayList<>();
+        new DocumentReader("test", 0).readLines(ByteBuffer.wrap(bytes), 0, bytes.length, true, expected::add);
+        for (int split = 0; split <= bytes.length; split++) {
+            List<LabeledFeatureVector> documents = new ArrayList<>();
+            DocumentReader reader = new DocumentReader("test", 0);
+            int consumed = reader.readLines(ByteBuffer.wrap(bytes), 0, split, false, documents::add);
+            assertThat(reader.readLines(ByteBuffer.wrap(bytes), consumed, bytes.length, true, documents::add), is(bytes.length));
+            assertThat(documents.size(), is(expected.size()));
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(describe(documents.get(i)), is(describe(expected.get(i))));
+            }
+        }
+    }
+}
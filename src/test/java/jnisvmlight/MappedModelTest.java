@@ -0,0 +1,150 @@
+package jnisvmlight;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MappedModelTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void assertSameModel(SVMLightModel loaded, SVMLightModel model, FeatureVector[] validation) {
+        assertThat(loaded.getPrecision(), is(model.getPrecision()));
+        assertThat(loaded.getNumberOfSupportVectors(), is(model.getNumberOfSupportVectors()));
+        assertThat(loaded.getThreshold(), is(model.getThreshold()));
+        assertThat(loaded.hasSparseLinearWeights(), is(model.hasSparseLinearWeights()));
+        assertThat(loaded.getMemoryBytes(), is(model.getMemoryBytes()));
+        assertThat(loaded.toString(), is(model.toString()));
+        for (FeatureVector v : validation) {
+            assertThat(loaded.classify(v), is(model.classify(v)));
+        }
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        Random random = new Random(23);
+        FeatureVector[] validation = SVMLightModelTest.randomVectors(random, 100);
+        for (int kernelType = KernelParam.LINEAR; kernelType <= KernelParam.SIGMOID; kernelType++) {
+            for (long highFeatIdx : new long[]{SVMLightModelTest.HIGHEST_FEATURE, 300000000}) {
+                SVMLightModel model = SVMLightModelTest.newModel(kernelType, 2, highFeatIdx, SVMLightModelTest.randomDocs(random, 40));
+                for (ModelPrecision precision : ModelPrecision.values()) {
+                    Path path = folder.newFile().toPath();
+                    model.withPrecision(precision).writeBinaryModelToFile(path);
+                    assertSameModel(SVMLightModel.fromBinaryPath(path), model.withPrecision(precision), validation);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMappedViews() throws IOException {
+        Random random = new Random(29);
+        for (long highFeatIdx : new long[]{SVMLightModelTest.HIGHEST_FEATURE, 300000000}) {
+            SVMLightModel model = SVMLightModelTest.newModel(KernelParam.LINEAR, 2, highFeatIdx, SVMLightModelTest.randomDocs(random, 30));
+            Path path = folder.newFile().toPath();
+            model.writeBinaryModelToFile(path);
+            MappedModel mapped = MappedModel.open(path);
+            assertThat(mapped.getKernelType(), is((long) KernelParam.LINEAR));
+            assertThat(mapped.getThreshold(), is(model.getThreshold()));
+            assertThat(mapped.getNumberOfSupportVectors(), is(30));
+            for (int i = 0; i < 30; i++) {
+                LabeledFeatureVector sv = model.getSupportVector(i);
+                assertThat(mapped.getAlpha(i), is(sv.getLabel()));
+                IntBuffer dims = mapped.getDimensions(i);
+                DoubleBuffer vals = mapped.getValues(i);
+                assertThat(dims.remaining(), is(sv.m_dims.length));
+                for (int k = 0; k < sv.m_dims.length; k++) {
+                    assertThat(dims.get(k), is(sv.m_dims[k]));
+                    assertThat(vals.get(k), is(sv.m_vals[k]));
+                }
+            }
+            assertThat(mapped.hasLinearWeights(), is(true));
+            for (int dim = 0; dim <= SVMLightModelTest.HIGHEST_FEATURE + 1; dim++) {
+                assertThat(mapped.getLinearWeight(dim), is(model.getLinearWeight(dim)));
+            }
+        }
+        Path path = folder.newFile().toPath();
+        SVMLightModelTest.randomModel(random, KernelParam.RBF, 5).writeBinaryModelToFile(path);
+        assertThat(MappedModel.open(path).hasLinearWeights(), is(false));
+    }
+
+    @Test
+    public void testTextConversion() throws Exception {
+        Random random = new Random(31);
+        FeatureVector[] validation = SVMLightModelTest.randomVectors(random, 50);
+        SVMLightModel model = SVMLightModelTest.randomModel(random, KernelParam.POLYNOMIAL, 20);
+        Path text = folder.newFile().toPath();
+        Path binary = folder.newFile().toPath();
+        Path converted = folder.newFile().toPath();
+        model.writeModelToFile(text.toString());
+        MappedModel.convertToBinary(text, binary);
+        MappedModel.convertToText(binary, converted);
+        SVMLightModel fromText = SVMLightModel.fromPath(text);
+        assertSameModel(SVMLightModel.fromBinaryPath(binary), fromText, validation);
+        assertSameModel(SVMLightModel.fromPath(converted), fromText, validation);
+    }
+
+    @Test
+    public void testWriteModelWithoutFormat() throws IOException {
+        Random random = new Random(43);
+        FeatureVector[] validation = SVMLightModelTest.randomVectors(random, 20);
+        LabeledFeatureVector[] docs = SVMLightModelTest.randomDocs(random, 10);
+        SVMLightModel model = new SVMLightModel(null, KernelParam.RBF, 2, 0.1, 0.5, 1.0, null, SVMLightModelTest.HIGHEST_FEATURE, 20,
+                11, 0.25, docs);
+        Path path = folder.newFile().toPath();
+        model.writeBinaryModelToFile(path);
+        SVMLightModel loaded = SVMLightModel.fromBinaryPath(path);
+        assertThat(loaded.toString(), is(new SVMLightModel("", KernelParam.RBF, 2, 0.1, 0.5, 1.0, "", SVMLightModelTest.HIGHEST_FEATURE,
+                20, 11, 0.25, docs).toString()));
+        for (FeatureVector v : validation) {
+            assertThat(loaded.classify(v), is(model.classify(v)));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testTextModelIsNotBinary() throws IOException {
+        Path text = folder.newFile().toPath();
+        SVMLightModelTest.randomModel(new Random(37), KernelParam.RBF, 5).writeModelToFile(text.toString());
+        MappedModel.open(text);
+    }
+
+    @Test(expected = IOException.class)
+    public void testDescendingOffsets() throws IOException {
+        Path path = folder.newFile().toPath();
+        SVMLightModelTest.randomModel(new Random(47), KernelParam.RBF, 5).writeBinaryModelToFile(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(MappedModel.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            int values = (int) header.getLong(88);
+            long offsets = MappedModel.sectionStart(header.getInt(112) + header.getInt(116), header.getInt(84), values,
+                    header.getInt(96), header.getInt(100), 1);
+            ByteBuffer offset = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(0, values);
+            channel.write(offset, offsets + Integer.BYTES);
+        }
+        MappedModel.open(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedFile() throws IOException {
+        Path path = folder.newFile().toPath();
+        SVMLightModelTest.randomModel(new Random(41), KernelParam.RBF, 5).writeBinaryModelToFile(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 8);
+        }
+        MappedModel.open(path);
+    }
+}
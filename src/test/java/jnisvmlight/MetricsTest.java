@@ -0,0 +1,101 @@
+package jnisvmlight;
+
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class MetricsTest {
+
+    private static LabeledFeatureVector[] trainingData;
+
+    private static SVMLightModel linearModel;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MetricsRegistry registry;
+
+    @BeforeClass
+    public static void importData() throws ParseException {
+        trainingData = SVMLightInterface.fromPath(Paths.get("data/example3/train.dat"), 0);
+        linearModel = new SVMLightInterface().trainModel(trainingData, new String[]{"-z", "p"});
+    }
+
+    @Before
+    public void setUp() {
+        registry = new MetricsRegistry();
+        Metrics.addListener(registry);
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.removeListener(registry);
+    }
+
+    @Test
+    public void testOperationsAreCounted() throws Exception {
+        SVMLightInterface svmLightInterface = new SVMLightInterface();
+        SVMLightModel model = svmLightInterface.trainModel(trainingData, new String[]{"-z", "p", "-t", "2", "-g", "0.1"});
+        for (LabeledFeatureVector vector : trainingData) {
+            model.classify(vector);
+            svmLightInterface.classifyNative(vector);
+        }
+        model.classify(trainingData);
+        Path path = folder.newFile().toPath();
+        model.writeModelToFile(path.toString());
+        SVMLightModel.fromPath(path);
+
+        assertThat(registry.getMetrics(Operation.TRAIN_MODEL).getCalls(), is(1L));
+        assertThat(registry.getMetrics(Operation.TRAIN_MODEL).getCount(), is((long) trainingData.length));
+        assertThat(registry.getMetrics(Operation.CLASSIFY).getCalls(), is((long) trainingData.length));
+        assertThat(registry.getMetrics(Operation.CLASSIFY).getCount(),
+                is((long) trainingData.length * model.getNumberOfSupportVectors()));
+        assertThat(registry.getMetrics(Operation.CLASSIFY_NATIVE).getCalls(), is((long) trainingData.length));
+        assertThat(registry.getMetrics(Operation.CLASSIFY_BATCH).getCount(), is((long) trainingData.length));
+        assertThat(registry.getMetrics(Operation.WRITE_MODEL).getCount(), is((long) model.getNumberOfSupportVectors()));
+        assertThat(registry.getMetrics(Operation.LOAD_MODEL).getCount(), is((long) model.getNumberOfSupportVectors()));
+        assertThat(registry.getMetrics(Operation.PARSE_DOCUMENTS).getCalls(), is(1L));
+
+        OperationMetrics classify = registry.getMetrics(Operation.CLASSIFY);
+        assertThat(classify.getPercentileNanos(50), Matchers.lessThanOrEqualTo(classify.getPercentileNanos(99)));
+        assertThat(classify.getPercentileNanos(100), is(classify.getMaxNanos()));
+        assertThat(classify.getTotalNanos(), Matchers.greaterThan(0L));
+    }
+
+    @Test
+    public void testNothingIsRecordedWithoutListener() throws Exception {
+        Metrics.removeListener(registry);
+        assertThat(Metrics.isEnabled(), is(false));
+        Path path = folder.newFile().toPath();
+        linearModel.writeModelToFile(path.toString());
+        SVMLightModel model = SVMLightModel.fromPath(path);
+        model.classify(trainingData[0]);
+        assertThat(registry.getMetrics(Operation.WRITE_MODEL).getCalls(), is(0L));
+        assertThat(registry.getMetrics(Operation.CLASSIFY).getCalls(), is(0L));
+        assertThat(registry.getMetrics(Operation.LOAD_MODEL).getCalls(), is(0L));
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        for (long nanos : new long[]{0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = OperationMetrics.bucket(nanos);
+            assertThat(OperationMetrics.lowerBound(bucket), Matchers.lessThanOrEqualTo(nanos));
+            if (nanos < Long.MAX_VALUE) {
+                assertThat(OperationMetrics.lowerBound(bucket + 1), Matchers.greaterThan(nanos));
+            }
+            // the buckets are at most 12.5% wide
+            assertThat((double) nanos - OperationMetrics.lowerBound(bucket), Matchers.lessThanOrEqualTo(nanos / 8.0));
+        }
+    }
+}
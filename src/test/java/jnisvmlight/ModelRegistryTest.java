@@ -0,0 +1,214 @@
+package jnisvmlight;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ModelRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ModelRegistry m_registry = new ModelRegistry();
+
+    @After
+    public void tearDown() throws Exception {
+        m_registry.close();
+    }
+
+    /**
+     * Returns a linear model that classifies every vector with feature 1 set to 1 as {@code -threshold}.
+     */
+    private static SVMLightModel constantModel(double threshold) {
+        SVMLightModel model = SVMLightModelTest.newModel(KernelParam.LINEAR, 1, new LabeledFeatureVector[]{
+                new LabeledFeatureVector(0, new int[]{1}, new double[]{1})});
+        model.setThreshold(threshold);
+        return model;
+    }
+
+    private static final FeatureVector QUERY = new FeatureVector(new int[]{1}, new double[]{1});
+
+    @Test
+    public void testRegisterAndReplace() {
+        ModelVersion first = m_registry.register("ranker", constantModel(1));
+        assertThat(first.getVersion(), is(1L));
+        assertThat(first.getName(), is("ranker"));
+        assertThat(m_registry.classify("ranker", QUERY), is(-1.0));
+
+        ModelLease lease = m_registry.acquire("ranker");
+        assertThat(first.getLeases(), is(1));
+        ModelVersion second = m_registry.register("ranker", constantModel(2));
+        assertThat(second.getVersion(), is(2L));
+        assertThat(m_registry.getVersion("ranker"), is(second));
+        assertThat(m_registry.classify("ranker", QUERY), is(-2.0));
+
+        // the old version is kept for the open lease
+        assertThat(first.isReleased(), is(false));
+        assertThat(lease.getModel().classify(QUERY), is(-1.0));
+        lease.close();
+        lease.close();
+        assertThat(first.isReleased(), is(true));
+        assertThat(first.getLeases(), is(0));
+        assertThat(second.isReleased(), is(false));
+        assertThat(second.getLeases(), is(0));
+        assertThat(m_registry.getNames(), contains("ranker"));
+    }
+
+    @Test
+    public void testReleaseClosesNativeModel() {
+        SVMLightModel model = constantModel(1);
+        NativeModel nativeModel = model.toNativeModel();
+        model.setNativeModel(nativeModel);
+        ModelVersion first = m_registry.register("ranker", model);
+        ModelLease lease = m_registry.acquire("ranker");
+        m_registry.register("ranker", constantModel(2));
+        assertThat(nativeModel.classify(QUERY), closeTo(-1.0, 0.00001));
+        lease.close();
+        assertThat(first.isReleased(), is(true));
+        try {
+            nativeModel.classify(QUERY);
+            throw new AssertionError("The native model of a released version must be closed.");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage().contains("closed"), is(true));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedLease() {
+        m_registry.register("ranker", constantModel(1));
+        ModelLease lease = m_registry.acquire("ranker");
+        lease.close();
+        lease.getModel();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownModel() {
+        m_registry.acquire("unknown");
+    }
+
+    @Test
+    public void testRemove() {
+        ModelVersion version = m_registry.register("ranker", constantModel(1));
+        assertThat(m_registry.remove("ranker"), is(true));
+        assertThat(m_registry.remove("ranker"), is(false));
+        assertThat(m_registry.getVersion("ranker"), nullValue());
+        assertThat(version.isReleased(), is(true));
+        assertThat(m_registry.getNames().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testLoadTextAndBinaryFiles() throws Exception {
+        Random random = new Random(43);
+        SVMLightModel model = SVMLightModelTest.randomModel(random, KernelParam.RBF, 20);
+        Path text = folder.newFile("ranker.model").toPath();
+        Path binary = folder.newFile("ranker.bin").toPath();
+        model.writeModelToFile(text.toString());
+        model.writeBinaryModelToFile(binary);
+
+        ModelVersion version = m_registry.load("ranker", text).get(10, TimeUnit.SECONDS);
+        assertThat(version.getSource(), is(text));
+        assertThat(version.getNumberOfSupportVectors(), is(20));
+        assertThat(version.getLoadNanos(), greaterThan(0L));
+        assertThat(version.getWarmupNanos(), greaterThan(0L));
+        version = m_registry.load("ranker", binary).get(10, TimeUnit.SECONDS);
+        assertThat(version.getVersion(), is(2L));
+        for (FeatureVector v : SVMLightModelTest.randomVectors(random, 20)) {
+            assertThat(m_registry.classify("ranker", v), is(model.classify(v)));
+        }
+    }
+
+    @Test
+    public void testFailedLoadKeepsCurrentVersion() throws Exception {
+        ModelVersion version = m_registry.register("ranker", constantModel(1));
+        Path broken = folder.newFile("ranker.model").toPath();
+        Files.write(broken, "not a model\n".getBytes());
+        try {
+            m_registry.load("ranker", broken).join();
+        } catch (CompletionException e) {
+            assertThat(e.getCause() instanceof IllegalStateException, is(true));
+        }
+        assertThat(m_registry.getVersion("ranker"), is(version));
+        assertThat(m_registry.classify("ranker", QUERY), is(-1.0));
+    }
+
+    @Test
+    public void testWatchDirectory() throws Exception {
+        Path directory = folder.newFolder("models").toPath();
+        constantModel(1).writeBinaryModelToFile(directory.resolve("ranker.bin"));
+        Files.write(directory.resolve(".hidden"), "ignored".getBytes());
+        m_registry.watch(directory);
+        awaitVersion("ranker", 1);
+        assertThat(m_registry.classify("ranker", QUERY), is(-1.0));
+
+        Path staged = folder.newFile("staged.tmp").toPath();
+        constantModel(2).writeBinaryModelToFile(staged);
+        Files.move(staged, directory.resolve("ranker.bin"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        awaitVersion("ranker", 2);
+        assertThat(m_registry.classify("ranker", QUERY), is(-2.0));
+        assertThat(m_registry.getNames(), contains("ranker"));
+    }
+
+    @Test
+    public void testConcurrentReadersDuringSwaps() throws Exception {
+        m_registry.register("ranker", constantModel(1));
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(readers.submit(() -> {
+                int classified = 0;
+                while (running.get()) {
+                    try (ModelLease lease = m_registry.acquire("ranker")) {
+                        double threshold = lease.getVersion().getVersion();
+                        assertThat(lease.getModel().classify(QUERY), is(-threshold));
+                        classified++;
+                    }
+                }
+                return classified;
+            }));
+        }
+        List<ModelVersion> versions = new ArrayList<>();
+        for (int version = 2; version <= 50; version++) {
+            versions.add(m_registry.register("ranker", constantModel(version)));
+        }
+        running.set(false);
+        for (Future<Integer> future : futures) {
+            assertThat(future.get(10, TimeUnit.SECONDS), greaterThan(0));
+        }
+        readers.shutdown();
+        for (ModelVersion version : versions.subList(0, versions.size() - 1)) {
+            assertThat(version.isReleased(), is(true));
+        }
+    }
+
+    private void awaitVersion(String name, long version) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (m_registry.getVersion(name) == null || m_registry.getVersion(name).getVersion() < version) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Version " + version + " of " + name + " was not loaded.");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
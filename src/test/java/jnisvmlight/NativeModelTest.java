@@ -0,0 +1,231 @@
+package jnisvmlight;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class NativeModelTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void assertSameScores(NativeModel nativeModel, SVMLightModel model, FeatureVector[] validation) {
+        int[] offsets = new int[validation.length + 1];
+        for (int i = 0; i < validation.length; i++) {
+            offsets[i + 1] = offsets[i] + validation[i].m_dims.length;
+        }
+        int[] dims = new int[offsets[validation.length]];
+        double[] values = new double[dims.length];
+        for (int i = 0; i < validation.length; i++) {
+            System.arraycopy(validation[i].m_dims, 0, dims, offsets[i], validation[i].m_dims.length);
+            System.arraycopy(validation[i].m_vals, 0, values, offsets[i], validation[i].m_vals.length);
+        }
+        double[] results = new double[validation.length];
+        nativeModel.classify(offsets, dims, values, results);
+        for (int i = 0; i < validation.length; i++) {
+            assertThat(nativeModel.classify(validation[i]), closeTo(model.classify(validation[i]), 0.00001));
+            assertThat(results[i], is(nativeModel.classify(validation[i])));
+        }
+    }
+
+    /**
+     * Collects garbage until the native models that are unreachable so far have been released, so that they are not released while the
+     * native memory is measured.
+     */
+    private static void releaseUnreachableModels() throws InterruptedException {
+        long used;
+        do {
+            used = NativeMemory.getUsedBytes();
+            System.gc();
+            Thread.sleep(50);
+        } while (NativeMemory.getUsedBytes() != used);
+    }
+
+    private static boolean isFreed(NativeModel.Handle handle) {
+        try {
+            handle.acquire();
+            handle.release();
+            return false;
+        } catch (IllegalStateException e) {
+            return true;
+        }
+    }
+
+    @Test
+    public void testToNativeModel() {
+        Random random = new Random(47);
+        FeatureVector[] validation = SVMLightModelTest.randomVectors(random, 50);
+        for (int kernelType = KernelParam.LINEAR; kernelType <= KernelParam.SIGMOID; kernelType++) {
+            for (long highFeatIdx : new long[]{SVMLightModelTest.HIGHEST_FEATURE, 300000000}) {
+                SVMLightModel model = SVMLightModelTest.newModel(kernelType, 2, highFeatIdx, SVMLightModelTest.randomDocs(random, 30));
+                assertSameScores(model.toNativeModel(), model, validation);
+                SVMLightModel float32 = model.withPrecision(ModelPrecision.FLOAT32);
+                assertSameScores(float32.toNativeModel(), float32, validation);
+            }
+        }
+    }
+
+    @Test
+    public void testToNativeModelOfTrainedModel() throws Exception {
+        LabeledFeatureVector[] trainingData = SVMLightInterface.fromPath(Paths.get("data/example3/train.dat"), 0);
+        FeatureVector[] testData = SVMLightInterface.fromPath(Paths.get("data/example3/test.dat"), 0);
+        for (String kernelType : new String[]{"0", "2"}) {
+            SVMLightModel model = new SVMLightInterface().trainModel(trainingData,
+                    new String[]{"-z", "p", "-t", kernelType, "-g", "0.1"});
+            assertSameScores(model.toNativeModel(), model, testData);
+            for (FeatureVector v : testData) {
+                assertThat(model.toNativeModel().classify(v), closeTo(model.getNativeModel().classify(v), 0.00001));
+            }
+        }
+    }
+
+    @Test
+    public void testFromPath() throws Exception {
+        Random random = new Random(53);
+        FeatureVector[] validation = SVMLightModelTest.randomVectors(random, 50);
+        for (int kernelType = KernelParam.LINEAR; kernelType <= KernelParam.SIGMOID; kernelType++) {
+            SVMLightModel model = SVMLightModelTest.newModel(kernelType, 2, 300000000, SVMLightModelTest.randomDocs(random, 20));
+            Path path = folder.newFile().toPath();
+            model.writeModelToFile(path.toString());
+            assertSameScores(NativeModel.fromPath(path), SVMLightModel.fromPath(path), validation);
+        }
+    }
+
+    @Test
+    public void testCloseReleasesNativeMemory() throws Exception {
+        LabeledFeatureVector[] trainingData = SVMLightInterface.fromPath(Paths.get("data/example3/train.dat"), 0);
+        FeatureVector[] testData = SVMLightInterface.fromPath(Paths.get("data/example3/test.dat"), 0);
+        SVMLightInterface svm = new SVMLightInterface();
+        String[][] argvs = {{"-z", "c"}, {"-z", "r"}, {"-z", "p"}, {"-z", "p", "-t", "2", "-g", "0.1"}};
+        Path path = folder.newFile().toPath();
+        releaseUnreachableModels();
+        for (String[] argv : argvs) {
+            // the optimizer and classification buffers of this thread are kept, allocate them before measuring
+            SVMLightModel warmup = svm.trainModel(trainingData, argv);
+            warmup.getNativeModel().classify(testData[0]);
+            warmup.getNativeModel().close();
+            long used = NativeMemory.getUsedBytes();
+
+            SVMLightModel model = svm.trainModel(trainingData, argv);
+            model.getNativeModel().classify(testData[0]);
+            assertThat(NativeMemory.getUsedBytes(), greaterThan(used));
+            model.getNativeModel().close();
+            assertThat(NativeMemory.getUsedBytes(), is(used));
+
+            try (NativeModel copy = model.toNativeModel()) {
+                assertThat(copy.classify(testData[0]), closeTo(model.classify(testData[0]), 0.00001));
+            }
+            assertThat(NativeMemory.getUsedBytes(), is(used));
+            model.writeModelToFile(path.toString());
+            try (NativeModel read = NativeModel.fromPath(path)) {
+                assertThat(read.classify(testData[0]), closeTo(model.classify(testData[0]), 0.00001));
+            }
+            assertThat(NativeMemory.getUsedBytes(), is(used));
+        }
+        assertThat(NativeMemory.getAllocatedBytes() - NativeMemory.getFreedBytes(), is(NativeMemory.getUsedBytes()));
+    }
+
+    @Test
+    public void testClosedModel() {
+        SVMLightModel model = SVMLightModelTest.randomModel(new Random(59), KernelParam.RBF, 5);
+        NativeModel nativeModel = model.toNativeModel();
+        nativeModel.close();
+        nativeModel.close();
+        try {
+            nativeModel.classify(SVMLightModelTest.randomVector(new Random(61)));
+            throw new AssertionError("A closed model must not classify.");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage().contains("closed"), is(true));
+        }
+    }
+
+    @Test
+    public void testCloseWaitsForClassification() throws Exception {
+        NativeModel nativeModel = SVMLightModelTest.randomModel(new Random(71), KernelParam.RBF, 5).toNativeModel();
+        // holds the model like a classification in progress
+        nativeModel.handle().acquire();
+        Thread closing = new Thread(nativeModel::close);
+        closing.start();
+        closing.join(200);
+        assertThat(closing.isAlive(), is(true));
+        nativeModel.handle().release();
+        closing.join();
+        assertThat(isFreed(nativeModel.handle()), is(true));
+    }
+
+    @Test
+    public void testUnreachableModelIsReleased() throws Exception {
+        SVMLightModel model = SVMLightModelTest.randomModel(new Random(73), KernelParam.RBF, 5);
+        NativeModel.Handle closed = model.toNativeModel().handle();
+        NativeModel.Handle unreachable = model.toNativeModel().handle();
+        NativeModel reachable = model.toNativeModel();
+        closed.free();
+        for (int i = 0; i < 100 && !isFreed(unreachable); i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertThat(isFreed(unreachable), is(true));
+        assertThat(isFreed(reachable.handle()), is(false));
+        assertThat(reachable.classify(SVMLightModelTest.randomVector(new Random(79))), closeTo(
+                model.classify(SVMLightModelTest.randomVector(new Random(79))), 0.00001));
+        reachable.close();
+    }
+
+    @Test
+    public void testInvalidDimensions() {
+        try (NativeModel nativeModel = SVMLightModelTest.randomModel(new Random(67), KernelParam.RBF, 5).toNativeModel()) {
+            for (int[] dims : new int[][]{{0, 2}, {2, 2}, {3, 2}}) {
+                try {
+                    nativeModel.classify(new int[]{0, 0, 2}, dims, new double[]{1, 1}, new double[2]);
+                    throw new AssertionError("Dimensions " + Arrays.toString(dims) + " must be rejected.");
+                } catch (IllegalArgumentException e) {
+                    assertThat(e.getMessage().contains("strictly ascending"), is(true));
+                }
+            }
+            try {
+                nativeModel.classify(new FeatureVector(new int[]{3, 2}, new double[]{1, 1}));
+                throw new AssertionError("An unsorted vector must be rejected.");
+            } catch (IllegalArgumentException e) {
+                assertThat(e.getMessage().contains("strictly ascending"), is(true));
+            }
+        }
+    }
+
+    @Test
+    public void testToNativeModelWithInvalidSupportVectors() {
+        for (int[] dims : new int[][]{{3, 2}, {0, 2}, {2, 2}}) {
+            LabeledFeatureVector[] docs = SVMLightModelTest.randomDocs(new Random(89), 5);
+            // the model does not check the dimensions of its support vectors
+            docs[3] = new LabeledFeatureVector();
+            docs[3].m_label = 0.5;
+            docs[3].m_dims = dims;
+            docs[3].m_vals = new double[]{1, 1};
+            SVMLightModel model = SVMLightModelTest.newModel(KernelParam.RBF, 2, docs);
+            try {
+                model.toNativeModel();
+                throw new AssertionError("Support vector dimensions " + Arrays.toString(dims) + " must be rejected.");
+            } catch (IllegalArgumentException e) {
+                assertThat(e.getMessage().contains("document 3"), is(true));
+            }
+        }
+    }
+
+    @Test(expected = ParseException.class)
+    public void testFromPathRejectsOtherFiles() throws Exception {
+        Path path = folder.newFile().toPath();
+        Files.write(path, "1 1:0.5\n".getBytes());
+        NativeModel.fromPath(path);
+    }
+}
@@ -11,7 +11,15 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
 public class SVMLightInterfaceTest {
@@ -36,7 +44,7 @@ public class SVMLightInterfaceTest {
         // The svmLightInterface with the native communication to the SVM-light shared libraries
         svmLightInterface = new SVMLightInterface();
         // Sort all feature vectors in ascending order of feature dimensions before training the model
-        SVMLightInterface.SORT_INPUT_VECTORS = true;
+        svmLightInterface.setSortInputVectors(true);
     }
 
     @Test
@@ -60,6 +68,251 @@ public class SVMLightInterfaceTest {
         testModel(model);
     }
 
+    @Test
+    public void testTrainKernelModels() throws Exception {
+        for (String kernelType : new String[]{"1", "2", "3"}) {
+            String[] argv = new String[]{"-z", "p", "-t", kernelType, "-g", "0.1", "-s", "0.1"};
+            SVMLightModel model = svmLightInterface.trainModel(trainingData, argv);
+            testModel(model);
+        }
+    }
+
+    @Test
+    public void testTrainingListenerReceivesProgress() throws Exception {
+        TrainingParameters parameters = new TrainingParameters(new String[]{"-z", "p", "-t", "2", "-g", "0.1"});
+        List<TrainingProgress> progress = new ArrayList<>();
+        parameters.setTrainingListener(p -> progress.add(p));
+        SVMLightModel model = svmLightInterface.trainModel(trainingData, parameters);
+        assertThat(model.isTrainingStopped(), is(false));
+        assertThat(progress.isEmpty(), is(false));
+        for (int i = 0; i < progress.size(); i++) {
+            assertThat(progress.get(i).getIteration(), is(i + 1L));
+            assertThat(progress.get(i).getActiveVariables(), Matchers.greaterThan(0L));
+        }
+        assertThat(progress.get(progress.size() - 1).getKernelEvaluations(), Matchers.greaterThan(0L));
+        assertThat(progress.get(progress.size() - 1).getMaxViolation(), Matchers.lessThan(0.001));
+        testModel(model);
+    }
+
+    @Test
+    public void testTrainingListenerStopsTraining() throws Exception {
+        TrainingParameters parameters = new TrainingParameters(new String[]{"-z", "p", "-t", "2", "-g", "0.1"});
+        List<TrainingProgress> progress = new ArrayList<>();
+        parameters.setTrainingListener(p -> progress.add(p) && p.getIteration() < 2);
+        SVMLightModel model = svmLightInterface.trainModel(trainingData, parameters);
+        assertThat(model.isTrainingStopped(), is(true));
+        assertThat(model.withPrecision(ModelPrecision.FLOAT32).isTrainingStopped(), is(true));
+        assertThat(progress.size(), is(2));
+        assertThat(model.getNumberOfSupportVectors(), Matchers.greaterThan(0));
+        // native classification uses the same stopped model
+        for (LabeledFeatureVector vector : testData) {
+            assertThat(model.classify(vector), Matchers.closeTo(svmLightInterface.classifyNative(vector), 0.00001));
+        }
+    }
+
+    @Test
+    public void testDeadlineStopsTraining() throws Exception {
+        TrainingParameters parameters = new TrainingParameters(new String[]{"-z", "p", "-t", "2", "-g", "0.1"});
+        parameters.getLearningParameters().deadline_millis = System.currentTimeMillis() - 1;
+        List<TrainingProgress> progress = new ArrayList<>();
+        parameters.setTrainingListener(p -> progress.add(p));
+        SVMLightModel stopped = svmLightInterface.trainModel(trainingData, parameters);
+        assertThat(progress.isEmpty(), is(true));
+        // a later run of the same instance does not change the stopped model
+        SVMLightModel converged = svmLightInterface.trainModel(trainingData, new String[]{"-z", "p", "-t", "2", "-g", "0.1"});
+        assertThat(stopped.isTrainingStopped(), is(true));
+        assertThat(converged.isTrainingStopped(), is(false));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTrainingListenerExceptionIsRethrown() throws Exception {
+        TrainingParameters parameters = new TrainingParameters(new String[]{"-z", "p", "-t", "2", "-g", "0.1"});
+        parameters.setTrainingListener(p -> {
+            throw new IllegalStateException("stop");
+        });
+        svmLightInterface.trainModel(trainingData, parameters);
+    }
+
+    @Test
+    public void testNativeModelsAreIndependent() throws Exception {
+        SVMLightModel linear = svmLightInterface.trainModel(trainingData, new String[]{"-z", "p"});
+        TrainingParameters parameters = new TrainingParameters(new String[]{"-z", "p", "-t", "2", "-g", "0.1"});
+        SVMLightModel rbf = svmLightInterface.trainModel(trainingData, parameters);
+        assertThat(svmLightInterface.getTrainingParameters(), Matchers.sameInstance(parameters));
+        for (LabeledFeatureVector vector : testData) {
+            assertThat(linear.getNativeModel().classify(vector), Matchers.closeTo(linear.classify(vector), 0.00001));
+            assertThat(rbf.getNativeModel().classify(vector), Matchers.closeTo(rbf.classify(vector), 0.00001));
+            assertThat(svmLightInterface.classifyNative(vector), is(rbf.getNativeModel().classify(vector)));
+        }
+        Path path = folder.newFile().toPath();
+        rbf.writeModelToFile(path.toString());
+        assertThat(SVMLightModel.fromPath(path).getNativeModel(), Matchers.nullValue());
+        assertThat(rbf.withPrecision(ModelPrecision.FLOAT32).getNativeModel(), Matchers.nullValue());
+    }
+
+    @Test
+    public void testParallelTraining() throws Exception {
+        String[] kernelTypes = {"0", "1", "2", "3"};
+        ExecutorService executor = Executors.newFixedThreadPool(kernelTypes.length);
+        try {
+            List<Future<SVMLightModel>> futures = new ArrayList<>();
+            for (String kernelType : kernelTypes) {
+                LabeledFeatureVector[] data = copy(trainingData);
+                String[] argv = new String[]{"-z", "p", "-t", kernelType, "-g", "0.1", "-s", "0.1"};
+                futures.add(executor.submit(() -> svmLightInterface.trainModel(data, argv)));
+            }
+            for (int i = 0; i < kernelTypes.length; i++) {
+                SVMLightModel model = futures.get(i).get(60, TimeUnit.SECONDS);
+                SVMLightModel sequential = new SVMLightInterface().trainModel(trainingData,
+                        new String[]{"-z", "p", "-t", kernelTypes[i], "-g", "0.1", "-s", "0.1"});
+                assertThat(model.getNumberOfSupportVectors(), is(sequential.getNumberOfSupportVectors()));
+                for (LabeledFeatureVector vector : testData) {
+                    assertThat(model.getNativeModel().classify(vector), Matchers.closeTo(model.classify(vector), 0.00001));
+                    assertThat(model.classify(vector), Matchers.closeTo(sequential.classify(vector), 0.00001));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testTrainModelFromArrays() throws Exception {
+        int[] offsets = new int[trainingData.length + 1];
+        for (int i = 0; i < trainingData.length; i++) {
+            offsets[i + 1] = offsets[i] + trainingData[i].m_dims.length;
+        }
+        double[] labels = new double[trainingData.length];
+        int[] qids = new int[trainingData.length];
+        int[] dims = new int[offsets[trainingData.length]];
+        double[] values = new double[dims.length];
+        for (int i = 0; i < trainingData.length; i++) {
+            labels[i] = trainingData[i].getLabel();
+            qids[i] = trainingData[i].getQueryId();
+            // reverse the features, which are sorted again before training
+            for (int k = 0; k < trainingData[i].m_dims.length; k++) {
+                dims[offsets[i + 1] - 1 - k] = trainingData[i].m_dims[k];
+                values[offsets[i + 1] - 1 - k] = trainingData[i].m_vals[k];
+            }
+        }
+        for (String kernelType : new String[]{"0", "2"}) {
+            String[] argv = {"-z", "p", "-t", kernelType, "-g", "0.1"};
+            SVMLightModel model = svmLightInterface.trainModel(labels, qids, offsets, dims, values, new TrainingParameters(argv));
+            assertSameModel(model, new SVMLightInterface().trainModel(trainingData, argv));
+            testModel(model);
+        }
+        SVMLightModel model = svmLightInterface.trainModel(labels, null, offsets, dims, values, new TrainingParameters());
+        assertSameModel(model, new SVMLightInterface().trainModel(copyWithoutQueryIds(trainingData)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTrainModelFromInconsistentArrays() {
+        svmLightInterface.trainModel(new double[]{1, -1}, null, new int[]{0, 2, 1}, new int[]{1, 2}, new double[]{1, 1},
+                new TrainingParameters());
+    }
+
+    @Test
+    public void testTrainModelFromArraysWithInvalidDimensions() {
+        for (int[] dims : new int[][]{{0, 2}, {-1, 2}, {2, 2}}) {
+            try {
+                svmLightInterface.trainModel(new double[]{1, -1}, null, new int[]{0, 0, 2}, dims, new double[]{1, 1},
+                        new TrainingParameters());
+                throw new AssertionError("Dimensions " + Arrays.toString(dims) + " must be rejected.");
+            } catch (IllegalArgumentException e) {
+                assertThat(e.getMessage().contains("strictly ascending"), is(true));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTrainModelFromDatasetWithRepeatedDimensions() throws Exception {
+        Path path = folder.newFile().toPath();
+        Dataset.write(new LabeledFeatureVector[]{new LabeledFeatureVector(1, new int[]{1}, new double[]{1}),
+                new LabeledFeatureVector(-1, new int[]{2, 2}, new double[]{1, 1})}, path);
+        svmLightInterface.trainModel(Dataset.open(path), new TrainingParameters());
+    }
+
+    @Test
+    public void testTrainModelFromDataset() throws Exception {
+        Path path = folder.newFile().toPath();
+        Dataset.write(trainingData, path);
+        String[] argv = {"-z", "p", "-t", "2", "-g", "0.1"};
+        SVMLightModel expected = new SVMLightInterface().trainModel(trainingData, argv);
+        SVMLightModel model = svmLightInterface.trainModel(Dataset.open(path), new TrainingParameters(argv));
+        assertSameModel(model, expected);
+        testModel(model);
+        // features mapped in several segments
+        model = svmLightInterface.trainModel(Dataset.open(path, 1 << 12), new TrainingParameters(argv));
+        assertSameModel(model, expected);
+    }
+
+    private static void assertSameModel(SVMLightModel model, SVMLightModel expected) {
+        assertThat(model.getNumberOfSupportVectors(), is(expected.getNumberOfSupportVectors()));
+        for (LabeledFeatureVector vector : testData) {
+            assertThat(model.classify(vector), Matchers.closeTo(expected.classify(vector), 0.00001));
+        }
+    }
+
+    private static LabeledFeatureVector[] copyWithoutQueryIds(LabeledFeatureVector[] data) {
+        LabeledFeatureVector[] copy = copy(data);
+        for (LabeledFeatureVector doc : copy) {
+            doc.setQueryId(0);
+        }
+        return copy;
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClassifyNativeWithoutModel() {
+        svmLightInterface.classifyNative(testData[0]);
+    }
+
+    @Test
+    public void testClassifyNativeBatch() throws Exception {
+        FeatureVector[] vectors = Arrays.copyOf(testData, testData.length + 1, FeatureVector[].class);
+        // a feature unknown to the model
+        vectors[testData.length] = new FeatureVector(new int[]{1, 1000000}, new double[]{0.5, 2});
+        int[] offsets = new int[vectors.length + 1];
+        for (int i = 0; i < vectors.length; i++) {
+            offsets[i + 1] = offsets[i] + vectors[i].m_dims.length;
+        }
+        int[] dims = new int[offsets[vectors.length]];
+        double[] values = new double[dims.length];
+        for (int i = 0; i < vectors.length; i++) {
+            System.arraycopy(vectors[i].m_dims, 0, dims, offsets[i], vectors[i].m_dims.length);
+            System.arraycopy(vectors[i].m_vals, 0, values, offsets[i], vectors[i].m_dims.length);
+        }
+        for (String kernelType : new String[]{"0", "1", "2", "3"}) {
+            SVMLightModel model = svmLightInterface.trainModel(trainingData,
+                    new String[]{"-z", "p", "-t", kernelType, "-g", "0.1", "-s", "0.1"});
+            double[] results = new double[vectors.length];
+            svmLightInterface.classifyNative(offsets, dims, values, results);
+            for (int i = 0; i < vectors.length; i++) {
+                assertThat(results[i], is(model.getNativeModel().classify(vectors[i])));
+                assertThat(results[i], Matchers.closeTo(model.classify(vectors[i]), 0.00001));
+            }
+        }
+        svmLightInterface.classifyNative(new int[]{0}, new int[0], new double[0], new double[0]);
+        SVMLightModel linear = svmLightInterface.trainModel(trainingData, new String[]{"-z", "p"});
+        double[] empty = new double[1];
+        svmLightInterface.classifyNative(new int[]{0, 0}, new int[0], new double[0], empty);
+        assertThat(empty[0], Matchers.closeTo(-linear.getThreshold(), 0.00001));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClassifyNativeBatchWithInconsistentArrays() throws Exception {
+        svmLightInterface.trainModel(trainingData, new String[]{"-z", "p"});
+        svmLightInterface.classifyNative(new int[]{0, 2}, new int[]{1}, new double[]{1}, new double[1]);
+    }
+
+    private static LabeledFeatureVector[] copy(LabeledFeatureVector[] data) {
+        LabeledFeatureVector[] copy = new LabeledFeatureVector[data.length];
+        for (int i = 0; i < data.length; i++) {
+            copy[i] = new LabeledFeatureVector(data[i].getLabel(), data[i].m_dims.clone(), data[i].m_vals.clone());
+            copy[i].setQueryId(data[i].getQueryId());
+        }
+        return copy;
+    }
+
     private void testModel(SVMLightModel model) throws IOException, ParseException {
         for (LabeledFeatureVector vector : trainingData) {
             double classifyJni = model.classify(vector);
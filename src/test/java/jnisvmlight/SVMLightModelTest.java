@@ -0,0 +1,475 @@
+package jnisvmlight;
+
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the Java-side scoring of {@link SVMLightModel} on synthetic models, so that no native library is required.
+ *
+ * @author Anja Pilz
+ */
+public class SVMLightModelTest {
+
+    private static final double ERROR = 0.00001;
+    static final int HIGHEST_FEATURE = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBatchClassificationMatchesSingleClassification() throws Exception {
+        Random random = new Random(42);
+        FeatureVector[] vectors = randomVectors(random, 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int kernelType = KernelParam.LINEAR; kernelType <= KernelParam.SIGMOID; kernelType++) {
+                SVMLightModel model = randomModel(random, kernelType, 100);
+                double[] expected = new double[vectors.length];
+                for (int i = 0; i < vectors.length; i++) {
+                    expected[i] = model.classify(vectors[i]);
+                }
+                assertThat(model.classify(vectors), is(expected));
+                assertThat(model.classify(Arrays.asList(vectors)), is(expected));
+                assertThat(model.classify(vectors, executor), is(expected));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchClassificationOfEmptyAndSmallBatches() throws Exception {
+        Random random = new Random(7);
+        SVMLightModel model = randomModel(random, KernelParam.RBF, 10);
+        assertThat(model.classify(new FeatureVector[0]).length, is(0));
+        FeatureVector[] vectors = randomVectors(random, 3);
+        double[] scores = model.classify(vectors);
+        for (int i = 0; i < vectors.length; i++) {
+            assertThat(scores[i], Matchers.closeTo(model.classify(vectors[i]), ERROR));
+        }
+    }
+
+    @Test
+    public void testCompiledModelMatchesKernelHierarchy() throws Exception {
+        Random random = new Random(3);
+        FeatureVector[] vectors = randomVectors(random, 200);
+        vectors[0].setFactor(2.5);
+        for (int kernelType = KernelParam.POLYNOMIAL; kernelType <= KernelParam.SIGMOID; kernelType++) {
+            for (long degree = 1; degree <= 5; degree++) {
+                LabeledFeatureVector[] docs = randomDocs(random, 150);
+                docs[0].m_label = 0;
+                SVMLightModel model = newModel(kernelType, degree, docs);
+                for (FeatureVector v : vectors) {
+                    assertThat(model.classify(v), Matchers.closeTo(referenceClassify(model, docs, v), ERROR));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDenseAndMergeQueryPathsMatchKernelHierarchy() throws Exception {
+        Random random = new Random(5);
+        FeatureVector[] vectors = randomVectors(random, 100);
+        FeatureVector shortQuery = new FeatureVector(new int[]{7}, new double[]{0.5});
+        for (long highFeatIdx : new long[]{HIGHEST_FEATURE, CompiledKernelModel.MAX_DENSE_DIMENSION + 1}) {
+            LabeledFeatureVector[] docs = randomDocs(random, 100);
+            SVMLightModel model = newModel(KernelParam.RBF, 3, highFeatIdx, docs);
+            for (FeatureVector v : vectors) {
+                assertThat(model.classify(v), Matchers.closeTo(referenceClassify(model, docs, v), ERROR));
+            }
+            assertThat(model.classify(shortQuery), Matchers.closeTo(referenceClassify(model, docs, shortQuery), ERROR));
+        }
+    }
+
+    @Test
+    public void testDenseAndSparseLinearWeights() throws Exception {
+        Random random = new Random(13);
+        FeatureVector[] vectors = randomVectors(random, 100);
+        LabeledFeatureVector[] docs = randomDocs(random, 30);
+        SVMLightModel dense = newModel(KernelParam.LINEAR, 3, docs);
+        assertThat(dense.hasSparseLinearWeights(), is(false));
+        assertThat(dense.m_linWeights, is(Matchers.sameInstance(dense.getLinearWeights())));
+        for (long highFeatIdx : new long[]{100000, 300000000}) {
+            SVMLightModel sparse = newModel(KernelParam.LINEAR, 3, highFeatIdx, docs);
+            assertThat(sparse.hasSparseLinearWeights(), is(true));
+            assertThat(sparse.m_linWeights, is(Matchers.nullValue()));
+            for (FeatureVector v : vectors) {
+                assertThat(sparse.classify(v), Matchers.closeTo(referenceClassify(sparse, docs, v), ERROR));
+                assertThat(sparse.classify(v), Matchers.closeTo(dense.classify(v), ERROR));
+            }
+            for (int dim = 0; dim <= HIGHEST_FEATURE; dim++) {
+                assertThat(sparse.getLinearWeight(dim), Matchers.closeTo(dense.getLinearWeights()[dim], ERROR));
+            }
+            assertThat(sparse.getLinearWeight(HIGHEST_FEATURE + 1), is(0.0));
+        }
+        double[] weights = newModel(KernelParam.LINEAR, 3, 100000, docs).getLinearWeights();
+        assertThat(weights.length, is(100001));
+        assertThat(Arrays.copyOf(weights, HIGHEST_FEATURE + 1), is(dense.getLinearWeights()));
+        // features beyond the model's feature space have no weight
+        FeatureVector outside = new FeatureVector(new int[]{1, 1000}, new double[]{1, 1});
+        assertThat(dense.classify(outside), Matchers.closeTo(dense.getLinearWeight(1) - 0.25, ERROR));
+    }
+
+    @Test
+    public void testInvertedIndexMatchesFullScan() throws Exception {
+        Random random = new Random(23);
+        LabeledFeatureVector[] docs = new LabeledFeatureVector[300];
+        for (int i = 0; i < docs.length; i++) {
+            int[] dims = random.ints(1, 5000).distinct().limit(1 + random.nextInt(30)).sorted().toArray();
+            docs[i] = new LabeledFeatureVector(random.nextDouble() - 0.5, dims, random.doubles(dims.length, -1, 1).toArray());
+        }
+        docs[0].m_label = 0;
+        FeatureVector[] queries = new FeatureVector[100];
+        for (int i = 0; i < queries.length; i++) {
+            int[] dims = random.ints(1, 6000).distinct().limit(1 + random.nextInt(8)).sorted().toArray();
+            queries[i] = new FeatureVector(dims, random.doubles(dims.length, -1, 1).toArray());
+        }
+        for (int kernelType = KernelParam.POLYNOMIAL; kernelType <= KernelParam.SIGMOID; kernelType++) {
+            for (ModelPrecision precision : ModelPrecision.values()) {
+                CompiledKernelModel compiled = new CompiledKernelModel(kernelType, PackedSupportVectors.pack(docs).convert(precision), 5000,
+                        3, 0.1, 0.5, 1.0);
+                assertThat(compiled.isIndexed(), is(true));
+                ScoringScratch scratch = compiled.scratch();
+                for (FeatureVector v : queries) {
+                    assertThat(compiled.evaluateIndexed(v, scratch), Matchers.closeTo(compiled.evaluateAll(v, scratch), ERROR));
+                    assertThat(compiled.evaluate(v, scratch), Matchers.closeTo(compiled.evaluateAll(v, scratch), ERROR));
+                }
+            }
+        }
+        PackedSupportVectors packed = PackedSupportVectors.pack(docs);
+        int numFeatures = InvertedIndex.of(packed).numFeatures();
+        assertThat(InvertedIndex.countFeatures(packed, 5000), is(numFeatures));
+        assertThat(InvertedIndex.countFeatures(packed, 300000000), is(numFeatures));
+        // every support vector contains the same few features, so an index would not save any work
+        LabeledFeatureVector[] dense = new LabeledFeatureVector[100];
+        for (int i = 0; i < dense.length; i++) {
+            dense[i] = new LabeledFeatureVector(1, new int[]{1, 2, 3}, new double[]{i, 1, 2});
+        }
+        assertThat(new CompiledKernelModel(KernelParam.RBF, PackedSupportVectors.pack(dense), 3, 3, 0.1, 0.5, 1.0).isIndexed(), is(false));
+    }
+
+    @Test
+    public void testPredictLabelMatchesSignOfDecisionValue() throws Exception {
+        Random random = new Random(29);
+        FeatureVector[] vectors = randomVectors(random, 200);
+        vectors[0].setFactor(-2);
+        for (int kernelType = KernelParam.LINEAR; kernelType <= KernelParam.SIGMOID; kernelType++) {
+            SVMLightModel model = randomModel(random, kernelType, 100);
+            for (FeatureVector v : vectors) {
+                LabelPrediction prediction = model.predictLabel(v);
+                assertThat(prediction.getLabel(), is(model.classify(v) > 0 ? 1 : -1));
+                assertThat(prediction.getEvaluatedSupportVectors(), Matchers.lessThanOrEqualTo(100));
+            }
+        }
+    }
+
+    @Test
+    public void testPredictLabelStopsEarly() throws Exception {
+        Random random = new Random(31);
+        LabeledFeatureVector[] docs = randomDocs(random, 100);
+        for (int i = 0; i < docs.length; i++) {
+            docs[i].m_label = i < 5 ? 10 : 0.01 * (random.nextBoolean() ? 1 : -1);
+        }
+        SVMLightModel model = newModel(KernelParam.RBF, 3, docs);
+        int evaluated = 0;
+        for (FeatureVector v : randomVectors(random, 100)) {
+            LabelPrediction prediction = model.predictLabel(v);
+            assertThat(prediction.getLabel(), is(model.classify(v) > 0 ? 1 : -1));
+            evaluated += prediction.getEvaluatedSupportVectors();
+        }
+        assertThat(evaluated, Matchers.lessThan(100 * docs.length / 2));
+    }
+
+    @Test
+    public void testRandomFourierFeatures() throws Exception {
+        Random random = new Random(37);
+        SVMLightModel model = randomModel(random, KernelParam.RBF, 20);
+        FeatureVector[] validation = randomVectors(random, 200);
+        ApproximationReport coarse = model.toRandomFourierModel(50, 1).deviationFrom(model, validation);
+        RandomFourierModel approximation = model.toRandomFourierModel(20000, 1);
+        ApproximationReport fine = approximation.deviationFrom(model, validation);
+        assertThat(fine.getNumberOfVectors(), is(validation.length));
+        assertThat(fine.getMeanDeviation(), Matchers.lessThan(coarse.getMeanDeviation()));
+        assertThat(fine.getMaxDeviation(), Matchers.lessThan(0.2));
+
+        // the same seed yields the same map, whether or not the projection weights are cached
+        FeatureVector v = new FeatureVector(new int[]{3, 17, HIGHEST_FEATURE + 5}, new double[]{0.5, -1, 2});
+        double[] cached = new RandomFourierFeatures(100, 0.1, 1, HIGHEST_FEATURE).map(v);
+        double[] computed = new RandomFourierFeatures(100, 0.1, 1, Integer.MAX_VALUE).map(v);
+        assertThat(computed, is(cached));
+        assertThat(approximation.classify(v), Matchers.closeTo(approximation.classify(new FeatureVector[]{v})[0], ERROR));
+        // a smaller model scores from the larger buffer of this thread
+        RandomFourierModel small = model.toRandomFourierModel(50, 1);
+        assertThat(small.classify(v), is(small.classify(v, new double[50])));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRandomFourierFeaturesRequireRadialBaseKernel() throws Exception {
+        randomModel(new Random(41), KernelParam.POLYNOMIAL, 10).toRandomFourierModel(100, 1);
+    }
+
+    @Test
+    public void testCompressionMergesDuplicatesAndLinearWeights() throws Exception {
+        Random random = new Random(43);
+        LabeledFeatureVector[] docs = randomDocs(random, 30);
+        LabeledFeatureVector[] duplicated = new LabeledFeatureVector[docs.length * 2 + 1];
+        for (int i = 0; i < docs.length; i++) {
+            duplicated[2 * i] = new LabeledFeatureVector(docs[i].m_label / 2, docs[i].m_dims, docs[i].m_vals);
+            duplicated[2 * i + 1] = new LabeledFeatureVector(docs[i].m_label / 2, docs[i].m_dims, docs[i].m_vals);
+        }
+        duplicated[docs.length * 2] = new LabeledFeatureVector(0, new int[]{1}, new double[]{1});
+        FeatureVector[] vectors = randomVectors(random, 100);
+        for (int kernelType = KernelParam.LINEAR; kernelType <= KernelParam.SIGMOID; kernelType++) {
+            SVMLightModel model = newModel(kernelType, 2, duplicated);
+            SVMLightModel compressed = model.compress(duplicated.length);
+            assertThat(compressed.getNumberOfSupportVectors(), is(kernelType == KernelParam.LINEAR ? 1 : docs.length));
+            assertThat(compressed.deviationFrom(model, vectors).getMaxDeviation(), Matchers.lessThan(ERROR));
+
+            Path path = folder.newFile().toPath();
+            compressed.writeModelToFile(path.toString());
+            SVMLightModel loaded = SVMLightModel.fromPath(path);
+            assertThat(loaded.getNumberOfSupportVectors(), is(compressed.getNumberOfSupportVectors()));
+            assertThat(loaded.deviationFrom(model, vectors).getMaxDeviation(), Matchers.lessThan(ERROR));
+        }
+    }
+
+    @Test
+    public void testWriteModelWithoutSupportVectors() throws Exception {
+        FeatureVector vector = randomVector(new Random(83));
+        for (int kernelType : new int[]{KernelParam.LINEAR, KernelParam.RBF}) {
+            SVMLightModel model = newModel(kernelType, 2, new LabeledFeatureVector[0]);
+            Path path = folder.newFile().toPath();
+            model.writeModelToFile(path.toString());
+            SVMLightModel loaded = SVMLightModel.fromPath(path);
+            assertThat(loaded.getNumberOfSupportVectors(), is(0));
+            assertThat(loaded.classify(vector), is(model.classify(vector)));
+
+            Path binary = folder.newFile().toPath();
+            Path text = folder.newFile().toPath();
+            model.writeBinaryModelToFile(binary);
+            MappedModel.convertToText(binary, text);
+            assertThat(Files.readAllLines(text), is(Files.readAllLines(path)));
+        }
+    }
+
+    @Test
+    public void testCompressionOfSupportVectorsWithoutFeatures() throws Exception {
+        Random random = new Random(73);
+        LabeledFeatureVector[] docs = randomDocs(random, 20);
+        LabeledFeatureVector empty = new LabeledFeatureVector();
+        empty.m_label = 5;
+        empty.m_dims = new int[0];
+        empty.m_vals = new double[0];
+        docs[0] = empty;
+        FeatureVector[] validation = randomVectors(random, 50);
+        SVMLightModel model = newModel(KernelParam.RBF, 2, docs);
+        // the support vector without features has the largest alpha and is kept first
+        SVMLightModel compressed = model.compress(3);
+        assertThat(compressed.getSupportVector(0).m_dims.length, is(0));
+        SVMLightModel budgeted = model.compress(0.05, validation);
+        assertThat(budgeted.deviationFrom(model, validation).getMaxDeviation(), Matchers.lessThanOrEqualTo(0.05));
+
+        LabeledFeatureVector[] zeroWeights = {new LabeledFeatureVector(1, new int[]{1}, new double[]{1}),
+                new LabeledFeatureVector(-1, new int[]{1}, new double[]{1})};
+        assertThat(newModel(KernelParam.LINEAR, 2, zeroWeights).compress(1).getSupportVector(0).m_dims.length, is(0));
+    }
+
+    @Test
+    public void testCompressionRefitsNearDuplicates() throws Exception {
+        Random random = new Random(47);
+        FeatureVector[] centers = randomVectors(random, 10);
+        LabeledFeatureVector[] docs = new LabeledFeatureVector[centers.length * 10];
+        for (int i = 0; i < docs.length; i++) {
+            FeatureVector center = centers[i / 10];
+            double[] vals = center.m_vals.clone();
+            for (int k = 0; k < vals.length; k++) {
+                vals[k] += 0.001 * random.nextGaussian();
+            }
+            docs[i] = new LabeledFeatureVector((i / 10 % 2 == 0 ? 1 : -1) * (0.5 + random.nextDouble()), center.m_dims, vals);
+        }
+        FeatureVector[] validation = randomVectors(random, 200);
+        for (int kernelType : new int[]{KernelParam.POLYNOMIAL, KernelParam.RBF}) {
+            SVMLightModel model = newModel(kernelType, 2, docs);
+            SVMLightModel compressed = model.compress(centers.length);
+            assertThat(compressed.getNumberOfSupportVectors(), is(centers.length));
+            assertThat(compressed.deviationFrom(model, validation).getMaxDeviation(), Matchers.lessThan(0.05));
+
+            SVMLightModel budgeted = model.compress(0.05, validation);
+            assertThat(budgeted.getNumberOfSupportVectors(), Matchers.lessThan(docs.length));
+            assertThat(budgeted.deviationFrom(model, validation).getMaxDeviation(), Matchers.lessThanOrEqualTo(0.05));
+        }
+        SVMLightModel int8 = newModel(KernelParam.RBF, 2, docs).withPrecision(ModelPrecision.INT8);
+        assertThat(int8.compress(centers.length).getPrecision(), is(ModelPrecision.INT8));
+    }
+
+    @Test
+    public void testMultiModelScorerMatchesSingleModels() throws Exception {
+        Random random = new Random(53);
+        LabeledFeatureVector[] shared = randomDocs(random, 40);
+        List<SVMLightModel> models = new ArrayList<>();
+        for (int m = 0; m < 6; m++) {
+            // one-vs-rest models share most of their support vectors, with different alphas
+            LabeledFeatureVector[] docs = new LabeledFeatureVector[shared.length + 5];
+            for (int i = 0; i < shared.length; i++) {
+                docs[i] = new LabeledFeatureVector(random.nextDouble() - 0.5, shared[i].m_dims, shared[i].m_vals);
+            }
+            System.arraycopy(randomDocs(random, 5), 0, docs, shared.length, 5);
+            models.add(newModel(m % 3 == 2 ? KernelParam.POLYNOMIAL : KernelParam.RBF, 2, docs));
+        }
+        models.add(newModel(KernelParam.LINEAR, 3, randomDocs(random, 20)));
+        models.add(newModel(KernelParam.LINEAR, 3, 300000000, randomDocs(random, 20)));
+        models.add(newModel(KernelParam.SIGMOID, 3, randomDocs(random, 20)).withPrecision(ModelPrecision.FLOAT32));
+
+        MultiModelScorer scorer = new MultiModelScorer(models);
+        assertThat(scorer.getNumberOfModels(), is(models.size()));
+        assertThat(scorer.getNumberOfSupportVectors(), is(shared.length + 6 * 5 + 20));
+        FeatureVector[] vectors = randomVectors(random, 100);
+        vectors[0].setFactor(1.5);
+        double[][] batch = scorer.classify(vectors);
+        int[] labels = scorer.argmax(vectors);
+        for (int i = 0; i < vectors.length; i++) {
+            double[] scores = scorer.classify(vectors[i]);
+            int best = 0;
+            for (int m = 0; m < models.size(); m++) {
+                assertThat(scores[m], Matchers.closeTo(models.get(m).classify(vectors[i]), ERROR));
+                assertThat(batch[i][m], is(scores[m]));
+                best = scores[m] > scores[best] ? m : best;
+            }
+            assertThat(labels[i], is(best));
+            assertThat(scorer.argmax(vectors[i]), is(best));
+        }
+    }
+
+    @Test
+    public void testIntegerPower() throws Exception {
+        for (int exponent = -4; exponent <= 9; exponent++) {
+            assertThat(CompiledKernelModel.power(-1.7, exponent), Matchers.closeTo(Math.pow(-1.7, exponent), ERROR));
+        }
+    }
+
+    @Test
+    public void testPackedSupportVectors() throws Exception {
+        Random random = new Random(11);
+        LabeledFeatureVector[] docs = randomDocs(random, 20);
+        SVMLightModel model = newModel(KernelParam.RBF, 3, docs);
+        assertThat(model.getNumberOfSupportVectors(), is(docs.length));
+        for (int i = 0; i < docs.length; i++) {
+            assertThat(model.getSupportVector(i).toString(), is(docs[i].toString()));
+        }
+        Path path = folder.newFile().toPath();
+        model.writeModelToFile(path.toString());
+        List<String> lines = Files.readAllLines(path);
+        assertThat(lines.size(), is(11 + docs.length));
+        for (int i = 0; i < docs.length; i++) {
+            assertThat(lines.get(11 + i) + "\n", is(docs[i].toString()));
+        }
+    }
+
+    @Test
+    public void testReducedPrecisionModels() throws Exception {
+        Random random = new Random(17);
+        FeatureVector[] validation = randomVectors(random, 300);
+        for (int kernelType = KernelParam.LINEAR; kernelType <= KernelParam.SIGMOID; kernelType++) {
+            for (long highFeatIdx : new long[]{HIGHEST_FEATURE, 300000000}) {
+                SVMLightModel model = newModel(kernelType, 2, highFeatIdx, randomDocs(random, 100));
+                assertThat(model.getPrecision(), is(ModelPrecision.FLOAT64));
+                assertThat(model.withPrecision(ModelPrecision.FLOAT64), Matchers.sameInstance(model));
+                SVMLightModel float32 = model.withPrecision(ModelPrecision.FLOAT32);
+                SVMLightModel int8 = model.withPrecision(ModelPrecision.INT8);
+                assertThat(float32.getPrecision(), is(ModelPrecision.FLOAT32));
+                assertThat(int8.getPrecision(), is(ModelPrecision.INT8));
+                assertThat(float32.hasSparseLinearWeights(), is(model.hasSparseLinearWeights()));
+                assertThat(float32.getMemoryBytes(), Matchers.lessThan(model.getMemoryBytes()));
+                assertThat(int8.getMemoryBytes(), Matchers.lessThan(float32.getMemoryBytes()));
+
+                ApproximationReport report = float32.deviationFrom(model, validation);
+                assertThat(report.getNumberOfVectors(), is(validation.length));
+                assertThat(report.getMaxDeviation(), Matchers.lessThan(0.001));
+                report = int8.deviationFrom(model, validation);
+                assertThat(report.getMaxDeviation(), Matchers.lessThan(0.5));
+                assertThat(report.getMeanDeviation(), Matchers.lessThanOrEqualTo(report.getMaxDeviation()));
+                for (FeatureVector v : validation) {
+                    assertThat(Math.abs(int8.classify(v) - model.classify(v)), Matchers.lessThanOrEqualTo(report.getMaxDeviation()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReducedPrecisionModelFile() throws Exception {
+        Random random = new Random(19);
+        SVMLightModel model = newModel(KernelParam.RBF, 3, randomDocs(random, 20));
+        Path path = folder.newFile().toPath();
+        model.writeModelToFile(path.toString());
+        SVMLightModel float32 = SVMLightModel.fromPath(path, ModelPrecision.FLOAT32);
+        assertThat(float32.getPrecision(), is(ModelPrecision.FLOAT32));
+        assertThat(float32.getNumberOfSupportVectors(), is(20));
+        FeatureVector[] validation = randomVectors(random, 50);
+        assertThat(float32.deviationFrom(model, validation).getMaxDeviation(), Matchers.lessThan(0.001));
+    }
+
+    /**
+     * Classifies {@code v} the way {@link SVMLightModel} did before it compiled its support vectors, i.e. by evaluating the model's
+     * {@link Kernel} on every support vector.
+     */
+    static double referenceClassify(SVMLightModel model, LabeledFeatureVector[] docs, FeatureVector v) {
+        double delta = 0;
+        for (LabeledFeatureVector doc : docs) {
+            if (doc.getLabel() != 0) {
+                delta += v.m_factor * doc.getLabel() * model.getKernel().evaluate(doc, v);
+            }
+        }
+        return delta - 0.25;
+    }
+
+    static SVMLightModel randomModel(Random random, int kernelType, int numSupportVectors) {
+        return newModel(kernelType, 3, randomDocs(random, numSupportVectors));
+    }
+
+    static SVMLightModel newModel(int kernelType, long degree, LabeledFeatureVector[] docs) {
+        return newModel(kernelType, degree, HIGHEST_FEATURE, docs);
+    }
+
+    static SVMLightModel newModel(int kernelType, long degree, long highFeatIdx, LabeledFeatureVector[] docs) {
+        return new SVMLightModel("SVM-light Version V6.02", kernelType, degree, 0.1, 0.5, 1.0, "empty", highFeatIdx, docs.length * 2,
+                docs.length + 1, 0.25, docs);
+    }
+
+    static LabeledFeatureVector[] randomDocs(Random random, int count) {
+        LabeledFeatureVector[] docs = new LabeledFeatureVector[count];
+        for (int i = 0; i < count; i++) {
+            FeatureVector v = randomVector(random);
+            double alpha = (random.nextBoolean() ? 1 : -1) * random.nextDouble();
+            docs[i] = new LabeledFeatureVector(alpha, v.m_dims, v.m_vals);
+        }
+        return docs;
+    }
+
+    static FeatureVector[] randomVectors(Random random, int count) {
+        FeatureVector[] vectors = new FeatureVector[count];
+        for (int i = 0; i < count; i++) {
+            vectors[i] = randomVector(random);
+        }
+        return vectors;
+    }
+
+    static FeatureVector randomVector(Random random) {
+        int[] dims = random.ints(1, HIGHEST_FEATURE + 1).distinct().limit(1 + random.nextInt(10)).sorted().toArray();
+        double[] vals = random.doubles(dims.length, -1, 1).toArray();
+        return new FeatureVector(dims, vals);
+    }
+}
@@ -0,0 +1,94 @@
+package jnisvmlight;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Anja Pilz
+ */
+public class ScoringPipelineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPredictionsMatchClassify() throws Exception {
+        Random random = new Random(59);
+        SVMLightModel model = SVMLightModelTest.randomModel(random, KernelParam.RBF, 50);
+        LabeledFeatureVector[] docs = SVMLightModelTest.randomDocs(random, 3 * ScoringPipeline.LINES_PER_CHUNK + 17);
+        List<String> lines = new ArrayList<>();
+        lines.add("# a comment");
+        for (int i = 0; i < docs.length; i++) {
+            lines.add(docs[i].toString().trim() + (i % 100 == 0 ? " # an inline comment" : ""));
+        }
+        // lines without features are scored like svm_classify scores them, as vectors without features
+        String[] withoutFeatures = {"1 # a document without features", "-1", "2 qid:7", ""};
+        lines.addAll(Arrays.asList(withoutFeatures));
+        Path input = folder.newFile().toPath();
+        Files.write(input, lines);
+        Path output = folder.newFile().toPath();
+        FeatureVector empty = DocumentParser.parseQuery("-1", 1, "test");
+        assertThat(empty.m_dims.length, is(0));
+
+        for (int outputFormat : new int[]{ScoringPipeline.OUTPUT_DECISION_VALUES, ScoringPipeline.OUTPUT_OLD_FORMAT}) {
+            ScoringPipeline pipeline = new ScoringPipeline(model, 3, 2, outputFormat);
+            int count = docs.length + withoutFeatures.length;
+            assertThat(pipeline.score(input, output), is((long) count));
+            List<String> predictions = Files.readAllLines(output);
+            assertThat(predictions.size(), is(count));
+            for (int i = 0; i < count; i++) {
+                double dist = model.classify(i < docs.length ? docs[i] : empty);
+                String expected = ScoringPipeline.formatG(dist);
+                if (outputFormat == ScoringPipeline.OUTPUT_OLD_FORMAT) {
+                    expected = dist > 0 ? expected + ":+1 " + ScoringPipeline.formatG(-dist) + ":-1" :
+                            ScoringPipeline.formatG(-dist) + ":-1 " + expected + ":+1";
+                }
+                assertThat(predictions.get(i), is(expected));
+            }
+        }
+    }
+
+    @Test
+    public void testParseErrorReportsLineNumber() throws Exception {
+        SVMLightModel model = SVMLightModelTest.randomModel(new Random(61), KernelParam.LINEAR, 10);
+        StringBuilder input = new StringBuilder("# header\n");
+        for (int i = 0; i < 1000; i++) {
+            input.append(i == 700 ? "1 3:0.5 oops\n" : "1 3:0.5 7:1\n");
+        }
+        try {
+            new ScoringPipeline(model, 2, 1, ScoringPipeline.OUTPUT_DECISION_VALUES)
+                    .score(new BufferedReader(new StringReader(input.toString())), new StringWriter(), "input");
+            throw new AssertionError("Expected a ParseException");
+        } catch (ParseException e) {
+            assertThat(e.getMessage().contains("at line: 702"), is(true));
+        }
+    }
+
+    @Test
+    public void testFormatLikePrintf() throws Exception {
+        assertThat(ScoringPipeline.formatG(0), is("0"));
+        assertThat(ScoringPipeline.formatG(0.5), is("0.5"));
+        assertThat(ScoringPipeline.formatG(100), is("100"));
+        assertThat(ScoringPipeline.formatG(-1.23456789), is("-1.2345679"));
+        assertThat(ScoringPipeline.formatG(0.0001234), is("0.0001234"));
+        assertThat(ScoringPipeline.formatG(0.00001234), is("1.234e-05"));
+        assertThat(ScoringPipeline.formatG(123456789), is("1.2345679e+08"));
+        assertThat(ScoringPipeline.formatG(99999999.9), is("1e+08"));
+        assertThat(ScoringPipeline.formatG(-2.5e-300), is("-2.5e-300"));
+    }
+}